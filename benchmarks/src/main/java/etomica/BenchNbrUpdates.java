@@ -31,6 +31,9 @@ public class BenchNbrUpdates {
     public NeighborListManager nlm;
     public IAtom a;
 
+    @Param({"1", "2", "4", "8"})
+    public int numThreads;
+
     @Setup(Level.Iteration)
     public void setUp() {
         Simulation sim = new Simulation(Space3D.getInstance());
@@ -52,6 +55,7 @@ public class BenchNbrUpdates {
         randConfig.initializeCoordinates(box);
         pm.init();
         nlm = pm.getNeighborManager();
+        nlm.setNumThreads(numThreads);
         a = box.getLeafList().get(0);
     }
 
@@ -62,18 +66,21 @@ public class BenchNbrUpdates {
     @Measurement(iterations = 10)
     public int benchNbrUpdates() {
         nlm.checkUpdateNbrs();
-        return nlm.numAtomNbrsUp[a.getLeafIndex()];
+        return nlm.getNumUpNeighbors(a.getLeafIndex());
     }
 
+    /**
+     * Times a full rebuild of the neighbor lists; run with each numThreads
+     * to see how the rebuild scales with threads.
+     */
     @Benchmark
     @BenchmarkMode(Mode.SingleShotTime)
     @OutputTimeUnit(TimeUnit.MILLISECONDS)
     @Warmup(iterations = 5)
     @Measurement(iterations = 10)
-    @Fork(value = 1, jvmArgsAppend = "-Detomica.nbr.parallel=true")
-    public int benchNbrUpdatesParallel() {
-        nlm.checkUpdateNbrs();
-        return nlm.numAtomNbrsUp[a.getLeafIndex()];
+    public int benchNbrReset() {
+        nlm.reset();
+        return nlm.getNumUpNeighbors(a.getLeafIndex());
     }
 
     public static void main(String[] args) throws RunnerException {
@@ -0,0 +1,103 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.simulation;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomType;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.integrator.IntegratorMC;
+import etomica.integrator.IntegratorMCCheckerboard;
+import etomica.integrator.mcmove.MCMoveAtom;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.nbr.cell.PotentialMasterCell;
+import etomica.potential.BondingInfo;
+import etomica.potential.P2LennardJones;
+import etomica.potential.P2SoftSphericalTruncated;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesGeneral;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a sweep (one trial per atom) of IntegratorMC with a sweep of
+ * IntegratorMCCheckerboard for a Lennard-Jones liquid.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class BenchSimLJMCCheckerboard {
+
+    @Param({"4000", "32000"})
+    private int numAtoms;
+
+    @Param({"1", "4"})
+    private int numThreads;
+
+    private IntegratorMC integratorMC;
+    private IntegratorMCCheckerboard integratorCheckerboard;
+
+    private PotentialMasterCell makePotentialMaster(Simulation sim, SpeciesGeneral species, Box box) {
+        box.setNMolecules(species, numAtoms);
+        new BoxInflate(box, sim.getSpace(), 0.7).actionPerformed();
+        new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+        PotentialMasterCell potentialMaster = new PotentialMasterCell(sim.getSpeciesManager(), box, 2, BondingInfo.noBonding());
+        potentialMaster.setPairPotential(species.getLeafType(), species.getLeafType(),
+                new P2SoftSphericalTruncated(new P2LennardJones(1, 1), 2.5));
+        return potentialMaster;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        SpeciesGeneral species = SpeciesGeneral.monatomic(sim.getSpace(), AtomType.simpleFromSim(sim));
+        sim.addSpecies(species);
+
+        Box box = sim.makeBox();
+        PotentialMasterCell potentialMaster = makePotentialMaster(sim, species, box);
+        integratorMC = new IntegratorMC(potentialMaster, sim.getRandom(), 1.5, box);
+        integratorMC.getMoveManager().addMCMove(new MCMoveAtom(sim.getRandom(), potentialMaster, box));
+        integratorMC.reset();
+
+        Box box2 = sim.makeBox();
+        potentialMaster = makePotentialMaster(sim, species, box2);
+        integratorCheckerboard = new IntegratorMCCheckerboard(potentialMaster, sim.getRandom(), 1.5, box2);
+        integratorCheckerboard.setNumThreads(numThreads);
+        integratorCheckerboard.reset();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(time = 1, iterations = 5)
+    @Measurement(time = 3, iterations = 5)
+    public void sweepMC() {
+        for (int i = 0; i < numAtoms; i++) {
+            integratorMC.doStep();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(time = 1, iterations = 5)
+    @Measurement(time = 3, iterations = 5)
+    public void sweepCheckerboard() {
+        integratorCheckerboard.doStep();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opts = new OptionsBuilder()
+                .include(BenchSimLJMCCheckerboard.class.getSimpleName())
+                .build();
+
+        new Runner(opts).run();
+    }
+}
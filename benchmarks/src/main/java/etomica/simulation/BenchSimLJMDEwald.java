@@ -26,6 +26,9 @@ public class BenchSimLJMDEwald {
     @Param({"200000"})
     private int numSteps;
 
+    @Param({"false", "true"})
+    private boolean spme;
+
     private TestLJMD3DEwald sim;
 
     @Setup(Level.Iteration)
@@ -37,7 +40,7 @@ public class BenchSimLJMDEwald {
         );
 
         {
-            sim = new TestLJMD3DEwald(numMolecules, config);
+            sim = new TestLJMD3DEwald(numMolecules, config, spme);
             sim.integrator.reset();
         }
 
@@ -0,0 +1,58 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.simulation;
+
+import etomica.normalmode.LJPIMD;
+import etomica.space3d.Space3D;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the staging and normal-mode path-integral Langevin integrators
+ * for Lennard-Jones ring polymers.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class BenchSimLJPIMD {
+
+    @Param({"32", "64", "128", "256"})
+    private int nBeads;
+
+    @Param({"true", "false"})
+    private boolean isNormalModes;
+
+    private LJPIMD sim;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        double k2 = 219.231319;
+        sim = new LJPIMD(Space3D.getInstance(), 1.0, 32, nBeads, 0.5, 1.0, 2.5, k2, k2, 0.001,
+                true, isNormalModes, 2.0 * Math.sqrt(k2), 0.1);
+        sim.integrator.reset();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(time = 1, iterations = 5)
+    @Measurement(time = 3, iterations = 5)
+    public void integratorStep() {
+        sim.integrator.doStep();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opts = new OptionsBuilder()
+                .include(BenchSimLJPIMD.class.getSimpleName())
+                .build();
+
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,376 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package etomica.normalmode;
+
+import etomica.atom.IAtom;
+import etomica.atom.IAtomKinetic;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.integrator.IntegratorMD;
+import etomica.math.numerical.FastFourierTransform;
+import etomica.molecule.IMolecule;
+import etomica.potential.compute.PotentialCompute;
+import etomica.space.Boundary;
+import etomica.space.Vector;
+import etomica.util.Debug;
+import etomica.util.random.IRandom;
+
+/**
+ * Path-integral MD integrator that propagates the free ring polymer exactly
+ * in normal-mode coordinates.  Each step, bead positions and velocities of
+ * each molecule are transformed to normal modes with an FFT (a plain DFT if
+ * the number of beads is not a power of 2), each mode is advanced
+ * analytically as a harmonic oscillator with frequency
+ * omega_k = 2 omega_P sin(pi k / P), and the result is transformed back.
+ * Physical forces are applied in Cartesian coordinates (velocity Verlet
+ * splitting), so the cost of the ring-polymer part is O(P log P) per
+ * molecule and the time step is limited only by the physical forces.
+ * <p>
+ * The potentialCompute must not include the springs between beads; these
+ * are handled here (bead i of each molecule is bonded to beads i-1 and i+1,
+ * with bead P-1 bonded to bead 0) and their energy is included in the
+ * integrator's potential energy.  Beads have their physical mass (the atom
+ * type mass), so the IntegratorMD thermostats work as usual.  Alternatively,
+ * with setGamma, the path-integral Langevin (PILE-L) thermostat of
+ * <a href="https://doi.org/10.1063/1.3489925">Ceriotti et al., J. Chem. Phys.
+ * 133, 124104 (2010)</a> is applied to the normal modes: the centroid
+ * friction is gamma and the other modes are critically damped.
+ */
+public class IntegratorPIMDNormalModes extends IntegratorMD {
+
+    protected final double hbar;
+    protected final int nBeads;
+    protected final double mass;
+    protected double gamma;
+    protected double omegaN;
+    // propagator coefficients for each mode, for half and full steps
+    protected double[] omegaK, cosHalf, sinHalfOverOmega, omegaSinHalf, cosFull, sinFullOverOmega, omegaSinFull, c1, c2;
+    protected final FastFourierTransform fft;
+    protected final double[] cosTable, sinTable;
+    protected final double[] re, im, tmpRe, tmpIm;
+    protected final Vector[] xu, rOld;
+    protected final Vector dr;
+    protected double springEnergy;
+
+    /**
+     * @param potentialCompute computes the (physical) forces between beads, not including the ring springs
+     * @param random           random number generator used for initial velocities and thermostats
+     * @param timeStep         time step for integration
+     * @param temperature      temperature, which also sets the spring constant
+     * @param box              box containing the ring polymers; each molecule is one ring
+     * @param hbar             Planck's constant (reduced)
+     */
+    public IntegratorPIMDNormalModes(PotentialCompute potentialCompute, IRandom random, double timeStep, double temperature, Box box, double hbar) {
+        super(potentialCompute, random, timeStep, temperature, box);
+        this.hbar = hbar;
+        nBeads = box.getMoleculeList().get(0).getChildList().size();
+        mass = box.getLeafList().get(0).getType().getMass();
+        if ((nBeads & (nBeads - 1)) == 0) {
+            fft = new FastFourierTransform();
+            cosTable = sinTable = null;
+        }
+        else {
+            fft = null;
+            cosTable = new double[nBeads];
+            sinTable = new double[nBeads];
+            for (int j = 0; j < nBeads; j++) {
+                cosTable[j] = Math.cos(2 * Math.PI * j / nBeads);
+                sinTable[j] = Math.sin(2 * Math.PI * j / nBeads);
+            }
+        }
+        re = new double[nBeads];
+        im = new double[nBeads];
+        tmpRe = new double[nBeads];
+        tmpIm = new double[nBeads];
+        xu = space.makeVectorArray(nBeads);
+        rOld = space.makeVectorArray(nBeads);
+        dr = space.makeVector();
+        initModes();
+    }
+
+    /**
+     * Sets the friction for the centroid mode for the Langevin (PILE-L)
+     * thermostat.  With gamma = 0 (the default), the IntegratorMD thermostat
+     * is used instead.
+     */
+    public void setGamma(double newGamma) {
+        gamma = newGamma;
+        initModes();
+    }
+
+    public double getGamma() {
+        return gamma;
+    }
+
+    public void setTimeStep(double t) {
+        super.setTimeStep(t);
+        // called from the superclass constructor before we're ready
+        if (re != null) initModes();
+    }
+
+    public void setTemperature(double t) {
+        super.setTemperature(t);
+        if (re != null) initModes();
+    }
+
+    /**
+     * Returns the frequency of each normal mode of the free ring polymer.
+     */
+    public double[] getModeFrequencies() {
+        return omegaK;
+    }
+
+    protected void initModes() {
+        omegaN = nBeads * temperature / hbar;
+        omegaK = new double[nBeads];
+        cosHalf = new double[nBeads];
+        sinHalfOverOmega = new double[nBeads];
+        omegaSinHalf = new double[nBeads];
+        cosFull = new double[nBeads];
+        sinFullOverOmega = new double[nBeads];
+        omegaSinFull = new double[nBeads];
+        c1 = new double[nBeads];
+        c2 = new double[nBeads];
+        for (int k = 0; k < nBeads; k++) {
+            double w = nBeads == 1 ? 0 : 2 * omegaN * Math.sin(Math.PI * k / nBeads);
+            omegaK[k] = w;
+            if (k == 0) {
+                cosHalf[k] = cosFull[k] = 1;
+                sinHalfOverOmega[k] = timeStep / 2;
+                sinFullOverOmega[k] = timeStep;
+            }
+            else {
+                cosHalf[k] = Math.cos(w * timeStep / 2);
+                sinHalfOverOmega[k] = Math.sin(w * timeStep / 2) / w;
+                omegaSinHalf[k] = w * Math.sin(w * timeStep / 2);
+                cosFull[k] = Math.cos(w * timeStep);
+                sinFullOverOmega[k] = Math.sin(w * timeStep) / w;
+                omegaSinFull[k] = w * Math.sin(w * timeStep);
+            }
+            double gammaK = k == 0 ? gamma : 2 * w;
+            c1[k] = Math.exp(-gammaK * timeStep);
+            // noise for the Fourier components; modes k and P-k share the
+            // real and imaginary parts
+            double v2 = (1 - c1[k] * c1[k]) * temperature / mass / nBeads;
+            boolean real = k == 0 || 2 * k == nBeads;
+            c2[k] = Math.sqrt(real ? v2 : v2 / 2);
+        }
+    }
+
+    protected void doStepInternal() {
+        super.doStepInternal();
+
+        propagatorB(timeStep / 2);
+        propagatorA();
+        computeForce();
+        propagatorB(timeStep / 2);
+
+        eventManager.finalizeStep();
+
+        computeKE();
+
+        if (isothermal && gamma == 0) {
+            doThermostatInternal();
+        }
+    }
+
+    protected void propagatorB(double dt) {
+        Vector[] forces = potentialCompute.getForces();
+        for (IAtom a : box.getLeafList()) {
+            ((IAtomKinetic) a).getVelocity().PEa1Tv1(dt / a.getType().getMass(), forces[a.getLeafIndex()]);
+        }
+    }
+
+    /**
+     * Propagates the free ring polymers by a full time step (with the
+     * Langevin thermostat in the middle, if enabled).
+     */
+    protected void propagatorA() {
+        boolean doO = isothermal && gamma > 0;
+        Boundary boundary = box.getBoundary();
+        springEnergy = 0;
+        int P = nBeads;
+        for (IMolecule m : box.getMoleculeList()) {
+            IAtomList atoms = m.getChildList();
+            // unwrap the ring
+            for (int j = 0; j < P; j++) {
+                Vector r = atoms.get(j).getPosition();
+                rOld[j].E(r);
+                if (j == 0) {
+                    xu[0].E(r);
+                }
+                else {
+                    dr.Ev1Mv2(r, atoms.get(j - 1).getPosition());
+                    boundary.nearestImage(dr);
+                    xu[j].Ev1Pv2(xu[j - 1], dr);
+                }
+            }
+            for (int d = 0; d < space.D(); d++) {
+                // transform positions and velocities together
+                for (int j = 0; j < P; j++) {
+                    re[j] = xu[j].getX(d);
+                    im[j] = ((IAtomKinetic) atoms.get(j)).getVelocity().getX(d);
+                }
+                transform(true);
+                for (int k = 0; 2 * k <= P; k++) {
+                    int kk = (P - k) % P;
+                    if (k == kk) {
+                        // real mode (centroid, or k=P/2)
+                        double x = re[k], v = im[k];
+                        if (doO) {
+                            double xNew = cosHalf[k] * x + sinHalfOverOmega[k] * v;
+                            v = -omegaSinHalf[k] * x + cosHalf[k] * v;
+                            x = xNew;
+                            v = c1[k] * v + c2[k] * random.nextGaussian();
+                            xNew = cosHalf[k] * x + sinHalfOverOmega[k] * v;
+                            v = -omegaSinHalf[k] * x + cosHalf[k] * v;
+                            x = xNew;
+                        }
+                        else {
+                            double xNew = cosFull[k] * x + sinFullOverOmega[k] * v;
+                            v = -omegaSinFull[k] * x + cosFull[k] * v;
+                            x = xNew;
+                        }
+                        springEnergy += 0.5 * mass * P * omegaK[k] * omegaK[k] * x * x;
+                        re[k] = x;
+                        im[k] = v;
+                        continue;
+                    }
+                    // separate the position and velocity transforms
+                    double xr = 0.5 * (re[k] + re[kk]), xi = 0.5 * (im[k] - im[kk]);
+                    double vr = 0.5 * (im[k] + im[kk]), vi = 0.5 * (re[kk] - re[k]);
+                    if (doO) {
+                        double xrNew = cosHalf[k] * xr + sinHalfOverOmega[k] * vr;
+                        double xiNew = cosHalf[k] * xi + sinHalfOverOmega[k] * vi;
+                        vr = -omegaSinHalf[k] * xr + cosHalf[k] * vr;
+                        vi = -omegaSinHalf[k] * xi + cosHalf[k] * vi;
+                        xr = xrNew;
+                        xi = xiNew;
+                        vr = c1[k] * vr + c2[k] * random.nextGaussian();
+                        vi = c1[k] * vi + c2[k] * random.nextGaussian();
+                        xrNew = cosHalf[k] * xr + sinHalfOverOmega[k] * vr;
+                        xiNew = cosHalf[k] * xi + sinHalfOverOmega[k] * vi;
+                        vr = -omegaSinHalf[k] * xr + cosHalf[k] * vr;
+                        vi = -omegaSinHalf[k] * xi + cosHalf[k] * vi;
+                        xr = xrNew;
+                        xi = xiNew;
+                    }
+                    else {
+                        double xrNew = cosFull[k] * xr + sinFullOverOmega[k] * vr;
+                        double xiNew = cosFull[k] * xi + sinFullOverOmega[k] * vi;
+                        vr = -omegaSinFull[k] * xr + cosFull[k] * vr;
+                        vi = -omegaSinFull[k] * xi + cosFull[k] * vi;
+                        xr = xrNew;
+                        xi = xiNew;
+                    }
+                    // modes k and P-k
+                    springEnergy += mass * P * omegaK[k] * omegaK[k] * (xr * xr + xi * xi);
+                    re[k] = xr - vi;
+                    im[k] = xi + vr;
+                    re[kk] = xr + vi;
+                    im[kk] = vr - xi;
+                }
+                transform(false);
+                for (int j = 0; j < P; j++) {
+                    xu[j].setX(d, re[j]);
+                    ((IAtomKinetic) atoms.get(j)).getVelocity().setX(d, im[j]);
+                }
+            }
+            for (int j = 0; j < P; j++) {
+                // keep each bead on the side of the box where it started
+                Vector r = atoms.get(j).getPosition();
+                dr.Ev1Mv2(xu[j], rOld[j]);
+                boundary.nearestImage(dr);
+                r.Ev1Pv2(rOld[j], dr);
+            }
+        }
+    }
+
+    /**
+     * Transforms re and im in place.  The forward transform is scaled by
+     * 1/P; the inverse is not.
+     */
+    protected void transform(boolean forward) {
+        if (fft != null) {
+            fft.setData(re, im);
+            if (forward) {
+                fft.transform();
+            }
+            else {
+                fft.invert();
+            }
+            return;
+        }
+        int P = nBeads;
+        double sign = forward ? -1 : 1;
+        for (int k = 0; k < P; k++) {
+            double sr = 0, si = 0;
+            for (int j = 0; j < P; j++) {
+                int jk = (j * k) % P;
+                double c = cosTable[jk], s = sign * sinTable[jk];
+                sr += re[j] * c - im[j] * s;
+                si += re[j] * s + im[j] * c;
+            }
+            tmpRe[k] = sr;
+            tmpIm[k] = si;
+        }
+        double scale = forward ? 1.0 / P : 1;
+        for (int k = 0; k < P; k++) {
+            re[k] = tmpRe[k] * scale;
+            im[k] = tmpIm[k] * scale;
+        }
+    }
+
+    /**
+     * Returns the energy of the springs between beads.
+     */
+    public double getSpringEnergy() {
+        return springEnergy;
+    }
+
+    protected double computeSpringEnergy() {
+        Boundary boundary = box.getBoundary();
+        double sum = 0;
+        for (IMolecule m : box.getMoleculeList()) {
+            IAtomList atoms = m.getChildList();
+            if (atoms.size() == 1) continue;
+            for (int j = 0; j < atoms.size(); j++) {
+                dr.Ev1Mv2(atoms.get((j + 1) % atoms.size()).getPosition(), atoms.get(j).getPosition());
+                boundary.nearestImage(dr);
+                sum += dr.squared();
+            }
+        }
+        return 0.5 * mass * omegaN * omegaN * sum;
+    }
+
+    protected void computeKE() {
+        currentKineticEnergy = 0;
+        for (IAtom a : box.getLeafList()) {
+            currentKineticEnergy += 0.5 * a.getType().getMass() * ((IAtomKinetic) a).getVelocity().squared();
+        }
+    }
+
+    public void reset() {
+        super.reset();
+
+        if (Debug.ON && Debug.DEBUG_NOW) {
+            IAtomList pair = Debug.getAtoms(box);
+            if (pair != null) {
+                Vector dr = space.makeVector();
+                dr.Ev1Mv2(pair.get(1).getPosition(), pair.get(0).getPosition());
+                System.out.println(pair + " dr " + dr);
+            }
+        }
+
+        springEnergy = computeSpringEnergy();
+        computeForce();
+    }
+
+    public void computeForce() {
+        eventManager.forcePrecomputed();
+
+        currentPotentialEnergy = potentialCompute.computeAll(true) + springEnergy;
+        eventManager.forceComputed();
+    }
+}
@@ -62,6 +62,15 @@ public class LJPIMD extends Simulation {
      * Creates simulation with the given parameters
      */
     public LJPIMD(Space space, double mass, int numAtoms, int nBeads, double temperature, double density, double rc, double omega2, double omega2HMA2, double timeStep, boolean isStaging, double gammaLangevin, double hbar) {
+        this(space, mass, numAtoms, nBeads, temperature, density, rc, omega2, omega2HMA2, timeStep, isStaging, false, gammaLangevin, hbar);
+    }
+
+    /**
+     * Creates simulation with the given parameters.  With isNormalModes, the
+     * ring polymers are propagated in normal-mode coordinates (and isStaging
+     * is ignored).
+     */
+    public LJPIMD(Space space, double mass, int numAtoms, int nBeads, double temperature, double density, double rc, double omega2, double omega2HMA2, double timeStep, boolean isStaging, boolean isNormalModes, double gammaLangevin, double hbar) {
         super(Space3D.getInstance());
 
         SpeciesGeneral species = new SpeciesBuilder(space)
@@ -74,6 +83,7 @@ public class LJPIMD extends Simulation {
         box = new Box(space);
         addBox(box);
         NeighborListManagerPI neighborManager = new NeighborListManagerPI(getSpeciesManager(), box, 2, 3, BondingInfo.noBonding());
+        neighborManager.setBeadShared(true);
         potentialMaster = new PotentialComputePair(getSpeciesManager(), box, neighborManager);
         pmBonding = new PotentialMasterBonding(getSpeciesManager(), box);
         double beta = 1/temperature;
@@ -105,7 +115,12 @@ public class LJPIMD extends Simulation {
         ringMove = new MCMoveHOReal2(space, pmAgg, random, temperature, omega2, box, hbar);
         ringMoveHMA2 = new MCMoveHOReal2(space, pmAgg, random, temperature, omega2HMA2, box, hbar);
 
-        if (isStaging) {
+        if (isNormalModes) {
+            // the ring springs are handled by the integrator
+            IntegratorPIMDNormalModes integratorNM = new IntegratorPIMDNormalModes(potentialMaster, random, timeStep, temperature, box, hbar);
+            integratorNM.setGamma(gammaLangevin);
+            integrator = integratorNM;
+        } else if (isStaging) {
             integrator = new IntegratorLangevinPI(pmAgg, random, timeStep, temperature, box, gammaLangevin, ringMove, hbar);
         } else {
             integrator = new IntegratorLangevin(pmAgg, random, timeStep, temperature, box, gammaLangevin);
@@ -144,8 +159,9 @@ public class LJPIMD extends Simulation {
         double timeStep = params.timeStep;
         boolean isGraphic = params.isGraphic;
         boolean isStaging = params.isStaging;
+        boolean isNormalModes = params.isNormalModes;
 
-        LJPIMD sim = new LJPIMD(space, mass, numAtoms, nBeads, temperature, density, rc, omega2, omega2HMA2, timeStep, isStaging, gammaLangevin, hbar);
+        LJPIMD sim = new LJPIMD(space, mass, numAtoms, nBeads, temperature, density, rc, omega2, omega2HMA2, timeStep, isStaging, isNormalModes, gammaLangevin, hbar);
         long steps = params.steps;
         int interval = 10;
         int blocks = 100;
@@ -153,6 +169,7 @@ public class LJPIMD extends Simulation {
 
         System.out.println("Lennard-Jones PIMD");
         System.out.println("isStaging: " + isStaging);
+        System.out.println("isNormalModes: " + isNormalModes);
         System.out.println("mass: " + mass);
         System.out.println("hbar: " + hbar);
         System.out.println("k2: " + params.k2);
@@ -479,5 +496,6 @@ public class LJPIMD extends Simulation {
         public double timeStep = 0.001;
         public boolean isGraphic = false;
         public boolean isStaging = true;
+        public boolean isNormalModes = false;
     }
 }
@@ -4,23 +4,348 @@
 package etomica.normalmode;
 
 import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
 import etomica.box.Box;
+import etomica.molecule.IMolecule;
+import etomica.molecule.IMoleculeList;
 import etomica.nbr.list.NeighborListManager;
 import etomica.potential.BondingInfo;
 import etomica.potential.IPotential2;
+import etomica.space.Boundary;
+import etomica.space.BoundaryRectangular;
 import etomica.space.Vector;
 import etomica.species.SpeciesManager;
 
+import java.util.Arrays;
+
+/**
+ * Neighbor list manager for ring polymers, where each bead interacts only
+ * with the beads of other molecules at the same imaginary time (the same
+ * index within the molecule).
+ * <p>
+ * With bead sharing, neighbors are found once for the molecules, using
+ * their centroids with a range enlarged by twice the largest distance of a
+ * bead from its centroid, and each pair of neighboring molecules then
+ * contributes its pairs of beads with the same index.  The atom lists are
+ * the same as without bead sharing, but each bead no longer searches
+ * through the beads of every index in the neighboring cells.  Bead sharing
+ * requires a rectangular boundary.
+ */
 public class NeighborListManagerPI extends NeighborListManager {
 
+    protected boolean beadShared;
+    protected double[] centroids;
+    protected int[] atomMolecule, atomShift;
+    protected int[] molNbrStart, molNbrs, molNbrShifts;
+    protected int numMolNbrs;
+    protected int[] molCell, molCellStart, molCellMolecules;
+    protected final int[] molNumCells;
+    protected final double[] molCellLo, molCellSize;
 
     public NeighborListManagerPI(SpeciesManager sm, Box box, int cellRange, double nbrRange, BondingInfo bondingInfo) {
         super(sm, box, cellRange, nbrRange, bondingInfo);
+        centroids = new double[0];
+        atomMolecule = atomShift = new int[0];
+        molNbrStart = molNbrs = molNbrShifts = new int[0];
+        molCell = molCellStart = molCellMolecules = new int[0];
+        molNumCells = new int[space.D()];
+        molCellLo = new double[space.D()];
+        molCellSize = new double[space.D()];
+    }
+
+    /**
+     * Sets whether the neighbors of all beads are taken from a single list
+     * of neighboring molecules found from the ring-polymer centroids.
+     */
+    public void setBeadShared(boolean newBeadShared) {
+        beadShared = newBeadShared;
+    }
+
+    public boolean isBeadShared() {
+        return beadShared;
+    }
+
+    protected void checkNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, double rc2, Vector jbo, int jImage, IPotential2[] iPotentials) {
+        if (iAtom.getIndex() != jAtom.getIndex()) return;
+        super.checkNbrPair(i, j, iAtom, jAtom, rc2, jbo, jImage, iPotentials);
+    }
+
+    @Override
+    protected void findUpNeighbors(int boxNumAtoms, double rc2) {
+        if (!beadShared) {
+            super.findUpNeighbors(boxNumAtoms, rc2);
+            return;
+        }
+        Boundary boundary = box.getBoundary();
+        if (!(boundary instanceof BoundaryRectangular)) {
+            throw new RuntimeException("bead-shared neighbor lists require a rectangular boundary");
+        }
+        int D = space.D();
+        Vector boxSize = boundary.getBoxSize();
+        boolean[] periodic = boundary.getPeriodicity();
+        // the image table is laid out as nested loops over the integer shift
+        // in each direction, from -imageRange to +imageRange
+        int[] imageRange = new int[D];
+        int[] imageStride = new int[D];
+        Vector lastImage = imageOffsets[imageOffsets.length - 1];
+        for (int k = D - 1, stride = 1; k >= 0; k--) {
+            imageRange[k] = periodic[k] ? (int) Math.round(lastImage.getX(k) / boxSize.getX(k)) : 0;
+            imageStride[k] = stride;
+            stride *= 2 * imageRange[k] + 1;
+        }
+
+        double maxDev = findCentroids(boxNumAtoms);
+        findMoleculeNeighbors(nbrRange + 2 * maxDev);
+
+        IAtomList atoms = box.getLeafList();
+        IMoleculeList molecules = box.getMoleculeList();
+        for (int i = 0; i < boxNumAtoms; i++) {
+            nbrStart[i] = numNbrs;
+            IAtom iAtom = atoms.get(i);
+            int b = iAtom.getIndex();
+            int m = atomMolecule[i];
+            IPotential2[] iPotentials = pairPotentials[iAtom.getType().getIndex()];
+            for (int mn = molNbrStart[m]; mn < molNbrStart[m + 1]; mn++) {
+                IAtomList jBeads = molecules.get(molNbrs[mn]).getChildList();
+                if (b >= jBeads.size()) continue;
+                IAtom jAtom = jBeads.get(b);
+                if (iPotentials[jAtom.getType().getIndex()] == null) continue;
+                int j = jAtom.getLeafIndex();
+                // shift of the pair's image; the molecule image, corrected
+                // for the atoms wrapped separately from their centroids
+                int jImage = 0;
+                double r2 = 0;
+                boolean inTable = true;
+                for (int k = 0; k < D; k++) {
+                    int s = molNbrShifts[mn * D + k] - atomShift[j * D + k] + atomShift[i * D + k];
+                    double dx = positions[j * D + k] - positions[i * D + k] + s * boxSize.getX(k);
+                    r2 += dx * dx;
+                    if (Math.abs(s) > imageRange[k]) inTable = false;
+                    jImage += (s + imageRange[k]) * imageStride[k];
+                }
+                if (r2 > rc2) continue;
+                if (!inTable) {
+                    throw new RuntimeException("neighbor image outside the range of the cell lists");
+                }
+                dr.Ev1Mv2(jAtom.getPosition(), iAtom.getPosition());
+                dr.PE(imageOffsets[jImage]);
+                addAsNbrPair(i, j, iAtom, jAtom, jImage, iPotentials, dr);
+            }
+        }
+    }
+
+    /**
+     * Computes the centroid of each molecule (in the central image) and the
+     * shift (in box lengths) of each atom from the image of its molecule
+     * that contains its centroid.  Returns the largest distance of an atom
+     * from its centroid.
+     */
+    protected double findCentroids(int boxNumAtoms) {
+        int D = space.D();
+        Boundary boundary = box.getBoundary();
+        Vector boxSize = boundary.getBoxSize();
+        boolean[] periodic = boundary.getPeriodicity();
+        IMoleculeList molecules = box.getMoleculeList();
+        int numMolecules = molecules.size();
+        if (centroids.length < numMolecules * D) {
+            centroids = new double[numMolecules * D];
+            molNbrStart = new int[numMolecules + 1];
+        }
+        if (atomMolecule.length < boxNumAtoms) {
+            atomMolecule = new int[boxNumAtoms];
+            atomShift = new int[boxNumAtoms * D];
+        }
+        Vector c = space.makeVector();
+        double maxDev2 = 0;
+        for (int m = 0; m < numMolecules; m++) {
+            IMolecule molecule = molecules.get(m);
+            IAtomList beads = molecule.getChildList();
+            Vector r0 = beads.get(0).getPosition();
+            c.E(0);
+            for (IAtom a : beads) {
+                dr.Ev1Mv2(a.getPosition(), r0);
+                boundary.nearestImage(dr);
+                c.PE(dr);
+            }
+            c.TE(1.0 / beads.size());
+            c.PE(r0);
+            c.PE(boundary.centralImage(c));
+            for (int k = 0; k < D; k++) {
+                centroids[m * D + k] = c.getX(k);
+            }
+            for (IAtom a : beads) {
+                int i = a.getLeafIndex();
+                atomMolecule[i] = m;
+                dr.Ev1Mv2(a.getPosition(), c);
+                for (int k = 0; k < D; k++) {
+                    atomShift[i * D + k] = periodic[k] ? (int) Math.round(dr.getX(k) / boxSize.getX(k)) : 0;
+                }
+                boundary.nearestImage(dr);
+                maxDev2 = Math.max(maxDev2, dr.squared());
+            }
+        }
+        return Math.sqrt(maxDev2);
+    }
+
+    /**
+     * Finds the pairs of molecules (and the image of the second molecule)
+     * whose centroids are within the given range.  Each pair is listed once,
+     * with the first molecule, and a molecule is paired with its own images
+     * for one sign of the shift.  The centroids are binned into cells at
+     * least as wide as the range (or one cell, if the box is narrower), so
+     * that each molecule is compared only with those in nearby cells and
+     * the cost is O(N).  When a cell is narrower than the range, the search
+     * reaches as many cells (and images) as needed.
+     */
+    protected void findMoleculeNeighbors(double range) {
+        int D = space.D();
+        Boundary boundary = box.getBoundary();
+        Vector boxSize = boundary.getBoxSize();
+        boolean[] periodic = boundary.getPeriodicity();
+        int numMolecules = box.getMoleculeList().size();
+        double range2 = range * range;
+        assignMoleculeCells(numMolecules, range);
+        int[] mCell = new int[D], oMax = new int[D], o = new int[D], s = new int[D];
+        for (int k = 0; k < D; k++) {
+            // cells further apart than this can't hold centroids within range
+            oMax[k] = (int) (range / molCellSize[k]) + 1;
+        }
+        numMolNbrs = 0;
+        for (int m = 0; m < numMolecules; m++) {
+            molNbrStart[m] = numMolNbrs;
+            for (int k = D - 1, c = molCell[m]; k >= 0; k--) {
+                mCell[k] = c % molNumCells[k];
+                c /= molNumCells[k];
+            }
+            for (int k = 0; k < D; k++) {
+                o[k] = -oMax[k];
+            }
+            while (true) {
+                // the cell at offset o, wrapped into the box, and the shift of its image
+                int jCell = 0;
+                boolean outside = false;
+                for (int k = 0; k < D; k++) {
+                    int ck = mCell[k] + o[k];
+                    int nk = molNumCells[k];
+                    if (periodic[k]) {
+                        s[k] = Math.floorDiv(ck, nk);
+                        ck -= s[k] * nk;
+                    } else {
+                        s[k] = 0;
+                        if (ck < 0 || ck >= nk) outside = true;
+                    }
+                    jCell = jCell * nk + ck;
+                }
+                if (!outside) {
+                    for (int jn = molCellStart[jCell]; jn < molCellStart[jCell + 1]; jn++) {
+                        int n = molCellMolecules[jn];
+                        if (n < m || (n == m && !isPositive(s))) continue;
+                        double r2 = 0;
+                        for (int k = 0; k < D; k++) {
+                            double dx = centroids[n * D + k] - centroids[m * D + k] + s[k] * boxSize.getX(k);
+                            r2 += dx * dx;
+                        }
+                        if (r2 > range2) continue;
+                        if (numMolNbrs == molNbrs.length) {
+                            int newLength = Math.max(16, molNbrs.length + molNbrs.length / 2);
+                            molNbrs = Arrays.copyOf(molNbrs, newLength);
+                            molNbrShifts = Arrays.copyOf(molNbrShifts, newLength * D);
+                        }
+                        molNbrs[numMolNbrs] = n;
+                        System.arraycopy(s, 0, molNbrShifts, numMolNbrs * D, D);
+                        numMolNbrs++;
+                    }
+                }
+                // advance to the next combination of offsets
+                int k = D - 1;
+                while (k >= 0 && o[k] == oMax[k]) {
+                    o[k] = -oMax[k];
+                    k--;
+                }
+                if (k < 0) break;
+                o[k]++;
+            }
+        }
+        molNbrStart[numMolecules] = numMolNbrs;
     }
 
-    protected int checkNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, double rc2, Vector jbo, IPotential2[] iPotentials) {
-        if (iAtom.getIndex() != jAtom.getIndex()) return 0;
-        return super.checkNbrPair(i, j, iAtom, jAtom, rc2, jbo, iPotentials);
+    /**
+     * Bins the centroids into cells, as wide as the range where the box
+     * allows.  Along a direction that is not periodic, the cells span the
+     * centroids rather than the box.
+     */
+    protected void assignMoleculeCells(int numMolecules, double range) {
+        int D = space.D();
+        Boundary boundary = box.getBoundary();
+        Vector boxSize = boundary.getBoxSize();
+        boolean[] periodic = boundary.getPeriodicity();
+        int totalCells = 1;
+        for (int k = 0; k < D; k++) {
+            double lo = -0.5 * boxSize.getX(k), hi = 0.5 * boxSize.getX(k);
+            if (!periodic[k]) {
+                lo = Double.POSITIVE_INFINITY;
+                hi = Double.NEGATIVE_INFINITY;
+                for (int m = 0; m < numMolecules; m++) {
+                    lo = Math.min(lo, centroids[m * D + k]);
+                    hi = Math.max(hi, centroids[m * D + k]);
+                }
+            }
+            molCellLo[k] = lo;
+            // the extent for now; divided among the cells below
+            molCellSize[k] = hi - lo;
+            molNumCells[k] = Math.max(1, (int) ((hi - lo) / range));
+            totalCells *= molNumCells[k];
+        }
+        // with a short range, use bigger cells rather than many empty ones
+        int maxCells = Math.max(27, 2 * numMolecules);
+        while (totalCells > maxCells) {
+            totalCells = 1;
+            for (int k = 0; k < D; k++) {
+                molNumCells[k] = Math.max(1, molNumCells[k] / 2);
+                totalCells *= molNumCells[k];
+            }
+        }
+        for (int k = 0; k < D; k++) {
+            // a single cell is at least as wide as the range, even if the centroids span less
+            molCellSize[k] = periodic[k] ? molCellSize[k] / molNumCells[k] : Math.max(range, molCellSize[k] / molNumCells[k]);
+        }
+        if (molCellStart.length < totalCells + 1) {
+            molCellStart = new int[totalCells + 1];
+        }
+        if (molCell.length < numMolecules) {
+            molCell = new int[numMolecules];
+            molCellMolecules = new int[numMolecules];
+        }
+        Arrays.fill(molCellStart, 0, totalCells + 1, 0);
+        for (int m = 0; m < numMolecules; m++) {
+            int c = 0;
+            for (int k = 0; k < D; k++) {
+                int ck = (int) Math.floor((centroids[m * D + k] - molCellLo[k]) / molCellSize[k]);
+                c = c * molNumCells[k] + Math.max(0, Math.min(molNumCells[k] - 1, ck));
+            }
+            molCell[m] = c;
+            molCellStart[c + 1]++;
+        }
+        for (int c = 0; c < totalCells; c++) {
+            molCellStart[c + 1] += molCellStart[c];
+        }
+        // molecules in each cell, in order; molCellStart is shifted back as we go
+        for (int m = 0; m < numMolecules; m++) {
+            molCellMolecules[molCellStart[molCell[m]]++] = m;
+        }
+        for (int c = totalCells; c > 0; c--) {
+            molCellStart[c] = molCellStart[c - 1];
+        }
+        molCellStart[0] = 0;
     }
 
+    /**
+     * Returns true if the first nonzero shift is positive.
+     */
+    private static boolean isPositive(int[] s) {
+        for (int x : s) {
+            if (x != 0) return x > 0;
+        }
+        return false;
+    }
 }
@@ -0,0 +1,238 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial.cluster;
+
+import etomica.graph.model.Edge;
+import etomica.graph.model.Graph;
+import etomica.graph.model.GraphFactory;
+import etomica.graph.model.Node;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of generated diagram sets.  A cache file holds named sets of
+ * graphs (with coefficients and factors) and a map between graphs, stored
+ * in a compact (gzipped) binary form.  Graphs shared between the sets and
+ * the map are written once, so that identity is preserved when the file is
+ * read back.
+ * <p>
+ * The file is named from a hash of the key, which should describe
+ * everything that determines the diagrams (order, options, bond and node
+ * colors).  The full key is also stored in the file and checked when
+ * reading.  Files are written to a temporary file and then renamed, so
+ * several simulations can share a cache directory.
+ */
+public class DiagramCache {
+
+    protected static final int MAGIC = 0x45444743; // "EDGC"
+    protected static final int VERSION = 1;
+
+    protected final File file;
+    protected final String key;
+    protected Map<String, List<Graph>> sets;
+    protected Map<Graph, Graph> graphMap;
+
+    public DiagramCache(File dir, String key) {
+        this.key = key;
+        file = new File(dir, "diagrams-" + hash(key) + ".bin.gz");
+    }
+
+    protected static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 10; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Reads the cache file.  Returns false if the file does not exist, was
+     * written for a different key or in a different format, or cannot be
+     * read.
+     */
+    public boolean read() {
+        if (!file.exists()) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key)) {
+                return false;
+            }
+            Graph[] graphs = new Graph[in.readInt()];
+            for (int i = 0; i < graphs.length; i++) {
+                graphs[i] = readGraph(in);
+            }
+            sets = new LinkedHashMap<>();
+            int numSets = in.readInt();
+            for (int i = 0; i < numSets; i++) {
+                String name = in.readUTF();
+                List<Graph> set = new ArrayList<>();
+                int size = in.readInt();
+                for (int j = 0; j < size; j++) {
+                    set.add(graphs[in.readInt()]);
+                }
+                sets.put(name, set);
+            }
+            graphMap = new HashMap<>();
+            int mapSize = in.readInt();
+            for (int i = 0; i < mapSize; i++) {
+                Graph g = graphs[in.readInt()];
+                graphMap.put(g, graphs[in.readInt()]);
+            }
+            return true;
+        } catch (IOException e) {
+            // regenerate rather than fail
+            System.err.println("could not read diagram cache " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns the graphs of the named set (in the order they were written)
+     * from the last read, or null if the file had no such set.
+     */
+    public List<Graph> getSet(String name) {
+        return sets.get(name);
+    }
+
+    public Map<Graph, Graph> getGraphMap() {
+        return graphMap;
+    }
+
+    /**
+     * Writes the given sets (null sets are skipped) and graph map (which may
+     * be null) to the cache file.  Failure to write is reported, but is not
+     * an error.
+     */
+    public void write(Map<String, Set<Graph>> newSets, Map<Graph, Graph> newGraphMap) {
+        Map<Graph, Integer> ids = new IdentityHashMap<>();
+        List<Graph> graphs = new ArrayList<>();
+        for (Set<Graph> set : newSets.values()) {
+            if (set == null) continue;
+            for (Graph g : set) {
+                addGraph(g, ids, graphs);
+            }
+        }
+        if (newGraphMap != null) {
+            for (Map.Entry<Graph, Graph> entry : newGraphMap.entrySet()) {
+                addGraph(entry.getKey(), ids, graphs);
+                addGraph(entry.getValue(), ids, graphs);
+            }
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        File tmpFile = null;
+        try {
+            tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                out.writeInt(graphs.size());
+                for (Graph g : graphs) {
+                    writeGraph(out, g);
+                }
+                int numSets = 0;
+                for (Set<Graph> set : newSets.values()) {
+                    if (set != null) numSets++;
+                }
+                out.writeInt(numSets);
+                for (Map.Entry<String, Set<Graph>> entry : newSets.entrySet()) {
+                    if (entry.getValue() == null) continue;
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (Graph g : entry.getValue()) {
+                        out.writeInt(ids.get(g));
+                    }
+                }
+                out.writeInt(newGraphMap == null ? 0 : newGraphMap.size());
+                if (newGraphMap != null) {
+                    for (Map.Entry<Graph, Graph> entry : newGraphMap.entrySet()) {
+                        out.writeInt(ids.get(entry.getKey()));
+                        out.writeInt(ids.get(entry.getValue()));
+                    }
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (tmpFile != null) tmpFile.delete();
+            System.err.println("could not write diagram cache " + file + ": " + e.getMessage());
+        }
+    }
+
+    protected static void addGraph(Graph g, Map<Graph, Integer> ids, List<Graph> graphs) {
+        if (ids.containsKey(g)) return;
+        ids.put(g, graphs.size());
+        graphs.add(g);
+    }
+
+    protected static void writeGraph(DataOutputStream out, Graph g) throws IOException {
+        out.writeByte(g.nodeCount());
+        for (Node node : g.nodes()) {
+            out.writeChar(node.getColor());
+            out.writeChar(node.getType());
+        }
+        List<Edge> edges = g.edges();
+        out.writeShort(edges.size());
+        for (Edge edge : edges) {
+            out.writeByte(g.getFromNode(edge.getId()));
+            out.writeByte(g.getToNode(edge.getId()));
+            out.writeChar(edge.getColor());
+        }
+        out.writeInt(g.coefficient().getNumerator());
+        out.writeInt(g.coefficient().getDenominator());
+        int[] factors = g.factors();
+        out.writeInt(factors == null ? 0 : factors.length);
+        if (factors != null) {
+            for (int f : factors) {
+                out.writeInt(f);
+            }
+        }
+    }
+
+    protected static Graph readGraph(DataInputStream in) throws IOException {
+        Node[] nodes = new Node[in.readByte()];
+        for (byte i = 0; i < nodes.length; i++) {
+            char color = in.readChar();
+            nodes[i] = GraphFactory.createNode(i, color, in.readChar());
+        }
+        Graph g = GraphFactory.createGraph(nodes);
+        int numEdges = in.readShort();
+        for (int i = 0; i < numEdges; i++) {
+            byte fromNode = in.readByte();
+            byte toNode = in.readByte();
+            g.putEdge(fromNode, toNode);
+            g.getEdge(fromNode, toNode).setColor(in.readChar());
+        }
+        g.coefficient().setNumerator(in.readInt());
+        g.coefficient().setDenominator(in.readInt());
+        int[] factors = new int[in.readInt()];
+        for (int i = 0; i < factors.length; i++) {
+            factors[i] = in.readInt();
+        }
+        g.setNumFactors(factors.length);
+        g.addFactors(factors);
+        return g;
+    }
+}
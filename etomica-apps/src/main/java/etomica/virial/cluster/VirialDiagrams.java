@@ -35,6 +35,7 @@ import etomica.virial.MayerFunctionNonAdditive;
 import etomica.virial.cluster.CondenseExchange.CondenseExchangeParameters;
 import etomica.virial.cluster.ExchangeSplit.ExchangeSplitParameters;
 
+import java.io.File;
 import java.util.*;
 
 public class VirialDiagrams {
@@ -64,6 +65,7 @@ public class VirialDiagrams {
     protected final char nodeColor = Metadata.COLOR_CODE_0;
     protected char[] flexColors;
     protected boolean allPermutations = false;
+    protected File cacheDir;
     public char fBond, bBond, eBond, excBond, mBond, mmBond, fmBond, efbcBond, ffBond, mxcBond, MxcBond;
 
     protected static int[][][] groupStart = new int[0][0][0];
@@ -240,6 +242,58 @@ public class VirialDiagrams {
         allPermutations = newAllPermutations;
     }
 
+    /**
+     * Sets a directory used to cache the diagrams.  If diagrams with the
+     * same order and options were generated before, they are read from the
+     * cache instead of being generated again; otherwise they are written to
+     * the cache once generated.  By default, there is no cache.
+     */
+    public void setCacheDir(File newCacheDir) {
+        cacheDir = newCacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Returns a description of everything that determines the diagrams
+     * generated by makeVirialDiagrams.
+     */
+    protected String getCacheKey() {
+        return getClass().getName() + " n=" + n + " multibody=" + multibody + " flex=" + flex
+                + " reeHoover=" + doReeHoover + " shortcut=" + doShortcut + " keepEBonds=" + doKeepEBonds
+                + " HB=" + doHB + " exchange=" + doExchange + " exchangeF=" + doExchangeF
+                + " exchangeCondensing=" + doExchangeCondensing + " negativeExchange=" + doNegativeExchange
+                + " disconnectedMatching=" + doDisconnectedMatching + " minimalMulti=" + doMinimalMulti
+                + " multiFromPair=" + doMultiFromPair + " minimalBC=" + doMinimalBC
+                + " nodeColor=" + nodeColor + " bonds=" + new String(new char[]{fBond, bBond, eBond, excBond, mBond,
+                mmBond, fmBond, efbcBond, ffBond, mxcBond, MxcBond});
+    }
+
+    protected boolean readCache() {
+        DiagramCache cache = new DiagramCache(cacheDir, getCacheKey());
+        if (!cache.read()) return false;
+        p = makeGraphList();
+        p.addAll(cache.getSet("p"));
+        disconnectedP = makeGraphList();
+        disconnectedP.addAll(cache.getSet("disconnectedP"));
+        if (cache.getSet("minMultiP") != null) {
+            minMultiP = makeGraphList();
+            minMultiP.addAll(cache.getSet("minMultiP"));
+        }
+        cancelMap = new HashMap<Graph,Graph>(cache.getGraphMap());
+        return true;
+    }
+
+    protected void writeCache() {
+        Map<String,Set<Graph>> sets = new LinkedHashMap<String,Set<Graph>>();
+        sets.put("p", p);
+        sets.put("disconnectedP", disconnectedP);
+        sets.put("minMultiP", minMultiP);
+        new DiagramCache(cacheDir, getCacheKey()).write(sets, cancelMap);
+    }
+
     public Set<Graph> getVirialGraphs() {
         if (p == null) {
             makeVirialDiagrams();
@@ -1300,6 +1354,10 @@ public class VirialDiagrams {
         colorOrderMap.put(MxcBond, 8);
         colorOrderMap.put(excBond, 9);
 
+        if (cacheDir != null && readCache()) {
+            return;
+        }
+
         Property happyArticulation = new ArticulatedAt0(doExchange, multibody ? mmBond : '0');
 
         if (doShortcut && !multibody && !flex) {
@@ -2245,6 +2303,10 @@ outer:                      for (int i=1; i<biComp.size(); i++) {
         disconnectedPFinal.addAll(disconnectedP);
         disconnectedP = disconnectedPFinal;
 
+        if (cacheDir != null) {
+            writeCache();
+        }
+
     }
 
     public static final class ArticulatedAt0 implements Property {
@@ -0,0 +1,265 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial.simulations;
+
+import etomica.action.activity.ActivityIntegrate;
+import etomica.data.AccumulatorRatioAverageCovarianceFull;
+import etomica.util.random.IRandom;
+import etomica.util.random.RandomMersenneTwister;
+import etomica.virial.overlap.DataVirialOverlap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several independent overlap-sampling virial simulations (walkers) and
+ * combines their results.  Each walker is a complete SimulationVirialOverlap2
+ * with its own random number generator, seeded with the given seeds plus the
+ * walker index, so the walkers can be run on separate threads without sharing
+ * anything.  The walkers must not share clusters, meters or other objects
+ * with internal state.
+ * <p>
+ * The reference preference is determined (or read from a file) by the first
+ * walker and then used by all walkers, so that their overlap averages can be
+ * combined.  After (or between) production runs, the walkers' reference and
+ * target accumulators are merged into a single pair of accumulators and the
+ * virial coefficient and its uncertainty are computed from those as for a
+ * single simulation.
+ * <p>
+ * Typical use:
+ * <pre>
+ * VirialOverlapWalkers walkers = new VirialOverlapWalkers(nWalkers, seeds, (i, random) -&gt; {
+ *     SimulationVirialOverlap2 sim = new SimulationVirialOverlap2(...);
+ *     sim.setRandom(random);
+ *     sim.init();
+ *     return sim;
+ * });
+ * walkers.setNumThreads(nThreads);
+ * walkers.equilibrate(refFileName, steps/40, steps/20);
+ * walkers.setAccumulatorBlockSize(blockSize);
+ * walkers.run(steps/nWalkers);
+ * walkers.printResults(refIntegral);
+ * </pre>
+ */
+public class VirialOverlapWalkers {
+
+    protected final SimulationVirialOverlap2[] walkers;
+    protected int numThreads;
+    protected ExecutorService executor;
+    protected AccumulatorRatioAverageCovarianceFull[] mergedAccumulators;
+    protected DataVirialOverlap dvo;
+
+    /**
+     * @param nWalkers number of independent simulations
+     * @param seeds    random seeds; walker i uses these seeds followed by i
+     * @param factory  creates (and initializes) each walker
+     */
+    public VirialOverlapWalkers(int nWalkers, int[] seeds, WalkerFactory factory) {
+        if (nWalkers < 1) {
+            throw new IllegalArgumentException("nWalkers must be positive");
+        }
+        walkers = new SimulationVirialOverlap2[nWalkers];
+        for (int i = 0; i < nWalkers; i++) {
+            int[] walkerSeeds = new int[seeds.length + 1];
+            System.arraycopy(seeds, 0, walkerSeeds, 0, seeds.length);
+            walkerSeeds[seeds.length] = i;
+            walkers[i] = factory.makeWalker(i, new RandomMersenneTwister(walkerSeeds));
+        }
+        numThreads = 1;
+    }
+
+    public SimulationVirialOverlap2[] getWalkers() {
+        return walkers;
+    }
+
+    /**
+     * Sets the number of threads used to run the walkers.
+     */
+    public void setNumThreads(int newNumThreads) {
+        if (newNumThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive");
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        numThreads = newNumThreads;
+        if (numThreads > 1) {
+            executor = Executors.newFixedThreadPool(numThreads - 1, r -> {
+                Thread t = new Thread(r, "VirialWalkers-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Determines the reference preference using the first walker (reading
+     * it from or writing it to refFileName if that is not null), passes it
+     * to the other walkers and then equilibrates all of the walkers.
+     */
+    public void equilibrate(String refFileName, long initSteps, long equilibrationSteps) {
+        SimulationVirialOverlap2 first = walkers[0];
+        first.initRefPref(refFileName, initSteps);
+        first.equilibrate(refFileName, equilibrationSteps);
+        int numAlpha = first.dpVirialOverlap[0].getNumAlpha();
+        double span = first.dpVirialOverlap[0].getAlphaSpan();
+        for (int i = 1; i < walkers.length; i++) {
+            walkers[i].dpVirialOverlap[0].setNumAlpha(numAlpha);
+            walkers[i].dpVirialOverlap[1].setNumAlpha(numAlpha);
+            walkers[i].setRefPref(first.refPref, span);
+        }
+        // with refPref known, this just adjusts step sizes and resets the averages
+        forEachWalker(1, w -> w.equilibrate(null, equilibrationSteps));
+    }
+
+    /**
+     * Sets the reference preference for all walkers.
+     */
+    public void setRefPref(double refPref) {
+        for (SimulationVirialOverlap2 w : walkers) {
+            w.setRefPref(refPref);
+        }
+    }
+
+    public void setAccumulatorBlockSize(long blockSize) {
+        for (SimulationVirialOverlap2 w : walkers) {
+            w.setAccumulatorBlockSize(blockSize);
+        }
+    }
+
+    /**
+     * Runs each walker for the given number of overlap steps.  This can be
+     * called repeatedly (with results examined in between); the walkers
+     * continue accumulating data.
+     */
+    public void run(long steps) {
+        forEachWalker(0, w -> w.getController().runActivityBlocking(new ActivityIntegrate(w.integratorOS, steps)));
+        dvo = null;
+    }
+
+    protected void forEachWalker(int first, WalkerAction action) {
+        int nThreads = Math.min(numThreads, walkers.length - first);
+        if (nThreads < 2) {
+            for (int i = first; i < walkers.length; i++) {
+                action.run(walkers[i]);
+            }
+            return;
+        }
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int t = 1; t < nThreads; t++) {
+            int tt = t;
+            tasks.add(() -> {
+                for (int i = first + tt; i < walkers.length; i += nThreads) {
+                    action.run(walkers[i]);
+                }
+                return null;
+            });
+        }
+        List<Future<Object>> futures = new ArrayList<>(tasks.size());
+        for (Callable<Object> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        for (int i = first; i < walkers.length; i += nThreads) {
+            action.run(walkers[i]);
+        }
+        try {
+            for (Future<Object> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Merges the reference and target accumulators of all walkers and
+     * returns the DataVirialOverlap that computes results from the merged
+     * accumulators.  The walkers' own accumulators are not modified.  This
+     * must not be called while the walkers are running.
+     */
+    public DataVirialOverlap getDataVirialOverlap() {
+        if (dvo != null) return dvo;
+        SimulationVirialOverlap2 first = walkers[0];
+        mergedAccumulators = new AccumulatorRatioAverageCovarianceFull[2];
+        for (int j = 0; j < 2; j++) {
+            mergedAccumulators[j] = new AccumulatorRatioAverageCovarianceFull(first.accumulators[j].getBlockSize());
+            mergedAccumulators[j].putDataInfo(first.dpVirialOverlap[j].getDataInfo());
+            for (SimulationVirialOverlap2 w : walkers) {
+                mergedAccumulators[j].merge(w.accumulators[j]);
+            }
+        }
+        dvo = new DataVirialOverlap(first.dpVirialOverlap[0], mergedAccumulators[0], mergedAccumulators[1]);
+        return dvo;
+    }
+
+    /**
+     * Returns the merged reference and target accumulators.
+     */
+    public AccumulatorRatioAverageCovarianceFull[] getAccumulators() {
+        getDataVirialOverlap();
+        return mergedAccumulators;
+    }
+
+    /**
+     * Returns the ratio of target to reference integrals and its
+     * uncertainty, combining data from all walkers.
+     */
+    public double[] getAverageAndError() {
+        return getDataVirialOverlap().getAverageAndError();
+    }
+
+    public double[] getAverageAndError(int targetIndex) {
+        return getDataVirialOverlap().getAverageAndError(targetIndex);
+    }
+
+    /**
+     * Prints the combined result along with each walker's result.  The spread
+     * of the walker results provides an independent check on the combined
+     * uncertainty.
+     */
+    public void printResults(double refIntegral) {
+        double sum = 0, sum2 = 0;
+        for (int i = 0; i < walkers.length; i++) {
+            double[] ratioAndError = walkers[i].dvo.getAverageAndError();
+            System.out.println("walker " + i + " ratio average: " + ratioAndError[0] + " error: " + ratioAndError[1]);
+            sum += ratioAndError[0];
+            sum2 += ratioAndError[0] * ratioAndError[0];
+        }
+        int n = walkers.length;
+        if (n > 1) {
+            double avg = sum / n;
+            double walkerErr = Math.sqrt((sum2 / n - avg * avg) / (n - 1));
+            System.out.println("walker spread error: " + walkerErr);
+        }
+        DataVirialOverlap d = getDataVirialOverlap();
+        double[] ratioAndError = d.getAverageAndError();
+        System.out.println("ratio average: " + ratioAndError[0] + " error: " + ratioAndError[1]);
+        System.out.println("abs average: " + ratioAndError[0] * refIntegral + " error: " + ratioAndError[1] * Math.abs(refIntegral));
+        double[] alphaData = d.getOverlapAverageAndErrorForAlpha(d.getAlphaSource().getAlpha(0));
+        System.out.println(String.format("overlap ratio: % 20.15e error: %10.15e", alphaData[0], alphaData[1]));
+    }
+
+    public interface WalkerFactory {
+        /**
+         * Returns walker i, which must use the given random number generator
+         * (set before the simulation's init() is called).
+         */
+        SimulationVirialOverlap2 makeWalker(int i, IRandom random);
+    }
+
+    protected interface WalkerAction {
+        void run(SimulationVirialOverlap2 walker);
+    }
+}
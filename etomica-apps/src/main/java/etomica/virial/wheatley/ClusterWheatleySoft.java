@@ -40,6 +40,8 @@ public class ClusterWheatleySoft implements ClusterAbstract {
     protected IRandom random;
     protected double[] avgAbsCheck = {0, 0}, avgAbsCheckBD = {0, 0};
     protected long[] nCheck = {0, 0};
+    protected SubsetLayerExecutor layerExecutor;
+    protected long minParallelWork = SubsetLayerExecutor.DEFAULT_MIN_PARALLEL_WORK;
 
     public ClusterWheatleySoft(int nPoints, MayerFunction f, double tol) {
         this.n = nPoints;
@@ -63,6 +65,54 @@ public class ClusterWheatleySoft implements ClusterAbstract {
         }
     }
 
+    /**
+     * Sets the number of threads used to compute a single cluster value.  The
+     * subsets of each size are split among the threads, one size at a time,
+     * which only pays off at high order (roughly n > 10).  The BD cluster
+     * used for small values is threaded the same way.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive");
+        }
+        if (layerExecutor != null) {
+            layerExecutor.shutdown();
+        }
+        layerExecutor = numThreads > 1 ? new SubsetLayerExecutor(n, numThreads) : null;
+        if (layerExecutor != null) {
+            layerExecutor.setMinParallelWork(minParallelWork);
+        }
+        if (clusterBD != null) {
+            clusterBD.setNumThreads(numThreads);
+        }
+    }
+
+    public int getNumThreads() {
+        return layerExecutor == null ? 1 : layerExecutor.getNumThreads();
+    }
+
+    /**
+     * Sets the amount of work (subsets times partition terms) below which a
+     * layer of subsets is computed by one thread.  The BD cluster gets the same
+     * setting.
+     */
+    public void setMinParallelWork(long newMinParallelWork) {
+        if (newMinParallelWork < 0) {
+            throw new IllegalArgumentException("minParallelWork must not be negative");
+        }
+        if (layerExecutor != null) {
+            layerExecutor.setMinParallelWork(newMinParallelWork);
+        }
+        minParallelWork = newMinParallelWork;
+        if (clusterBD != null) {
+            clusterBD.setMinParallelWork(newMinParallelWork);
+        }
+    }
+
+    public long getMinParallelWork() {
+        return minParallelWork;
+    }
+
     /**
      * Directs this cluster to only compute p fraction of the time when the
      * value is too small (below tol).  When it is computed, the value will be
@@ -83,6 +133,10 @@ public class ClusterWheatleySoft implements ClusterAbstract {
         if (BDAccFrac < 1) {
             c.setBDAccFrac(BDAccFrac, random);
         }
+        c.setMinParallelWork(minParallelWork);
+        if (layerExecutor != null) {
+            c.setNumThreads(layerExecutor.getNumThreads());
+        }
         return c;
     }
 
@@ -174,124 +228,31 @@ public class ClusterWheatleySoft implements ClusterAbstract {
         calcFullFQ(box);
 
         int nf = 1<<n;
-        //Compute the fC's
-        for(int i=1; i<nf; i++) {
-            fC[i] = fQ[i];
-            int iLowBit = i & -i;
-            int inc = iLowBit<<1;
-            for(int j=iLowBit; j<i; j+=inc) {
-                int jComp = i & ~j;
-                while ((j|jComp) != i && j<i) {
-                    int jHighBits = j^iLowBit;
-                    int jlow = jHighBits & -jHighBits;
-                    j += jlow;
-                    jComp = (i & ~j);
-                }
-                if (j==i) break;
-                fC[i] -= fC[j] * fQ[jComp];//for fQ, flip the bits on j; use only those appearing in i
+        if (layerExecutor != null) {
+            // fC and the fA/fB for v=0 only need smaller subsets, so they can share a pass
+            layerExecutor.run(1, i -> {
+                calcFC(i);
+                calcAB0(i);
+            });
+            for (int v=1; v<n; v++) {
+                int vs1 = 1<<v, vv = v;
+                layerExecutor.run(2, i -> {
+                    if (i > vs1) calcAB(vv, i);
+                });
             }
         }
-
-        // find fA1
-        for (int i=2; i<nf; i+=2) {
-            // all even sets don't contain 1
-            //fA[i] = 0;
-            fB[i] = fC[i];
-        }
-        fA[1] = 0;
-        fB[1] = fC[1];
-        for (int i=3; i<nf; i+=2) {
-            // every set will contain 1
-            fA[i] = 0;
-            fB[i] = fC[i];
-            int ii = i - 1;//all bits in i but lowest
-            int iLow2Bit = (ii & -ii);//next lowest bit
-            int jBits = 1 | iLow2Bit;
-            if (jBits==i) continue;
-            //jBits has 1 and next lowest bit in i
-            int iii = ii ^ iLow2Bit;//i with 2 lowest bits off
-            int jInc = (iii & -iii);//3rd lowest bit, also increment for j
-            for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i containing jBits
-                int jComp = (i & ~j); //subset of i complementing j
-                while ((j|jComp) != i && j<i) {
-                    int jHighBits = j^jBits;
-                    int jlow = jHighBits & -jHighBits;
-                    j += jlow;
-                    jComp = (i & ~j);
-                }
-                if (j==i) break;
-                fA[i] += fB[j] * fC[jComp|1];
+        else {
+            //Compute the fC's
+            for (int i=1; i<nf; i++) {
+                calcFC(i);
             }
-            fB[i] -= fA[i];//remove from B graphs that contain articulation point at 0
-        }
-
-        for (int v=1; v<n; v++) {
-            int vs1 = 1<<v;
-            for (int i=vs1+1; i<nf; i++) {
-                fA[i] = 0;
-//                fB[v][i] = fB[v-1][i];//no a.p. at v or below, starts with those having no a.p. at v-1 or below
-                //rest of this is to generate A (diagrams having a.p. at v but not below), and subtract it from B
-                if ((i & vs1) == 0) continue;//if i doesn't contain v, fA and fB are done
-                int iLowBit = (i&-i);//lowest bit in i
-                if (iLowBit == i) { //lowest bit is only bit; fA and fB are done
-                    continue;
-                }
-                int jBits;
-                int ii = i ^ iLowBit;
-                int iLow2Bit = (ii & -ii);
-                if (iLowBit != vs1 && iLow2Bit != vs1) {
-                    //v is not in the lowest 2 bits
-                    // jBits is the lowest bit and v
-                    jBits = iLowBit | vs1;
-
-                    // we can only increment by the 2nd lowest
-                    int jInc = iLow2Bit;
-
-                    //at this point jBits has (lowest bit + v) or (v + next lowest bit)
-                    for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i
-                        if ((j & jBits) != jBits) {
-                            //ensure jBits are in j
-                            j |= vs1;
-                            if (j==i) break;
-                        }
-                        int jComp = i & ~j;//subset of i complementing j
-                        while ((j|jComp) != i && j<i) {
-                            int jHighBits = j^jBits;
-                            int jlow = jHighBits & -jHighBits;
-                            j += jlow; // this might knock out the v bit
-                            j |= vs1;
-                            jComp = (i & ~j);
-                        }
-                        if (j==i) break;
-                        fA[i] += fB[j] * (fB[jComp|vs1] + fA[jComp|vs1]);
-                    }
-                }
-                else {
-                    //lowest 2 bits contain v
-                    // jBits is the lowest 2 bits
-                    // we can start at jBits and increment by the 3rd lowest bit
-                    jBits = iLowBit | iLow2Bit;
-                    if (jBits == i) continue; // no bits left for jComp
-                    
-                    int iii = ii ^ iLow2Bit;
-                    int jInc = (iii & -iii);
-
-                    //at this point jBits has (lowest bit + v) or (v + next lowest bit)
-                    for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i
-                        // start=jBits and jInc ensure that every set includes jBits
-                        int jComp = i & ~j;//subset of i complementing j
-                        while ((j|jComp) != i && j<i) {
-                            int jHighBits = j^jBits;
-                            int jlow = jHighBits & -jHighBits;
-                            j += jlow;
-                            jComp = (i & ~j);
-                        }
-                        if (j == i) break;
-                        fA[i] += fB[j] * (fB[jComp | vs1] + fA[jComp | vs1]);
-                    }
+            for (int i=1; i<nf; i++) {
+                calcAB0(i);
+            }
+            for (int v=1; v<n; v++) {
+                for (int i=(1<<v)+1; i<nf; i++) {
+                    calcAB(v, i);
                 }
-
-                fB[i] -= fA[i];//remove from B graphs that contain articulation point at v
             }
         }
 
@@ -336,6 +297,132 @@ public class ClusterWheatleySoft implements ClusterAbstract {
         }
     }
 
+    /**
+     * Computes fC for subset i from fQ and fC of the subsets of i.
+     */
+    protected void calcFC(int i) {
+        fC[i] = fQ[i];
+        int iLowBit = i & -i;
+        int inc = iLowBit<<1;
+        for(int j=iLowBit; j<i; j+=inc) {
+            int jComp = i & ~j;
+            while ((j|jComp) != i && j<i) {
+                int jHighBits = j^iLowBit;
+                int jlow = jHighBits & -jHighBits;
+                j += jlow;
+                jComp = (i & ~j);
+            }
+            if (j==i) break;
+            fC[i] -= fC[j] * fQ[jComp];//for fQ, flip the bits on j; use only those appearing in i
+        }
+    }
+
+    /**
+     * Computes fA and fB for subset i, excluding graphs with an articulation
+     * point at 0.
+     */
+    protected void calcAB0(int i) {
+        if ((i & 1) == 0) {
+            // even sets don't contain 1
+            fB[i] = fC[i];
+            return;
+        }
+        fA[i] = 0;
+        fB[i] = fC[i];
+        if (i == 1) return;
+        int ii = i - 1;//all bits in i but lowest
+        int iLow2Bit = (ii & -ii);//next lowest bit
+        int jBits = 1 | iLow2Bit;
+        if (jBits==i) return;
+        //jBits has 1 and next lowest bit in i
+        int iii = ii ^ iLow2Bit;//i with 2 lowest bits off
+        int jInc = (iii & -iii);//3rd lowest bit, also increment for j
+        for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i containing jBits
+            int jComp = (i & ~j); //subset of i complementing j
+            while ((j|jComp) != i && j<i) {
+                int jHighBits = j^jBits;
+                int jlow = jHighBits & -jHighBits;
+                j += jlow;
+                jComp = (i & ~j);
+            }
+            if (j==i) break;
+            fA[i] += fB[j] * fC[jComp|1];
+        }
+        fB[i] -= fA[i];//remove from B graphs that contain articulation point at 0
+    }
+
+    /**
+     * Computes fA and fB for subset i (which must be greater than 1<<v),
+     * removing graphs with an articulation point at v.
+     */
+    protected void calcAB(int v, int i) {
+        int vs1 = 1<<v;
+        fA[i] = 0;
+//                fB[v][i] = fB[v-1][i];//no a.p. at v or below, starts with those having no a.p. at v-1 or below
+        //rest of this is to generate A (diagrams having a.p. at v but not below), and subtract it from B
+        if ((i & vs1) == 0) return;//if i doesn't contain v, fA and fB are done
+        int iLowBit = (i&-i);//lowest bit in i
+        if (iLowBit == i) { //lowest bit is only bit; fA and fB are done
+            return;
+        }
+        int jBits;
+        int ii = i ^ iLowBit;
+        int iLow2Bit = (ii & -ii);
+        if (iLowBit != vs1 && iLow2Bit != vs1) {
+            //v is not in the lowest 2 bits
+            // jBits is the lowest bit and v
+            jBits = iLowBit | vs1;
+
+            // we can only increment by the 2nd lowest
+            int jInc = iLow2Bit;
+
+            //at this point jBits has (lowest bit + v) or (v + next lowest bit)
+            for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i
+                if ((j & jBits) != jBits) {
+                    //ensure jBits are in j
+                    j |= vs1;
+                    if (j==i) break;
+                }
+                int jComp = i & ~j;//subset of i complementing j
+                while ((j|jComp) != i && j<i) {
+                    int jHighBits = j^jBits;
+                    int jlow = jHighBits & -jHighBits;
+                    j += jlow; // this might knock out the v bit
+                    j |= vs1;
+                    jComp = (i & ~j);
+                }
+                if (j==i) break;
+                fA[i] += fB[j] * (fB[jComp|vs1] + fA[jComp|vs1]);
+            }
+        }
+        else {
+            //lowest 2 bits contain v
+            // jBits is the lowest 2 bits
+            // we can start at jBits and increment by the 3rd lowest bit
+            jBits = iLowBit | iLow2Bit;
+            if (jBits == i) return; // no bits left for jComp
+            
+            int iii = ii ^ iLow2Bit;
+            int jInc = (iii & -iii);
+
+            //at this point jBits has (lowest bit + v) or (v + next lowest bit)
+            for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i
+                // start=jBits and jInc ensure that every set includes jBits
+                int jComp = i & ~j;//subset of i complementing j
+                while ((j|jComp) != i && j<i) {
+                    int jHighBits = j^jBits;
+                    int jlow = jHighBits & -jHighBits;
+                    j += jlow;
+                    jComp = (i & ~j);
+                }
+                if (j == i) break;
+                fA[i] += fB[j] * (fB[jComp | vs1] + fA[jComp | vs1]);
+            }
+        }
+
+        fB[i] -= fA[i];//remove from B graphs that contain articulation point at v
+    }
+
     protected void updateF(BoxCluster box) {
         CoordinatePairSet cPairs = box.getCPairSet();
         AtomPairSet aPairs = box.getAPairSet();
@@ -37,6 +37,8 @@ public class ClusterWheatleySoftBD implements ClusterAbstract {
     protected final MathContext mc;
     protected double tol;
     protected boolean doCaching;
+    protected SubsetLayerExecutor layerExecutor;
+    protected long minParallelWork = SubsetLayerExecutor.DEFAULT_MIN_PARALLEL_WORK;
 
     public ClusterWheatleySoftBD(int nPoints, MayerFunction f, int precision) {
         this.n = nPoints;
@@ -57,10 +59,53 @@ public class ClusterWheatleySoftBD implements ClusterAbstract {
         doCaching = newDoCaching;
     }
 
+    /**
+     * Sets the number of threads used to compute a single cluster value.  The
+     * subsets of each size are split among the threads, one size at a time.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive");
+        }
+        if (layerExecutor != null) {
+            layerExecutor.shutdown();
+        }
+        layerExecutor = numThreads > 1 ? new SubsetLayerExecutor(n, numThreads) : null;
+        if (layerExecutor != null) {
+            layerExecutor.setMinParallelWork(minParallelWork);
+        }
+    }
+
+    public int getNumThreads() {
+        return layerExecutor == null ? 1 : layerExecutor.getNumThreads();
+    }
+
+    /**
+     * Sets the amount of work (subsets times partition terms) below which a
+     * layer of subsets is computed by one thread.
+     */
+    public void setMinParallelWork(long newMinParallelWork) {
+        if (newMinParallelWork < 0) {
+            throw new IllegalArgumentException("minParallelWork must not be negative");
+        }
+        if (layerExecutor != null) {
+            layerExecutor.setMinParallelWork(newMinParallelWork);
+        }
+        minParallelWork = newMinParallelWork;
+    }
+
+    public long getMinParallelWork() {
+        return minParallelWork;
+    }
+
     public ClusterAbstract makeCopy() {
         ClusterWheatleySoftBD c = new ClusterWheatleySoftBD(n, f, mc.getPrecision());
         c.setTemperature(1/beta);
         c.setDoCaching(doCaching);
+        c.setMinParallelWork(minParallelWork);
+        if (layerExecutor != null) {
+            c.setNumThreads(layerExecutor.getNumThreads());
+        }
         return c;
     }
 
@@ -152,48 +197,158 @@ public class ClusterWheatleySoftBD implements ClusterAbstract {
         calcFullFQ(box);
 
         int nf = 1<<n;
-        //Compute the fC's
-//        System.out.println("fC");
-        for(int i=1; i<nf; i++) {
-            fC[i] = fQ[i];
-            int iLowBit = i & -i;
-            int inc = iLowBit<<1;
-            for(int j=iLowBit; j<i; j+=inc) {
-                int jComp = i & ~j;
+        if (layerExecutor != null) {
+            // fC and the fA/fB for v=0 only need smaller subsets, so they can share a pass
+            layerExecutor.run(1, i -> {
+                calcFC(i);
+                calcAB0(i);
+            });
+            for (int v=1; v<n; v++) {
+                int vs1 = 1<<v, vv = v;
+                layerExecutor.run(2, i -> {
+                    if (i > vs1) calcAB(vv, i);
+                });
+            }
+        }
+        else {
+            //Compute the fC's
+            for (int i=1; i<nf; i++) {
+                calcFC(i);
+            }
+            for (int i=1; i<nf; i++) {
+                calcAB0(i);
+            }
+            for (int v=1; v<n; v++) {
+                for (int i=(1<<v)+1; i<nf; i++) {
+                    calcAB(v, i);
+                }
+            }
+        }
+
+        if (Math.abs(fB[nf-1].doubleValue()) < tol) {
+            value = 0;
+            return;
+        }
+        value = (1-n)*fB[nf-1].doubleValue()/SpecialFunctions.factorial(n);
+        if (pushme && maxR2 > 2*2) {
+//            value *= Math.pow(maxR2/4, 6);
+        }
+    }
+
+    /**
+     * Computes fC for subset i from fQ and fC of the subsets of i.
+     */
+    protected void calcFC(int i) {
+        fC[i] = fQ[i];
+        int iLowBit = i & -i;
+        int inc = iLowBit<<1;
+        for(int j=iLowBit; j<i; j+=inc) {
+            int jComp = i & ~j;
+            while ((j|jComp) != i && j<i) {
+                int jHighBits = j^iLowBit;
+                int jlow = jHighBits & -jHighBits;
+                j += jlow;
+                jComp = (i & ~j);
+            }
+            if (j==i) break;
+            fC[i] = fC[i].subtract(fC[j].multiply(fQ[jComp], mc), mc);//for fQ, flip the bits on j; use only those appearing in i
+        }
+//            System.out.println(i+" "+fC[i].toString());
+    }
+
+    /**
+     * Computes fA and fB for subset i, excluding graphs with an articulation
+     * point at 0.
+     */
+    protected void calcAB0(int i) {
+        if ((i & 1) == 0) {
+            // even sets don't contain 1
+            fB[i] = fC[i];
+            return;
+        }
+        fA[i] = BDZERO;
+        fB[i] = fC[i];
+        if (i == 1) return;
+        int ii = i - 1;//all bits in i but lowest
+        int iLow2Bit = (ii & -ii);//next lowest bit
+        int jBits = 1 | iLow2Bit;
+        if (jBits==i) return;
+        //jBits has 1 and next lowest bit in i
+        int iii = ii ^ iLow2Bit;//i with 2 lowest bits off
+        int jInc = (iii & -iii);//3rd lowest bit, also increment for j
+        for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i containing jBits
+            int jComp = (i & ~j); //subset of i complementing j
+            while ((j|jComp) != i && j<i) {
+                int jHighBits = j^jBits;
+                int jlow = jHighBits & -jHighBits;
+                j += jlow;
+                jComp = (i & ~j);
+            }
+            if (j==i) break;
+            fA[i] = fA[i].add(fB[j].multiply(fC[jComp|1], mc), mc);
+        }
+        fB[i] = fB[i].subtract(fA[i], mc);//remove from B graphs that contain articulation point at 0
+//        System.out.println("0 "+i+" "+fA[i]+" "+fB[i]);
+    }
+
+    /**
+     * Computes fA and fB for subset i (which must be greater than 1<<v),
+     * removing graphs with an articulation point at v.
+     */
+    protected void calcAB(int v, int i) {
+        int vs1 = 1<<v;
+        fA[i] = BDZERO;
+//                fB[v][i] = fB[v-1][i];//no a.p. at v or below, starts with those having no a.p. at v-1 or below
+        //rest of this is to generate A (diagrams having a.p. at v but not below), and subtract it from B
+        if ((i & vs1) == 0) return;//if i doesn't contain v, fA and fB are done
+        int iLowBit = (i&-i);//lowest bit in i
+        if (iLowBit == i) { //lowest bit is only bit; fA and fB are done
+            return;
+        }
+        int jBits;
+        int ii = i ^ iLowBit;
+        int iLow2Bit = (ii & -ii);
+        if (iLowBit != vs1 && iLow2Bit != vs1) {
+            //v is not in the lowest 2 bits
+            // jBits is the lowest bit and v
+            jBits = iLowBit | vs1;
+
+            // we can only increment by the 2nd lowest
+            int jInc = iLow2Bit;
+
+            //at this point jBits has (lowest bit + v) or (v + next lowest bit)
+            for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i
+                if ((j & jBits) != jBits) {
+                    //ensure jBits are in j
+                    j |= vs1;
+                    if (j==i) break;
+                }
+                int jComp = i & ~j;//subset of i complementing j
                 while ((j|jComp) != i && j<i) {
-                    int jHighBits = j^iLowBit;
+                    int jHighBits = j^jBits;
                     int jlow = jHighBits & -jHighBits;
-                    j += jlow;
+                    j += jlow; // this might knock out the v bit
+                    j |= vs1;
                     jComp = (i & ~j);
                 }
                 if (j==i) break;
-                fC[i] = fC[i].subtract(fC[j].multiply(fQ[jComp], mc), mc);//for fQ, flip the bits on j; use only those appearing in i
+                fA[i] = fA[i].add(fB[j].multiply(fB[jComp|vs1].add(fA[jComp|vs1], mc), mc), mc);
             }
-//            System.out.println(i+" "+fC[i].toString());
         }
+        else {
+            //lowest 2 bits contain v
+            // jBits is the lowest 2 bits
+            // we can start at jBits and increment by the 3rd lowest bit
+            jBits = iLowBit | iLow2Bit;
+            if (jBits == i) return; // no bits left for jComp
+            
+            int iii = ii ^ iLow2Bit;
+            int jInc = (iii & -iii);
 
-        // find fA1
-        for (int i=2; i<nf; i+=2) {
-            // all even sets don't contain 1
-            //fA[i] = 0;
-            fB[i] = fC[i];
-        }
-        fA[1] = BDZERO;
-        fB[1] = fC[1];
-//        System.out.println("fA and fB");
-        for (int i=3; i<nf; i+=2) {
-            // every set will contain 1
-            fA[i] = BDZERO;
-            fB[i] = fC[i];
-            int ii = i - 1;//all bits in i but lowest
-            int iLow2Bit = (ii & -ii);//next lowest bit
-            int jBits = 1 | iLow2Bit;
-            if (jBits==i) continue;
-            //jBits has 1 and next lowest bit in i
-            int iii = ii ^ iLow2Bit;//i with 2 lowest bits off
-            int jInc = (iii & -iii);//3rd lowest bit, also increment for j
-            for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i containing jBits
-                int jComp = (i & ~j); //subset of i complementing j
+            //at this point jBits has (lowest bit + v) or (v + next lowest bit)
+            for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i
+                // start=jBits and jInc ensure that every set includes jBits
+                int jComp = i & ~j;//subset of i complementing j
                 while ((j|jComp) != i && j<i) {
                     int jHighBits = j^jBits;
                     int jlow = jHighBits & -jHighBits;
@@ -201,90 +356,12 @@ public class ClusterWheatleySoftBD implements ClusterAbstract {
                     jComp = (i & ~j);
                 }
                 if (j==i) break;
-                fA[i] = fA[i].add(fB[j].multiply(fC[jComp|1], mc), mc);
+                fA[i] = fA[i].add(fB[j].multiply(fB[jComp|vs1].add(fA[jComp|vs1], mc), mc), mc);
             }
-            fB[i] = fB[i].subtract(fA[i], mc);//remove from B graphs that contain articulation point at 0
-//            System.out.println("0 "+i+" "+fA[i]+" "+fB[i]);
         }
 
-        for (int v=1; v<n; v++) {
-            int vs1 = 1<<v;
-            for (int i=vs1+1; i<nf; i++) {
-                fA[i] = BDZERO;
-//                fB[v][i] = fB[v-1][i];//no a.p. at v or below, starts with those having no a.p. at v-1 or below
-                //rest of this is to generate A (diagrams having a.p. at v but not below), and subtract it from B
-                if ((i & vs1) == 0) continue;//if i doesn't contain v, fA and fB are done
-                int iLowBit = (i&-i);//lowest bit in i
-                if (iLowBit == i) { //lowest bit is only bit; fA and fB are done
-                    continue;
-                }
-                int jBits;
-                int ii = i ^ iLowBit;
-                int iLow2Bit = (ii & -ii);
-                if (iLowBit != vs1 && iLow2Bit != vs1) {
-                    //v is not in the lowest 2 bits
-                    // jBits is the lowest bit and v
-                    jBits = iLowBit | vs1;
-
-                    // we can only increment by the 2nd lowest
-                    int jInc = iLow2Bit;
-
-                    //at this point jBits has (lowest bit + v) or (v + next lowest bit)
-                    for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i
-                        if ((j & jBits) != jBits) {
-                            //ensure jBits are in j
-                            j |= vs1;
-                            if (j==i) break;
-                        }
-                        int jComp = i & ~j;//subset of i complementing j
-                        while ((j|jComp) != i && j<i) {
-                            int jHighBits = j^jBits;
-                            int jlow = jHighBits & -jHighBits;
-                            j += jlow; // this might knock out the v bit
-                            j |= vs1;
-                            jComp = (i & ~j);
-                        }
-                        if (j==i) break;
-                        fA[i] = fA[i].add(fB[j].multiply(fB[jComp|vs1].add(fA[jComp|vs1], mc), mc), mc);
-                    }
-                }
-                else {
-                    //lowest 2 bits contain v
-                    // jBits is the lowest 2 bits
-                    // we can start at jBits and increment by the 3rd lowest bit
-                    jBits = iLowBit | iLow2Bit;
-                    if (jBits == i) continue; // no bits left for jComp
-                    
-                    int iii = ii ^ iLow2Bit;
-                    int jInc = (iii & -iii);
-
-                    //at this point jBits has (lowest bit + v) or (v + next lowest bit)
-                    for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i
-                        // start=jBits and jInc ensure that every set includes jBits
-                        int jComp = i & ~j;//subset of i complementing j
-                        while ((j|jComp) != i && j<i) {
-                            int jHighBits = j^jBits;
-                            int jlow = jHighBits & -jHighBits;
-                            j += jlow;
-                            jComp = (i & ~j);
-                        }
-                        if (j==i) break;
-                        fA[i] = fA[i].add(fB[j].multiply(fB[jComp|vs1].add(fA[jComp|vs1], mc), mc), mc);
-                    }
-                }
-
-                fB[i] = fB[i].subtract(fA[i], mc);//remove from B graphs that contain articulation point at v
+        fB[i] = fB[i].subtract(fA[i], mc);//remove from B graphs that contain articulation point at v
 //                System.out.println(v+" "+i+" "+fA[i]+" "+fB[i]);
-            }
-        }
-        if (Math.abs(fB[nf-1].doubleValue()) < tol) {
-            value = 0;
-            return;
-        }
-        value = (1-n)*fB[nf-1].doubleValue()/SpecialFunctions.factorial(n);
-        if (pushme && maxR2 > 2*2) {
-//            value *= Math.pow(maxR2/4, 6);
-        }
     }
 
     protected void updateF(BoxCluster box) {
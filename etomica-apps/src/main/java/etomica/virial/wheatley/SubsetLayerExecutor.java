@@ -0,0 +1,133 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial.wheatley;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs an operation over all subsets of n points one popcount layer at a
+ * time, splitting each layer across a pool of threads.  The Wheatley
+ * recursions only need values for proper subsets of i to compute i, so every
+ * subset in a layer can be computed independently once the smaller layers are
+ * done.  The calling thread takes the first block of each layer; layers with
+ * too little work to be worth handing out are done entirely by the caller.
+ */
+public class SubsetLayerExecutor {
+
+    protected final int n, numThreads;
+    protected final int[][] layers;
+    protected final ExecutorService executor;
+    protected final List<Callable<Object>> tasks;
+    protected int[] layer;
+    protected IntConsumer op;
+    protected long minParallelWork = DEFAULT_MIN_PARALLEL_WORK;
+
+    public static final long DEFAULT_MIN_PARALLEL_WORK = 1L << 14;
+
+    public SubsetLayerExecutor(int nPoints, int numThreads) {
+        if (numThreads < 2) {
+            throw new IllegalArgumentException("need at least 2 threads");
+        }
+        n = nPoints;
+        this.numThreads = numThreads;
+        int nf = 1 << n;
+        int[] layerSize = new int[n + 1];
+        for (int i = 1; i < nf; i++) {
+            layerSize[Integer.bitCount(i)]++;
+        }
+        layers = new int[n + 1][];
+        for (int k = 0; k <= n; k++) {
+            layers[k] = new int[layerSize[k]];
+            layerSize[k] = 0;
+        }
+        for (int i = 1; i < nf; i++) {
+            int k = Integer.bitCount(i);
+            layers[k][layerSize[k]++] = i;
+        }
+        executor = Executors.newFixedThreadPool(numThreads - 1, r -> {
+            Thread t = new Thread(r, "Wheatley-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        tasks = new ArrayList<>(numThreads - 1);
+        for (int t = 1; t < numThreads; t++) {
+            int tt = t;
+            tasks.add(() -> {
+                runBlock(tt);
+                return null;
+            });
+        }
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Layers with fewer than this many partition terms (layer size times
+     * 2^popcount) are computed by the calling thread alone.
+     */
+    public void setMinParallelWork(long newMinParallelWork) {
+        if (newMinParallelWork < 0) {
+            throw new IllegalArgumentException("minParallelWork must not be negative");
+        }
+        minParallelWork = newMinParallelWork;
+    }
+
+    public long getMinParallelWork() {
+        return minParallelWork;
+    }
+
+    /**
+     * Calls op for every subset with at least minPoints points, in order of
+     * increasing popcount (and increasing index within each thread's block).
+     */
+    public void run(int minPoints, IntConsumer op) {
+        this.op = op;
+        for (int k = Math.max(minPoints, 1); k <= n; k++) {
+            layer = layers[k];
+            if (layer.length < 2 || ((long) layer.length << k) < minParallelWork) {
+                for (int i : layer) {
+                    op.accept(i);
+                }
+                continue;
+            }
+            List<Future<Object>> futures = new ArrayList<>(tasks.size());
+            for (Callable<Object> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            runBlock(0);
+            try {
+                for (Future<Object> f : futures) {
+                    f.get();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        this.op = null;
+        layer = null;
+    }
+
+    protected void runBlock(int t) {
+        int[] myLayer = layer;
+        int start = myLayer.length * t / numThreads;
+        int end = myLayer.length * (t + 1) / numThreads;
+        for (int m = start; m < end; m++) {
+            op.accept(myLayer[m]);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
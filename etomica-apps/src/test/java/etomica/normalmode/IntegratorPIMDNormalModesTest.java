@@ -0,0 +1,133 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.normalmode;
+
+import etomica.atom.AtomType;
+import etomica.atom.IAtom;
+import etomica.atom.IAtomKinetic;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.config.ConformationLinear;
+import etomica.integrator.IntegratorVelocityVerlet;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.potential.P2Harmonic;
+import etomica.potential.PotentialMasterBonding;
+import etomica.simulation.Simulation;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesBuilder;
+import etomica.species.SpeciesGeneral;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class IntegratorPIMDNormalModesTest {
+
+    private static final double hbar = 1, temperature = 1, mass = 1;
+
+    private static class Sim extends Simulation {
+        final Box box;
+        final PotentialMasterBonding pmBonding, pmNone;
+
+        Sim(int nBeads) {
+            super(Space3D.getInstance());
+            Space space = getSpace();
+            SpeciesGeneral species = new SpeciesBuilder(space)
+                    .setDynamic(true)
+                    .addCount(AtomType.simple("A", mass / nBeads), nBeads)
+                    .withConformation(new ConformationLinear(space, 0.1))
+                    .build();
+            addSpecies(species);
+            box = new Box(space);
+            addBox(box);
+            box.getBoundary().setBoxSize(Vector.of(3, 3, 3));
+            box.setNMolecules(species, 4);
+            new ConfigurationLattice(new LatticeCubicFcc(space), space).initializeCoordinates(box);
+
+            pmBonding = new PotentialMasterBonding(getSpeciesManager(), box);
+            double omegaN = nBeads * temperature / hbar;
+            P2Harmonic p2Bond = new P2Harmonic(mass / nBeads * omegaN * omegaN, 0);
+            List<int[]> pairs = new ArrayList<>();
+            for (int i = 0; i < nBeads; i++) {
+                pairs.add(new int[]{i, (i + 1) % nBeads});
+            }
+            pmBonding.setBondingPotentialPair(species, p2Bond, pairs);
+            pmNone = new PotentialMasterBonding(getSpeciesManager(), box);
+        }
+    }
+
+    private static void checkFreeRing(int nBeads) {
+        Sim sim = new Sim(nBeads);
+        IntegratorPIMDNormalModes nm = new IntegratorPIMDNormalModes(sim.pmNone, sim.getRandom(), 0.05, temperature, sim.box, hbar);
+        nm.reset();
+        int n = sim.box.getLeafList().size();
+        Vector[] r0 = sim.getSpace().makeVectorArray(n), v0 = sim.getSpace().makeVectorArray(n);
+        for (IAtom a : sim.box.getLeafList()) {
+            r0[a.getLeafIndex()].E(a.getPosition());
+            v0[a.getLeafIndex()].E(((IAtomKinetic) a).getVelocity());
+        }
+        double e0 = nm.getPotentialEnergy() + nm.getKineticEnergy();
+        for (int i = 0; i < 20; i++) {
+            nm.doStep();
+        }
+        // the free ring is propagated exactly, so energy is conserved for any step size
+        assertEquals(e0, nm.getPotentialEnergy() + nm.getKineticEnergy(), 1e-9 * Math.abs(e0));
+        assertEquals(sim.pmBonding.computeAll(false), nm.getSpringEnergy(), 1e-9 * e0);
+        Vector[] rNM = sim.getSpace().makeVectorArray(n);
+        for (IAtom a : sim.box.getLeafList()) {
+            rNM[a.getLeafIndex()].E(a.getPosition());
+            a.getPosition().E(r0[a.getLeafIndex()]);
+        }
+
+        IntegratorVelocityVerlet vv = new IntegratorVelocityVerlet(sim.pmBonding, sim.getRandom(), 0.00005, temperature, sim.box);
+        vv.reset();
+        for (IAtom a : sim.box.getLeafList()) {
+            ((IAtomKinetic) a).getVelocity().E(v0[a.getLeafIndex()]);
+        }
+        vv.reset();
+        for (int i = 0; i < 20000; i++) {
+            vv.doStep();
+        }
+        Vector dr = sim.getSpace().makeVector();
+        for (IAtom a : sim.box.getLeafList()) {
+            dr.Ev1Mv2(a.getPosition(), rNM[a.getLeafIndex()]);
+            sim.box.getBoundary().nearestImage(dr);
+            assertEquals(0, Math.sqrt(dr.squared()), 1e-5);
+        }
+    }
+
+    @Test
+    public void testFreeRingFFT() {
+        checkFreeRing(8);
+    }
+
+    @Test
+    public void testFreeRingDFT() {
+        checkFreeRing(6);
+    }
+
+    @Test
+    public void testLangevin() {
+        int nBeads = 8;
+        Sim sim = new Sim(nBeads);
+        IntegratorPIMDNormalModes nm = new IntegratorPIMDNormalModes(sim.pmNone, sim.getRandom(), 0.05, temperature, sim.box, hbar);
+        nm.setGamma(1);
+        nm.setIsothermal(true);
+        nm.reset();
+        double sumKE = 0;
+        int steps = 20000;
+        for (int i = 0; i < steps; i++) {
+            nm.doStep();
+            sumKE += nm.getKineticEnergy();
+        }
+        int n = sim.box.getLeafList().size();
+        double expectedKE = 1.5 * n * temperature;
+        assertEquals(expectedKE, sumKE / steps, 0.03 * expectedKE);
+    }
+}
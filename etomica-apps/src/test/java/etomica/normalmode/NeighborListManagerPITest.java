@@ -0,0 +1,95 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.normalmode;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomType;
+import etomica.atom.IAtom;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.config.ConformationLinear;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.potential.BondingInfo;
+import etomica.potential.P2LennardJones;
+import etomica.potential.P2SoftSphericalTruncated;
+import etomica.potential.compute.PotentialComputePair;
+import etomica.simulation.Simulation;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesBuilder;
+import etomica.species.SpeciesGeneral;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NeighborListManagerPITest {
+
+    private static void check(int numMolecules, double density) {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        Space space = sim.getSpace();
+        int nBeads = 8;
+        SpeciesGeneral species = new SpeciesBuilder(space)
+                .addCount(AtomType.simple("A", 1.0 / nBeads), nBeads)
+                .withConformation(new ConformationLinear(space, 0))
+                .build();
+        sim.addSpecies(species);
+        Box box = new Box(space);
+        sim.addBox(box);
+        box.setNMolecules(species, numMolecules);
+        new BoxInflate(box, space, density).actionPerformed();
+        new ConfigurationLattice(new LatticeCubicFcc(space), space).initializeCoordinates(box);
+        // spread the rings out, so that some of them straddle the boundary
+        for (IAtom a : box.getLeafList()) {
+            Vector r = a.getPosition();
+            for (int k = 0; k < 3; k++) {
+                r.setX(k, r.getX(k) + 0.15 * sim.getRandom().nextGaussian());
+            }
+            r.PE(box.getBoundary().centralImage(r));
+        }
+
+        P2SoftSphericalTruncated p2 = new P2SoftSphericalTruncated(new P2LennardJones(1, 1.0 / nBeads), 2.5);
+        AtomType type = species.getLeafType();
+        NeighborListManagerPI nbrBead = new NeighborListManagerPI(sim.getSpeciesManager(), box, 2, 3, BondingInfo.noBonding());
+        PotentialComputePair pcBead = new PotentialComputePair(sim.getSpeciesManager(), box, nbrBead);
+        pcBead.setPairPotential(type, type, p2);
+        NeighborListManagerPI nbrShared = new NeighborListManagerPI(sim.getSpeciesManager(), box, 2, 3, BondingInfo.noBonding());
+        nbrShared.setBeadShared(true);
+        PotentialComputePair pcShared = new PotentialComputePair(sim.getSpeciesManager(), box, nbrShared);
+        pcShared.setPairPotential(type, type, p2);
+        // each pair is listed as an up neighbor of either atom, so compare
+        // the full lists
+        nbrBead.setDoDownNeighbors(true);
+        nbrShared.setDoDownNeighbors(true);
+        nbrBead.init();
+        nbrShared.init();
+
+        int n = box.getLeafList().size();
+        for (int i = 0; i < n; i++) {
+            assertEquals(nbrBead.getNumUpNeighbors(i) + nbrBead.getNumDownNeighbors(i),
+                    nbrShared.getNumUpNeighbors(i) + nbrShared.getNumDownNeighbors(i));
+        }
+        double u = pcBead.computeAll(true);
+        assertEquals(u, pcShared.computeAll(true), 1e-9 * Math.abs(u));
+        Vector[] fBead = pcBead.getForces();
+        Vector[] fShared = pcShared.getForces();
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < 3; k++) {
+                assertEquals(fBead[i].getX(k), fShared[i].getX(k), 1e-9 * Math.max(1, Math.abs(fBead[i].getX(k))));
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBox() {
+        check(256, 0.8);
+    }
+
+    @Test
+    public void testSmallBox() {
+        // the neighbor range is more than half the box length
+        check(32, 1.0);
+    }
+}
@@ -0,0 +1,75 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial;
+
+import etomica.atom.AtomType;
+import etomica.atom.IAtomList;
+import etomica.chem.elements.ElementSimple;
+import etomica.potential.P2LennardJones;
+import etomica.simulation.Simulation;
+import etomica.space.Space;
+import etomica.species.SpeciesGeneral;
+import etomica.virial.cluster.ClusterWeightAbs;
+import etomica.virial.wheatley.ClusterWheatleySoft;
+import etomica.virial.wheatley.ClusterWheatleySoftBD;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ClusterWheatleySoftTest {
+    int npoints = 8;
+    BoxCluster box;
+    MayerFunction f;
+
+    @BeforeEach
+    public void setup() {
+        Space space = Space.getInstance(3);
+        SpeciesGeneral species = SpeciesGeneral.monatomic(space, AtomType.element(new ElementSimple("")));
+        f = new MayerGeneralSpherical(new P2LennardJones());
+        Simulation sim = new Simulation(space);
+        sim.addSpecies(species);
+        ClusterWheatleySoft c = new ClusterWheatleySoft(npoints, f, 0);
+        box = new BoxCluster(new ClusterWeightAbs(c), space);
+        sim.addBox(box);
+        box.setNMolecules(species, npoints);
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < npoints; i++) {
+            atoms.get(i).getPosition().setX(0, 0.6 * i);
+            atoms.get(i).getPosition().setX(1, 0.3 * (i % 3));
+        }
+        box.trialNotify();
+        box.acceptNotify();
+    }
+
+    @Test
+    public void testThreadedValue() {
+        ClusterWheatleySoft serial = new ClusterWheatleySoft(npoints, f, 0);
+        serial.setTemperature(1.5);
+        ClusterWheatleySoft threaded = new ClusterWheatleySoft(npoints, f, 0);
+        threaded.setTemperature(1.5);
+        threaded.setNumThreads(3);
+        // split even the small layers of an 8-point cluster
+        threaded.setMinParallelWork(0);
+        double value = serial.value(box);
+        Assertions.assertNotEquals(0, value);
+        Assertions.assertEquals(value, threaded.value(box), 0);
+        threaded.setNumThreads(1);
+    }
+
+    @Test
+    public void testThreadedValueBD() {
+        ClusterWheatleySoftBD serial = new ClusterWheatleySoftBD(npoints, f, 30);
+        serial.setTemperature(1.5);
+        ClusterWheatleySoftBD threaded = new ClusterWheatleySoftBD(npoints, f, 30);
+        threaded.setTemperature(1.5);
+        threaded.setNumThreads(3);
+        // split even the small layers of an 8-point cluster
+        threaded.setMinParallelWork(0);
+        double value = serial.value(box);
+        Assertions.assertNotEquals(0, value);
+        Assertions.assertEquals(value, threaded.value(box), 0);
+        threaded.setNumThreads(1);
+    }
+}
@@ -0,0 +1,62 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial.cluster;
+
+import etomica.graph.model.Graph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiagramCacheTest {
+
+    @TempDir
+    File dir;
+
+    private static VirialDiagrams makeDiagrams(File cacheDir) {
+        VirialDiagrams diagrams = new VirialDiagrams(4, false, true);
+        diagrams.setDoReeHoover(false);
+        diagrams.setCacheDir(cacheDir);
+        diagrams.makeVirialDiagrams();
+        return diagrams;
+    }
+
+    private static List<String> describe(VirialDiagrams diagrams) {
+        List<String> list = new ArrayList<>();
+        for (Graph g : diagrams.getVirialGraphs()) {
+            Graph c = diagrams.getCancelMap().get(g);
+            list.add(g.coefficient() + " " + g + (c == null ? "" : " / " + c.coefficient() + " " + c));
+        }
+        for (Graph g : diagrams.getExtraDisconnectedVirialGraphs()) {
+            list.add(g.coefficient() + " " + g);
+        }
+        return list;
+    }
+
+    @Test
+    public void testVirialDiagrams() {
+        VirialDiagrams generated = makeDiagrams(dir);
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        long modified = files[0].lastModified();
+
+        VirialDiagrams cached = makeDiagrams(dir);
+        assertEquals(modified, files[0].lastModified());
+        List<String> expected = describe(generated);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, describe(cached));
+
+        // different options get a different cache file
+        VirialDiagrams other = new VirialDiagrams(3, false, true);
+        other.setDoReeHoover(false);
+        other.setCacheDir(dir);
+        other.makeVirialDiagrams();
+        assertEquals(2, dir.listFiles().length);
+    }
+}
@@ -0,0 +1,73 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial.simulations;
+
+import etomica.atom.AtomType;
+import etomica.chem.elements.ElementSimple;
+import etomica.potential.IPotential2;
+import etomica.potential.P2LennardJones;
+import etomica.space.Space;
+import etomica.space3d.Space3D;
+import etomica.species.ISpecies;
+import etomica.species.SpeciesGeneral;
+import etomica.virial.MayerEHardSphere;
+import etomica.virial.MayerESpherical;
+import etomica.virial.MayerGeneralSpherical;
+import etomica.virial.MayerHardSphere;
+import etomica.virial.cluster.ClusterAbstract;
+import etomica.virial.cluster.Standard;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class VirialOverlapWalkersTest {
+
+    protected static VirialOverlapWalkers run(int numThreads) {
+        Space space = Space3D.getInstance();
+        VirialOverlapWalkers walkers = new VirialOverlapWalkers(3, new int[]{1, 2}, (i, random) -> {
+            double temperature = 1;
+            MayerHardSphere fRef = new MayerHardSphere(1.5);
+            MayerEHardSphere eRef = new MayerEHardSphere(1.5);
+            IPotential2 pTarget = new P2LennardJones(1.0, 1.0);
+            MayerGeneralSpherical fTarget = new MayerGeneralSpherical(pTarget);
+            MayerESpherical eTarget = new MayerESpherical(pTarget);
+            ClusterAbstract targetCluster = Standard.virialCluster(3, fTarget, false, eTarget, true);
+            targetCluster.setTemperature(temperature);
+            ClusterAbstract refCluster = Standard.virialCluster(3, fRef, false, eRef, true);
+            refCluster.setTemperature(temperature);
+            ISpecies species = SpeciesGeneral.monatomic(space, AtomType.element(new ElementSimple("LJ")));
+            SimulationVirialOverlap2 sim = new SimulationVirialOverlap2(space, new ISpecies[]{species}, new int[]{3}, temperature, refCluster, targetCluster);
+            sim.setRandom(random);
+            sim.init();
+            sim.integratorOS.setAggressiveAdjustStepFraction(true);
+            sim.integratorOS.setNumSubSteps(1000);
+            return sim;
+        });
+        walkers.setNumThreads(numThreads);
+        walkers.equilibrate(null, 10, 25);
+        walkers.run(400);
+        return walkers;
+    }
+
+    @Test
+    public void testWalkers() {
+        VirialOverlapWalkers walkers = run(2);
+        double[] ratioAndError = walkers.getAverageAndError();
+        // a single 1000-step simulation gives 0.0604 +/- 0.0034
+        Assertions.assertEquals(0.0604, ratioAndError[0], 0.011);
+        Assertions.assertTrue(Math.abs(ratioAndError[1] - 0.0034) < 0.0006, "combined uncertainty " + ratioAndError[1]);
+        for (SimulationVirialOverlap2 w : walkers.getWalkers()) {
+            Assertions.assertEquals(walkers.getWalkers()[0].refPref, w.refPref);
+            Assertions.assertTrue(w.dvo.getAverageAndError()[1] > ratioAndError[1]);
+        }
+        long nSamples = 0;
+        for (SimulationVirialOverlap2 w : walkers.getWalkers()) {
+            nSamples += w.accumulators[1].getBlockCount();
+        }
+        Assertions.assertEquals(nSamples, walkers.getAccumulators()[1].getBlockCount());
+
+        // walkers are independent, so threading must not change the results
+        Assertions.assertArrayEquals(ratioAndError, run(1).getAverageAndError());
+    }
+}
@@ -0,0 +1,369 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.action;
+
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.integrator.Integrator;
+import etomica.integrator.IntegratorEvent;
+import etomica.integrator.IntegratorListener;
+import etomica.integrator.IntegratorMD;
+import etomica.space.Vector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Listener that streams the box's atom positions to a trajectory file every
+ * interval steps.  Coordinates are rounded to a configurable precision and
+ * stored as bit-packed integers (as in XTC files), so a frame typically takes
+ * a fraction of the space of raw doubles.
+ * <p>
+ * The integrator thread only copies the positions; frames are compressed and
+ * written by a background thread.  At most queueCapacity frames wait to be
+ * written; if the writer falls behind, the integrator waits for it.  close()
+ * must be called at the end of the run to write the remaining frames and the
+ * frame index.  ConfigurationTrajectory reads the file and can jump directly
+ * to any frame.
+ * <p>
+ * The file (little-endian) has a header (MAGIC, VERSION, D) followed by the
+ * frames.  Each frame has FRAME_MAGIC, the length of the rest of the frame,
+ * step, time, box dimensions, number of atoms, precision, and then for each
+ * dimension the minimum (rounded) coordinate and the number of bits used
+ * before the packed coordinates.  The index (offset of each frame, number of
+ * frames, offset of the index, INDEX_MAGIC) comes last.  If a run ends
+ * without close, the frames that made it to the file can still be read.
+ */
+public class TrajectoryWriter implements IntegratorListener, Closeable {
+
+    public static final int MAGIC = 0x4a545445; // "ETTJ"
+    public static final int FRAME_MAGIC = 0x4d524646; // "FFRM"
+    public static final int INDEX_MAGIC = 0x58444e49; // "INDX"
+    public static final int VERSION = 1;
+
+    protected static final Frame END = new Frame(0, 0);
+
+    protected final Box box;
+    protected final int D;
+    protected final FileChannel channel;
+    protected final Vector work;
+    protected final ArrayBlockingQueue<Frame> queue;
+    protected final ConcurrentLinkedQueue<Frame> freeFrames;
+    protected final Thread writerThread;
+    protected final List<Long> frameOffsets;
+    protected ByteBuffer buffer;
+    protected long filePosition;
+    protected double precision;
+    protected int interval, intervalCountdown;
+    protected boolean doApplyPBC;
+    protected volatile Throwable writerError;
+    protected boolean closed;
+
+    public TrajectoryWriter(Box box, String filename) {
+        this(box, filename, 16);
+    }
+
+    /**
+     * @param queueCapacity the number of frames that can be waiting to be
+     *                      written before the integrator has to wait.
+     */
+    public TrajectoryWriter(Box box, String filename, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        this.box = box;
+        D = box.getSpace().D();
+        work = box.getSpace().makeVector();
+        precision = 1e-3;
+        interval = intervalCountdown = 1;
+        doApplyPBC = true;
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        freeFrames = new ConcurrentLinkedQueue<>();
+        frameOffsets = new ArrayList<>();
+        buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(D);
+            writeBuffer();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        writerThread = new Thread(this::writeFrames, "TrajectoryWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Sets the precision with which coordinates are stored.  Coordinates
+     * read back from the file will be within precision/2 of the actual
+     * coordinates.
+     */
+    public void setPrecision(double newPrecision) {
+        if (!(newPrecision > 0)) {
+            throw new IllegalArgumentException("precision must be positive");
+        }
+        precision = newPrecision;
+    }
+
+    public double getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Sets the number of integrator steps between frames.
+     */
+    public void setInterval(int newInterval) {
+        if (newInterval < 1) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        interval = intervalCountdown = newInterval;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Directs the writer to apply periodic boundary conditions or not (true
+     * by default).
+     */
+    public void setDoApplyPBC(boolean newDoApplyPBC) {
+        doApplyPBC = newDoApplyPBC;
+    }
+
+    public boolean getDoApplyPBC() {
+        return doApplyPBC;
+    }
+
+    /**
+     * Returns the number of frames written to the file so far.
+     */
+    public synchronized int getFrameCount() {
+        return frameOffsets.size();
+    }
+
+    @Override
+    public void integratorStepFinished(IntegratorEvent e) {
+        if (--intervalCountdown > 0) return;
+        intervalCountdown = interval;
+        Integrator integrator = e.getIntegrator();
+        double time = integrator instanceof IntegratorMD ? ((IntegratorMD) integrator).getCurrentTime() : integrator.getStepCount();
+        writeFrame(integrator.getStepCount(), time);
+    }
+
+    /**
+     * Copies the current configuration and queues it to be written as a frame
+     * with the given step and time.
+     */
+    public void writeFrame(long step, double time) {
+        if (closed) {
+            throw new IllegalStateException("trajectory has been closed");
+        }
+        checkWriter();
+        IAtomList leafList = box.getLeafList();
+        int n = leafList.size();
+        Frame frame = freeFrames.poll();
+        if (frame == null || frame.x.length != n * D) {
+            frame = new Frame(n, D);
+        }
+        frame.step = step;
+        frame.time = time;
+        frame.precision = precision;
+        Vector boxSize = box.getBoundary().getBoxSize();
+        for (int k = 0; k < D; k++) {
+            frame.boxSize[k] = boxSize.getX(k);
+        }
+        double[] x = frame.x;
+        for (int i = 0; i < n; i++) {
+            Vector p = leafList.get(i).getPosition();
+            if (doApplyPBC) {
+                work.E(p);
+                work.PE(box.getBoundary().centralImage(work));
+                p = work;
+            }
+            for (int k = 0; k < D; k++) {
+                x[i * D + k] = p.getX(k);
+            }
+        }
+        try {
+            queue.put(frame);
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Writes any queued frames and the frame index and closes the file.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+        checkWriter();
+    }
+
+    protected void checkWriter() {
+        if (writerError != null) {
+            throw new RuntimeException("trajectory writer failed", writerError);
+        }
+    }
+
+    protected void writeFrames() {
+        try {
+            while (true) {
+                Frame frame = queue.take();
+                if (frame == END) break;
+                if (writerError == null) {
+                    encode(frame);
+                    long offset = filePosition;
+                    writeBuffer();
+                    synchronized (this) {
+                        frameOffsets.add(offset);
+                    }
+                }
+                freeFrames.offer(frame);
+            }
+            writeIndex();
+            channel.close();
+        } catch (Throwable t) {
+            writerError = t;
+            // keep draining the queue so the integrator doesn't block
+            while (true) {
+                try {
+                    if (queue.take() == END) break;
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    protected void ensureCapacity(int n) {
+        if (buffer.capacity() < n) {
+            buffer = ByteBuffer.allocateDirect(Math.max(n, 2 * buffer.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Compresses the frame into buffer.
+     */
+    protected void encode(Frame frame) {
+        int n = frame.x.length / D;
+        double[] x = frame.x;
+        double p = frame.precision;
+        long[] min = new long[D];
+        long[] max = new long[D];
+        Arrays.fill(min, Long.MAX_VALUE);
+        Arrays.fill(max, Long.MIN_VALUE);
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < D; k++) {
+                long q = Math.round(x[i * D + k] / p);
+                if (q < min[k]) min[k] = q;
+                if (q > max[k]) max[k] = q;
+            }
+        }
+        int[] bits = new int[D];
+        long bitsPerAtom = 0;
+        for (int k = 0; k < D && n > 0; k++) {
+            long range = max[k] - min[k];
+            if (range < 0 || range >= (1L << 32)) {
+                throw new RuntimeException("coordinates span too many multiples of precision " + p);
+            }
+            bits[k] = 64 - Long.numberOfLeadingZeros(range);
+            bitsPerAtom += bits[k];
+        }
+        long packedBytes = (n * bitsPerAtom + 7) / 8;
+        long frameBytes = 4 + 4 + 8 + 8 + 8L * D + 4 + 8 + D * (8 + 1) + packedBytes;
+        if (frameBytes > Integer.MAX_VALUE) {
+            throw new RuntimeException("frame is too large");
+        }
+        buffer.clear();
+        ensureCapacity((int) frameBytes);
+        buffer.putInt(FRAME_MAGIC);
+        buffer.putInt((int) frameBytes - 8);
+        buffer.putLong(frame.step);
+        buffer.putDouble(frame.time);
+        for (int k = 0; k < D; k++) {
+            buffer.putDouble(frame.boxSize[k]);
+        }
+        buffer.putInt(n);
+        buffer.putDouble(p);
+        for (int k = 0; k < D; k++) {
+            buffer.putLong(n > 0 ? min[k] : 0);
+            buffer.put((byte) bits[k]);
+        }
+        long acc = 0;
+        int nBits = 0;
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < D; k++) {
+                if (bits[k] == 0) continue;
+                long v = Math.round(x[i * D + k] / p) - min[k];
+                acc |= v << nBits;
+                nBits += bits[k];
+                while (nBits >= 8) {
+                    buffer.put((byte) acc);
+                    acc >>>= 8;
+                    nBits -= 8;
+                }
+            }
+        }
+        if (nBits > 0) {
+            buffer.put((byte) acc);
+        }
+    }
+
+    protected void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            filePosition += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    protected void writeIndex() throws IOException {
+        long indexOffset = filePosition;
+        ensureCapacity(8 * frameOffsets.size() + 16);
+        buffer.clear();
+        for (long offset : frameOffsets) {
+            buffer.putLong(offset);
+        }
+        buffer.putInt(frameOffsets.size());
+        buffer.putLong(indexOffset);
+        buffer.putInt(INDEX_MAGIC);
+        writeBuffer();
+    }
+
+    protected static class Frame {
+        public final double[] x;
+        public final double[] boxSize;
+        public long step;
+        public double time;
+        public double precision;
+
+        public Frame(int n, int D) {
+            x = new double[n * D];
+            boxSize = new double[D];
+        }
+    }
+}
@@ -47,6 +47,7 @@ public class Controller {
 
     private final ControllerHandle handle = new ControllerHandle();
     private volatile ActivityHandle<?> currentTask;
+    private final List<IAction> flushActions = new CopyOnWriteArrayList<>();
 
 
     public Controller() {
@@ -89,6 +90,27 @@ public class Controller {
     public void runActivityBlocking(Activity activity) {
         this.handle.pauseFlag.set(false);
         activity.runActivity(this.handle);
+        this.runFlushActions();
+    }
+
+    /**
+     * Adds an action to be performed after runActivityBlocking returns and
+     * after the activities end in halt or completeActivities; for example,
+     * to wait for data being processed on other threads.
+     * @param action
+     */
+    public void addFlushAction(IAction action) {
+        this.flushActions.add(action);
+    }
+
+    public void removeFlushAction(IAction action) {
+        this.flushActions.remove(action);
+    }
+
+    private void runFlushActions() {
+        for (IAction action : this.flushActions) {
+            action.actionPerformed();
+        }
     }
 
     private void tryToGetIntegrator(Activity activity) {
@@ -154,6 +176,7 @@ public class Controller {
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
+        this.runFlushActions();
     }
 
     public void restartCurrentActivity() {
@@ -173,6 +196,7 @@ public class Controller {
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
+        this.runFlushActions();
     }
 
     public boolean isPaused() {
@@ -8,6 +8,8 @@ import etomica.molecule.IMolecule;
 import etomica.molecule.Molecule;
 import etomica.space.Space;
 import etomica.space.Vector;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 import etomica.util.Debug;
 
 import java.io.BufferedReader;
@@ -133,4 +135,16 @@ public class Atom implements IAtom {
         int D = position.getD();
         for (int i = 0; i < D; i++) position.setX(i, Double.parseDouble(bits[1 + i]));
     }
+
+    @Override
+    public void saveState(CheckpointWriter cw) throws IOException {
+        cw.putInt(leafIndex);
+        cw.putVector(position);
+    }
+
+    @Override
+    public void restoreState(CheckpointReader cr) throws IOException {
+        leafIndex = cr.getInt();
+        cr.getVector(position);
+    }
 }
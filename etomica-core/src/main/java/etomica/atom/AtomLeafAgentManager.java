@@ -161,6 +161,21 @@ public final class AtomLeafAgentManager<E> extends BoxEventListenerAdapter {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+        int[] oldIndices = e.getOldIndices();
+        E[] oldAgents = (E[]) new Object[oldIndices.length];
+        for (int i = 0; i < oldIndices.length; i++) {
+            oldAgents[i] = this.agents.remove(i);
+        }
+        for (int i = 0; i < oldIndices.length; i++) {
+            E agent = oldAgents[oldIndices[i]];
+            if (agent != null) {
+                this.agents.put(i, agent);
+            }
+        }
+    }
+
     /**
      * Interface for an object that wants an agent associated with each Atom in
      * a Box.
@@ -6,6 +6,8 @@ package etomica.atom;
 
 import etomica.space.Space;
 import etomica.space.Vector;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -45,4 +47,16 @@ public class AtomLeafDynamic extends Atom implements IAtomKinetic {
         int D = position.getD();
         for (int i = 0; i < D; i++) velocity.setX(i, Double.parseDouble(bits[i]));
     }
+
+    @Override
+    public void saveState(CheckpointWriter cw) throws IOException {
+        super.saveState(cw);
+        cw.putVector(velocity);
+    }
+
+    @Override
+    public void restoreState(CheckpointReader cr) throws IOException {
+        super.restoreState(cr);
+        cr.getVector(velocity);
+    }
 }
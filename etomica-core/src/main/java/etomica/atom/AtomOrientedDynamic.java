@@ -9,6 +9,8 @@ import etomica.space.Space;
 import etomica.space.Vector;
 import etomica.space3d.Orientation3D;
 import etomica.space3d.OrientationFull3D;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -84,4 +86,30 @@ public class AtomOrientedDynamic extends AtomLeafDynamic implements
             iOrientation.setDirection(direction);
         }
     }
+
+    @Override
+    public void saveState(CheckpointWriter cw) throws IOException {
+        super.saveState(cw);
+        cw.putVector(angularVelocity);
+        Vector direction = iOrientation.getDirection();
+        cw.putVector(direction);
+        if (iOrientation instanceof OrientationFull3D) {
+            cw.putVector(((OrientationFull3D) iOrientation).getSecondaryDirection());
+        }
+    }
+
+    @Override
+    public void restoreState(CheckpointReader cr) throws IOException {
+        super.restoreState(cr);
+        cr.getVector(angularVelocity);
+        Vector direction = iOrientation.getDirection();
+        cr.getVector(direction);
+        if (iOrientation instanceof OrientationFull3D) {
+            Vector secondaryDirection = ((OrientationFull3D) iOrientation).getSecondaryDirection();
+            cr.getVector(secondaryDirection);
+            ((OrientationFull3D) iOrientation).setDirections(direction, secondaryDirection);
+        } else {
+            iOrientation.setDirection(direction);
+        }
+    }
 }
@@ -7,6 +7,8 @@ package etomica.atom;
 import etomica.space.Space;
 import etomica.space.Vector;
 import etomica.spaceNd.VectorND;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -40,4 +42,16 @@ public class AtomOrientedQuaternion extends Atom {
         String[] bits = br.readLine().split(" ");
         for (int i = 0; i < 4; i++) position.setX(i, Double.parseDouble(bits[i]));
     }
+
+    @Override
+    public void saveState(CheckpointWriter cw) throws IOException {
+        super.saveState(cw);
+        cw.putVector(quaternion);
+    }
+
+    @Override
+    public void restoreState(CheckpointReader cr) throws IOException {
+        super.restoreState(cr);
+        cr.getVector(quaternion);
+    }
 }
@@ -16,6 +16,8 @@ import etomica.space.BoundaryRectangularPeriodic;
 import etomica.space.Space;
 import etomica.species.ISpecies;
 import etomica.util.Arrays;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 import etomica.util.Debug;
 import etomica.util.Statefull;
 
@@ -345,6 +347,36 @@ public class Box implements Statefull {
         return leafList;
     }
 
+    /**
+     * Renumbers the leaf atoms.  The atom at leaf index oldIndices[i] is given
+     * leaf index i.  Molecules and their order are not affected.  Listeners
+     * are notified via boxAtomLeafIndicesPermuted.
+     *
+     * @param oldIndices the current leaf index of the atom to place at each
+     *                   position; this must be a permutation of all leaf
+     *                   indices.  The array must not be modified afterwards.
+     */
+    public void permuteLeafAtoms(int[] oldIndices) {
+        int n = leafList.size();
+        if (oldIndices.length != n) {
+            throw new IllegalArgumentException("expected " + n + " indices, got " + oldIndices.length);
+        }
+        IAtom[] atoms = new IAtom[n];
+        for (int i = 0; i < n; i++) {
+            IAtom atom = leafList.get(oldIndices[i]);
+            if (atoms[oldIndices[i]] != null) {
+                throw new IllegalArgumentException("leaf index " + oldIndices[i] + " appears more than once");
+            }
+            atoms[oldIndices[i]] = atom;
+        }
+        leafList.clear();
+        for (int i = 0; i < n; i++) {
+            IAtom atom = atoms[oldIndices[i]];
+            atom.setLeafIndex(i);
+            leafList.add(atom);
+        }
+        eventManager.atomLeafIndicesPermuted(oldIndices);
+    }
 
     protected void notifyNewMolecules(ISpecies species, int numNewMolecules, int moleculeLeafAtoms) {
         if (numNewMolecules < 1) return;
@@ -379,34 +411,78 @@ public class Box implements Statefull {
         AtomArrayList newList = new AtomArrayList(leafList.size());
         newList.ensureCapacity(leafList.size());
         for (MoleculeArrayList moleculeList : moleculeLists) {
-            int s = Integer.parseInt(br.readLine());
-            int currentNMolecules = moleculeList.size();
-            if (s > currentNMolecules) {
-                if (currentNMolecules == 0) {
-                    throw new RuntimeException("If I'm going to make new molecules, there needs to be at least one to start with.");
-                }
-                ISpecies species = moleculeList.get(0).getType();
-                moleculeLists[species.getIndex()].ensureCapacity(s);
-                int moleculeLeafAtoms = moleculeList.get(0).getChildList().size();
-                leafList.ensureCapacity(leafList.size() + (s - currentNMolecules) * moleculeLeafAtoms);
-                newList.ensureCapacity(leafList.size());
-                for (int j = currentNMolecules; j < s; j++) {
-                    addMolecule(species.makeMolecule());
-                }
+            restoreNMolecules(moleculeList, Integer.parseInt(br.readLine()), newList);
+            for (IMolecule iMolecule : moleculeList) {
+                iMolecule.restoreState(br);
+                restoreLeafIndices(iMolecule, newList);
             }
-            for (int j = currentNMolecules; j > s; j--) {
-                removeMolecule(moleculeList.get(j - 1));
+        }
+        leafList.clear();
+        leafList.addAll(newList);
+    }
+
+    @Override
+    public void saveState(CheckpointWriter cw) throws IOException {
+        cw.putInt(moleculeLists.length);
+        for (MoleculeArrayList moleculeList : moleculeLists) {
+            cw.putInt(moleculeList.size());
+            for (IMolecule iMolecule : moleculeList) {
+                iMolecule.saveState(cw);
             }
+        }
+    }
+
+    @Override
+    public void restoreState(CheckpointReader cr) throws IOException {
+        int nSpecies = cr.getInt();
+        if (nSpecies != moleculeLists.length) {
+            throw new RuntimeException("checkpoint has " + nSpecies + " species, but box has " + moleculeLists.length);
+        }
+        AtomArrayList newList = new AtomArrayList(leafList.size());
+        newList.ensureCapacity(leafList.size());
+        for (MoleculeArrayList moleculeList : moleculeLists) {
+            restoreNMolecules(moleculeList, cr.getInt(), newList);
             for (IMolecule iMolecule : moleculeList) {
-                iMolecule.restoreState(br);
-                for (IAtom atom : iMolecule.getChildList()) {
-                    int leafIndex = atom.getLeafIndex();
-                    while (newList.size() <= leafIndex) newList.add(null);
-                    newList.set(leafIndex, atom);
-                }
+                iMolecule.restoreState(cr);
+                restoreLeafIndices(iMolecule, newList);
             }
         }
         leafList.clear();
         leafList.addAll(newList);
     }
+
+    /**
+     * Adds or removes molecules so that moleculeList has s molecules, in
+     * preparation for restoring their state.
+     */
+    protected void restoreNMolecules(MoleculeArrayList moleculeList, int s, AtomArrayList newList) {
+        int currentNMolecules = moleculeList.size();
+        if (s > currentNMolecules) {
+            if (currentNMolecules == 0) {
+                throw new RuntimeException("If I'm going to make new molecules, there needs to be at least one to start with.");
+            }
+            ISpecies species = moleculeList.get(0).getType();
+            moleculeLists[species.getIndex()].ensureCapacity(s);
+            int moleculeLeafAtoms = moleculeList.get(0).getChildList().size();
+            leafList.ensureCapacity(leafList.size() + (s - currentNMolecules) * moleculeLeafAtoms);
+            newList.ensureCapacity(leafList.size());
+            for (int j = currentNMolecules; j < s; j++) {
+                addMolecule(species.makeMolecule());
+            }
+        }
+        for (int j = currentNMolecules; j > s; j--) {
+            removeMolecule(moleculeList.get(j - 1));
+        }
+    }
+
+    /**
+     * Puts the molecule's atoms into newList at their (restored) leaf indices.
+     */
+    protected void restoreLeafIndices(IMolecule molecule, AtomArrayList newList) {
+        for (IAtom atom : molecule.getChildList()) {
+            int leafIndex = atom.getLeafIndex();
+            while (newList.size() <= leafIndex) newList.add(null);
+            newList.set(leafIndex, atom);
+        }
+    }
 }
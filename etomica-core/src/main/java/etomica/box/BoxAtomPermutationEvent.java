@@ -0,0 +1,61 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.box;
+
+import java.util.Arrays;
+
+/**
+ * Event that conveys that the leaf atoms of a Box have been renumbered.  The
+ * atom now at leaf index i was previously at getOldIndices()[i].
+ */
+public class BoxAtomPermutationEvent extends BoxEvent {
+
+    protected final int[] oldIndices;
+
+    public BoxAtomPermutationEvent(Box box, int[] oldIndices) {
+        super(box);
+        this.oldIndices = oldIndices;
+    }
+
+    /**
+     * @return the previous leaf index of each atom, indexed by the new leaf
+     * index.  The array is shared and must not be modified.
+     */
+    public int[] getOldIndices() {
+        return oldIndices;
+    }
+
+    /**
+     * Reorders the leading elements of an array indexed by leaf index.  This
+     * and the other permute methods leave alone an array that is null or too
+     * short to hold all the atoms (one that has not been allocated for them
+     * yet).
+     */
+    public void permute(double[] array) {
+        permute(array, 1);
+    }
+
+    /**
+     * Reorders an array holding stride consecutive elements per leaf atom.
+     */
+    public void permute(double[] array, int stride) {
+        if (array == null || array.length < oldIndices.length * stride) return;
+        double[] old = Arrays.copyOf(array, oldIndices.length * stride);
+        for (int i = 0; i < oldIndices.length; i++) {
+            System.arraycopy(old, oldIndices[i] * stride, array, i * stride, stride);
+        }
+    }
+
+    /**
+     * Reorders the leading elements of an array indexed by leaf index.
+     */
+    public <T> void permute(T[] array) {
+        if (array == null || array.length < oldIndices.length) return;
+        T[] old = Arrays.copyOf(array, oldIndices.length);
+        for (int i = 0; i < oldIndices.length; i++) {
+            array[i] = old[oldIndices[i]];
+        }
+    }
+}
@@ -46,6 +46,16 @@ public interface BoxEventListener {
      */
     default void boxAtomLeafIndexChanged(BoxAtomIndexEvent e) {}
 
+    /**
+     * Called when the leaf atoms have been renumbered all at once, for
+     * instance to put atoms that are close in space close in the leaf list.
+     * Listeners that keep data by leaf index need to reorder it.
+     *
+     * @param e the event, which contains the box and the old leaf index of
+     *          each atom.
+     */
+    default void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {}
+
     /**
      * Called when an molecule's index has changed.  This typically happens
      * after one molecule is removed and the indices of another molecule is
@@ -62,6 +62,13 @@ public class BoxEventManager {
         }
     }
 
+    public void atomLeafIndicesPermuted(int[] oldIndices) {
+        BoxAtomPermutationEvent event = new BoxAtomPermutationEvent(box, oldIndices);
+        for (BoxEventListener listener : listeners) {
+            listener.boxAtomLeafIndicesPermuted(event);
+        }
+    }
+
     public void numberMolecules(ISpecies species, int count) {
         BoxMoleculeCountEvent event = new BoxMoleculeCountEvent(box, species, count);
         for (BoxEventListener listener : listeners) {
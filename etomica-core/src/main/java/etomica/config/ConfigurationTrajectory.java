@@ -0,0 +1,252 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.config;
+
+import etomica.action.TrajectoryWriter;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.space.Vector;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads frames from a trajectory file written by TrajectoryWriter.  Any frame
+ * can be read directly using the index at the end of the file.  If the file
+ * has no index (the writer was not closed), the frames are found by skipping
+ * from one frame header to the next when the file is opened.
+ * <p>
+ * initializeCoordinates places the box's atoms at the positions from the
+ * current frame (set by setFrame).
+ */
+public class ConfigurationTrajectory implements Configuration, Closeable {
+
+    protected final String filename;
+    protected final FileChannel channel;
+    protected final int D;
+    protected final long[] frameOffsets;
+    protected ByteBuffer buffer;
+    protected int currentFrame = -1;
+    protected long step;
+    protected double time, precision;
+    protected final double[] boxSize;
+    protected double[] x;
+    protected int nAtoms;
+
+    public ConfigurationTrajectory(String filename) {
+        this.filename = filename;
+        buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+            read(0, 12);
+            if (buffer.getInt() != TrajectoryWriter.MAGIC) {
+                throw new RuntimeException(filename + " is not a trajectory file");
+            }
+            int version = buffer.getInt();
+            if (version != TrajectoryWriter.VERSION) {
+                throw new RuntimeException(filename + " has unsupported trajectory version " + version);
+            }
+            D = buffer.getInt();
+            long[] offsets = readIndex();
+            frameOffsets = offsets != null ? offsets : scanFrames();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        boxSize = new double[D];
+        x = new double[0];
+    }
+
+    /**
+     * Reads n bytes starting at position into buffer and flips it.
+     */
+    protected void read(long position, int n) throws IOException {
+        if (buffer.capacity() < n) {
+            buffer = ByteBuffer.allocate(Math.max(n, 2 * buffer.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+        buffer.limit(n);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("unexpected end of trajectory " + filename);
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Returns the frame offsets from the index at the end of the file, or null
+     * if the file has no index.
+     */
+    protected long[] readIndex() throws IOException {
+        long size = channel.size();
+        if (size < 12 + 16) return null;
+        read(size - 16, 16);
+        int nFrames = buffer.getInt();
+        long indexOffset = buffer.getLong();
+        if (buffer.getInt() != TrajectoryWriter.INDEX_MAGIC || nFrames < 0
+                || indexOffset + 8L * nFrames + 16 != size) {
+            return null;
+        }
+        long[] offsets = new long[nFrames];
+        for (int i = 0; i < nFrames; i += 4096) {
+            int m = Math.min(4096, nFrames - i);
+            read(indexOffset + 8L * i, 8 * m);
+            for (int j = 0; j < m; j++) {
+                offsets[i + j] = buffer.getLong();
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Finds the complete frames in a file without an index.
+     */
+    protected long[] scanFrames() throws IOException {
+        long size = channel.size();
+        long[] offsets = new long[16];
+        int nFrames = 0;
+        long pos = 12;
+        while (pos + 8 <= size) {
+            read(pos, 8);
+            if (buffer.getInt() != TrajectoryWriter.FRAME_MAGIC) break;
+            long next = pos + 8 + (buffer.getInt() & 0xffffffffL);
+            if (next > size) break;
+            if (nFrames == offsets.length) offsets = Arrays.copyOf(offsets, 2 * nFrames);
+            offsets[nFrames++] = pos;
+            pos = next;
+        }
+        return Arrays.copyOf(offsets, nFrames);
+    }
+
+    public int getFrameCount() {
+        return frameOffsets.length;
+    }
+
+    /**
+     * Reads and decompresses frame k.
+     */
+    public void setFrame(int k) {
+        if (k < 0 || k >= frameOffsets.length) {
+            throw new IllegalArgumentException("frame " + k + " out of range (" + frameOffsets.length + " frames)");
+        }
+        if (k == currentFrame) return;
+        try {
+            read(frameOffsets[k], 8);
+            if (buffer.getInt() != TrajectoryWriter.FRAME_MAGIC) {
+                throw new RuntimeException("frame " + k + " of " + filename + " is corrupt");
+            }
+            read(frameOffsets[k] + 8, buffer.getInt());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        step = buffer.getLong();
+        time = buffer.getDouble();
+        for (int j = 0; j < D; j++) {
+            boxSize[j] = buffer.getDouble();
+        }
+        nAtoms = buffer.getInt();
+        precision = buffer.getDouble();
+        long[] min = new long[D];
+        int[] bits = new int[D];
+        for (int j = 0; j < D; j++) {
+            min[j] = buffer.getLong();
+            bits[j] = buffer.get();
+        }
+        if (x.length != nAtoms * D) {
+            x = new double[nAtoms * D];
+        }
+        long acc = 0;
+        int nBits = 0;
+        for (int i = 0; i < nAtoms; i++) {
+            for (int j = 0; j < D; j++) {
+                int b = bits[j];
+                while (nBits < b) {
+                    acc |= (buffer.get() & 0xffL) << nBits;
+                    nBits += 8;
+                }
+                long v = acc & ((1L << b) - 1);
+                acc >>>= b;
+                nBits -= b;
+                x[i * D + j] = (min[j] + v) * precision;
+            }
+        }
+        currentFrame = k;
+    }
+
+    public int getFrame() {
+        return currentFrame;
+    }
+
+    public int getDimension() {
+        return D;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the precision with which coordinates in the current frame were
+     * stored.
+     */
+    public double getPrecision() {
+        return precision;
+    }
+
+    public int getNumAtoms() {
+        return nAtoms;
+    }
+
+    /**
+     * Returns the box dimensions for the current frame.
+     */
+    public double[] getBoxSize() {
+        return boxSize;
+    }
+
+    /**
+     * Returns the atom coordinates for the current frame (x, y, z for the
+     * first atom, then x, y, z for the second, etc.).  The array is reused
+     * for the next frame.
+     */
+    public double[] getCoordinates() {
+        return x;
+    }
+
+    public void initializeCoordinates(Box box) {
+        if (currentFrame < 0) {
+            setFrame(0);
+        }
+        IAtomList leafList = box.getLeafList();
+        if (leafList.size() != nAtoms) {
+            throw new RuntimeException("frame has " + nAtoms + " atoms, but box has " + leafList.size());
+        }
+        for (int i = 0; i < nAtoms; i++) {
+            Vector p = leafList.get(i).getPosition();
+            for (int j = 0; j < D; j++) {
+                p.setX(j, x[i * D + j]);
+            }
+        }
+    }
+
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -9,6 +9,8 @@ import etomica.data.types.DataDoubleArray;
 import etomica.data.types.DataGroup;
 import etomica.data.types.DataGroup.DataInfoGroup;
 import etomica.units.dimensions.Null;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 import etomica.util.Statefull;
 
 import java.io.BufferedReader;
@@ -309,4 +311,46 @@ public abstract class AccumulatorAverage extends DataAccumulator implements Stat
             }
         }
     }
+
+    public void saveState(CheckpointWriter cw) throws IOException {
+        cw.putLong(count);
+        cw.putLong(blockCountDown);
+        writeData(cw, mostRecent);
+    }
+
+    public void restoreState(CheckpointReader cr) throws IOException {
+        count = cr.getLong();
+        blockCountDown = cr.getLong();
+        readData(cr, mostRecent);
+    }
+
+    /**
+     * Writes the values of a DataDouble or DataDoubleArray.
+     */
+    protected static void writeData(CheckpointWriter cw, IData data) throws IOException {
+        cw.putInt(data.getLength());
+        for (int i=0; i<data.getLength(); i++) {
+            cw.putDouble(data.getValue(i));
+        }
+    }
+
+    /**
+     * Reads values written by writeData into the given DataDouble or
+     * DataDoubleArray.
+     */
+    protected static void readData(CheckpointReader cr, IData data) throws IOException {
+        int n = cr.getInt();
+        if (n != data.getLength()) {
+            throw new RuntimeException("checkpoint has "+n+" values, but data has "+data.getLength());
+        }
+        if (data instanceof DataDouble) {
+            ((DataDouble) data).x = cr.getDouble();
+        }
+        else if (data instanceof DataDoubleArray) {
+            cr.getDoubles(((DataDoubleArray) data).getData());
+        }
+        else {
+            throw new RuntimeException("we only handle DataDouble and DataDoubleArray");
+        }
+    }
 }
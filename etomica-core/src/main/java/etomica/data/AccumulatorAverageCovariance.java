@@ -96,6 +96,18 @@ public class AccumulatorAverageCovariance extends AccumulatorAverageFixed {
         super.doBlockSum();
     }
 
+    public void merge(AccumulatorAverageFixed other) {
+        if (!(other instanceof AccumulatorAverageCovariance) || ((AccumulatorAverageCovariance) other).fullCovariance != fullCovariance) {
+            throw new IllegalArgumentException("can only merge with an AccumulatorAverageCovariance of the same kind");
+        }
+        super.merge(other);
+        AccumulatorAverageCovariance otherCov = (AccumulatorAverageCovariance) other;
+        if (otherCov.covSum != null) {
+            covSum.PE(otherCov.covSum);
+            blockCovSum.PE(otherCov.blockCovSum);
+        }
+    }
+
     public IData getData() {
         if (average == null)
             return null;
@@ -9,6 +9,8 @@ import etomica.data.types.DataDoubleArray;
 import etomica.data.types.DataGroup.DataInfoGroup;
 import etomica.math.function.Function;
 import etomica.math.function.IFunction;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 
 import java.io.*;
 import java.util.Arrays;
@@ -234,6 +236,69 @@ public class AccumulatorAverageFixed extends AccumulatorAverage {
         currentBlockAvg.E(0.0);
     }
 
+    /**
+     * Adds the statistics collected by the other accumulator (which must have
+     * the same block size and data length) to this one, as if the other
+     * accumulator's data had been added after this accumulator's data.
+     * Complete blocks are combined exactly.  The incomplete blocks of the
+     * two accumulators are pooled; if together they fill a block, that
+     * (possibly oversized) block is counted as one complete block.
+     * <p>
+     * The other accumulator is not modified.  Block data is not written to
+     * the block file or pushed to the block data sink.
+     */
+    public void merge(AccumulatorAverageFixed other) {
+        if (other.average == null) return;
+        if (average == null) {
+            throw new IllegalStateException("accumulator has not received its data info");
+        }
+        if (other.blockSize != blockSize || other.average.getLength() != average.getLength()) {
+            throw new IllegalArgumentException("accumulators must have the same block size and data length");
+        }
+        long nA = count, nB = other.count;
+        if (nB > 0) {
+            if (nA == 0) {
+                average.E(other.average);
+                blockVarSum.E(other.blockVarSum);
+                firstBlock.E(other.firstBlock);
+                correlationSum.E(other.correlationSum);
+            } else {
+                // combine block variance sums (Chan et al.)
+                work.E(other.average);
+                work.ME(average);
+                work2.E(work);
+                work2.TE(work);
+                work2.TE((double) nA * nB / (nA + nB));
+                blockVarSum.PE(other.blockVarSum);
+                blockVarSum.PE(work2);
+                work.TE((double) nB / (nA + nB));
+                average.PE(work);
+                // the other's first block follows our most recent block
+                work.E(mostRecentBlock);
+                work.TE(other.firstBlock);
+                correlationSum.PE(work);
+                correlationSum.PE(other.correlationSum);
+            }
+            mostRecentBlock.E(other.mostRecentBlock);
+            count = nA + nB;
+        }
+        sumSquare.PE(other.sumSquare);
+        long pB = other.blockSize - other.blockCountDown;
+        if (pB > 0) {
+            mostRecent.E(other.mostRecent);
+            long pA = blockSize - blockCountDown;
+            work.E(other.currentBlockAvg);
+            work.ME(currentBlockAvg);
+            work.TE((double) pB / (pA + pB));
+            currentBlockAvg.PE(work);
+            if (pA + pB >= blockSize) {
+                doBlockSum();
+            } else {
+                blockCountDown = blockSize - (pA + pB);
+            }
+        }
+    }
+
     public IData getData() {
         if (average == null)
             return null;
@@ -358,4 +423,26 @@ public class AccumulatorAverageFixed extends AccumulatorAverage {
             }
         }
     }
+
+    public void saveState(CheckpointWriter cw) throws IOException {
+        super.saveState(cw);
+        writeData(cw, blockVarSum);
+        writeData(cw, average);
+        writeData(cw, currentBlockAvg);
+        writeData(cw, sumSquare);
+        writeData(cw, mostRecentBlock);
+        writeData(cw, correlationSum);
+        writeData(cw, firstBlock);
+    }
+
+    public void restoreState(CheckpointReader cr) throws IOException {
+        super.restoreState(cr);
+        readData(cr, blockVarSum);
+        readData(cr, average);
+        readData(cr, currentBlockAvg);
+        readData(cr, sumSquare);
+        readData(cr, mostRecentBlock);
+        readData(cr, correlationSum);
+        readData(cr, firstBlock);
+    }
 }
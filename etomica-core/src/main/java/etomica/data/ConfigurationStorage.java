@@ -11,6 +11,8 @@ import etomica.integrator.IntegratorEvent;
 import etomica.integrator.IntegratorListener;
 import etomica.integrator.IntegratorMD;
 import etomica.space.Vector;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 import etomica.util.Statefull;
 
 import java.io.BufferedReader;
@@ -33,7 +35,7 @@ public class ConfigurationStorage implements IntegratorListener, Statefull {
     protected final Box box;
     protected Vector[][] configList;
     protected Vector[][] configVelList;
-    protected long stepCount;
+    protected long stepCount, configCount;
     protected final long[] savedSteps;
     protected final double[] savedTimes;
     protected StorageType storageType;
@@ -222,6 +224,7 @@ public class ConfigurationStorage implements IntegratorListener, Statefull {
             configList[0][i].E(p);
             if (doVel) configVelList[0][i].E(v);
         }
+        configCount++;
         for (ConfigurationStorageListener csl : listeners) {
             csl.newConfigruation();
         }
@@ -264,6 +267,15 @@ public class ConfigurationStorage implements IntegratorListener, Statefull {
         return savedSteps.length - 1;
     }
 
+    /**
+     * Returns the number of configurations taken so far.  This is not
+     * affected by reset, and so changes whenever a new configuration is
+     * stored.
+     */
+    public long getConfigCount() {
+        return configCount;
+    }
+
     public double[] getSavedTimes() {
         return savedTimes;
     }
@@ -350,5 +362,46 @@ public class ConfigurationStorage implements IntegratorListener, Statefull {
                 }
             }
         }
+        configCount++;
+    }
+
+    public void saveState(CheckpointWriter cw) throws IOException {
+        cw.putLong(stepCount);
+        cw.putInt(intervalCountdown);
+        cw.putDouble(dt);
+        int nSaved = 0;
+        while (nSaved < savedSteps.length && savedSteps[nSaved] > -1) nSaved++;
+        cw.putInt(nSaved);
+        for (int i=0; i<nSaved; i++) {
+            cw.putLong(savedSteps[i]);
+            cw.putDouble(savedTimes[i]);
+            for (int j=0; j<configList[i].length; j++) {
+                cw.putVector(configList[i][j]);
+                if (doVel) cw.putVector(configVelList[i][j]);
+            }
+        }
+    }
+
+    public void restoreState(CheckpointReader cr) throws IOException {
+        stepCount = cr.getLong();
+        intervalCountdown = cr.getInt();
+        dt = cr.getDouble();
+        int nSaved = cr.getInt();
+        int n = box.getLeafList().size();
+        if (nSaved > 0) {
+            configList = new Vector[nSaved][];
+            if (doVel) configVelList = new Vector[nSaved][];
+        }
+        for (int i=0; i<nSaved; i++) {
+            savedSteps[i] = cr.getLong();
+            savedTimes[i] = cr.getDouble();
+            configList[i] = box.getSpace().makeVectorArray(n);
+            if (doVel) configVelList[i] = box.getSpace().makeVectorArray(n);
+            for (int j=0; j<n; j++) {
+                cr.getVector(configList[i][j]);
+                if (doVel) cr.getVector(configVelList[i][j]);
+            }
+        }
+        configCount++;
     }
-}
\ No newline at end of file
+}
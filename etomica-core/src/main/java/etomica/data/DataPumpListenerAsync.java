@@ -0,0 +1,228 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data;
+
+import etomica.action.IAction;
+import etomica.action.controller.Controller;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * DataPumpListener that takes data from its source on the calling (integrator)
+ * thread, but pushes it through the sinks on a separate worker thread, so
+ * that expensive accumulators and loggers do not hold up the simulation.
+ * Each sample is copied into its own Data, which passes through a bounded
+ * queue to the worker; sinks receive the data (and any change of DataInfo)
+ * in the order it was taken.
+ * <p>
+ * When the queue is full, the pump either waits for the worker (BLOCK, the
+ * default) or discards the sample (DROP).  The sinks must not be used from
+ * other threads while data is pending; call flush (or register the pump with
+ * the Controller via flushOnHalt) before reading them.  An exception thrown
+ * by a sink is rethrown from the next call to actionPerformed or flush.
+ * Call close when the pump is no longer needed, to stop the worker and
+ * unregister the pump from its Controller.
+ */
+public class DataPumpListenerAsync extends DataPumpListener {
+
+    public enum Backpressure {BLOCK, DROP}
+
+    protected final BlockingQueue<Item> queue;
+    // copies that the worker is done with, for reuse
+    protected final ConcurrentLinkedQueue<Item> free;
+    protected Backpressure backpressure;
+    protected Thread worker;
+    protected final Object lock = new Object();
+    protected long numSubmitted, numProcessed, numDropped;
+    protected volatile Throwable failure;
+    protected Controller flushController;
+    protected final IAction flushAction = this::flush;
+
+    public DataPumpListenerAsync(IDataSource dataSource, IDataSink dataSink) {
+        this(dataSource, dataSink, 1, 64);
+    }
+
+    /**
+     * @param capacity the number of samples that can be waiting for the
+     *                 worker thread
+     */
+    public DataPumpListenerAsync(IDataSource dataSource, IDataSink dataSink, int interval, int capacity) {
+        super(dataSource, dataSink, interval);
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        free = new ConcurrentLinkedQueue<>();
+        backpressure = Backpressure.BLOCK;
+    }
+
+    /**
+     * Sets what happens when data is taken while the queue is full.
+     */
+    public void setBackpressure(Backpressure newBackpressure) {
+        backpressure = newBackpressure;
+    }
+
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+
+    /**
+     * Returns the number of samples discarded because the queue was full.
+     */
+    public long getNumDropped() {
+        return numDropped;
+    }
+
+    /**
+     * Registers this pump with the controller so that pending data is
+     * pushed to the sinks when the controller's activities finish.  The pump
+     * is unregistered by close (or by passing the returned action to
+     * Controller.removeFlushAction).
+     *
+     * @return the action registered with the controller
+     */
+    public IAction flushOnHalt(Controller controller) {
+        if (flushController != null && flushController != controller) {
+            flushController.removeFlushAction(flushAction);
+        }
+        if (flushController != controller) {
+            controller.addFlushAction(flushAction);
+            flushController = controller;
+        }
+        return flushAction;
+    }
+
+    /**
+     * Pushes pending data to the sinks, then stops the worker thread and
+     * unregisters this pump from the controller given to flushOnHalt.  A
+     * later call to actionPerformed starts a new worker.
+     */
+    public void close() {
+        try {
+            flush();
+        } finally {
+            if (flushController != null) {
+                flushController.removeFlushAction(flushAction);
+                flushController = null;
+            }
+            if (worker != null) {
+                worker.interrupt();
+                worker = null;
+            }
+        }
+    }
+
+    public void actionPerformed() {
+        checkFailure();
+        IData data = dataSource.getData();
+        if (dataSourceInfo != dataSource.getDataInfo()) {
+            dataSourceInfo = dataSource.getDataInfo();
+            // the new DataInfo can't be dropped
+            submit(new Item(dataSourceInfo, null), true);
+        }
+        Item item = free.poll();
+        // discard copies made for a previous DataInfo
+        while (item != null && item.info != dataSourceInfo) {
+            item = free.poll();
+        }
+        if (item == null) {
+            item = new Item(dataSourceInfo, dataSourceInfo.makeData());
+        }
+        item.data.E(data);
+        submit(item, backpressure == Backpressure.BLOCK);
+    }
+
+    protected void submit(Item item, boolean block) {
+        if (worker == null) {
+            worker = new Thread(this::drain, "DataPumpListenerAsync-worker");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        // count the item first, so that flush will wait for it
+        synchronized (lock) {
+            numSubmitted++;
+        }
+        if (block) {
+            try {
+                queue.put(item);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        } else if (!queue.offer(item)) {
+            numDropped++;
+            free.add(item);
+            synchronized (lock) {
+                numSubmitted--;
+            }
+        }
+    }
+
+    protected void drain() {
+        while (true) {
+            Item item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                if (item.data == null) {
+                    if (dataSink != null) {
+                        dataSink.putDataInfo(item.info);
+                    }
+                } else {
+                    putData(item.data);
+                    free.add(item);
+                }
+            } catch (Throwable t) {
+                if (failure == null) failure = t;
+            }
+            synchronized (lock) {
+                numProcessed++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until all data taken so far has been pushed to the sinks.
+     */
+    public void flush() {
+        synchronized (lock) {
+            while (numProcessed < numSubmitted) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    protected void checkFailure() {
+        Throwable t = failure;
+        if (t != null) {
+            failure = null;
+            throw new RuntimeException("data sink failed on the worker thread", t);
+        }
+    }
+
+    /**
+     * A sample (or, with null data, a new DataInfo) waiting for the worker.
+     */
+    protected static class Item {
+        public final IDataInfo info;
+        public final IData data;
+
+        public Item(IDataInfo info, IData data) {
+            this.info = info;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data.meter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Splits a loop over atoms between threads, each of which bins into its own
+ * histogram; the histograms are then added into the meter's sum.  Thread t
+ * handles atoms t, t+numThreads, t+2*numThreads, ..., which balances loops
+ * over pairs i&lt;j.  Since the counts are integers, the sum does not depend
+ * on the number of threads.
+ */
+class HistogramThreads {
+
+    /**
+     * Bins the contributions of atoms first, first+stride, ... into
+     * histogram.
+     */
+    interface AtomBinner {
+        void bin(int first, int stride, long[] histogram);
+    }
+
+    protected final String name;
+    protected int numThreads;
+    protected ExecutorService executor;
+    protected long[][] histograms;
+
+    HistogramThreads(String name) {
+        this.name = name;
+        setNumThreads(1);
+    }
+
+    void setNumThreads(int newNumThreads) {
+        if (newNumThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive");
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        numThreads = newNumThreads;
+        if (numThreads > 1) {
+            executor = Executors.newFixedThreadPool(numThreads, r -> {
+                Thread t = new Thread(r, name + "-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        histograms = new long[numThreads][0];
+    }
+
+    int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Runs the binner for all atoms and adds the counts into sum.
+     */
+    void run(AtomBinner binner, long[] sum) {
+        if (executor == null) {
+            binner.bin(0, 1, sum);
+            return;
+        }
+        List<Callable<Object>> tasks = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            if (histograms[t].length != sum.length) {
+                histograms[t] = new long[sum.length];
+            }
+            Arrays.fill(histograms[t], 0);
+            int first = t;
+            long[] h = histograms[t];
+            tasks.add(() -> {
+                binner.bin(first, numThreads, h);
+                return null;
+            });
+        }
+        try {
+            for (Future<Object> f : executor.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+        for (long[] h : histograms) {
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += h[i];
+            }
+        }
+    }
+}
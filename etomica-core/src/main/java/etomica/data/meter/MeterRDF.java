@@ -16,6 +16,7 @@ import etomica.data.types.DataDoubleArray;
 import etomica.data.types.DataDoubleArray.DataInfoDoubleArray;
 import etomica.data.types.DataFunction;
 import etomica.data.types.DataFunction.DataInfoFunction;
+import etomica.nbr.cell.NeighborCellManager;
 import etomica.space.Boundary;
 import etomica.space.Space;
 import etomica.space.Vector;
@@ -49,6 +50,8 @@ public class MeterRDF implements IAction, IDataSource, DataSourceIndependent {
     private String name;
     protected boolean resetAfterData;
     protected final boolean singleSample;
+    protected NeighborCellManager cellManager;
+    protected final HistogramThreads threads;
 
 	/**
 	 * Creates meter with default to compute pair correlation for all
@@ -75,6 +78,7 @@ public class MeterRDF implements IAction, IDataSource, DataSourceIndependent {
         dr = space.makeVector();
         tag = new DataTag();
         dataInfo.addTag(tag);
+        threads = new HistogramThreads("MeterRDF");
     }
     
     public IDataInfo getDataInfo() {
@@ -113,6 +117,36 @@ public class MeterRDF implements IAction, IDataSource, DataSourceIndependent {
         callCount = 0;
     }
 
+    /**
+     * Sets a cell manager used to find the pairs within xMax, so that the
+     * cost of a sample grows only linearly with the number of atoms.  The
+     * range of the cell manager must be at least xMax; it can be the cell
+     * manager of a PotentialMasterCell if xMax is no more than the range of
+     * the potential.  Atoms are assigned to cells at the start of each
+     * sample.  With cells, all images within xMax are counted, which only
+     * differs from the nearest-image count if xMax is more than half the box
+     * length.  With null (the default), all pairs are examined.
+     */
+    public void setCellManager(NeighborCellManager newCellManager) {
+        cellManager = newCellManager;
+    }
+
+    public NeighborCellManager getCellManager() {
+        return cellManager;
+    }
+
+    /**
+     * Sets the number of threads used to bin the pairs.  Each thread has its
+     * own histogram, and the histograms are added at the end of each sample.
+     */
+    public void setNumThreads(int newNumThreads) {
+        threads.setNumThreads(newNumThreads);
+    }
+
+    public int getNumThreads() {
+        return threads.getNumThreads();
+    }
+
     /**
      * Takes the RDF for the current configuration of the given box.
      */
@@ -123,11 +157,38 @@ public class MeterRDF implements IAction, IDataSource, DataSourceIndependent {
             reset();
         }
 
+        if (cellManager != null) {
+            if (cellManager.getPotentialRange() < xMax) {
+                throw new RuntimeException("cell range " + cellManager.getPotentialRange() + " is less than xMax " + xMax);
+            }
+            if (cellManager.getNumCells()[0] == 0) {
+                cellManager.init();
+            } else {
+                cellManager.assignCellAll();
+            }
+            threads.run(this::binCellPairs, gSum);
+        } else {
+            threads.run(this::binAllPairs, gSum);
+        }
+        callCount++;
+    }
+
+    /**
+     * Returns true if the pair should be counted.  The atoms are ordered by
+     * leaf index.
+     */
+    protected boolean countPair(IAtom atom1, IAtom atom2) {
+        return (type1 == null || atom1.getType() == type1) && (type2 == null || atom2.getType() == type2)
+                && (test == null || test.test(atom1, atom2));
+    }
+
+    protected void binAllPairs(int first, int stride, long[] histogram) {
         double xMaxSquared = xMax*xMax;
         Boundary boundary = box.getBoundary();
+        Vector dr = space.makeVector();
         // iterate over all pairs
         IAtomList atoms = box.getLeafList();
-        for (int i=0; i<atoms.size(); i++) {
+        for (int i=first; i<atoms.size(); i+=stride) {
             IAtom atom1 = atoms.get(i);
             if (type1 != null && atom1.getType() != type1) continue;
             for (int j=i+1; j<atoms.size(); j++) {
@@ -139,11 +200,48 @@ public class MeterRDF implements IAction, IDataSource, DataSourceIndependent {
                 double r2 = dr.squared();       //compute pair separation
                 if(r2 < xMaxSquared) {
                     int index = xDataSource.getIndex(Math.sqrt(r2));  //determine histogram index
-                    gSum[index]++;                        //add once for each atom
+                    histogram[index]++;                        //add once for each atom
+                }
+            }
+        }
+    }
+
+    protected void binCellPairs(int first, int stride, long[] histogram) {
+        double xMaxSquared = xMax*xMax;
+        Vector dr = space.makeVector();
+        IAtomList atoms = box.getLeafList();
+        Vector[] boxOffsets = cellManager.getBoxOffsets();
+        int[] atomCell = cellManager.getAtomCell();
+        int[] cellNextAtom = cellManager.getCellNextAtom();
+        int[] cellOffsets = cellManager.getCellOffsets();
+        int[] wrapMap = cellManager.getWrapMap();
+        int[] cellLastAtom = cellManager.getCellLastAtom();
+        int numCellOffsets = cellManager.getNumCellOffsets();
+        for (int i = first; i < atoms.size(); i += stride) {
+            IAtom iAtom = atoms.get(i);
+            Vector ri = iAtom.getPosition();
+            int iCell = atomCell[i];
+            // the rest of i's cell, then the cells in the up direction
+            Vector jbo = boxOffsets[iCell];
+            int j = cellNextAtom[i];
+            for (int ico = -1; ico < numCellOffsets; ico++) {
+                if (ico > -1) {
+                    int jCell = iCell + cellOffsets[ico];
+                    jbo = boxOffsets[jCell];
+                    j = cellLastAtom[wrapMap[jCell]];
+                }
+                for (; j > -1; j = cellNextAtom[j]) {
+                    IAtom jAtom = atoms.get(j);
+                    if (!(i < j ? countPair(iAtom, jAtom) : countPair(jAtom, iAtom))) continue;
+                    dr.Ev1Mv2(jAtom.getPosition(), ri);
+                    dr.PE(jbo);
+                    double r2 = dr.squared();
+                    if (r2 < xMaxSquared) {
+                        histogram[xDataSource.getIndex(Math.sqrt(r2))]++;
+                    }
                 }
             }
         }
-        callCount++;
     }
 
     /**
@@ -45,6 +45,7 @@ public class MeterRDFNeighbors implements IDataSource, DataSourceIndependent {
         tag = new DataTag();
         dataInfo.addTag(tag);
         neighborIterator = neighborManager.makeNeighborIterator();
+        threads = new HistogramThreads("MeterRDFNeighbors");
     }
     
     public IDataInfo getDataInfo() {
@@ -80,19 +81,7 @@ public class MeterRDFNeighbors implements IDataSource, DataSourceIndependent {
         }
 
         int numAtoms = box.getLeafList().size();
-        double xMaxSquared = xMax*xMax;
-        for (int i = 0; i<numAtoms; i++) {
-            neighborIterator.iterUpNeighbors(i, new NeighborIterator.NeighborConsumer() {
-                @Override
-                public void accept(IAtom jAtom, Vector rij, int n) {
-                    double r2 = rij.squared();       //compute pair separation
-                    if(r2 < xMaxSquared) {
-                        int index = xDataSource.getIndex(Math.sqrt(r2));  //determine histogram index
-                        gSum[index]++;                        //add once for each atom
-                    }
-                }
-            });
-        }
+        threads.run(this::binNeighbors, gSum);
 
         callCount++;
 
@@ -109,6 +98,37 @@ public class MeterRDFNeighbors implements IDataSource, DataSourceIndependent {
 	    return data;
 	}
     
+    protected void binNeighbors(int first, int stride, long[] histogram) {
+        int numAtoms = box.getLeafList().size();
+        double xMaxSquared = xMax*xMax;
+        for (int i = first; i<numAtoms; i+=stride) {
+            neighborIterator.iterUpNeighbors(i, new NeighborIterator.NeighborConsumer() {
+                @Override
+                public void accept(IAtom jAtom, Vector rij, int n) {
+                    double r2 = rij.squared();       //compute pair separation
+                    if(r2 < xMaxSquared) {
+                        int index = xDataSource.getIndex(Math.sqrt(r2));  //determine histogram index
+                        histogram[index]++;                        //add once for each atom
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Sets the number of threads used to iterate over the neighbors.  Each
+     * thread bins into its own histogram.  The neighbor iterators of
+     * NeighborCellManager and NeighborListManager can be used from several
+     * threads at once.
+     */
+    public void setNumThreads(int newNumThreads) {
+        threads.setNumThreads(newNumThreads);
+    }
+
+    public int getNumThreads() {
+        return threads.getNumThreads();
+    }
+
     public DataSourceUniform getXDataSource() {
         return xDataSource;
     }
@@ -140,4 +160,5 @@ public class MeterRDFNeighbors implements IDataSource, DataSourceIndependent {
     protected long callCount;
     protected final NeighborManager neighborManager;
     protected final NeighborIterator neighborIterator;
+    protected final HistogramThreads threads;
 }
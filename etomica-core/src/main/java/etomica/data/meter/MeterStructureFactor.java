@@ -44,6 +44,8 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
     protected double cutoff;
     protected double[] phaseAngles;
     protected boolean normalizeByN;
+    protected StructureFactorFFT mesh;
+    protected final double[] cs = new double[2];
 
     /**
      * Creates meter with default to compute the structure factor for all atoms
@@ -74,6 +76,25 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
         this.normalizeByN = normalizeByN;
     }
 
+    /**
+     * Sets whether the structure factor is computed from a grid of the
+     * atoms' signal with one FFT (StructureFactorFFT) instead of summing over
+     * atoms for each wave vector.  This is much faster with many wave
+     * vectors, but requires a rectangular box and wave vectors consistent
+     * with it (the default).
+     */
+    public void setUseMesh(boolean useMesh) {
+        mesh = useMesh ? new StructureFactorFFT(box) : null;
+    }
+
+    /**
+     * Returns the mesh used to compute the structure factor, or null if
+     * the structure factor is summed directly.
+     */
+    public StructureFactorFFT getMesh() {
+        return mesh;
+    }
+
     public AtomSignalSource getSignalSource() {
         return signalSource;
     }
@@ -193,6 +214,20 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
         long numAtoms = atomList.size();
         long n2 = numAtoms*numAtoms;
         Arrays.fill(struct, 0);
+        if (mesh != null) {
+            double k2Max = 0;
+            for (Vector k : waveVec) {
+                k2Max = Math.max(k2Max, k.squared());
+            }
+            mesh.setMaxWaveVector(Math.sqrt(k2Max));
+            mesh.compute(atomList, signalSource);
+            for (int k = 0; k < waveVec.length; k++) {
+                mesh.getAmplitude(waveVec[k], cs);
+                struct[k] = (cs[0] * cs[0] + cs[1] * cs[1]) / (normalizeByN ? numAtoms : n2);
+                phaseAngles[k] = Math.atan2(cs[0], cs[1]);
+            }
+            return data;
+        }
         for(int k = 0; k<waveVec.length; k++){
             double term1 = 0;
             double term2 = 0;
@@ -0,0 +1,292 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data.meter;
+
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.math.numerical.FastFourierTransform3D;
+import etomica.space.Vector;
+
+import java.util.Arrays;
+
+import static java.lang.Math.PI;
+
+/**
+ * Computes the Fourier amplitudes sum_i w_i exp(i k.r_i) for all wave vectors
+ * of a rectangular box at once.  The atoms (with weights w_i) are spread onto
+ * a grid with cardinal B-splines, the grid is transformed with one FFT, and
+ * the amplitude at each wave vector is divided by the transform of the
+ * B-spline, which corrects the smoothing and aliasing of the assignment (as
+ * in smooth particle-mesh Ewald).  The cost is N p^D + G log G for G grid
+ * points, instead of N times the number of wave vectors.
+ * <p>
+ * The amplitudes are accurate only well below the Nyquist wave vector of the
+ * grid; unless set explicitly, the grid resolves twice the largest wave
+ * vector given to setMaxWaveVector.  Works in 2 and 3 dimensions.
+ * <p>
+ * Essmann, Perera, Berkowitz, Darden, Lee &amp; Pedersen,
+ * J. Chem. Phys. 103, 8577 (1995)
+ * https://doi.org/10.1063/1.470117
+ */
+public class StructureFactorFFT {
+
+    protected final Box box;
+    protected final int D;
+    protected int splineOrder = 8;
+    protected double kMax;
+    protected final int[] gridSizeSet = new int[3];
+    protected final int[] gridSize = new int[3];
+    protected FastFourierTransform3D fft;
+    protected double[] grid = new double[0], gridHat = new double[0];
+    // complex B-spline correction for each direction and grid index
+    protected final double[][] bRe = new double[3][0], bIm = new double[3][0];
+    protected final Vector boxSize;
+    protected final double[][] w;
+    protected final int[] start;
+    protected final double[] prev, unitWeight = {1};
+
+    public StructureFactorFFT(Box box) {
+        this.box = box;
+        D = box.getSpace().D();
+        if (D != 2 && D != 3) {
+            throw new RuntimeException("structure factor FFT requires 2 or 3 dimensions");
+        }
+        if (!box.getBoundary().isRectangular()) {
+            throw new RuntimeException("structure factor FFT requires a rectangular box");
+        }
+        boxSize = box.getSpace().makeVector();
+        w = new double[3][16];
+        start = new int[3];
+        prev = new double[16];
+    }
+
+    /**
+     * Sets the order of the B-splines used to spread atoms onto the grid
+     * (default 8).  Each atom touches splineOrder^D grid points.
+     */
+    public void setSplineOrder(int newSplineOrder) {
+        if (newSplineOrder < 3 || newSplineOrder > 12) {
+            throw new IllegalArgumentException("spline order must be between 3 and 12");
+        }
+        splineOrder = newSplineOrder;
+        fft = null;
+    }
+
+    public int getSplineOrder() {
+        return splineOrder;
+    }
+
+    /**
+     * Sets the largest wave vector that will be requested, which determines
+     * the grid unless the grid size was set explicitly.
+     */
+    public void setMaxWaveVector(double newKMax) {
+        kMax = newKMax;
+    }
+
+    public double getMaxWaveVector() {
+        return kMax;
+    }
+
+    /**
+     * Sets the number of grid points in each direction (nz is ignored in
+     * 2D).  Each must be a power of 2.  Passing 0 for all returns to choosing
+     * the grid from the largest wave vector.
+     */
+    public void setGridSize(int nx, int ny, int nz) {
+        gridSizeSet[0] = nx;
+        gridSizeSet[1] = ny;
+        gridSizeSet[2] = nz;
+    }
+
+    /**
+     * Returns the grid used for the last computation.
+     */
+    public int[] getGridSize() {
+        return Arrays.copyOf(gridSize, D);
+    }
+
+    protected void setupGrid() {
+        Vector bs = box.getBoundary().getBoxSize();
+        int[] newSize = new int[3];
+        // in 2D, the atoms all go into the z=0 plane of a grid with nz=2
+        newSize[2] = 2;
+        for (int a = 0; a < D; a++) {
+            if (gridSizeSet[a] > 0) {
+                newSize[a] = gridSizeSet[a];
+            } else {
+                // resolve twice the wave vectors within kMax
+                int mMax = (int) (bs.getX(a) * kMax / PI);
+                int n = Math.max(2 * mMax + 1, 2 * splineOrder);
+                newSize[a] = Integer.highestOneBit(n - 1) << 1;
+            }
+        }
+        if (fft == null || !Arrays.equals(newSize, gridSize)) {
+            System.arraycopy(newSize, 0, gridSize, 0, 3);
+            fft = new FastFourierTransform3D(gridSize[0], gridSize[1], gridSize[2]);
+            grid = new double[gridSize[0] * gridSize[1] * gridSize[2]];
+            gridHat = new double[2 * fft.getComplexSize()];
+            for (int a = 0; a < D; a++) {
+                splineCorrection(a);
+            }
+        }
+        boxSize.E(bs);
+    }
+
+    /**
+     * Computes b(m) such that exp(2 pi i m u/n) = b(m) sum_g M_p(u-g) exp(2 pi i m g/n)
+     * (approximately), including the factor (-1)^m that shifts the grid
+     * origin from the corner of the box to its center.
+     */
+    protected void splineCorrection(int a) {
+        int n = gridSize[a];
+        int p = splineOrder;
+        double[] mp = w[a];
+        // M_p at the integers 1..p-1
+        splineWeights(0, p, mp);
+        bRe[a] = new double[n];
+        bIm[a] = new double[n];
+        for (int m = 0; m < n; m++) {
+            double sr = 0, si = 0;
+            for (int k = 0; k < p - 1; k++) {
+                double arg = 2 * PI * m * k / n;
+                sr += mp[k + 1] * Math.cos(arg);
+                si += mp[k + 1] * Math.sin(arg);
+            }
+            double d = sr * sr + si * si;
+            // (-1)^m exp(2 pi i (p-1) m/n) / (sr + i si)
+            double arg = 2 * PI * (p - 1) * m / n + PI * m;
+            double nr = Math.cos(arg), ni = Math.sin(arg);
+            bRe[a][m] = d == 0 ? 0 : (nr * sr + ni * si) / d;
+            bIm[a][m] = d == 0 ? 0 : (ni * sr - nr * si) / d;
+        }
+    }
+
+    /**
+     * Computes w[j] = M_p(frac + j) for j = 0..p-1.
+     */
+    protected void splineWeights(double frac, int p, double[] w) {
+        Arrays.fill(w, 0, p, 0);
+        w[0] = frac;
+        w[1] = 1 - frac;
+        for (int n = 3; n <= p; n++) {
+            System.arraycopy(w, 0, prev, 0, n - 1);
+            prev[n - 1] = 0;
+            double fn = 1.0 / (n - 1);
+            w[0] = frac * prev[0] * fn;
+            for (int j = 1; j < n; j++) {
+                w[j] = ((frac + j) * prev[j] + (n - frac - j) * prev[j - 1]) * fn;
+            }
+        }
+    }
+
+    /**
+     * Spreads the given atoms, weighted by the signal (all 1 if
+     * signalSource is null), onto the grid and transforms it.
+     */
+    public void compute(IAtomList atoms, MeterStructureFactor.AtomSignalSource signalSource) {
+        setupGrid();
+        Arrays.fill(grid, 0);
+        for (IAtom atom : atoms) {
+            double signal = signalSource == null ? 1.0 : signalSource.signal(atom);
+            if (signal == 0) continue;
+            spread(atom.getPosition(), signal);
+        }
+        fft.forward(grid, gridHat);
+    }
+
+    /**
+     * Spreads the given positions, each with weight 1, onto the grid and
+     * transforms it.
+     */
+    public void compute(Vector[] positions) {
+        setupGrid();
+        Arrays.fill(grid, 0);
+        for (Vector r : positions) {
+            spread(r, 1);
+        }
+        fft.forward(grid, gridHat);
+    }
+
+    protected void spread(Vector r, double signal) {
+        int p = splineOrder;
+        for (int a = 0; a < D; a++) {
+            int n = gridSize[a];
+            double u = n * (r.getX(a) / boxSize.getX(a) + 0.5);
+            double fu = Math.floor(u);
+            splineWeights(u - fu, p, w[a]);
+            // weight j goes to grid point iu - j
+            start[a] = (((int) fu % n) + n) % n;
+        }
+        int ny = gridSize[1], nz = gridSize[2];
+        int pz = D == 3 ? p : 1;
+        double[] wz = D == 3 ? w[2] : unitWeight;
+        for (int jx = 0; jx < p; jx++) {
+            int gx = start[0] - jx;
+            if (gx < 0) gx += gridSize[0];
+            double wx = signal * w[0][jx];
+            for (int jy = 0; jy < p; jy++) {
+                int gy = start[1] - jy;
+                if (gy < 0) gy += ny;
+                double wxy = wx * w[1][jy];
+                int rowStart = (gx * ny + gy) * nz;
+                for (int jz = 0; jz < pz; jz++) {
+                    int gz = D == 3 ? start[2] - jz : 0;
+                    if (gz < 0) gz += nz;
+                    grid[rowStart + gz] += wxy * wz[jz];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the amplitude for the given wave vector from the last
+     * computation, as cs[0] = sum w cos(k.r) and cs[1] = sum w sin(k.r).
+     * The wave vector must be a reciprocal lattice vector of the box, below
+     * the Nyquist wave vector of the grid.
+     */
+    public void getAmplitude(Vector k, double[] cs) {
+        int[] m = new int[3];
+        for (int a = 0; a < D; a++) {
+            double ma = k.getX(a) * boxSize.getX(a) / (2 * PI);
+            m[a] = (int) Math.round(ma);
+            if (Math.abs(ma - m[a]) > 1e-6) {
+                throw new RuntimeException("wave vector " + k + " is not consistent with the box");
+            }
+            if (2 * Math.abs(m[a]) >= gridSize[a]) {
+                throw new RuntimeException("wave vector " + k + " is beyond the resolution of the grid");
+            }
+        }
+        // the grid sum with exp(+i...) is the complex conjugate of the
+        // forward transform; only kz >= 0 is stored
+        boolean flip = m[2] < 0;
+        int nzc = gridSize[2] / 2 + 1;
+        int ix = Math.floorMod(flip ? -m[0] : m[0], gridSize[0]);
+        int iy = Math.floorMod(flip ? -m[1] : m[1], gridSize[1]);
+        int c = 2 * ((ix * gridSize[1] + iy) * nzc + (flip ? -m[2] : m[2]));
+        double re = gridHat[c];
+        double im = flip ? gridHat[c + 1] : -gridHat[c + 1];
+        for (int a = 0; a < D; a++) {
+            int ia = Math.floorMod(m[a], gridSize[a]);
+            double br = bRe[a][ia], bi = bIm[a][ia];
+            double t = re * br - im * bi;
+            im = re * bi + im * br;
+            re = t;
+        }
+        cs[0] = re;
+        cs[1] = im;
+    }
+
+    /**
+     * Returns |sum w exp(i k.r)|^2 for the given wave vector from the last
+     * computation.
+     */
+    public double getStructureFactor(Vector k) {
+        double[] cs = new double[2];
+        getAmplitude(k, cs);
+        return cs[0] * cs[0] + cs[1] * cs[1];
+    }
+}
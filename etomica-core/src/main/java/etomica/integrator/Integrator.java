@@ -5,6 +5,8 @@
 package etomica.integrator;
 
 import etomica.space.Vector;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 import etomica.util.Statefull;
 
 import java.io.BufferedReader;
@@ -27,6 +29,8 @@ public abstract class Integrator implements Statefull {
     protected int interval;
     protected long stepCount;
     private int iieCount;
+    protected IntegratorTimer timer;
+    protected IntegratorTimer.Counter stepCounter;
 
     public Integrator() {
         setEventInterval(1);
@@ -59,6 +63,7 @@ public abstract class Integrator implements Statefull {
      * time step, or a Monte Carlo trial.
      */
     public final void doStep() {
+        long t0 = timer == null ? 0 : System.nanoTime();
         stepCount++;
         --iieCount;
         if (iieCount == 0) {
@@ -71,6 +76,7 @@ public abstract class Integrator implements Statefull {
             eventManager.stepFinished();
             iieCount = interval;
         }
+        if (timer != null) stepCounter.add(System.nanoTime() - t0);
     }
 
     /**
@@ -122,6 +128,20 @@ public abstract class Integrator implements Statefull {
         return eventManager;
     }
 
+    /**
+     * Sets a timer that accumulates the time spent in each part of the
+     * step.  Passing null (the default) turns timing off.
+     */
+    public void setTimer(IntegratorTimer newTimer) {
+        timer = newTimer;
+        stepCounter = timer == null ? null : timer.getCounter("step");
+        eventManager.setTimer(newTimer);
+    }
+
+    public IntegratorTimer getTimer() {
+        return timer;
+    }
+
     /**
      * Perform initialization.  Subclasses can override this method to set up
      * before integration begins.
@@ -156,6 +176,16 @@ public abstract class Integrator implements Statefull {
         iieCount = Integer.parseInt(bits[1]);
     }
 
+    public void saveState(CheckpointWriter cw) throws IOException {
+        cw.putLong(stepCount);
+        cw.putInt(iieCount);
+    }
+
+    public void restoreState(CheckpointReader cr) throws IOException {
+        stepCount = cr.getLong();
+        iieCount = cr.getInt();
+    }
+
     public void postRestore() {
         eventManager.initialized();
     }
@@ -11,6 +11,8 @@ import etomica.space.Space;
 import etomica.units.dimensions.Dimension;
 import etomica.units.dimensions.Dimensioned;
 import etomica.units.dimensions.Temperature;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 import etomica.util.Statefull;
 
 import java.io.BufferedReader;
@@ -33,6 +35,7 @@ public abstract class IntegratorBox extends Integrator implements Statefull {
     protected double temperature;
     protected boolean isothermal = false;
     protected double currentPotentialEnergy;
+    protected IntegratorTimer.Counter computeAllCounter;
 
     /**
      * @param potentialCompute PotentialMaster instance used to compute energy etc.
@@ -61,14 +64,31 @@ public abstract class IntegratorBox extends Integrator implements Statefull {
      */
     public void reset() {
         super.reset();
-        currentPotentialEnergy = potentialCompute.computeAll(false);
+        currentPotentialEnergy = computeAll(false);
         if (currentPotentialEnergy == Double.POSITIVE_INFINITY) {
             System.err.println("overlap in configuration for " + box + " when resetting integrator");
-            potentialCompute.computeAll(false);
+            computeAll(false);
             throw new ConfigurationOverlapException(box);
         }
     }
 
+    public void setTimer(IntegratorTimer newTimer) {
+        super.setTimer(newTimer);
+        computeAllCounter = newTimer == null ? null : newTimer.getCounter("computeAll");
+    }
+
+    /**
+     * Computes the energy (and optionally forces) with the potentialCompute,
+     * recording the time if the integrator has a timer.
+     */
+    protected double computeAll(boolean doForces) {
+        if (timer == null) return potentialCompute.computeAll(doForces);
+        long t0 = System.nanoTime();
+        double u = potentialCompute.computeAll(doForces);
+        computeAllCounter.add(System.nanoTime() - t0);
+        return u;
+    }
+
     /**
      * @return the integrator's temperature
      */
@@ -131,4 +151,14 @@ public abstract class IntegratorBox extends Integrator implements Statefull {
         super.restoreState(br);
         currentPotentialEnergy = Double.parseDouble(br.readLine());
     }
+
+    public void saveState(CheckpointWriter cw) throws IOException {
+        super.saveState(cw);
+        cw.putDouble(currentPotentialEnergy);
+    }
+
+    public void restoreState(CheckpointReader cr) throws IOException {
+        super.restoreState(cr);
+        currentPotentialEnergy = cr.getDouble();
+    }
 }
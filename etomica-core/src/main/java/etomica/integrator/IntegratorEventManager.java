@@ -11,6 +11,7 @@ public class IntegratorEventManager {
     protected final ArrayList<IntegratorListener> listeners = new ArrayList<IntegratorListener>();
     private final IntegratorEvent event;
     private boolean eventing;
+    protected IntegratorTimer timer;
 
     public IntegratorEventManager(Integrator integrator) {
         this.event = new IntegratorEvent(integrator);
@@ -38,6 +39,19 @@ public class IntegratorEventManager {
         listeners.remove(listener);
     }
 
+    /**
+     * Sets the timer that accumulates the time each listener spends in
+     * integratorStepStarted and integratorStepFinished, or null to not time
+     * the listeners.
+     */
+    public void setTimer(IntegratorTimer newTimer) {
+        timer = newTimer;
+    }
+
+    protected IntegratorTimer.Counter getListenerCounter(IntegratorListener listener) {
+        return timer.getCounter("listener ", listener);
+    }
+
     /**
      * Returns true if the event manager is currently firing events.
      */
@@ -47,16 +61,32 @@ public class IntegratorEventManager {
 
     public void stepStarted() {
         eventing = true;
-        for (IntegratorListener listener : listeners) {
-            listener.integratorStepStarted(event);
+        if (timer == null) {
+            for (IntegratorListener listener : listeners) {
+                listener.integratorStepStarted(event);
+            }
+        } else {
+            for (IntegratorListener listener : listeners) {
+                long t0 = System.nanoTime();
+                listener.integratorStepStarted(event);
+                getListenerCounter(listener).add(System.nanoTime() - t0);
+            }
         }
         eventing = false;
     }
 
     public void stepFinished() {
         eventing = true;
-        for (IntegratorListener listener : listeners) {
-            listener.integratorStepFinished(event);
+        if (timer == null) {
+            for (IntegratorListener listener : listeners) {
+                listener.integratorStepFinished(event);
+            }
+        } else {
+            for (IntegratorListener listener : listeners) {
+                long t0 = System.nanoTime();
+                listener.integratorStepFinished(event);
+                getListenerCounter(listener).add(System.nanoTime() - t0);
+            }
         }
         eventing = false;
     }
@@ -130,7 +130,7 @@ public class IntegratorLangevin extends IntegratorMD {
     public void computeForce() {
         eventManager.forcePrecomputed();
 
-        currentPotentialEnergy = potentialCompute.computeAll(true);
+        currentPotentialEnergy = computeAll(true);
         eventManager.forceComputed();
     }
 
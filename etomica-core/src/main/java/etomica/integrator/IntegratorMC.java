@@ -74,7 +74,19 @@ public class IntegratorMC extends IntegratorBox {
         MCMoveBox move = (MCMoveBox) moveManager.selectMove();
         if (move == null)
             return;
+        if (timer != null) {
+            long t0 = System.nanoTime();
+            doMove(move);
+            timer.getCounter("MC move ", move).add(System.nanoTime() - t0);
+            return;
+        }
+        doMove(move);
+    }
 
+    /**
+     * Performs a trial of the given move and decides acceptance.
+     */
+    protected void doMove(MCMoveBox move) {
         //perform the trial
         //returns false if the trial cannot be attempted; for example an
         // atom-displacement trial in a box with no molecules
@@ -0,0 +1,435 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.integrator;
+
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.nbr.cell.NeighborCellManager;
+import etomica.nbr.cell.PotentialMasterCell;
+import etomica.potential.BondingInfo;
+import etomica.potential.IPotential2;
+import etomica.space.Boundary;
+import etomica.space.BoundaryRectangularPeriodic;
+import etomica.space.Vector;
+import etomica.util.random.IRandom;
+import etomica.util.random.RandomMersenneTwister;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Monte Carlo integrator that performs sweeps of atom-displacement trials on
+ * several threads.  The cells of the PotentialMasterCell are grouped into
+ * blocks, each at least cellRange cells wide, that are colored like a
+ * checkerboard, so that atoms in different blocks of one color do not
+ * interact.  Each step is a sweep: as many times as there are colors, a
+ * color (and an offset of the blocks relative to the cells) is chosen at
+ * random, independent of the configuration, and the blocks of that color
+ * are handed out to the threads.  Each block does as many trials as it has atoms, each displacing
+ * an atom chosen at random from the block; trials that would move the atom
+ * out of its block are rejected, so the atoms of a block (and the atoms
+ * within range of them) do not change while other blocks are being
+ * processed.  Each thread has its own random number generator, seeded from
+ * the integrator's.
+ * <p>
+ * The integrator requires a rectangular periodic boundary.  Only the pair
+ * potentials of the PotentialMasterCell are used, and the energy of each
+ * atom is computed directly from the cell lists, so the per-atom energies
+ * held by the PotentialMasterCell are not kept up to date by the sweeps.
+ *
+ * @see IntegratorMC
+ */
+public class IntegratorMCCheckerboard extends IntegratorBox {
+
+    protected final PotentialMasterCell potentialMaster;
+    protected final NeighborCellManager cellManager;
+    protected final IRandom random;
+    protected double stepSize = 0.1, stepSizeMax = Double.POSITIVE_INFINITY;
+    protected boolean adjustStepSize = true;
+    protected long numTrials, numAccepted;
+    protected int numThreads;
+    protected ExecutorService executor;
+    protected SweepWorker[] workers;
+    protected List<Callable<Object>> tasks;
+    // per direction: real (unpadded) cells, blocks, and the current offset and color
+    protected final int[] numBoxCells = new int[3], numBlocks = new int[3];
+    protected final int[] blockShift = new int[3], blockParity = new int[3], numActive = new int[3];
+    protected int numColors, numActiveBlocks;
+    // active block for each cell (or -1), and the atoms of each active block
+    protected int[] cellBlock, blockStart, blockAtoms;
+    protected double minR2;
+
+    /**
+     * @param potentialMaster cell potential master whose pair potentials and cells are used
+     * @param random          random number generator used to select colors and to seed the threads
+     * @param temperature     temperature of the ensemble
+     */
+    public IntegratorMCCheckerboard(PotentialMasterCell potentialMaster, IRandom random, double temperature, Box box) {
+        super(potentialMaster, temperature, box);
+        this.potentialMaster = potentialMaster;
+        this.cellManager = potentialMaster.getCellManager();
+        this.random = random;
+        setIsothermal(true);
+        cellBlock = blockStart = blockAtoms = new int[0];
+        setNumThreads(1);
+    }
+
+    /**
+     * Sets the number of threads used to process the blocks of each color.
+     * The blocks are assigned to threads in a fixed order, so with a given
+     * number of threads, the trajectory depends only on the seed of the
+     * integrator's random number generator.
+     */
+    public void setNumThreads(int newNumThreads) {
+        if (newNumThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive");
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        numThreads = newNumThreads;
+        if (numThreads > 1) {
+            executor = Executors.newFixedThreadPool(numThreads, r -> {
+                Thread t = new Thread(r, "IntegratorMCCheckerboard-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        workers = new SweepWorker[numThreads];
+        tasks = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            SweepWorker w = new SweepWorker(t, new RandomMersenneTwister(random.nextInt(Integer.MAX_VALUE)));
+            workers[t] = w;
+            tasks.add(w::sweepBlocks);
+        }
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public double getStepSize() {
+        return stepSize;
+    }
+
+    /**
+     * Sets the width of the cube from which displacements are chosen.
+     */
+    public void setStepSize(double newStepSize) {
+        stepSize = newStepSize;
+    }
+
+    public double getStepSizeMax() {
+        return stepSizeMax;
+    }
+
+    public void setStepSizeMax(double newStepSizeMax) {
+        stepSizeMax = newStepSizeMax;
+    }
+
+    /**
+     * Sets whether the step size is adjusted after each sweep to bring the
+     * acceptance toward 50%.
+     */
+    public void setAdjustStepSize(boolean newAdjustStepSize) {
+        adjustStepSize = newAdjustStepSize;
+    }
+
+    public boolean getAdjustStepSize() {
+        return adjustStepSize;
+    }
+
+    /**
+     * Returns the fraction of trials accepted since the last reset.
+     */
+    public double getAcceptanceRatio() {
+        return numTrials == 0 ? Double.NaN : ((double) numAccepted) / numTrials;
+    }
+
+    /**
+     * Returns the number of colors (sets of non-interacting blocks) of the
+     * current cells.  1 means that the box is too small to be divided and
+     * is handled as a single block by one thread.
+     */
+    public int getNumColors() {
+        return numColors;
+    }
+
+    public void reset() {
+        if (!(box.getBoundary() instanceof BoundaryRectangularPeriodic)) {
+            throw new RuntimeException("checkerboard MC requires a rectangular periodic boundary");
+        }
+        super.reset();
+        numTrials = numAccepted = 0;
+        stepSizeMax = Math.min(stepSizeMax, 0.5 * minBoxLength());
+        setupBlocks();
+    }
+
+    protected double minBoxLength() {
+        Vector bs = box.getBoundary().getBoxSize();
+        double minL = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < bs.getD(); i++) {
+            minL = Math.min(minL, bs.getX(i));
+        }
+        return minL;
+    }
+
+    /**
+     * Determines the number of blocks in each direction from the current
+     * cells.  The blocks of one color are separated by at least one block,
+     * so each block must be at least cellRange cells wide, and the number of
+     * blocks in a direction must be even (or 1).
+     */
+    protected void setupBlocks() {
+        int[] numCells = cellManager.getNumCells();
+        int cellRange = cellManager.getCellRange();
+        numColors = 1;
+        for (int k = 0; k < 3; k++) {
+            numBoxCells[k] = k < space.D() ? numCells[k] - 2 * cellRange : 1;
+            int m = numBoxCells[k] / Math.max(cellRange, 1);
+            if (m % 2 == 1) m--;
+            numBlocks[k] = Math.max(m, 1);
+            if (numBlocks[k] > 1) numColors *= 2;
+        }
+        int totalCells = numCells[0] * numCells[1] * numCells[2];
+        if (cellBlock.length < totalCells) {
+            cellBlock = new int[totalCells];
+        }
+        double minL = minBoxLength();
+        minR2 = 0.25 * minL * minL;
+    }
+
+    /**
+     * Performs one sweep, with (on average) one trial per atom.
+     */
+    protected void doStepInternal() {
+        int numAtoms = box.getLeafList().size();
+        if (numAtoms == 0) return;
+        long sweepTrials = 0, sweepAccepted = 0;
+        for (int c = 0; c < numColors; c++) {
+            selectColor();
+            runTasks();
+            for (SweepWorker w : workers) {
+                currentPotentialEnergy += w.du;
+                sweepTrials += w.numTrials;
+                sweepAccepted += w.numAccepted;
+            }
+        }
+        numTrials += sweepTrials;
+        numAccepted += sweepAccepted;
+        if (adjustStepSize && sweepTrials > 0) {
+            if (sweepAccepted > 0.5 * sweepTrials) {
+                stepSize = Math.min(stepSize * 1.05, stepSizeMax);
+            } else {
+                stepSize /= 1.05;
+            }
+        }
+    }
+
+    /**
+     * Chooses an offset and a color at random, and collects the atoms of
+     * each block of that color.
+     */
+    protected void selectColor() {
+        int[] numCells = cellManager.getNumCells();
+        int cellRange = cellManager.getCellRange();
+        numActiveBlocks = 1;
+        for (int k = 0; k < 3; k++) {
+            blockShift[k] = random.nextInt(numBoxCells[k]);
+            blockParity[k] = numBlocks[k] > 1 ? random.nextInt(2) : 0;
+            numActive[k] = numBlocks[k] > 1 ? numBlocks[k] / 2 : 1;
+            numActiveBlocks *= numActive[k];
+        }
+        int D = space.D();
+        for (int iz = 0; iz < numCells[2]; iz++) {
+            int bz = D > 2 ? activeBlock(2, iz - cellRange) : 0;
+            for (int iy = 0; iy < numCells[1]; iy++) {
+                int by = D > 1 ? activeBlock(1, iy - cellRange) : 0;
+                for (int ix = 0; ix < numCells[0]; ix++) {
+                    int bx = activeBlock(0, ix - cellRange);
+                    int c = (iz * numCells[1] + iy) * numCells[0] + ix;
+                    cellBlock[c] = (bx < 0 || by < 0 || bz < 0) ? -1 : ((bz * numActive[1] + by) * numActive[0] + bx);
+                }
+            }
+        }
+
+        if (blockStart.length < numActiveBlocks + 1) {
+            blockStart = new int[numActiveBlocks + 1];
+        }
+        int numAtoms = box.getLeafList().size();
+        if (blockAtoms.length < numAtoms) {
+            blockAtoms = new int[numAtoms];
+        }
+        int[] atomCell = cellManager.getAtomCell();
+        Arrays.fill(blockStart, 0, numActiveBlocks + 1, 0);
+        for (int i = 0; i < numAtoms; i++) {
+            int b = cellBlock[atomCell[i]];
+            if (b > -1) blockStart[b + 1]++;
+        }
+        for (int b = 0; b < numActiveBlocks; b++) {
+            blockStart[b + 1] += blockStart[b];
+        }
+        // fill using blockStart[b] as a cursor, then shift back
+        for (int i = 0; i < numAtoms; i++) {
+            int b = cellBlock[atomCell[i]];
+            if (b > -1) blockAtoms[blockStart[b]++] = i;
+        }
+        System.arraycopy(blockStart, 0, blockStart, 1, numActiveBlocks);
+        blockStart[0] = 0;
+    }
+
+    /**
+     * Returns the index (among the blocks of the current color) of the block
+     * containing real cell x in direction k, or -1 if that block has the
+     * other color.  Padding cells are never occupied, so their value is
+     * unimportant.
+     */
+    protected int activeBlock(int k, int x) {
+        int n = numBoxCells[k];
+        if (x < 0 || x >= n) return -1;
+        int m = numBlocks[k];
+        int b = (int) ((long) ((x + blockShift[k]) % n) * m / n);
+        if (m == 1) return 0;
+        if (b % 2 != blockParity[k]) return -1;
+        return b / 2;
+    }
+
+    protected void runTasks() {
+        if (executor == null) {
+            for (Callable<Object> task : tasks) {
+                try {
+                    task.call();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return;
+        }
+        try {
+            for (Future<Object> f : executor.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Performs the trials for the blocks assigned to one thread (every
+     * numThreads'th block of the current color).
+     */
+    protected class SweepWorker {
+        protected final int id;
+        protected final IRandom workerRandom;
+        protected final Vector translation, oldPosition, dr;
+        protected double du;
+        protected long numTrials, numAccepted;
+
+        public SweepWorker(int id, IRandom workerRandom) {
+            this.id = id;
+            this.workerRandom = workerRandom;
+            translation = space.makeVector();
+            oldPosition = space.makeVector();
+            dr = space.makeVector();
+        }
+
+        public Object sweepBlocks() {
+            du = 0;
+            numTrials = numAccepted = 0;
+            IAtomList atoms = box.getLeafList();
+            Boundary boundary = box.getBoundary();
+            for (int b = id; b < numActiveBlocks; b += numThreads) {
+                int start = blockStart[b];
+                int n = blockStart[b + 1] - start;
+                for (int t = 0; t < n; t++) {
+                    IAtom atom = atoms.get(blockAtoms[start + workerRandom.nextInt(n)]);
+                    numTrials++;
+                    double uOld = atomEnergy(atom);
+                    Vector r = atom.getPosition();
+                    oldPosition.E(r);
+                    translation.setRandomCube(workerRandom);
+                    translation.TE(stepSize);
+                    r.PE(translation);
+                    // r becomes its central image
+                    boundary.nearestImage(r);
+                    if (cellBlock[cellManager.cellForPosition(r)] != b) {
+                        r.E(oldPosition);
+                        continue;
+                    }
+                    cellManager.updateAtom(atom);
+                    double uNew = atomEnergy(atom);
+                    double chi = Math.exp(-(uNew - uOld) / temperature);
+                    if (chi == 0.0 || (chi < 1.0 && chi < workerRandom.nextDouble())) {
+                        r.E(oldPosition);
+                        cellManager.updateAtom(atom);
+                    } else {
+                        du += uNew - uOld;
+                        numAccepted++;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the energy of the atom with all other atoms in its cell
+         * and the cells within range.
+         */
+        protected double atomEnergy(IAtom iAtom) {
+            int i = iAtom.getLeafIndex();
+            Vector ri = iAtom.getPosition();
+            IAtomList atoms = box.getLeafList();
+            IPotential2[] ip = potentialMaster.getPairPotentials()[iAtom.getType().getIndex()];
+            BondingInfo bondingInfo = cellManager.getBondingInfo();
+            Vector[] boxOffsets = cellManager.getBoxOffsets();
+            int[] atomCell = cellManager.getAtomCell();
+            int[] cellNextAtom = cellManager.getCellNextAtom();
+            int[] cellOffsets = cellManager.getCellOffsets();
+            int[] wrapMap = cellManager.getWrapMap();
+            int[] cellLastAtom = cellManager.getCellLastAtom();
+
+            int iCell = atomCell[i];
+            double u = 0;
+            Vector jbo = boxOffsets[iCell];
+            for (int j = cellLastAtom[iCell]; j > -1; j = cellNextAtom[j]) {
+                if (j == i) continue;
+                u += pairEnergy(iAtom, atoms.get(j), ri, jbo, ip, bondingInfo);
+            }
+            for (int cellOffset : cellOffsets) {
+                int jCell = iCell + cellOffset;
+                jbo = boxOffsets[jCell];
+                jCell = wrapMap[jCell];
+                for (int j = cellLastAtom[jCell]; j > -1; j = cellNextAtom[j]) {
+                    u += pairEnergy(iAtom, atoms.get(j), ri, jbo, ip, bondingInfo);
+                }
+                jCell = iCell - cellOffset;
+                jbo = boxOffsets[jCell];
+                jCell = wrapMap[jCell];
+                for (int j = cellLastAtom[jCell]; j > -1; j = cellNextAtom[j]) {
+                    u += pairEnergy(iAtom, atoms.get(j), ri, jbo, ip, bondingInfo);
+                }
+            }
+            return u;
+        }
+
+        protected double pairEnergy(IAtom iAtom, IAtom jAtom, Vector ri, Vector jbo, IPotential2[] ip, BondingInfo bondingInfo) {
+            IPotential2 pij = ip[jAtom.getType().getIndex()];
+            if (pij == null) return 0;
+            dr.Ev1Mv2(jAtom.getPosition(), ri);
+            dr.PE(jbo);
+            double r2 = dr.squared();
+            if (r2 < minR2 && bondingInfo.skipBondedPair(false, iAtom, jAtom)) return 0;
+            return pij.u(r2);
+        }
+    }
+}
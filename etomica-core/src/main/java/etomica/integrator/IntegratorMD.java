@@ -20,6 +20,8 @@ import etomica.space.Space;
 import etomica.space.Vector;
 import etomica.units.dimensions.Dimensioned;
 import etomica.units.dimensions.Time;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 import etomica.util.random.IRandom;
 
 import java.io.BufferedReader;
@@ -626,6 +628,11 @@ public abstract class IntegratorMD extends IntegratorBox implements BoxEventList
     public void boxAtomLeafIndexChanged(BoxAtomIndexEvent e) {
     }
 
+    public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+        // computes with a box permute their own per-atom arrays
+        potentialCompute.leafAtomsPermuted(e);
+    }
+
     public void boxMoleculeIndexChanged(BoxMoleculeIndexEvent e) {
     }
 
@@ -677,5 +684,23 @@ public abstract class IntegratorMD extends IntegratorBox implements BoxEventList
         nRejected = Long.parseLong(bits[3]);
         nAccepted = Long.parseLong(bits[4]);
     }
+
+    public void saveState(CheckpointWriter cw) throws IOException {
+        super.saveState(cw);
+        cw.putDouble(currentTime);
+        cw.putDouble(currentKineticEnergy);
+        cw.putInt(thermostatCount);
+        cw.putLong(nRejected);
+        cw.putLong(nAccepted);
+    }
+
+    public void restoreState(CheckpointReader cr) throws IOException {
+        super.restoreState(cr);
+        currentTime = cr.getDouble();
+        currentKineticEnergy = cr.getDouble();
+        thermostatCount = cr.getInt();
+        nRejected = cr.getLong();
+        nAccepted = cr.getLong();
+    }
 }
 
@@ -0,0 +1,306 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.integrator;
+
+import etomica.atom.IAtomKinetic;
+import etomica.atom.IAtomList;
+import etomica.exception.ConfigurationOverlapException;
+import etomica.potential.compute.PotentialCompute;
+import etomica.space.Vector;
+import etomica.util.random.IRandom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Integrator for replica exchange (parallel tempering).  Each replica is an
+ * IntegratorBox acting on its own box, with replicas added in the order of
+ * the ladder (typically increasing temperature).  Each step of this
+ * integrator advances every replica by swapInterval steps and then attempts
+ * to exchange the configurations of neighboring replicas, alternating between
+ * the even and odd pairs.
+ * <p>
+ * By default, the replicas are assumed to differ only in temperature, so that
+ * swaps can be decided from the current energies.  For a Hamiltonian ladder
+ * (different potentials in each box), call setHamiltonianExchange(true);
+ * the energy of each box is then recomputed with the other configuration.
+ * <p>
+ * With more than one thread, the replicas are stepped concurrently.  Each
+ * replica must then have its own random number generator and must not share
+ * listeners or data sinks with other replicas.
+ * <p>
+ * Swaps exchange leaf atom positions and velocities (rescaled to the new
+ * temperature), so all boxes must have the same number of atoms and the same
+ * dimensions.
+ */
+public class IntegratorReplicaExchange extends Integrator {
+
+    protected final IRandom random;
+    protected final List<IntegratorBox> replicas;
+    protected int swapInterval;
+    protected boolean hamiltonianExchange;
+    protected long[] nSwapAttempts, nSwapAccepts;
+    protected int swapParity;
+    protected int numThreads;
+    protected ExecutorService executor;
+    protected List<Callable<Object>> tasks;
+    protected Vector tmp;
+
+    public IntegratorReplicaExchange(IRandom random) {
+        super();
+        this.random = random;
+        replicas = new ArrayList<>();
+        swapInterval = 100;
+        numThreads = 1;
+        nSwapAttempts = new long[0];
+        nSwapAccepts = new long[0];
+    }
+
+    /**
+     * Adds the integrator for the next replica in the ladder.
+     */
+    public void addIntegrator(IntegratorBox integrator) {
+        if (!replicas.isEmpty() && replicas.get(0).getBox().getLeafList().size() != integrator.getBox().getLeafList().size()) {
+            throw new IllegalArgumentException("all replicas must have the same number of atoms");
+        }
+        replicas.add(integrator);
+        nSwapAttempts = new long[replicas.size() - 1];
+        nSwapAccepts = new long[replicas.size() - 1];
+        tmp = integrator.getBox().getSpace().makeVector();
+        tasks = null;
+    }
+
+    public IntegratorBox[] getIntegrators() {
+        return replicas.toArray(new IntegratorBox[0]);
+    }
+
+    /**
+     * Sets the number of steps each replica takes between swap attempts.
+     */
+    public void setSwapInterval(int newSwapInterval) {
+        if (newSwapInterval < 1) {
+            throw new IllegalArgumentException("swap interval must be positive");
+        }
+        swapInterval = newSwapInterval;
+    }
+
+    public int getSwapInterval() {
+        return swapInterval;
+    }
+
+    /**
+     * Set to true if the replicas have different potentials.  Swap
+     * acceptance then requires the energy of each configuration in the other
+     * box.
+     */
+    public void setHamiltonianExchange(boolean newHamiltonianExchange) {
+        hamiltonianExchange = newHamiltonianExchange;
+    }
+
+    public boolean getHamiltonianExchange() {
+        return hamiltonianExchange;
+    }
+
+    /**
+     * Sets the number of threads used to step the replicas.
+     */
+    public void setNumThreads(int newNumThreads) {
+        if (newNumThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive");
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        numThreads = newNumThreads;
+        tasks = null;
+        if (numThreads > 1) {
+            executor = Executors.newFixedThreadPool(numThreads - 1, r -> {
+                Thread t = new Thread(r, "ReplicaExchange-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    protected void setup() {
+        ConfigurationOverlapException overlapException = null;
+        for (IntegratorBox integrator : replicas) {
+            try {
+                integrator.reset();
+            } catch (ConfigurationOverlapException e) {
+                if (overlapException == null) {
+                    overlapException = e;
+                }
+            }
+        }
+        super.setup();
+        if (overlapException != null) {
+            throw overlapException;
+        }
+    }
+
+    public void reset() {
+        super.reset();
+        for (IntegratorBox integrator : replicas) {
+            integrator.reset();
+        }
+    }
+
+    protected void doStepInternal() {
+        int nThreads = Math.min(numThreads, replicas.size());
+        if (nThreads < 2) {
+            for (IntegratorBox integrator : replicas) {
+                runReplica(integrator);
+            }
+        } else {
+            if (tasks == null) {
+                tasks = new ArrayList<>();
+                for (int t = 1; t < nThreads; t++) {
+                    int tt = t;
+                    tasks.add(() -> {
+                        runReplicas(tt, nThreads);
+                        return null;
+                    });
+                }
+            }
+            List<Future<Object>> futures = new ArrayList<>(tasks.size());
+            for (Callable<Object> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            runReplicas(0, nThreads);
+            try {
+                for (Future<Object> f : futures) {
+                    f.get();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        for (int i = swapParity; i < replicas.size() - 1; i += 2) {
+            attemptSwap(i);
+        }
+        swapParity = 1 - swapParity;
+    }
+
+    protected void runReplicas(int t, int nThreads) {
+        for (int i = t; i < replicas.size(); i += nThreads) {
+            runReplica(replicas.get(i));
+        }
+    }
+
+    protected void runReplica(IntegratorBox integrator) {
+        for (int j = 0; j < swapInterval; j++) {
+            integrator.doStep();
+        }
+    }
+
+    /**
+     * Attempts to exchange the configurations of replicas i and i+1.
+     */
+    protected void attemptSwap(int i) {
+        IntegratorBox a = replicas.get(i);
+        IntegratorBox b = replicas.get(i + 1);
+        double betaA = 1 / a.getTemperature();
+        double betaB = 1 / b.getTemperature();
+        double uA = a.getPotentialEnergy();
+        double uB = b.getPotentialEnergy();
+        nSwapAttempts[i]++;
+        if (!hamiltonianExchange) {
+            double x = (betaA - betaB) * (uA - uB);
+            if (!(x >= 0) && !(random.nextDouble() < Math.exp(x))) return;
+            swapConfigurations(a, b);
+            a.reset();
+            b.reset();
+            nSwapAccepts[i]++;
+            return;
+        }
+        swapConfigurations(a, b);
+        double x = -betaA * (computeEnergy(a) - uA) - betaB * (computeEnergy(b) - uB);
+        if (!(x >= 0) && !(random.nextDouble() < Math.exp(x))) {
+            swapConfigurations(a, b);
+        } else {
+            nSwapAccepts[i]++;
+        }
+        a.reset();
+        b.reset();
+    }
+
+    protected double computeEnergy(IntegratorBox integrator) {
+        PotentialCompute potentialCompute = integrator.getPotentialCompute();
+        potentialCompute.init();
+        return potentialCompute.computeAll(false);
+    }
+
+    /**
+     * Exchanges the atom positions (and velocities, scaled to the new
+     * temperature) of the two integrators' boxes.
+     */
+    protected void swapConfigurations(IntegratorBox a, IntegratorBox b) {
+        IAtomList atomsA = a.getBox().getLeafList();
+        IAtomList atomsB = b.getBox().getLeafList();
+        double scaleToA = Math.sqrt(a.getTemperature() / b.getTemperature());
+        for (int j = 0; j < atomsA.size(); j++) {
+            Vector pA = atomsA.get(j).getPosition();
+            Vector pB = atomsB.get(j).getPosition();
+            tmp.E(pA);
+            pA.E(pB);
+            pB.E(tmp);
+            if (atomsA.get(j) instanceof IAtomKinetic) {
+                Vector vA = ((IAtomKinetic) atomsA.get(j)).getVelocity();
+                Vector vB = ((IAtomKinetic) atomsB.get(j)).getVelocity();
+                tmp.E(vA);
+                vA.Ea1Tv1(scaleToA, vB);
+                vB.Ea1Tv1(1 / scaleToA, tmp);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of attempted swaps between replicas i and i+1.
+     */
+    public long getSwapAttempts(int i) {
+        return nSwapAttempts[i];
+    }
+
+    /**
+     * Returns the fraction of attempted swaps between replicas i and i+1
+     * that were accepted.
+     */
+    public double getSwapAcceptanceRatio(int i) {
+        return nSwapAttempts[i] == 0 ? Double.NaN : ((double) nSwapAccepts[i]) / nSwapAttempts[i];
+    }
+
+    /**
+     * Returns the acceptance ratio of swaps between each pair of neighboring
+     * replicas.
+     */
+    public double[] getSwapAcceptanceRatios() {
+        double[] r = new double[nSwapAttempts.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = getSwapAcceptanceRatio(i);
+        }
+        return r;
+    }
+
+    /**
+     * Zeroes the swap counts.
+     */
+    public void resetSwapCounts() {
+        for (int i = 0; i < nSwapAttempts.length; i++) {
+            nSwapAttempts[i] = nSwapAccepts[i] = 0;
+        }
+    }
+}
@@ -197,7 +197,7 @@ public class IntegratorRigidIterative extends IntegratorMD implements SpeciesAge
         eventManager.forcePrecomputed();
 
         //Compute forces and torques on each atom at t+dt
-        double PE = potentialCompute.computeAll(true);
+        double PE = computeAll(true);
         torques = potentialCompute.getTorques();
         forces = potentialCompute.getForces();
 
@@ -467,7 +467,7 @@ public class IntegratorRigidIterative extends IntegratorMD implements SpeciesAge
 
         eventManager.forcePrecomputed();
 
-        currentPotentialEnergy = potentialCompute.computeAll(true);
+        currentPotentialEnergy = computeAll(true);
 
         eventManager.forceComputed();
 
@@ -0,0 +1,147 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.integrator;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates the wall time spent in the parts of an integrator's step.  Once
+ * a timer is given to Integrator.setTimer, the integrator records the time of
+ * each step ("step"), the integrator's own potential calculations
+ * ("computeAll"), each listener's stepStarted and stepFinished ("listener
+ * ..."), each MC move's trials ("MC move ...") and neighbor list rebuilds
+ * ("neighbor reset").  Counters may nest, so only "step" adds up to the total.
+ * Without a timer, none of these are measured.
+ * <p>
+ * The counters can be printed as a table or as JSON, at any point (for
+ * example from a Controller flush action at the end of a run).
+ */
+public class IntegratorTimer {
+
+    protected final Map<String, Counter> counters = new LinkedHashMap<>();
+    protected final Map<Object, Counter> objectCounters = new IdentityHashMap<>();
+
+    /**
+     * Returns the counter with the given name, creating it if needed.
+     * Callers that add often should keep the returned counter.
+     */
+    public Counter getCounter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    public boolean hasCounter(String name) {
+        return counters.containsKey(name);
+    }
+
+    /**
+     * Returns the counter for one object, named for the object's class with
+     * the given prefix, creating it if needed.  The object keeps its counter
+     * (and the prefix it was created with) for the life of the timer; the
+     * names of later objects of the same class get a suffix, #2, #3...
+     */
+    public Counter getCounter(String prefix, Object o) {
+        Counter counter = objectCounters.get(o);
+        if (counter != null) return counter;
+        String name = o.getClass().getName();
+        String base = prefix + name.substring(name.lastIndexOf('.') + 1);
+        name = base;
+        for (int i = 2; counters.containsKey(name); i++) {
+            name = base + "#" + i;
+        }
+        counter = getCounter(name);
+        objectCounters.put(o, counter);
+        return counter;
+    }
+
+    /**
+     * Adds a call taking the given time (in nanoseconds) to the named counter.
+     */
+    public void add(String name, long nanos) {
+        getCounter(name).add(nanos);
+    }
+
+    public List<Counter> getCounters() {
+        return new ArrayList<>(counters.values());
+    }
+
+    /**
+     * Zeros all counters.
+     */
+    public void reset() {
+        for (Counter c : counters.values()) {
+            c.count = c.nanos = 0;
+        }
+    }
+
+    /**
+     * Returns the counters as a table with the number of calls, the total
+     * time, the time per call and the fraction of the step time.
+     */
+    public String toTable() {
+        Counter step = counters.get("step");
+        double stepNanos = step == null ? 0 : step.nanos;
+        int width = 10;
+        for (String name : counters.keySet()) {
+            width = Math.max(width, name.length());
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-" + width + "s %13s %13s %13s %8s%n", "", "calls", "total (ms)", "per call (us)", "% step"));
+        for (Counter c : counters.values()) {
+            sb.append(String.format("%-" + width + "s %13d %13.3f %13.3f %8.2f%n", c.name, c.count, c.nanos * 1e-6,
+                    c.count == 0 ? 0 : c.nanos * 1e-3 / c.count, stepNanos == 0 ? 0 : 100 * c.nanos / stepNanos));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the counters as a JSON object mapping each name to its number
+     * of calls and total time in nanoseconds.
+     */
+    public String toJSON() {
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (Counter c : counters.values()) {
+            if (!first) sb.append(",");
+            first = false;
+            sb.append("\n  \"").append(c.name.replace("\\", "\\\\").replace("\"", "\\\""))
+                    .append("\": {\"calls\": ").append(c.count)
+                    .append(", \"nanos\": ").append(c.nanos).append("}");
+        }
+        return sb.append(first ? "}" : "\n}").toString();
+    }
+
+    public String toString() {
+        return toTable();
+    }
+
+    public static class Counter {
+        public final String name;
+        protected long count, nanos;
+
+        public Counter(String name) {
+            this.name = name;
+        }
+
+        public void add(long dt) {
+            count++;
+            nanos += dt;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the total time in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
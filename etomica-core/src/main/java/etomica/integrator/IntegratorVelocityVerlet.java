@@ -66,7 +66,7 @@ public class IntegratorVelocityVerlet extends IntegratorMD {
 
         eventManager.forcePrecomputed();
 
-        currentPotentialEnergy = potentialCompute.computeAll(true);
+        currentPotentialEnergy = computeAll(true);
 
         eventManager.forceComputed();
 
@@ -107,7 +107,7 @@ public class IntegratorVelocityVerlet extends IntegratorMD {
     public void precomputeForce() {
         eventManager.forcePrecomputed();
 
-        currentPotentialEnergy = potentialCompute.computeAll(true);
+        currentPotentialEnergy = computeAll(true);
         eventManager.forceComputed();
     }
 
@@ -0,0 +1,229 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.math.numerical;
+
+/**
+ * Three-dimensional real-to-complex Fast Fourier Transform on a grid whose
+ * dimensions are each a power of 2.  The real grid is stored flat with z
+ * varying fastest, real[(ix*ny + iy)*nz + iz].  Because the transform of
+ * real data is Hermitian, only the components with kz = 0 .. nz/2 are kept;
+ * they are stored as interleaved (real, imaginary) pairs,
+ * complex[2*((kx*ny + ky)*(nz/2+1) + kz)].
+ * <p>
+ * Unlike FastFourierTransform, neither direction is scaled:
+ * forward computes sum_r f(r) exp(-2 pi i k.r/n) and inverse computes
+ * sum_k F(k) exp(+2 pi i k.r/n), so inverse(forward(f)) = nx*ny*nz f.
+ *
+ * @see FastFourierTransform
+ */
+public class FastFourierTransform3D {
+
+    protected final int nx, ny, nz, nzc;
+    protected final Plan planX, planY, planZ;
+    protected final double[] line, line2;
+
+    public FastFourierTransform3D(int nx, int ny, int nz) {
+        if (nz < 2) {
+            throw new IllegalArgumentException("nz must be at least 2");
+        }
+        this.nx = nx;
+        this.ny = ny;
+        this.nz = nz;
+        nzc = nz / 2 + 1;
+        planX = new Plan(nx);
+        planY = new Plan(ny);
+        planZ = new Plan(nz);
+        int maxN = Math.max(nx, Math.max(ny, nz));
+        line = new double[2 * maxN];
+        line2 = new double[2 * maxN];
+    }
+
+    public int[] getSize() {
+        return new int[]{nx, ny, nz};
+    }
+
+    /**
+     * Returns the number of complex values (not doubles) in the transformed
+     * array, nx*ny*(nz/2+1).
+     */
+    public int getComplexSize() {
+        return nx * ny * nzc;
+    }
+
+    /**
+     * Transforms real into complex.  real is not modified.
+     */
+    public void forward(double[] real, double[] complex) {
+        int numLines = nx * ny;
+        // z: transform two real lines at once as the real and imaginary
+        // parts of one complex line, then separate their spectra
+        for (int l = 0; l < numLines; l += 2) {
+            boolean pair = l + 1 < numLines;
+            int offA = l * nz, offB = offA + nz;
+            for (int z = 0; z < nz; z++) {
+                line[2 * z] = real[offA + z];
+                line[2 * z + 1] = pair ? real[offB + z] : 0;
+            }
+            transform(line, planZ, -1);
+            int cA = 2 * l * nzc, cB = cA + 2 * nzc;
+            for (int k = 0; k < nzc; k++) {
+                int nk = (nz - k) % nz;
+                double zr = line[2 * k], zi = line[2 * k + 1];
+                double cr = line[2 * nk], ci = -line[2 * nk + 1];
+                // A = (Z(k) + conj(Z(n-k)))/2, B = (Z(k) - conj(Z(n-k)))/(2i)
+                complex[cA + 2 * k] = 0.5 * (zr + cr);
+                complex[cA + 2 * k + 1] = 0.5 * (zi + ci);
+                if (pair) {
+                    complex[cB + 2 * k] = 0.5 * (zi - ci);
+                    complex[cB + 2 * k + 1] = -0.5 * (zr - cr);
+                }
+            }
+        }
+        transformY(complex, -1);
+        transformX(complex, -1);
+    }
+
+    /**
+     * Transforms complex (assumed to be the Hermitian half of a real
+     * function's spectrum) into real.  complex is overwritten.
+     */
+    public void inverse(double[] complex, double[] real) {
+        transformX(complex, 1);
+        transformY(complex, 1);
+        int numLines = nx * ny;
+        for (int l = 0; l < numLines; l += 2) {
+            boolean pair = l + 1 < numLines;
+            int cA = 2 * l * nzc, cB = cA + 2 * nzc;
+            // Z(k) = A(k) + i B(k), filling the upper half from A(n-k) = conj(A(k))
+            for (int k = 0; k < nz; k++) {
+                double ar, ai, br = 0, bi = 0;
+                if (k < nzc) {
+                    ar = complex[cA + 2 * k];
+                    ai = complex[cA + 2 * k + 1];
+                    if (pair) {
+                        br = complex[cB + 2 * k];
+                        bi = complex[cB + 2 * k + 1];
+                    }
+                } else {
+                    int nk = nz - k;
+                    ar = complex[cA + 2 * nk];
+                    ai = -complex[cA + 2 * nk + 1];
+                    if (pair) {
+                        br = complex[cB + 2 * nk];
+                        bi = -complex[cB + 2 * nk + 1];
+                    }
+                }
+                line[2 * k] = ar - bi;
+                line[2 * k + 1] = ai + br;
+            }
+            transform(line, planZ, 1);
+            int offA = l * nz, offB = offA + nz;
+            for (int z = 0; z < nz; z++) {
+                real[offA + z] = line[2 * z];
+                if (pair) real[offB + z] = line[2 * z + 1];
+            }
+        }
+    }
+
+    protected void transformY(double[] complex, int sign) {
+        if (ny == 1) return;
+        for (int x = 0; x < nx; x++) {
+            for (int k = 0; k < nzc; k++) {
+                int off = 2 * (x * ny * nzc + k);
+                int stride = 2 * nzc;
+                for (int y = 0; y < ny; y++) {
+                    line2[2 * y] = complex[off + y * stride];
+                    line2[2 * y + 1] = complex[off + y * stride + 1];
+                }
+                transform(line2, planY, sign);
+                for (int y = 0; y < ny; y++) {
+                    complex[off + y * stride] = line2[2 * y];
+                    complex[off + y * stride + 1] = line2[2 * y + 1];
+                }
+            }
+        }
+    }
+
+    protected void transformX(double[] complex, int sign) {
+        if (nx == 1) return;
+        int stride = 2 * ny * nzc;
+        for (int yk = 0; yk < ny * nzc; yk++) {
+            int off = 2 * yk;
+            for (int x = 0; x < nx; x++) {
+                line2[2 * x] = complex[off + x * stride];
+                line2[2 * x + 1] = complex[off + x * stride + 1];
+            }
+            transform(line2, planX, sign);
+            for (int x = 0; x < nx; x++) {
+                complex[off + x * stride] = line2[2 * x];
+                complex[off + x * stride + 1] = line2[2 * x + 1];
+            }
+        }
+    }
+
+    /**
+     * In-place radix-2 transform of the first plan.n interleaved complex
+     * values in data, with exponent sign*2 pi i jk/n.
+     */
+    protected static void transform(double[] data, Plan plan, int sign) {
+        int n = plan.n;
+        int[] rev = plan.rev;
+        for (int i = 0; i < n; i++) {
+            int j = rev[i];
+            if (i < j) {
+                double t = data[2 * i];
+                data[2 * i] = data[2 * j];
+                data[2 * j] = t;
+                t = data[2 * i + 1];
+                data[2 * i + 1] = data[2 * j + 1];
+                data[2 * j + 1] = t;
+            }
+        }
+        double[] cos = plan.cos, sin = plan.sin;
+        for (int half = 1; half < n; half <<= 1) {
+            int tStride = n / (2 * half);
+            for (int start = 0; start < n; start += 2 * half) {
+                for (int m = 0; m < half; m++) {
+                    double wr = cos[m * tStride];
+                    double wi = sign * sin[m * tStride];
+                    int a = 2 * (start + m), b = a + 2 * half;
+                    double tr = wr * data[b] - wi * data[b + 1];
+                    double ti = wr * data[b + 1] + wi * data[b];
+                    data[b] = data[a] - tr;
+                    data[b + 1] = data[a + 1] - ti;
+                    data[a] += tr;
+                    data[a + 1] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * Bit-reversal permutation and twiddle factors for one length.
+     */
+    protected static class Plan {
+        public final int n;
+        public final int[] rev;
+        public final double[] cos, sin;
+
+        public Plan(int n) {
+            if (n < 1 || (n & (n - 1)) != 0) {
+                throw new IllegalArgumentException("FFT size " + n + " is not a power of 2");
+            }
+            this.n = n;
+            rev = new int[n];
+            int bits = Integer.numberOfTrailingZeros(n);
+            for (int i = 0; i < n; i++) {
+                rev[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            }
+            cos = new double[Math.max(1, n / 2)];
+            sin = new double[Math.max(1, n / 2)];
+            for (int i = 0; i < n / 2; i++) {
+                cos[i] = Math.cos(2 * Math.PI * i / n);
+                sin[i] = Math.sin(2 * Math.PI * i / n);
+            }
+        }
+    }
+}
@@ -8,6 +8,8 @@ import etomica.atom.AtomArrayList;
 import etomica.atom.IAtom;
 import etomica.atom.IAtomList;
 import etomica.species.ISpecies;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -114,6 +116,20 @@ public class Molecule implements IMolecule {
         }
     }
 
+    @Override
+    public void saveState(CheckpointWriter cw) throws IOException {
+        for (IAtom a : childList) {
+            a.saveState(cw);
+        }
+    }
+
+    @Override
+    public void restoreState(CheckpointReader cr) throws IOException {
+        for (IAtom a : childList) {
+            a.restoreState(cr);
+        }
+    }
+
     protected int index;
     protected final AtomArrayList childList;
     protected final ISpecies species;
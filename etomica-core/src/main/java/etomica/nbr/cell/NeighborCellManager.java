@@ -30,6 +30,8 @@ public class NeighborCellManager implements NeighborManager {
     protected int[] cellOffsets;
     protected int numCellOffsets;
     protected Vector[] rawBoxOffsets = new Vector[0];
+    protected int[] boxOffsetIndex;
+    protected int numRawBoxOffsets;
     protected int[] cellNextAtom;
     protected int[] atomCell;
     public int[] allCellOffsets;
@@ -43,7 +45,7 @@ public class NeighborCellManager implements NeighborManager {
         numCells = new int[3];
         jump = new int[3];
         cellNextAtom = null;
-        atomCell = cellOffsets = wrapMap = cellLastAtom = new int[0];
+        atomCell = cellOffsets = wrapMap = cellLastAtom = boxOffsetIndex = new int[0];
         this.isPureAtoms = sm.isPureAtoms();
         this.bondingInfo = bondingInfo;
         allCellOffsets = new int[0];
@@ -78,6 +80,10 @@ public class NeighborCellManager implements NeighborManager {
         range = newRange;
     }
 
+    public double getPotentialRange() {
+        return range;
+    }
+
     @Override
     public IntegratorListener makeIntegratorListener() {
         return new IntegratorListener() {
@@ -148,6 +154,12 @@ public class NeighborCellManager implements NeighborManager {
                 moveAtomIndex(oldIndex, newIndex);
             }
 
+            @Override
+            public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+                if (cellNextAtom == null) return;
+                permuteAtomIndices(e.getOldIndices());
+            }
+
             @Override
             public void boxNumberMolecules(BoxMoleculeCountEvent e) {
                 if (cellNextAtom == null) return;
@@ -288,6 +300,7 @@ public class NeighborCellManager implements NeighborManager {
             cellLastAtom = new int[totalCells];
             wrapMap = new int[totalCells];
             boxOffsets = new Vector[totalCells];
+            boxOffsetIndex = new int[totalCells];
         }
 
         int lastCellCount = 0;
@@ -398,8 +411,9 @@ public class NeighborCellManager implements NeighborManager {
         int nx = (2 * xboRange + 1);
         int ny = (2 * yboRange + 1);
         int nz = (2 * zboRange + 1);
-        if (rawBoxOffsets.length < nx * ny * nz) {
-            rawBoxOffsets = new Vector[nx * ny * nz];
+        numRawBoxOffsets = nx * ny * nz;
+        if (rawBoxOffsets.length < numRawBoxOffsets) {
+            rawBoxOffsets = new Vector[numRawBoxOffsets];
         }
         for (int ix = -xboRange; ix <= xboRange; ix++) {
             for (int iy = -yboRange; iy <= yboRange; iy++) {
@@ -439,7 +453,8 @@ public class NeighborCellManager implements NeighborManager {
                     int iMap = iCell(ix, iy, iz);
                     int dCell = iCell(x2, y2, z2);
                     wrapMap[iMap] = dCell;
-                    boxOffsets[iMap] = rawBoxOffsets[(xbo + xboRange) * ny * nz + (ybo + yboRange) * nz + (zbo + zboRange)];
+                    boxOffsetIndex[iMap] = (xbo + xboRange) * ny * nz + (ybo + yboRange) * nz + (zbo + zboRange);
+                    boxOffsets[iMap] = rawBoxOffsets[boxOffsetIndex[iMap]];
                 }
             }
         }
@@ -528,25 +543,33 @@ public class NeighborCellManager implements NeighborManager {
         }
     }
 
-    public void updateAtom(IAtom atom) {
+    /**
+     * Returns the cell that updateAtom would assign to an atom at r (which
+     * should be in the central image).  For a rectangular boundary, this
+     * does not modify any state and so can be called from several threads.
+     */
+    public int cellForPosition(Vector r) {
         int cellNum = 0;
         final Vector bs = box.getBoundary().getBoxSize();
-        Vector r = atom.getPosition();
-        Vector s = box.getSpace().makeVector();
-        s.E(r);
-        if (rectangular) {
-            s.DE(bs);
-        } else {
+        Vector s = r;
+        if (!rectangular) {
+            s = box.getSpace().makeVector();
+            s.E(r);
             Tensor hInv = box.getBoundary().getHInv();
             hInv.transform(s);
         }
         for (int i = 0; i < r.getD(); i++) {
-            double x = s.getX(i) + 0.5;
+            double x = (rectangular ? s.getX(i) / bs.getX(i) : s.getX(i)) + 0.5;
             int y = ((int) (cellRange + x * (numCells[i] - 2 * cellRange)));
             if (y == numCells[i] - cellRange) y--;
             else if (y == cellRange - 1) y++;
             cellNum += y * jump[i];
         }
+        return cellNum;
+    }
+
+    public void updateAtom(IAtom atom) {
+        int cellNum = cellForPosition(atom.getPosition());
 
         int iAtom = atom.getLeafIndex();
         int oldCell = atomCell[iAtom];
@@ -593,10 +616,115 @@ public class NeighborCellManager implements NeighborManager {
         cellNextAtom[j] = newIndex;
     }
 
+    // only called from our box listener
+    protected void permuteAtomIndices(int[] oldIndices) {
+        int numAtoms = oldIndices.length;
+        int[] newIndex = new int[numAtoms];
+        for (int i = 0; i < numAtoms; i++) {
+            newIndex[oldIndices[i]] = i;
+        }
+        int[] oldAtomCell = Arrays.copyOf(atomCell, numAtoms);
+        int[] oldCellNextAtom = Arrays.copyOf(cellNextAtom, numAtoms);
+        for (int i = 0; i < numAtoms; i++) {
+            atomCell[i] = oldAtomCell[oldIndices[i]];
+            int next = oldCellNextAtom[oldIndices[i]];
+            cellNextAtom[i] = next == -1 ? -1 : newIndex[next];
+        }
+        for (int c = 0; c < cellLastAtom.length; c++) {
+            if (cellLastAtom[c] > -1) cellLastAtom[c] = newIndex[cellLastAtom[c]];
+        }
+    }
+
+    /**
+     * Returns the leaf indices of all atoms, ordered so that the cells they
+     * are in follow a Morton (Z-order) curve through the box.  Atoms that are
+     * near each other in space end up near each other in the list.  The
+     * result can be passed to Box.permuteLeafAtoms.  Cell assignments must
+     * be current.
+     */
+    public int[] getAtomsInMortonOrder() {
+        int numAtoms = box.getLeafList().size();
+        int totalCells = numCells[0] * numCells[1] * numCells[2];
+        long[] keys = new long[totalCells];
+        int numOccupied = 0;
+        for (int c = 0; c < totalCells; c++) {
+            if (cellLastAtom[c] == -1) continue;
+            int ix = c % numCells[0];
+            int iy = (c / numCells[0]) % numCells[1];
+            int iz = c / (numCells[0] * numCells[1]);
+            keys[numOccupied] = (mortonKey(ix, iy, iz) << 32) | c;
+            numOccupied++;
+        }
+        Arrays.sort(keys, 0, numOccupied);
+        int[] order = new int[numAtoms];
+        int n = 0;
+        for (int k = 0; k < numOccupied; k++) {
+            int c = (int) keys[k];
+            int first = n;
+            for (int j = cellLastAtom[c]; j > -1; j = cellNextAtom[j]) {
+                order[n++] = j;
+            }
+            // the cell list runs from the last atom added; restore leaf order within the cell
+            for (int a = first, b = n - 1; a < b; a++, b--) {
+                int t = order[a];
+                order[a] = order[b];
+                order[b] = t;
+            }
+        }
+        if (n != numAtoms) {
+            throw new RuntimeException("found " + n + " atoms in cells, expected " + numAtoms);
+        }
+        return order;
+    }
+
+    private static long mortonKey(int ix, int iy, int iz) {
+        return spreadBits(ix) | (spreadBits(iy) << 1) | (spreadBits(iz) << 2);
+    }
+
+    // spreads the low 10 bits of x so that there are two 0 bits between each
+    private static long spreadBits(int x) {
+        long v = x & 0x3ff;
+        v = (v | (v << 16)) & 0x030000ffL;
+        v = (v | (v << 8)) & 0x0300f00fL;
+        v = (v | (v << 4)) & 0x030c30c3L;
+        v = (v | (v << 2)) & 0x09249249L;
+        return v;
+    }
+
     public Vector[] getBoxOffsets() {
         return boxOffsets;
     }
 
+    /**
+     * Returns the distinct image offsets used by the cells.  The offset for
+     * cell i is getImageOffsets()[getBoxOffsetIndex()[i]].  The table is
+     * symmetric: entry k and entry getNumImageOffsets()-1-k are opposite.
+     */
+    public Vector[] getImageOffsets() {
+        return rawBoxOffsets;
+    }
+
+    public int[] getBoxOffsetIndex() {
+        return boxOffsetIndex;
+    }
+
+    public int getNumImageOffsets() {
+        return numRawBoxOffsets;
+    }
+
+    public int getCellRange() {
+        return cellRange;
+    }
+
+    /**
+     * Returns the number of cells in each direction (always 3 elements, with
+     * 1 for directions beyond the dimension of the box).  For periodic
+     * directions, this includes cellRange cells of padding on each side.
+     */
+    public int[] getNumCells() {
+        return numCells;
+    }
+
     public int[] getAtomCell() {
         return atomCell;
     }
@@ -247,4 +247,135 @@ public class NeighborIteratorCell implements NeighborIterator {
         }
     }
 
+    @Override
+    public void iterUpNeighbors(int iAtom, Vector rij, NeighborPairConsumer consumer) {
+        double minR2 = getMinR2();
+        IAtomList atoms = box.getLeafList();
+        Vector[] boxOffsets = cellManager.getBoxOffsets();
+        int[] atomCell = cellManager.getAtomCell();
+        int[] cellNextAtom = cellManager.getCellNextAtom();
+        int[] cellOffsets = cellManager.getCellOffsets();
+        int[] wrapMap = cellManager.getWrapMap();
+        int[] cellLastAtom = cellManager.getCellLastAtom();
+        IAtom atom1 = atoms.get(iAtom);
+        Vector ri = atom1.getPosition();
+
+        for (int j = cellNextAtom[iAtom]; j > -1; j = cellNextAtom[j]) {
+            IAtom atom2 = atoms.get(j);
+            boolean skipIntra = bondingInfo.skipBondedPair(isPureAtoms, atom1, atom2);
+            int n = bondingInfo.n(false, atom1, atom2);
+            rij.Ev1Mv2(atom2.getPosition(), ri);
+            double r2 = rij.squared();
+            if (skipIntra && r2 < minR2) continue;
+            if (r2 > minR2) n = 0;
+            consumer.accept(atom2, rij, r2, n);
+        }
+
+        int iCell = atomCell[iAtom];
+        for (int ico = 0; ico < cellManager.numCellOffsets; ico++) {
+            int jCell = iCell + cellOffsets[ico];
+            Vector jbo = boxOffsets[jCell];
+            jCell = wrapMap[jCell];
+            for (int j = cellLastAtom[jCell]; j > -1; j = cellNextAtom[j]) {
+                IAtom atom2 = atoms.get(j);
+                boolean skipIntra = bondingInfo.skipBondedPair(isPureAtoms, atom1, atom2);
+                int n = bondingInfo.n(false, atom1, atom2);
+                rij.Ev1Mv2(atom2.getPosition(), ri);
+                rij.PE(jbo);
+                double r2 = rij.squared();
+                if (skipIntra && r2 < minR2) continue;
+                if (r2 > minR2) n = 0;
+                consumer.accept(atom2, rij, r2, n);
+            }
+        }
+    }
+
+    @Override
+    public void iterAllNeighbors(int iAtom, Vector rij, NeighborPairConsumer consumer) {
+        double minR2 = getMinR2();
+        IAtomList atoms = box.getLeafList();
+        Vector[] boxOffsets = cellManager.getBoxOffsets();
+        int[] atomCell = cellManager.getAtomCell();
+        int[] cellNextAtom = cellManager.getCellNextAtom();
+        int[] allCellOffsets = cellManager.allCellOffsets;
+        int[] wrapMap = cellManager.getWrapMap();
+        int[] cellLastAtom = cellManager.getCellLastAtom();
+        IAtom atom1 = atoms.get(iAtom);
+        Vector ri = atom1.getPosition();
+        int iCell = atomCell[iAtom];
+
+        for (int j = cellLastAtom[iCell]; j > -1; j = cellNextAtom[j]) {
+            if (j == iAtom) {
+                continue;
+            }
+            IAtom atom2 = atoms.get(j);
+            boolean skipIntra = bondingInfo.skipBondedPair(isPureAtoms, atom1, atom2);
+            int n = bondingInfo.n(false, atom1, atom2);
+            rij.Ev1Mv2(atom2.getPosition(), ri);
+            double r2 = rij.squared();
+            if (skipIntra && r2 < minR2) continue;
+            if (r2 > minR2) n = 0;
+            consumer.accept(atom2, rij, r2, n);
+        }
+
+        for (int ico = 0; ico < 2 * cellManager.numCellOffsets; ico++) {
+            int jCell = iCell + allCellOffsets[ico];
+            Vector jbo = boxOffsets[jCell];
+            jCell = wrapMap[jCell];
+            for (int j = cellLastAtom[jCell]; j > -1; j = cellNextAtom[j]) {
+                IAtom atom2 = atoms.get(j);
+                boolean skipIntra = bondingInfo.skipBondedPair(isPureAtoms, atom1, atom2);
+                int n = bondingInfo.n(false, atom1, atom2);
+                rij.Ev1Mv2(atom2.getPosition(), ri);
+                rij.PE(jbo);
+                double r2 = rij.squared();
+                if (skipIntra && r2 < minR2) continue;
+                if (r2 > minR2) n = 0;
+                consumer.accept(atom2, rij, r2, n);
+            }
+        }
+    }
+
+    @Override
+    public double iterAndSumAllNeighbors(IAtom atom1, Vector rij, SuperNbrConsumer consumer) {
+        double minR2 = getMinR2();
+        IAtomList atoms = box.getLeafList();
+        Vector[] boxOffsets = cellManager.getBoxOffsets();
+        int[] atomCell = cellManager.getAtomCell();
+        int[] cellNextAtom = cellManager.getCellNextAtom();
+        int[] allCellOffsets = cellManager.allCellOffsets;
+        int[] wrapMap = cellManager.getWrapMap();
+        int[] cellLastAtom = cellManager.getCellLastAtom();
+        Vector ri = atom1.getPosition();
+        int iAtom = atom1.getLeafIndex();
+        int iCell = atomCell[iAtom];
+        double sum = 0;
+
+        for (int j = cellLastAtom[iCell]; j > -1; j = cellNextAtom[j]) {
+            if (j == iAtom) {
+                continue;
+            }
+            IAtom atom2 = atoms.get(j);
+            boolean skipIntra = bondingInfo.skipBondedPair(isPureAtoms, atom1, atom2);
+            int n = bondingInfo.n(isPureAtoms, atom1, atom2);
+            rij.Ev1Mv2(atom2.getPosition(), ri);
+            if (skipIntra && rij.squared() < minR2) continue;
+            sum += consumer.accept(atom1, atom2, rij, n);
+        }
+
+        for (int ico = 0; ico < 2 * cellManager.numCellOffsets; ico++) {
+            int jCell = iCell + allCellOffsets[ico];
+            Vector jbo = boxOffsets[jCell];
+            jCell = wrapMap[jCell];
+            for (int j = cellLastAtom[jCell]; j > -1; j = cellNextAtom[j]) {
+                IAtom atom2 = atoms.get(j);
+                boolean skipIntra = bondingInfo.skipBondedPair(isPureAtoms, atom1, atom2);
+                rij.Ev1Mv2(atom2.getPosition(), ri);
+                rij.PE(jbo);
+                if (skipIntra && rij.squared() < minR2) continue;
+                sum += consumer.accept(atom1, atom2, rij, 0);
+            }
+        }
+        return sum;
+    }
 }
@@ -23,18 +23,17 @@ public class NeighborIteratorList implements NeighborIterator {
         IAtomList atoms = box.getLeafList();
         IAtom atom1 = atoms.get(iAtom);
         Vector ri = atom1.getPosition();
-        int iNumNbrs = nbrManager.numAtomNbrsUp[iAtom];
-        int[] iNbrs = nbrManager.nbrs[iAtom];
-        Vector[] iNbrBoxOffsets = nbrManager.nbrBoxOffsets[iAtom];
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
+        int jEnd = nbrManager.nbrStart[iAtom + 1];
 
-        for (int j = 0; j < iNumNbrs; j++) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
+        for (int j = nbrManager.nbrStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
             Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
             Vector rij = space.makeVector();
             rij.Ev1Mv2(rj, ri);
-            rij.PE(jbo);
+            rij.PE(imageOffsets[nbrImages[j]]);
             // TODO need to remember n for each neighbor?  or recompute?
             consumer.accept(atom2, rij, 0);
         }
@@ -45,19 +44,17 @@ public class NeighborIteratorList implements NeighborIterator {
         IAtomList atoms = box.getLeafList();
         IAtom atom1 = atoms.get(iAtom);
         Vector ri = atom1.getPosition();
-        int iNumNbrs = nbrManager.numAtomNbrsDn[iAtom];
-        int[] iNbrs = nbrManager.nbrs[iAtom];
-        Vector[] iNbrBoxOffsets = nbrManager.nbrBoxOffsets[iAtom];
-        int maxNbrs = iNbrs.length;
-
-        for (int j = maxNbrs - 1; j > maxNbrs - 1 - iNumNbrs; j--) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
+        int jEnd = nbrManager.nbrDnStart[iAtom + 1];
+
+        for (int j = nbrManager.nbrDnStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
             Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
             Vector rij = space.makeVector();
             rij.Ev1Mv2(rj, ri);
-            rij.ME(jbo);
+            rij.PE(imageOffsets[nbrImages[j]]);
             // TODO need to remember n for each neighbor?  or recompute?
             consumer.accept(atom2, rij, 0);
         }
@@ -65,78 +62,110 @@ public class NeighborIteratorList implements NeighborIterator {
 
     @Override
     public void iterAllNeighbors(int iAtom, NeighborConsumer consumer) {
+        iterUpNeighbors(iAtom, consumer);
+        iterDownNeighbors(iAtom, consumer);
+    }
+
+    public double iterAndSumAllNeighbors(IAtom atom1, SuperNbrConsumer consumer) {
         IAtomList atoms = box.getLeafList();
-        IAtom atom1 = atoms.get(iAtom);
+        int iAtom = atom1.getLeafIndex();
         Vector ri = atom1.getPosition();
-        int iNumNbrs = nbrManager.numAtomNbrsUp[iAtom];
-        int[] iNbrs = nbrManager.nbrs[iAtom];
-        Vector[] iNbrBoxOffsets = nbrManager.nbrBoxOffsets[iAtom];
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
         double sum = 0;
 
-        for (int j = 0; j < iNumNbrs; j++) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
+        int jEnd = nbrManager.nbrStart[iAtom + 1];
+        for (int j = nbrManager.nbrStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
             Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
             Vector rij = space.makeVector();
             rij.Ev1Mv2(rj, ri);
-            rij.PE(jbo);
-            // TODO need to remember n for each neighbor?  or recompute?
-            consumer.accept(atom2, rij, 0);
+            rij.PE(imageOffsets[nbrImages[j]]);
+            sum += consumer.accept(atom1, atom2, rij, 0);
         }
 
-        iNumNbrs = nbrManager.numAtomNbrsDn[iAtom];
-        iNbrs = nbrManager.nbrs[iAtom];
-        int maxNbrs = iNbrs.length;
-
-        for (int j = maxNbrs - 1; j > maxNbrs - 1 - iNumNbrs; j--) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
+        jEnd = nbrManager.nbrDnStart[iAtom + 1];
+        for (int j = nbrManager.nbrDnStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
             Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
             Vector rij = space.makeVector();
             rij.Ev1Mv2(rj, ri);
-            rij.ME(jbo);
-            consumer.accept(atom2, rij, 0);
+            rij.PE(imageOffsets[nbrImages[j]]);
+            sum += consumer.accept(atom1, atom2, rij, 0);
         }
+
+        return sum;
     }
 
-    public double iterAndSumAllNeighbors(IAtom atom1, SuperNbrConsumer consumer) {
+    @Override
+    public void iterUpNeighbors(int iAtom, Vector rij, NeighborPairConsumer consumer) {
+        IAtomList atoms = box.getLeafList();
+        Vector ri = atoms.get(iAtom).getPosition();
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
+        int jEnd = nbrManager.nbrStart[iAtom + 1];
+
+        for (int j = nbrManager.nbrStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
+            rij.Ev1Mv2(atom2.getPosition(), ri);
+            rij.PE(imageOffsets[nbrImages[j]]);
+            consumer.accept(atom2, rij, rij.squared(), 0);
+        }
+    }
+
+    @Override
+    public void iterAllNeighbors(int iAtom, Vector rij, NeighborPairConsumer consumer) {
+        IAtomList atoms = box.getLeafList();
+        Vector ri = atoms.get(iAtom).getPosition();
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
+
+        int jEnd = nbrManager.nbrStart[iAtom + 1];
+        for (int j = nbrManager.nbrStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
+            rij.Ev1Mv2(atom2.getPosition(), ri);
+            rij.PE(imageOffsets[nbrImages[j]]);
+            consumer.accept(atom2, rij, rij.squared(), 0);
+        }
+
+        jEnd = nbrManager.nbrDnStart[iAtom + 1];
+        for (int j = nbrManager.nbrDnStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
+            rij.Ev1Mv2(atom2.getPosition(), ri);
+            rij.PE(imageOffsets[nbrImages[j]]);
+            consumer.accept(atom2, rij, rij.squared(), 0);
+        }
+    }
+
+    @Override
+    public double iterAndSumAllNeighbors(IAtom atom1, Vector rij, SuperNbrConsumer consumer) {
         IAtomList atoms = box.getLeafList();
         int iAtom = atom1.getLeafIndex();
         Vector ri = atom1.getPosition();
-        int iNumNbrs = nbrManager.numAtomNbrsUp[iAtom];
-        int[] iNbrs = nbrManager.nbrs[iAtom];
-        Vector[] iNbrBoxOffsets = nbrManager.nbrBoxOffsets[iAtom];
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
         double sum = 0;
 
-        for (int j = 0; j < iNumNbrs; j++) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
-            Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
-            Vector rij = space.makeVector();
-            rij.Ev1Mv2(rj, ri);
-            rij.PE(jbo);
+        int jEnd = nbrManager.nbrStart[iAtom + 1];
+        for (int j = nbrManager.nbrStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
+            rij.Ev1Mv2(atom2.getPosition(), ri);
+            rij.PE(imageOffsets[nbrImages[j]]);
             sum += consumer.accept(atom1, atom2, rij, 0);
         }
 
-        iNumNbrs = nbrManager.numAtomNbrsDn[iAtom];
-        iNbrs = nbrManager.nbrs[iAtom];
-        int maxNbrs = iNbrs.length;
-
-        for (int j = maxNbrs - 1; j > maxNbrs - 1 - iNumNbrs; j--) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
-            Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
-            Vector rij = space.makeVector();
-            rij.Ev1Mv2(rj, ri);
-            rij.ME(jbo);
+        jEnd = nbrManager.nbrDnStart[iAtom + 1];
+        for (int j = nbrManager.nbrDnStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
+            rij.Ev1Mv2(atom2.getPosition(), ri);
+            rij.PE(imageOffsets[nbrImages[j]]);
             sum += consumer.accept(atom1, atom2, rij, 0);
         }
 
         return sum;
     }
-
 }
@@ -30,30 +30,7 @@ public class NeighborIteratorListHard implements NeighborIteratorHard {
 
     @Override
     public void iterUpNeighbors(int iAtom, NeighborConsumer consumer) {
-        final NeighborConsumerHard consumerHard = consumer instanceof NeighborConsumerHard ? (NeighborConsumerHard) consumer : null;
-        IAtomList atoms = box.getLeafList();
-        IAtom atom1 = atoms.get(iAtom);
-        Vector ri = atom1.getPosition();
-        int iNumNbrs = nbrManager.numAtomNbrsUp[iAtom];
-        int[] iNbrs = nbrManager.nbrs[iAtom];
-        Vector[] iNbrBoxOffsets = nbrManager.nbrBoxOffsets[iAtom];
-        int[] iState = nbrManager.nbrState[iAtom];
-
-        for (int j = 0; j < iNumNbrs; j++) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
-            Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
-            Vector rij = space.makeVector();
-            rij.Ev1Mv2(rj, ri);
-            rij.PE(jbo);
-            if (consumerHard == null) {
-                // we're like just computing energy
-                consumer.accept(atom2, rij, 0);
-            } else {
-                consumerHard.acceptHard(atom2, rij, iState[j]);
-            }
-        }
+        iterNeighbors(iAtom, nbrManager.nbrStart, consumer);
     }
 
     @Override
@@ -63,29 +40,31 @@ public class NeighborIteratorListHard implements NeighborIteratorHard {
 
     @Override
     public void iterDownNeighbors(int iAtom, NeighborConsumer consumer) {
+        iterNeighbors(iAtom, nbrManager.nbrDnStart, consumer);
+    }
+
+    private void iterNeighbors(int iAtom, int[] nbrStart, NeighborConsumer consumer) {
         final NeighborConsumerHard consumerHard = consumer instanceof NeighborConsumerHard ? (NeighborConsumerHard) consumer : null;
         IAtomList atoms = box.getLeafList();
         IAtom atom1 = atoms.get(iAtom);
         Vector ri = atom1.getPosition();
-        int iNumNbrs = nbrManager.numAtomNbrsDn[iAtom];
-        int[] iNbrs = nbrManager.nbrs[iAtom];
-        Vector[] iNbrBoxOffsets = nbrManager.nbrBoxOffsets[iAtom];
-        int maxNbrs = iNbrs.length;
-        int[] iState = nbrManager.nbrState[iAtom];
-
-        for (int j = maxNbrs - 1; j > maxNbrs - 1 - iNumNbrs; j--) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
+        int[] state = nbrManager.nbrState;
+        int jEnd = nbrStart[iAtom + 1];
+
+        for (int j = nbrStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
             Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
             Vector rij = space.makeVector();
             rij.Ev1Mv2(rj, ri);
-            rij.ME(jbo);
+            rij.PE(imageOffsets[nbrImages[j]]);
             if (consumerHard == null) {
                 // we're like just computing energy
                 consumer.accept(atom2, rij, 0);
             } else {
-                consumerHard.acceptHard(atom2, rij, iState[j]);
+                consumerHard.acceptHard(atom2, rij, state[j]);
             }
         }
     }
@@ -100,34 +79,27 @@ public class NeighborIteratorListHard implements NeighborIteratorHard {
         IAtomList atoms = box.getLeafList();
         IAtom atom1 = atoms.get(iAtom);
         Vector ri = atom1.getPosition();
-        int iNumNbrs = nbrManager.numAtomNbrsUp[iAtom];
-        int[] iNbrs = nbrManager.nbrs[iAtom];
-        Vector[] iNbrBoxOffsets = nbrManager.nbrBoxOffsets[iAtom];
-        double sum = 0;
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
 
-        for (int j = 0; j < iNumNbrs; j++) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
+        int jEnd = nbrManager.nbrStart[iAtom + 1];
+        for (int j = nbrManager.nbrStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
             Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
             Vector rij = space.makeVector();
             rij.Ev1Mv2(rj, ri);
-            rij.PE(jbo);
+            rij.PE(imageOffsets[nbrImages[j]]);
             consumer.accept(atom2, rij, 0);
         }
 
-        iNumNbrs = nbrManager.numAtomNbrsDn[iAtom];
-        iNbrs = nbrManager.nbrs[iAtom];
-        int maxNbrs = iNbrs.length;
-
-        for (int j = maxNbrs - 1; j > maxNbrs - 1 - iNumNbrs; j--) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
+        jEnd = nbrManager.nbrDnStart[iAtom + 1];
+        for (int j = nbrManager.nbrDnStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
             Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
             Vector rij = space.makeVector();
             rij.Ev1Mv2(rj, ri);
-            rij.ME(jbo);
+            rij.PE(imageOffsets[nbrImages[j]]);
             consumer.accept(atom2, rij, 0);
         }
     }
@@ -136,34 +108,28 @@ public class NeighborIteratorListHard implements NeighborIteratorHard {
         IAtomList atoms = box.getLeafList();
         int iAtom = atom1.getLeafIndex();
         Vector ri = atom1.getPosition();
-        int iNumNbrs = nbrManager.numAtomNbrsUp[iAtom];
-        int[] iNbrs = nbrManager.nbrs[iAtom];
-        Vector[] iNbrBoxOffsets = nbrManager.nbrBoxOffsets[iAtom];
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
         double sum = 0;
 
-        for (int j = 0; j < iNumNbrs; j++) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
+        int jEnd = nbrManager.nbrStart[iAtom + 1];
+        for (int j = nbrManager.nbrStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
             Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
             Vector rij = space.makeVector();
             rij.Ev1Mv2(rj, ri);
-            rij.PE(jbo);
+            rij.PE(imageOffsets[nbrImages[j]]);
             sum += consumer.accept(atom1, atom2, rij, 0);
         }
 
-        iNumNbrs = nbrManager.numAtomNbrsDn[iAtom];
-        iNbrs = nbrManager.nbrs[iAtom];
-        int maxNbrs = iNbrs.length;
-
-        for (int j = maxNbrs - 1; j > maxNbrs - 1 - iNumNbrs; j--) {
-            int jAtom = iNbrs[j];
-            IAtom atom2 = atoms.get(jAtom);
+        jEnd = nbrManager.nbrDnStart[iAtom + 1];
+        for (int j = nbrManager.nbrDnStart[iAtom]; j < jEnd; j++) {
+            IAtom atom2 = atoms.get(nbrs[j]);
             Vector rj = atom2.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
             Vector rij = space.makeVector();
             rij.Ev1Mv2(rj, ri);
-            rij.ME(jbo);
+            rij.PE(imageOffsets[nbrImages[j]]);
             sum += consumer.accept(atom1, atom2, rij, 0);
         }
 
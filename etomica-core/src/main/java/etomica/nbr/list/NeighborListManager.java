@@ -5,6 +5,7 @@ import etomica.atom.IAtomList;
 import etomica.box.Box;
 import etomica.integrator.IntegratorEvent;
 import etomica.integrator.IntegratorListener;
+import etomica.integrator.IntegratorTimer;
 import etomica.nbr.cell.NeighborCellManager;
 import etomica.potential.BondingInfo;
 import etomica.potential.IPotential2;
@@ -13,14 +14,19 @@ import etomica.potential.compute.NeighborManager;
 import etomica.space.Space;
 import etomica.space.Vector;
 import etomica.species.SpeciesManager;
-import etomica.util.Debug;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class NeighborListManager implements NeighborManager, NeighborManager.NeighborEventSource, IntegratorListener {
     private final NeighborCellManager cellManager;
-    private IPotential2[][] pairPotentials;
+    protected IPotential2[][] pairPotentials;
     protected final Box box;
     protected final BondingInfo bondingInfo;
     protected final boolean isPureAtoms;
@@ -28,18 +34,35 @@ public class NeighborListManager implements NeighborManager, NeighborManager.Nei
     private final int numAtomTypes;
     protected final Space space;
     private final NeighborIteratorList neighborIterator;
-    public int[] numAtomNbrsUp, numAtomNbrsDn;
-    // consider 1D array since Java sucks
-    public int[][] nbrs;
-    public Vector[][] nbrBoxOffsets;
+    // neighbor lists are stored in compressed-sparse-row form.  the up
+    // neighbors of atom i are nbrs[nbrStart[i]] .. nbrs[nbrStart[i+1]-1] and
+    // its down neighbors are nbrs[nbrDnStart[i]] .. nbrs[nbrDnStart[i+1]-1].
+    // nbrImages holds, for each entry, the index of the image offset to add
+    // to rj - ri; down entries hold the opposite image of the up entry.
+    public int[] nbrs;
+    public short[] nbrImages;
+    public int[] nbrStart, nbrDnStart;
+    protected Vector[] imageOffsets;
+    protected int numNbrs;
     protected double nbrRange;
     private double safetyFac = 0.4;
     private boolean onlyUpNbrs = true;
-    protected int maxNab;
-    private Vector[] oldAtomPositions;
+    // leaf atom positions packed by leaf index, gathered by reset; both the
+    // input to the rebuild and the reference for checkUpdateNbrs
+    protected double[] positions;
+    protected final Vector dr;
     private final List<INeighborListener> listeners;
     private int numUnsafe = -1;
     private double minR2;
+    protected int numThreads = 1;
+    protected int sortInterval, numResets;
+    protected IntegratorTimer timer;
+    protected IntegratorTimer.Counter resetCounter;
+    protected boolean timerSet;
+    protected ExecutorService executor;
+    protected ResetWorker[] workers;
+    protected List<Callable<Object>> searchTasks, copyTasks;
+    protected int[] cellOrder, atomNbrCount, atomNbrOffset;
 
     public NeighborListManager(SpeciesManager sm, Box box, int cellRange, double nbrRange, BondingInfo bondingInfo) {
         this.box = box;
@@ -50,13 +73,17 @@ public class NeighborListManager implements NeighborManager, NeighborManager.Nei
         numAtomTypes = sm.getAtomTypeCount();
         maxR2 = new double[numAtomTypes];
         maxR2Unsafe = new double[numAtomTypes];
-        oldAtomPositions = new Vector[0];
-        nbrBoxOffsets = new Vector[0][0];
-        nbrs = new int[0][0];
-        numAtomNbrsUp = new int[0];
+        positions = new double[0];
+        dr = space.makeVector();
+        nbrs = new int[0];
+        nbrImages = new short[0];
+        nbrStart = nbrDnStart = new int[]{0};
+        imageOffsets = new Vector[0];
         isPureAtoms = sm.isPureAtoms();
         this.neighborIterator = new NeighborIteratorList(this, box);
         listeners = new ArrayList<>();
+        cellOrder = atomNbrCount = atomNbrOffset = new int[0];
+        setNumThreads(1);
     }
 
     public NeighborCellManager getCellManager() {
@@ -99,6 +126,80 @@ public class NeighborListManager implements NeighborManager, NeighborManager.Nei
         return this.neighborIterator;
     }
 
+    /**
+     * Sets the number of threads used to find neighbors in reset.  The atoms
+     * are listed cell by cell and each thread takes a contiguous block of that
+     * list (a block of neighboring cells), finding up neighbors into its own
+     * buffer.  A prefix sum of the per-atom counts then places each atom's
+     * list and the threads copy their lists into place.  The resulting lists
+     * do not depend on the number of threads.  With one thread (the default),
+     * or for subclasses that customize the pair test, reset searches serially
+     * in atom order and writes directly into the lists; see
+     * canRebuildInParallel.
+     */
+    public void setNumThreads(int newNumThreads) {
+        if (newNumThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive");
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        numThreads = newNumThreads;
+        if (numThreads > 1) {
+            executor = Executors.newFixedThreadPool(numThreads, r -> {
+                Thread t = new Thread(r, "NeighborListManager-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        workers = new ResetWorker[numThreads];
+        searchTasks = new ArrayList<>(numThreads);
+        copyTasks = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            ResetWorker w = new ResetWorker();
+            workers[t] = w;
+            searchTasks.add(w::findNeighbors);
+            copyTasks.add(w::copyNeighbors);
+        }
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Sets how often reset renumbers the leaf atoms so that atoms close in
+     * space have nearby leaf indices (cell by cell along a Morton curve).
+     * With an interval of n, the atoms are sorted on every nth reset.  This
+     * keeps the positions, forces and neighbor lists of neighboring atoms
+     * close in memory as the atoms diffuse.  0 (the default) disables
+     * sorting.
+     *
+     * @see Box#permuteLeafAtoms(int[])
+     */
+    public void setSortInterval(int newSortInterval) {
+        if (newSortInterval < 0) {
+            throw new IllegalArgumentException("sort interval must not be negative");
+        }
+        sortInterval = newSortInterval;
+        numResets = 0;
+    }
+
+    public int getSortInterval() {
+        return sortInterval;
+    }
+
+    /**
+     * Returns true if the up neighbors can be found by several threads.  That
+     * search applies the base class pair test directly (not checkNbrPair or
+     * addAsNbrPair), so only this class uses it; a subclass that keeps the
+     * base class pair test can opt in by overriding this method.
+     */
+    protected boolean canRebuildInParallel() {
+        return getClass() == NeighborListManager.class;
+    }
+
     public void setSafetyFac(double newSafetyFac) {
         safetyFac = newSafetyFac;
         init();
@@ -139,19 +240,55 @@ public class NeighborListManager implements NeighborManager, NeighborManager.Nei
 
     @Override
     public void integratorStepStarted(IntegratorEvent e) {
+        if (!timerSet && e.getIntegrator().getTimer() != timer) {
+            useTimer(e.getIntegrator().getTimer());
+        }
         checkUpdateNbrs();
     }
 
+    /**
+     * Sets the timer that records the time taken by neighbor list rebuilds
+     * triggered by checkUpdateNbrs.  Otherwise (or if this is set to null),
+     * the timer of the integrator this listens to is used.
+     */
+    public void setTimer(IntegratorTimer newTimer) {
+        timerSet = newTimer != null;
+        useTimer(newTimer);
+    }
+
+    protected void useTimer(IntegratorTimer newTimer) {
+        timer = newTimer;
+        resetCounter = timer == null ? null : timer.getCounter("neighbor reset");
+    }
+
 
     @Override
     public void updateAtom(IAtom atom) {
         this.cellManager.updateAtom(atom);
     }
 
-    protected void realloc() {
-        int boxNumAtoms = box.getLeafList().size();
-        nbrs = new int[boxNumAtoms][maxNab];
-        nbrBoxOffsets = new Vector[boxNumAtoms][maxNab];
+    public int getNumUpNeighbors(int i) {
+        return nbrStart[i + 1] - nbrStart[i];
+    }
+
+    public int getNumDownNeighbors(int i) {
+        return nbrDnStart[i + 1] - nbrDnStart[i];
+    }
+
+    /**
+     * Returns the image offsets referred to by nbrImages.
+     */
+    public Vector[] getImageOffsets() {
+        return imageOffsets;
+    }
+
+    /**
+     * Grows the neighbor arrays so they can hold newLength entries, keeping
+     * the existing entries.
+     */
+    protected void realloc(int newLength) {
+        nbrs = Arrays.copyOf(nbrs, newLength);
+        nbrImages = Arrays.copyOf(nbrImages, newLength);
     }
 
     public void reset() {
@@ -165,130 +302,217 @@ public class NeighborListManager implements NeighborManager, NeighborManager.Nei
         IAtomList atoms = box.getLeafList();
         int boxNumAtoms = atoms.size();
         if (boxNumAtoms == 0) return;
-        boolean moreAtoms = boxNumAtoms > oldAtomPositions.length;
-        if (moreAtoms) {
-            oldAtomPositions = new Vector[boxNumAtoms];
-            for (int i = 0; i < boxNumAtoms; i++) oldAtomPositions[i] = box.getSpace().makeVector();
-        }
+        int D = space.D();
         for (int i = 0; i < boxNumAtoms; i++) {
             Vector ri = atoms.get(i).getPosition();
             ri.PE(box.getBoundary().centralImage(ri));
-            oldAtomPositions[i].E(ri);
+        }
+        if (sortInterval > 0 && numResets++ % sortInterval == 0) {
+            cellManager.assignCellAll();
+            box.permuteLeafAtoms(cellManager.getAtomsInMortonOrder());
+        }
+        // pack the positions so the pair loop below streams through one array
+        if (positions.length < boxNumAtoms * D) {
+            positions = new double[boxNumAtoms * D];
+        }
+        for (int i = 0; i < boxNumAtoms; i++) {
+            Vector ri = atoms.get(i).getPosition();
+            for (int k = 0; k < D; k++) {
+                positions[i * D + k] = ri.getX(k);
+            }
         }
 
         cellManager.assignCellAll();
-        boolean forceReallocNbrs = false;
+        imageOffsets = cellManager.getImageOffsets();
+        if (cellManager.getNumImageOffsets() > Short.MAX_VALUE) {
+            throw new RuntimeException("too many periodic images for neighbor lists");
+        }
+
+        if (nbrStart.length < boxNumAtoms + 1) {
+            nbrStart = new int[boxNumAtoms + 1];
+            nbrDnStart = new int[boxNumAtoms + 1];
+        }
+        if (nbrs.length == 0) realloc(8 * boxNumAtoms);
+
+        // first pass: find the up neighbors of each atom
+        double rc2 = nbrRange * nbrRange;
+        numNbrs = 0;
+        if (numThreads > 1 && canRebuildInParallel()) {
+            findUpNeighborsByCell(boxNumAtoms, rc2);
+        } else {
+            findUpNeighbors(boxNumAtoms, rc2);
+        }
+        nbrStart[boxNumAtoms] = numNbrs;
+
+        if (onlyUpNbrs) {
+            Arrays.fill(nbrDnStart, 0, boxNumAtoms + 1, numNbrs);
+            return;
+        }
+
+        // second pass: count the down neighbors of each atom, then lay out
+        // their lists after all the up lists and fill them
+        int numUp = numNbrs;
+        if (nbrs.length < 2 * numUp) realloc(2 * numUp);
+        Arrays.fill(nbrDnStart, 0, boxNumAtoms + 1, 0);
+        for (int k = 0; k < numUp; k++) {
+            nbrDnStart[nbrs[k] + 1]++;
+        }
+        nbrDnStart[0] = numUp;
+        for (int i = 0; i < boxNumAtoms; i++) {
+            nbrDnStart[i + 1] += nbrDnStart[i];
+        }
+        int oppositeImage = cellManager.getNumImageOffsets() - 1;
+        for (int i = 0; i < boxNumAtoms; i++) {
+            for (int k = nbrStart[i]; k < nbrStart[i + 1]; k++) {
+                int j = nbrs[k];
+                // nbrDnStart[j] serves as j's fill cursor and is shifted back below
+                int slot = nbrDnStart[j]++;
+                nbrs[slot] = i;
+                nbrImages[slot] = (short) (oppositeImage - nbrImages[k]);
+                newDownNeighbor(j, i, k, slot);
+            }
+        }
+        System.arraycopy(nbrDnStart, 0, nbrDnStart, 1, boxNumAtoms);
+        nbrDnStart[0] = numUp;
+        numNbrs = 2 * numUp;
+    }
+
+    /**
+     * Finds the up neighbors of each atom in atom order, appending them to
+     * nbrs and setting nbrStart.  Used with one thread or when
+     * canRebuildInParallel returns false.  Atom order only keeps the compared
+     * positions in cache if neighboring atoms have nearby indices; see
+     * setSortInterval.
+     */
+    protected void findUpNeighbors(int boxNumAtoms, double rc2) {
+        IAtomList atoms = box.getLeafList();
         Vector[] boxOffsets = cellManager.getBoxOffsets();
+        int[] boxOffsetIndex = cellManager.getBoxOffsetIndex();
         int[] atomCell = cellManager.getAtomCell();
         int[] cellNextAtom = cellManager.getCellNextAtom();
         int[] cellOffsets = cellManager.getCellOffsets();
         int[] wrapMap = cellManager.getWrapMap();
         int[] cellLastAtom = cellManager.getCellLastAtom();
-
-        if (!moreAtoms && boxNumAtoms > nbrs.length) realloc();
-
-        while (true) {
-            if (moreAtoms) {
-                numAtomNbrsUp = new int[boxNumAtoms];
-                if (!onlyUpNbrs) numAtomNbrsDn = new int[boxNumAtoms];
+        // neighbors are appended in atom order, so each atom's list
+        // starts where the previous ended.
+        for (int i = 0; i < boxNumAtoms; i++) {
+            nbrStart[i] = numNbrs;
+            IAtom iAtom = atoms.get(i);
+            int j = i;
+            int iCell = atomCell[i];
+            Vector jbo = boxOffsets[iCell];
+            int jImage = boxOffsetIndex[iCell];
+            IPotential2[] iPotentials = pairPotentials[iAtom.getType().getIndex()];
+            while ((j = cellNextAtom[j]) > -1) {
+                IAtom jAtom = atoms.get(j);
+                checkNbrPair(i, j, iAtom, jAtom, rc2, jbo, jImage, iPotentials);
             }
-            // forceReallocNbrs can be used to force reallocation when max # of nbrs is too small
-            if (moreAtoms || forceReallocNbrs) {
-                if (forceReallocNbrs) {
-                    maxNab *= 1.2;
+            for (int cellOffset : cellOffsets) {
+                int jCell = iCell + cellOffset;
+                jbo = boxOffsets[jCell];
+                jImage = boxOffsetIndex[jCell];
+                jCell = wrapMap[jCell];
+                for (j = cellLastAtom[jCell]; j > -1; j = cellNextAtom[j]) {
+                    IAtom jAtom = atoms.get(j);
+                    checkNbrPair(i, j, iAtom, jAtom, rc2, jbo, jImage, iPotentials);
                 }
-                if (maxNab == 0) maxNab = 5;
-                realloc();
-                forceReallocNbrs = false;
             }
+        }
+    }
 
-            for (int i = 0; i < boxNumAtoms; i++) numAtomNbrsUp[i] = 0;
+    /**
+     * Finds the up neighbors visiting atoms cell by cell, which keeps the
+     * positions being compared in cache, and then merges the per-thread
+     * lists into atom order.
+     */
+    protected void findUpNeighborsByCell(int boxNumAtoms, double rc2) {
+        if (cellOrder.length < boxNumAtoms) {
+            cellOrder = new int[boxNumAtoms];
+            atomNbrCount = new int[boxNumAtoms];
+            atomNbrOffset = new int[boxNumAtoms];
+        }
+        int[] cellLastAtom = cellManager.getCellLastAtom();
+        int[] cellNextAtom = cellManager.getCellNextAtom();
+        int n = 0;
+        for (int c = 0; c < cellLastAtom.length; c++) {
+            for (int i = cellLastAtom[c]; i > -1; i = cellNextAtom[i]) {
+                cellOrder[n++] = i;
+            }
+        }
+        for (int t = 0; t < numThreads; t++) {
+            workers[t].setRange(boxNumAtoms * t / numThreads, boxNumAtoms * (t + 1) / numThreads, rc2);
+        }
+        runTasks(searchTasks);
 
-            double rc2 = nbrRange * nbrRange;
-            int tooMuch = 0;
-            for (int i = 0; i < boxNumAtoms; i++) {
-                IAtom iAtom = atoms.get(i);
-                int j = i;
-                int iCell = atomCell[i];
-                Vector jbo = boxOffsets[iCell];
-                IPotential2[] iPotentials = pairPotentials[iAtom.getType().getIndex()];
-                while ((j = cellNextAtom[j]) > -1) {
-                    IAtom jAtom = atoms.get(j);
-                    tooMuch += checkNbrPair(i, j, iAtom, jAtom, rc2, jbo, iPotentials);
-                }
-                for (int cellOffset : cellOffsets) {
-                    int jCell = iCell + cellOffset;
-                    jbo = boxOffsets[jCell];
-                    jCell = wrapMap[jCell];
-                    for (j = cellLastAtom[jCell]; j > -1; j = cellNextAtom[j]) {
-                        IAtom jAtom = atoms.get(j);
-                        tooMuch += checkNbrPair(i, j, iAtom, jAtom, rc2, jbo, iPotentials);
-                    }
-                }
-                if (tooMuch > 0) {
-                    if (Debug.ON) {
-                        System.out.println("maxNab " + maxNab + " => " + (maxNab + tooMuch));
-                    }
-                    maxNab += tooMuch;
-                    forceReallocNbrs = true;
-                    break;
+        for (int i = 0; i < boxNumAtoms; i++) {
+            nbrStart[i] = numNbrs;
+            numNbrs += atomNbrCount[i];
+        }
+        if (nbrs.length < numNbrs) realloc(Math.max(numNbrs, nbrs.length + nbrs.length / 2));
+        runTasks(copyTasks);
+    }
+
+    protected void runTasks(List<Callable<Object>> tasks) {
+        if (executor == null) {
+            for (Callable<Object> task : tasks) {
+                try {
+                    task.call();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
                 }
             }
-            if (tooMuch > 0) continue;
-            if (!onlyUpNbrs) {
-                for (int i = 0; i < boxNumAtoms; i++) numAtomNbrsDn[i] = 0;
-                outerDn:
-                for (int i = 0; i < boxNumAtoms; i++) {
-                    int iNumNbrs = numAtomNbrsUp[i];
-                    int[] iNbrs = nbrs[i];
-                    for (int j = 0; j < iNumNbrs; j++) {
-                        int jj = iNbrs[j];
-                        if (numAtomNbrsDn[jj] + numAtomNbrsUp[jj] >= maxNab) {
-                            if (Debug.ON) {
-                                System.out.println("maxNab " + maxNab + " => " + (maxNab * 4 / 3));
-                            }
-                            maxNab = (maxNab * 4) / 3;
-                            forceReallocNbrs = true;
-                            break outerDn;
-                        }
-                        newDownNeighbor(jj, i, j, maxNab - 1 - numAtomNbrsDn[jj]);
-                        // these offsets are actually opposite... we don't have a clean
-                        // way to find the index of the opposite offset.
-                        nbrBoxOffsets[jj][maxNab - 1 - numAtomNbrsDn[jj]] = nbrBoxOffsets[i][j];
-
-                        numAtomNbrsDn[jj]++;
-                    }
-                }
-                if (forceReallocNbrs) continue;
+            return;
+        }
+        try {
+            for (Future<Object> f : executor.invokeAll(tasks)) {
+                f.get();
             }
-            break;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Called as the down neighbor lists are filled.  Atom j is at index upSlot
+     * (in the up neighbors of atom i) and atom i is at index downSlot (in the
+     * down neighbors of atom j).
+     */
     protected void newDownNeighbor(int j, int i, int upSlot, int downSlot) {
-        nbrs[j][downSlot] = i;
     }
 
-    protected int checkNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, double rc2, Vector jbo, IPotential2[] iPotentials) {
-        if (iPotentials[jAtom.getType().getIndex()] == null) return 0;
-        boolean skipIntra = bondingInfo.skipBondedPair(isPureAtoms, iAtom, jAtom);
+    protected void checkNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, double rc2, Vector jbo, int jImage, IPotential2[] iPotentials) {
+        if (iPotentials[jAtom.getType().getIndex()] == null) return;
 
-        Vector dr = space.makeVector();
-        Vector ri = iAtom.getPosition();
-        Vector rj = jAtom.getPosition();
-        dr.Ev1Mv2(rj, ri);
+        double r2 = pairDistance2(i, j, jbo);
+        if (r2 > rc2 || (r2 < minR2 && bondingInfo.skipBondedPair(isPureAtoms, iAtom, jAtom))) return;
+        dr.Ev1Mv2(jAtom.getPosition(), iAtom.getPosition());
         dr.PE(jbo);
-        double r2 = dr.squared();
-        if (r2 > rc2 || (skipIntra && r2 < minR2)) return 0;
-        return addAsNbrPair(i, j, iAtom, jAtom, jbo, iPotentials, dr);
+        addAsNbrPair(i, j, iAtom, jAtom, jImage, iPotentials, dr);
     }
 
-    protected int addAsNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, Vector jbo, IPotential2[] iPotentials, Vector dr) {
-        if (numAtomNbrsUp[i] >= maxNab) return 1;
-        nbrs[i][numAtomNbrsUp[i]] = j;
-        nbrBoxOffsets[i][numAtomNbrsUp[i]] = jbo;
-        numAtomNbrsUp[i]++;
-        return 0;
+    /**
+     * Returns the squared distance between atoms i and j (shifted by jbo),
+     * computed from the packed positions gathered by reset.
+     */
+    protected double pairDistance2(int i, int j, Vector jbo) {
+        int D = jbo.getD();
+        double r2 = 0;
+        for (int k = 0, iOffset = i * D, jOffset = j * D; k < D; k++) {
+            double dx = positions[jOffset + k] - positions[iOffset + k] + jbo.getX(k);
+            r2 += dx * dx;
+        }
+        return r2;
+    }
+
+    /**
+     * Appends j to the up neighbors of atom i, which must be the atom whose
+     * neighbors are currently being found.
+     */
+    protected void addAsNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, int jImage, IPotential2[] iPotentials, Vector dr) {
+        if (numNbrs == nbrs.length) realloc(Math.max(16, nbrs.length + nbrs.length / 2));
+        nbrs[numNbrs] = j;
+        nbrImages[numNbrs] = (short) jImage;
+        numNbrs++;
     }
 
     public void checkUpdateNbrs() {
@@ -297,10 +521,15 @@ public class NeighborListManager implements NeighborManager, NeighborManager.Nei
         boolean needsUpdate = false;
         double thisMaxR2 = 0;
         boolean unsafe = false;
+        int D = space.D();
         for (int i = 0; i < boxNumAtoms; i++) {
             IAtom iAtom = atoms.get(i);
             Vector ri = iAtom.getPosition();
-            double r2 = ri.Mv1Squared(oldAtomPositions[i]);
+            double r2 = 0;
+            for (int k = 0; k < D; k++) {
+                double dx = ri.getX(k) - positions[i * D + k];
+                r2 += dx * dx;
+            }
             thisMaxR2 = Math.max(r2, thisMaxR2);
             if (r2 > maxR2[iAtom.getType().getIndex()]) {
                 if (safetyFac > 0 && r2 > maxR2Unsafe[iAtom.getType().getIndex()]) {
@@ -325,8 +554,10 @@ public class NeighborListManager implements NeighborManager, NeighborManager.Nei
                     System.err.println();
                 }
             }
+            long t0 = timer == null ? 0 : System.nanoTime();
             reset();
             fireNeighborUpdateEvent();
+            if (timer != null) resetCounter.add(System.nanoTime() - t0);
         }
     }
 
@@ -335,4 +566,79 @@ public class NeighborListManager implements NeighborManager, NeighborManager.Nei
             l.neighborListNeighborsUpdated();
         }
     }
+
+    /**
+     * Finds the up neighbors of a block of atoms (a range of cellOrder).
+     */
+    protected class ResetWorker {
+        protected int[] localNbrs = new int[0];
+        protected short[] localImages = new short[0];
+        protected int numLocal, start, end;
+        protected double rc2;
+
+        public void setRange(int start, int end, double rc2) {
+            this.start = start;
+            this.end = end;
+            this.rc2 = rc2;
+        }
+
+        public Object findNeighbors() {
+            IAtomList atoms = box.getLeafList();
+            Vector[] boxOffsets = cellManager.getBoxOffsets();
+            int[] boxOffsetIndex = cellManager.getBoxOffsetIndex();
+            int[] atomCell = cellManager.getAtomCell();
+            int[] cellNextAtom = cellManager.getCellNextAtom();
+            int[] cellOffsets = cellManager.getCellOffsets();
+            int[] wrapMap = cellManager.getWrapMap();
+            int[] cellLastAtom = cellManager.getCellLastAtom();
+            numLocal = 0;
+            for (int idx = start; idx < end; idx++) {
+                int i = cellOrder[idx];
+                atomNbrOffset[i] = numLocal;
+                IAtom iAtom = atoms.get(i);
+                int j = i;
+                int iCell = atomCell[i];
+                Vector jbo = boxOffsets[iCell];
+                int jImage = boxOffsetIndex[iCell];
+                IPotential2[] iPotentials = pairPotentials[iAtom.getType().getIndex()];
+                while ((j = cellNextAtom[j]) > -1) {
+                    checkPair(i, j, iAtom, atoms.get(j), jbo, jImage, iPotentials);
+                }
+                for (int cellOffset : cellOffsets) {
+                    int jCell = iCell + cellOffset;
+                    jbo = boxOffsets[jCell];
+                    jImage = boxOffsetIndex[jCell];
+                    jCell = wrapMap[jCell];
+                    for (j = cellLastAtom[jCell]; j > -1; j = cellNextAtom[j]) {
+                        checkPair(i, j, iAtom, atoms.get(j), jbo, jImage, iPotentials);
+                    }
+                }
+                atomNbrCount[i] = numLocal - atomNbrOffset[i];
+            }
+            return null;
+        }
+
+        protected void checkPair(int i, int j, IAtom iAtom, IAtom jAtom, Vector jbo, int jImage, IPotential2[] iPotentials) {
+            if (iPotentials[jAtom.getType().getIndex()] == null) return;
+            double r2 = pairDistance2(i, j, jbo);
+            if (r2 > rc2 || (r2 < minR2 && bondingInfo.skipBondedPair(isPureAtoms, iAtom, jAtom))) return;
+            if (numLocal == localNbrs.length) {
+                int newLength = Math.max(16, localNbrs.length + localNbrs.length / 2);
+                localNbrs = Arrays.copyOf(localNbrs, newLength);
+                localImages = Arrays.copyOf(localImages, newLength);
+            }
+            localNbrs[numLocal] = j;
+            localImages[numLocal] = (short) jImage;
+            numLocal++;
+        }
+
+        public Object copyNeighbors() {
+            for (int idx = start; idx < end; idx++) {
+                int i = cellOrder[idx];
+                System.arraycopy(localNbrs, atomNbrOffset[i], nbrs, nbrStart[i], atomNbrCount[i]);
+                System.arraycopy(localImages, atomNbrOffset[i], nbrImages, nbrStart[i], atomNbrCount[i]);
+            }
+            return null;
+        }
+    }
 }
@@ -12,13 +12,15 @@ import etomica.potential.compute.NeighborManagerHard;
 import etomica.space.Vector;
 import etomica.species.SpeciesManager;
 
+import java.util.Arrays;
+
 /**
  * Neighbor manager that that uses neighbor lists and also stores the state of
  * neighbor pairs for hard MD.
  */
 public class NeighborListManagerHard extends NeighborListManager implements NeighborManagerHard {
 
-    public int[][] nbrState;
+    public int[] nbrState = new int[0];
     private final NeighborIteratorListHard neighborIterator;
 
     public NeighborListManagerHard(SpeciesManager sm, Box box, int cellRange, double nbrRange, BondingInfo bondingInfo) {
@@ -32,58 +34,64 @@ public class NeighborListManagerHard extends NeighborListManager implements Neig
         return this.neighborIterator;
     }
 
+    /**
+     * Sorting is not supported; IntegratorHard keeps collision state for each
+     * leaf index.
+     */
+    @Override
+    public void setSortInterval(int newSortInterval) {
+        if (newSortInterval != 0) {
+            throw new RuntimeException("hard MD neighbor lists cannot sort atoms");
+        }
+    }
+
     @Override
-    protected void realloc() {
-        super.realloc();
-        nbrState = new int[box.getLeafList().size()][maxNab];
+    protected void realloc(int newLength) {
+        super.realloc(newLength);
+        nbrState = Arrays.copyOf(nbrState, newLength);
     }
 
     @Override
     protected void newDownNeighbor(int j, int i, int upSlot, int downSlot) {
-        super.newDownNeighbor(j, i, upSlot, downSlot);
-        nbrState[j][downSlot] = nbrState[i][upSlot];
+        nbrState[downSlot] = nbrState[upSlot];
     }
 
     @Override
-    protected int addAsNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, Vector jbo, IPotential2[] iPotentials, Vector dr) {
-        if (numAtomNbrsUp[i] >= maxNab) return 1;
-        nbrs[i][numAtomNbrsUp[i]] = j;
+    protected void addAsNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, int jImage, IPotential2[] iPotentials, Vector dr) {
         int state = iPotentials[jAtom.getType().getIndex()].getState(iAtom, jAtom, dr);
-        nbrState[i][numAtomNbrsUp[i]] = state;
-        nbrBoxOffsets[i][numAtomNbrsUp[i]] = jbo;
-        numAtomNbrsUp[i]++;
-        return 0;
+        super.addAsNbrPair(i, j, iAtom, jAtom, jImage, iPotentials, dr);
+        nbrState[numNbrs - 1] = state;
     }
 
     @Override
     public void setPairState(int i, int j, int state) {
         // a collision happened
         boolean found = false;
-        for (int ii = 0; ii < numAtomNbrsUp[i]; ii++) {
-            if (nbrs[i][ii] == j) {
-                nbrState[i][ii] = state;
+        for (int ii = nbrStart[i]; ii < nbrStart[i + 1]; ii++) {
+            if (nbrs[ii] == j) {
+                nbrState[ii] = state;
                 found = true;
                 break;
             }
         }
         if (!found) {
-            for (int ii = 0; ii < numAtomNbrsUp[j]; ii++) {
-                if (nbrs[j][ii] == i) {
-                    nbrState[j][ii] = state;
+            for (int ii = nbrStart[j]; ii < nbrStart[j + 1]; ii++) {
+                if (nbrs[ii] == i) {
+                    nbrState[ii] = state;
                     break;
                 }
             }
-            for (int jj = maxNab - 1; jj > maxNab - 1 - numAtomNbrsDn[i]; jj--) {
-                if (nbrs[i][jj] == j) {
-                    nbrState[i][jj] = state;
+            for (int jj = nbrDnStart[i]; jj < nbrDnStart[i + 1]; jj++) {
+                if (nbrs[jj] == j) {
+                    nbrState[jj] = state;
                     break;
                 }
             }
             return;
         }
-        for (int jj = maxNab - 1; jj > maxNab - 1 - numAtomNbrsDn[j]; jj--) {
-            if (nbrs[j][jj] == i) {
-                nbrState[j][jj] = state;
+        for (int jj = nbrDnStart[j]; jj < nbrDnStart[j + 1]; jj++) {
+            if (nbrs[jj] == i) {
+                nbrState[jj] = state;
                 break;
             }
         }
@@ -16,8 +16,8 @@ public class NeighborListManagerLattice extends NeighborListManager {
         super(sm, box, cellRange, nbrRange, bondingInfo);
     }
 
-    protected int checkNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, double rc2, Vector jbo, IPotential2[] iPotentials) {
-        if (iPotentials[jAtom.getType().getIndex()] == null) return 0;
+    protected void checkNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, double rc2, Vector jbo, int jImage, IPotential2[] iPotentials) {
+        if (iPotentials[jAtom.getType().getIndex()] == null) return;
 
         Vector dr = space.makeVector();
         Vector ri = iAtom.getPosition();
@@ -32,11 +32,11 @@ public class NeighborListManagerLattice extends NeighborListManager {
         });
         int notZero = 0;
         for (int k=0; k<dr.getD(); k++) {
-            if (dr.getX(k) > nbrRange) return 0;
+            if (dr.getX(k) > nbrRange) return;
             if (dr.getX(k) != 0) notZero++;
         }
-        if (notZero > 1) return 0;
-        return addAsNbrPair(i, j, iAtom, jAtom, jbo, iPotentials, dr);
+        if (notZero > 1) return;
+        addAsNbrPair(i, j, iAtom, jAtom, jImage, iPotentials, dr);
     }
 
 }
@@ -58,22 +58,23 @@ public class PotentialMasterList extends PotentialMaster implements IntegratorLi
         double uTot = 0;
         IAtomList atoms = box.getLeafList();
         int numAtoms = atoms.size();
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        int[] nbrStart = nbrManager.nbrStart;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
 
         for (int i = 0; i < numAtoms; i++) {
             IAtom iAtom = atoms.get(i);
             Vector ri = iAtom.getPosition();
             int iType = iAtom.getType().getIndex();
             IPotential2[] iPotentials = pairPotentials[iType];
-            int iNumNbrs = nbrManager.numAtomNbrsUp[i];
-            int[] iNbrs = nbrManager.nbrs[i];
-            Vector[] iNbrBoxOffsets = nbrManager.nbrBoxOffsets[i];
-            for (int j = 0; j < iNumNbrs; j++) {
-                int jj = iNbrs[j];
+            for (int j = nbrStart[i]; j < nbrStart[i + 1]; j++) {
+                int jj = nbrs[j];
                 IAtom jAtom = atoms.get(jj);
                 int jType = jAtom.getType().getIndex();
                 IPotential2 pij = iPotentials[jType];
                 Vector rj = jAtom.getPosition();
-                Vector jbo = iNbrBoxOffsets[j];
+                Vector jbo = imageOffsets[nbrImages[j]];
                 uTot += handleComputeAll(doForces, i, jj, ri, rj, jbo, pij, pc, false);
             }
         }
@@ -102,7 +103,8 @@ public class PotentialMasterList extends PotentialMaster implements IntegratorLi
 
     @Override
     public void integratorStepStarted(IntegratorEvent e) {
-        this.nbrManager.checkUpdateNbrs();
+        // the manager takes the integrator's timer and checks for an update
+        this.nbrManager.integratorStepStarted(e);
     }
 
     @Override
@@ -118,32 +120,32 @@ public class PotentialMasterList extends PotentialMaster implements IntegratorLi
         Vector ri = atom.getPosition();
 
         IAtomList atoms = box.getLeafList();
-        int iNumNbrs = nbrManager.numAtomNbrsUp[i];
-        int[] iNbrs = nbrManager.nbrs[i];
-        Vector[] iNbrBoxOffsets = nbrManager.nbrBoxOffsets[i];
-        for (int j = 0; j < iNumNbrs; j++) {
-            int jj = iNbrs[j];
+        int[] nbrs = nbrManager.nbrs;
+        short[] nbrImages = nbrManager.nbrImages;
+        Vector[] imageOffsets = nbrManager.getImageOffsets();
+        for (int j = nbrManager.nbrStart[i]; j < nbrManager.nbrStart[i + 1]; j++) {
+            int jj = nbrs[j];
             IAtom jAtom = atoms.get(jj);
             if (arrayContains(jAtom, startExcludeIdx, excludedAtoms)) continue;
             int jType = jAtom.getType().getIndex();
             IPotential2 pij = ip[jType];
             Vector rj = jAtom.getPosition();
-            Vector jbo = iNbrBoxOffsets[j];
+            Vector jbo = imageOffsets[nbrImages[j]];
             boolean skipIntra = bondingInfo.skipBondedPair(isPureAtoms, atom, jAtom);
             u += handleComputeOne(pij, ri, rj, jbo, i, jj, skipIntra);
         }
 
-        iNumNbrs = nbrManager.numAtomNbrsDn[i];
-        for (int j = 0; j < iNumNbrs; j++) {
-            int jj = iNbrs[iNbrs.length - 1 - j];
+        // down neighbors carry the opposite image, so rj - ri + jbo is still right
+        for (int j = nbrManager.nbrDnStart[i]; j < nbrManager.nbrDnStart[i + 1]; j++) {
+            int jj = nbrs[j];
             IAtom jAtom = atoms.get(jj);
             if (arrayContains(jAtom, startExcludeIdx, excludedAtoms)) continue;
             int jType = jAtom.getType().getIndex();
             IPotential2 pij = ip[jType];
             Vector rj = jAtom.getPosition();
-            Vector jbo = iNbrBoxOffsets[iNbrs.length - 1 - j];
+            Vector jbo = imageOffsets[nbrImages[j]];
             boolean skipIntra = bondingInfo.skipBondedPair(isPureAtoms, atom, jAtom);
-            u += handleComputeOne(pij, rj, ri, jbo, i, jj, skipIntra);
+            u += handleComputeOne(pij, ri, rj, jbo, i, jj, skipIntra);
         }
 
         tMC += System.nanoTime() - t1;
@@ -45,6 +45,23 @@ public interface IPotential2 {
         u012[2] += d2u(r2);
     }
 
+    /**
+     * Computes the energy and r du/dr for a block of n pairs, overwriting
+     * u[k] and du[k] with the values for r2[k], as u012add would.
+     * Implementations should be simple loops over the arrays (without calls
+     * per pair) so that the JIT can vectorize them.  This default calls
+     * u012add for each pair, with one small array allocated per block.
+     */
+    default void u01Batch(double[] r2, double[] u, double[] du, int n) {
+        double[] u012 = new double[3];
+        for (int k = 0; k < n; k++) {
+            u012[0] = u012[1] = u012[2] = 0;
+            u012add(r2[k], u012);
+            u[k] = u012[0];
+            du[k] = u012[1];
+        }
+    }
+
     /**
      * The second derivative of the pair energy, times the square of the
      * separation:  r^2 d^2u/dr^2.
@@ -58,6 +58,15 @@ public class P2LennardJones implements IPotential2 {
         u012[2] += epsilon624 * s6 * (s6 - _168div624);
     }
 
+    public void u01Batch(double[] r2, double[] u, double[] du, int n) {
+        for (int k = 0; k < n; k++) {
+            double s2 = sigmaSquared / r2[k];
+            double s6 = s2 * s2 * s2;
+            u[k] = epsilon4 * s6 * (s6 - 1.0);
+            du[k] = -epsilon48 * s6 * (s6 - 0.5);
+        }
+    }
+
    /**
     * The second derivative of the pair energy, times the square of the
     * separation:  r^2 d^2u/dr^2.
@@ -40,6 +40,10 @@ public class P2SoftSphere implements IPotential2 {
         setEpsilon(epsilon);
         this.n = n;
         evenN = n%2 == 0;
+        // powers of s24, s6 and s2 that make up sigma^n/r^n in u, in the same order
+        n24 = n > 36 ? n / 24 : 0;
+        n6 = n == 24 ? 4 : (n % 24) / 6;
+        n2 = (n % 6) / 2;
     }
 
     /**
@@ -122,6 +126,38 @@ public class P2SoftSphere implements IPotential2 {
         return -n*u(r2);
     }
 
+    public void u01Batch(double[] r2, double[] u, double[] du, int nPairs) {
+        if (n > 100) {
+            for (int k = 0; k < nPairs; k++) {
+                u[k] = u(r2[k]);
+                du[k] = -n * u[k];
+            }
+            return;
+        }
+        for (int k = 0; k < nPairs; k++) {
+            double s2 = sigma2 / r2[k];
+            double s6 = s2 * s2 * s2;
+            double sig_rn = 1;
+            if (n24 > 0) {
+                double s24 = s6 * s6 * s6 * s6;
+                for (int i = 0; i < n24; i++) {
+                    sig_rn *= s24;
+                }
+            }
+            for (int i = 0; i < n6; i++) {
+                sig_rn *= s6;
+            }
+            for (int i = 0; i < n2; i++) {
+                sig_rn *= s2;
+            }
+            if (!evenN) {
+                sig_rn *= Math.sqrt(s2);
+            }
+            u[k] = epsilon * sig_rn;
+            du[k] = -n * u[k];
+        }
+    }
+
    /**
     * The second derivative of the pair energy, times the square of the
     * separation:  r^2 d^2u/dr^2.
@@ -190,4 +226,5 @@ public class P2SoftSphere implements IPotential2 {
     protected double epsilon;
     protected final int n;
     protected final boolean evenN;
+    protected final int n24, n6, n2;
 }
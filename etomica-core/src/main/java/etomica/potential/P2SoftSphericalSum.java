@@ -16,6 +16,9 @@ import etomica.space.Space;
 public class P2SoftSphericalSum implements IPotential2 {
 
     private final IPotential2 potential1, potential2, potential3;
+    // u and du from potentials 2 and 3 in u01Batch; per thread, since one
+    // potential may be used by several PotentialComputePair workers
+    private final ThreadLocal<double[][]> batchScratch = ThreadLocal.withInitial(() -> new double[2][0]);
 
     public P2SoftSphericalSum(IPotential2... potential) {
         if (potential.length > 3) throw new RuntimeException("This class only handles up to 3 potentials");
@@ -75,6 +78,32 @@ public class P2SoftSphericalSum implements IPotential2 {
         potential3.u012add(r2, u012);
     }
 
+    public void u01Batch(double[] r2, double[] u, double[] du, int n) {
+        u01BatchWrapped(r2, u, du, n);
+    }
+
+    protected void u01BatchWrapped(double[] r2, double[] u, double[] du, int n) {
+        potential1.u01Batch(r2, u, du, n);
+        if (potential2 == null) return;
+        double[][] scratch = batchScratch.get();
+        if (scratch[0].length < n) {
+            scratch[0] = new double[n];
+            scratch[1] = new double[n];
+        }
+        double[] uMore = scratch[0], duMore = scratch[1];
+        potential2.u01Batch(r2, uMore, duMore, n);
+        for (int k = 0; k < n; k++) {
+            u[k] += uMore[k];
+            du[k] += duMore[k];
+        }
+        if (potential3 == null) return;
+        potential3.u01Batch(r2, uMore, duMore, n);
+        for (int k = 0; k < n; k++) {
+            u[k] += uMore[k];
+            du[k] += duMore[k];
+        }
+    }
+
     public double d2u(double r2) {
         return d2uWrapped(r2);
     }
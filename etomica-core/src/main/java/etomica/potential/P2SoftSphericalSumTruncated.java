@@ -52,6 +52,15 @@ public class P2SoftSphericalSumTruncated extends P2SoftSphericalSum {
         super.uduWrapped(r2, u012);
     }
 
+    public void u01Batch(double[] r2, double[] u, double[] du, int n) {
+        u01BatchWrapped(r2, u, du, n);
+        for (int k = 0; k < n; k++) {
+            boolean inside = r2[k] <= r2Cutoff;
+            u[k] = inside ? u[k] : 0;
+            du[k] = inside ? du[k] : 0;
+        }
+    }
+
     /**
      * Returns the 2nd derivative (r^2 d^2u/dr^2) of the wrapped potential if the separation
      * is less than the cutoff value
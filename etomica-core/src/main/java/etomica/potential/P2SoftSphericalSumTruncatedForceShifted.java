@@ -42,6 +42,16 @@ public class P2SoftSphericalSumTruncatedForceShifted extends P2SoftSphericalSumT
         u012[1] += r*ufShift;
     }
 
+    public void u01Batch(double[] r2, double[] u, double[] du, int n) {
+        u01BatchWrapped(r2, u, du, n);
+        for (int k = 0; k < n; k++) {
+            boolean inside = r2[k] <= r2Cutoff;
+            double r = Math.sqrt(r2[k]);
+            u[k] = inside ? u[k] + (uShift + r * ufShift) : 0;
+            du[k] = inside ? du[k] + r * ufShift : 0;
+        }
+    }
+
     /**
      * Mutator method for the radial cutoff distance.
      */
@@ -32,6 +32,15 @@ public class P2SoftSphericalSumTruncatedShifted extends P2SoftSphericalSumTrunca
         u012[0] += shift;
     }
 
+    public void u01Batch(double[] r2, double[] u, double[] du, int n) {
+        u01BatchWrapped(r2, u, du, n);
+        for (int k = 0; k < n; k++) {
+            boolean inside = r2[k] <= r2Cutoff;
+            u[k] = inside ? u[k] + shift : 0;
+            du[k] = inside ? du[k] : 0;
+        }
+    }
+
     /**
      * Mutator method for the radial cutoff distance.
      */
@@ -177,23 +177,41 @@ public class P2SoftSphericalSumTruncatedSwitched extends P2SoftSphericalSum {
             return;
         }
 
-        double[] thisU012 = new double[3];
-        uduWrapped(r2, thisU012);
         if (r2 < r2Switch) {
-            u012[0] += thisU012[0];
-            u012[1] += thisU012[1];
-            u012[2] += thisU012[2];
+            uduWrapped(r2, u012);
             return;
         }
 
+        // the wrapped potentials add to u012, so set aside what is there
+        double u0 = u012[0], u1 = u012[1], u2 = u012[2];
+        u012[0] = u012[1] = u012[2] = 0;
+        uduWrapped(r2, u012);
+        double u = u012[0], du = u012[1], d2u = u012[2];
+
         // U = u F
         // r (dU/dr) = r F (du/dr) + r u dF/dr
         //           = F du + r u dF/dr
         double r = Math.sqrt(r2);
         double F = getF(r);
-        u012[0] += F * thisU012[0];
-        u012[1] += F * thisU012[1] + r * thisU012[0] * getdFdr(r);
-        u012[2] += r2 * getd2Fdr2(r) * thisU012[0] + 2 * r * getdFdr(r) * thisU012[1] + getF(r) * thisU012[2];
+        u012[0] = u0 + F * u;
+        u012[1] = u1 + F * du + r * u * getdFdr(r);
+        u012[2] = u2 + r2 * getd2Fdr2(r) * u + 2 * r * getdFdr(r) * du + getF(r) * d2u;
+    }
+
+    @Override
+    public void u01Batch(double[] r2, double[] u, double[] du, int n) {
+        u01BatchWrapped(r2, u, du, n);
+        for (int k = 0; k < n; k++) {
+            if (r2[k] < r2Switch) continue;
+            if (r2[k] > r2Cutoff) {
+                u[k] = du[k] = 0;
+                continue;
+            }
+            double r = Math.sqrt(r2[k]);
+            double F = getF(r);
+            du[k] = F * du[k] + r * u[k] * getdFdr(r);
+            u[k] *= F;
+        }
     }
 
     public static void main(String[] args) {
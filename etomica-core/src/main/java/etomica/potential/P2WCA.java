@@ -66,6 +66,16 @@ public class P2WCA implements IPotential2 {
         return du;
     }
 
+    public void u01Batch(double[] r2, double[] u, double[] du, int n) {
+        for (int k = 0; k < n; k++) {
+            double s2 = sigmaSquared / r2[k];
+            double s6 = s2 * s2 * s2;
+            boolean inside = r2[k] < rangeSquared;
+            u[k] = inside ? epsilon4 * s6 * (s6 - 1.0) + epsilon : 0;
+            du[k] = inside ? -epsilon48 * s6 * (s6 - 0.5) : 0;
+        }
+    }
+
    /**
     * The second derivative of the pair energy, times the square of the
     * separation:  r^2 d^2u/dr^2.
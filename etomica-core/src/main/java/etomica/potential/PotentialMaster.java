@@ -109,6 +109,12 @@ public class PotentialMaster implements PotentialCompute {
                 uAtom[newIndex] = uAtom[oldIndex];
             }
 
+            @Override
+            public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+                e.permute(uAtom);
+                e.permute(forces);
+            }
+
             @Override
             public void boxMoleculeRemoved(BoxMoleculeEvent e) {
                 for (AtomType atomType : e.getMolecule().getType().getAtomTypes()) {
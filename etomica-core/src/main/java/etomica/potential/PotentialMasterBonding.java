@@ -2,6 +2,8 @@ package etomica.potential;
 
 import etomica.atom.IAtom;
 import etomica.box.Box;
+import etomica.box.BoxAtomPermutationEvent;
+import etomica.box.BoxEventListener;
 import etomica.integrator.IntegratorEvent;
 import etomica.integrator.IntegratorListener;
 import etomica.molecule.IMolecule;
@@ -35,6 +37,12 @@ public class PotentialMasterBonding implements PotentialCompute {
         this.box = box;
         this.space = box.getSpace();
         this.bondingInfo = bondingInfo;
+        box.getEventManager().addListener(new BoxEventListener() {
+            @Override
+            public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+                e.permute(forces);
+            }
+        });
     }
 
     public FullBondingInfo getBondingInfo() {
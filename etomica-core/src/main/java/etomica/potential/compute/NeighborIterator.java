@@ -15,6 +15,42 @@ public interface NeighborIterator {
         return 0;
     }
 
+    /**
+     * Iterates over the up neighbors of iAtom without allocating anything per
+     * pair.  rij is a scratch vector owned by the caller which holds the
+     * separation to each neighbor in turn.  The consumer may modify rij, but
+     * must not hold on to it.  Callers iterating from several threads must
+     * pass a separate scratch vector for each thread.
+     */
+    default void iterUpNeighbors(int iAtom, Vector rij, NeighborPairConsumer consumer) {
+        iterUpNeighbors(iAtom, (jAtom, dr, n) -> {
+            rij.E(dr);
+            consumer.accept(jAtom, rij, rij.squared(), n);
+        });
+    }
+
+    /**
+     * Iterates over all neighbors of iAtom without allocating anything per
+     * pair.  See {@link #iterUpNeighbors(int, Vector, NeighborPairConsumer)}.
+     */
+    default void iterAllNeighbors(int iAtom, Vector rij, NeighborPairConsumer consumer) {
+        iterAllNeighbors(iAtom, (jAtom, dr, n) -> {
+            rij.E(dr);
+            consumer.accept(jAtom, rij, rij.squared(), n);
+        });
+    }
+
+    /**
+     * Sums the consumer's return value over all neighbors of atom1, using rij
+     * as scratch space for the separation of each pair.
+     */
+    default double iterAndSumAllNeighbors(IAtom atom1, Vector rij, SuperNbrConsumer consumer) {
+        return iterAndSumAllNeighbors(atom1, (a1, a2, dr, n) -> {
+            rij.E(dr);
+            return consumer.accept(a1, a2, rij, n);
+        });
+    }
+
     /**
      * Interface for neighbor iteration callback.
      */
@@ -22,6 +58,14 @@ public interface NeighborIterator {
         void accept(IAtom jAtom, Vector rij, int n);
     }
 
+    /**
+     * Interface for allocation-free neighbor iteration callback.  r2 is the
+     * square of rij.
+     */
+    interface NeighborPairConsumer {
+        void accept(IAtom jAtom, Vector rij, double r2, int n);
+    }
+
     interface SuperNbrConsumer {
         double accept(IAtom atom1, IAtom atom2, Vector rij, int n);
     }
@@ -72,10 +72,39 @@ public class NeighborManagerSimple implements NeighborManager {
                 }
             }
 
+            @Override
+            public void iterUpNeighbors(int i, Vector rij, NeighborPairConsumer consumer) {
+                IAtomList atoms = box.getLeafList();
+                Vector ri = atoms.get(i).getPosition();
+                for (int j = i + 1; j < atoms.size(); j++) {
+                    IAtom atom2 = atoms.get(j);
+                    rij.Ev1Mv2(atom2.getPosition(), ri);
+                    box.getBoundary().nearestImage(rij);
+                    consumer.accept(atom2, rij, rij.squared(), 0);
+                }
+            }
+
+            @Override
+            public void iterAllNeighbors(int i, Vector rij, NeighborPairConsumer consumer) {
+                IAtomList atoms = box.getLeafList();
+                Vector ri = atoms.get(i).getPosition();
+                for (int j = 0; j < atoms.size(); j++) {
+                    if (j == i) continue;
+                    IAtom atom2 = atoms.get(j);
+                    rij.Ev1Mv2(atom2.getPosition(), ri);
+                    box.getBoundary().nearestImage(rij);
+                    consumer.accept(atom2, rij, rij.squared(), 0);
+                }
+            }
+
             @Override
             public double iterAndSumAllNeighbors(IAtom atom1, SuperNbrConsumer consumer) {
+                return iterAndSumAllNeighbors(atom1, box.getSpace().makeVector(), consumer);
+            }
+
+            @Override
+            public double iterAndSumAllNeighbors(IAtom atom1, Vector rij, SuperNbrConsumer consumer) {
                 IAtomList atoms = box.getLeafList();
-                Vector rij = box.getSpace().makeVector();
                 Vector ri = atom1.getPosition();
                 double sum = 0;
                 for (int j = 0; j < atoms.size(); j++) {
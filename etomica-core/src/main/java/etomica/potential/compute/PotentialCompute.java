@@ -4,6 +4,7 @@ import etomica.atom.AtomArrayList;
 import etomica.atom.IAtom;
 import etomica.atom.IAtomList;
 import etomica.box.Box;
+import etomica.box.BoxAtomPermutationEvent;
 import etomica.integrator.IntegratorListener;
 import etomica.molecule.CenterOfMass;
 import etomica.molecule.IMolecule;
@@ -20,6 +21,14 @@ public interface PotentialCompute {
 
     Vector[] getForces();
 
+    /**
+     * Informs this compute that the leaf atoms of its box have been
+     * renumbered, so that arrays indexed by leaf index (like forces) can
+     * follow.  Computes that listen to their box's events need not override
+     * this; it is for those (like PotentialComputeAggregate) that have no box.
+     */
+    default void leafAtomsPermuted(BoxAtomPermutationEvent e) {}
+
     double getLastVirial();
 
     static double computeVirialIntramolecular(Vector[] forces, Box box) {
@@ -1,6 +1,7 @@
 package etomica.potential.compute;
 
 import etomica.atom.IAtom;
+import etomica.box.BoxAtomPermutationEvent;
 import etomica.integrator.IntegratorEvent;
 import etomica.integrator.IntegratorListener;
 import etomica.molecule.IMolecule;
@@ -61,6 +62,15 @@ public class PotentialComputeAggregate implements PotentialCompute {
         return torques;
     }
 
+    @Override
+    public void leafAtomsPermuted(BoxAtomPermutationEvent e) {
+        // otherwise the totals are held by the first compute, which permutes them
+        if (localStorage) {
+            e.permute(forces);
+            e.permute(torques);
+        }
+    }
+
     @Override
     public double getLastVirial() {
         return this.potentialComputes.stream().mapToDouble(PotentialCompute::getLastVirial).sum();
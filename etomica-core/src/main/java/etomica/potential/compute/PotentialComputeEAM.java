@@ -7,6 +7,7 @@ import etomica.atom.AtomType;
 import etomica.atom.IAtom;
 import etomica.atom.IAtomList;
 import etomica.box.Box;
+import etomica.box.BoxAtomPermutationEvent;
 import etomica.box.BoxEventListener;
 import etomica.box.BoxMoleculeEvent;
 import etomica.integrator.IntegratorListener;
@@ -46,6 +47,10 @@ public class PotentialComputeEAM implements PotentialCompute {
     protected double virialTot = Double.NaN, energyTot = Double.NaN;
     protected Vector[] forces;
     protected final Space space;
+    protected final Vector rijScratch;
+    protected final double[] uEmbed = new double[1], duEmbed = new double[1];
+    protected final PairRhoConsumer pairRhoConsumer;
+    protected final EmbeddingForceConsumer embeddingForceConsumer;
 
     protected final int[] atomCountByType;
     protected boolean duAtomMulti = false;
@@ -71,6 +76,9 @@ public class PotentialComputeEAM implements PotentialCompute {
         rdrho = new DoubleArrayList(16);
         drhoSum = new DoubleArrayList(16);
         zero = box.getSpace().makeVector();
+        rijScratch = space.makeVector();
+        pairRhoConsumer = new PairRhoConsumer();
+        embeddingForceConsumer = new EmbeddingForceConsumer();
         forces = new Vector[0];
 
         this.atomCountByType = new int[typeCount];
@@ -88,6 +96,14 @@ public class PotentialComputeEAM implements PotentialCompute {
                     atomCountByType[atomType.getIndex()]--;
                 }
             }
+
+            @Override
+            public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+                e.permute(uAtom);
+                e.permute(rhoSum);
+                e.permute(idf);
+                e.permute(forces);
+            }
         });
 
         // for new atom energy, includes embedding contributions
@@ -251,136 +267,39 @@ public class PotentialComputeEAM implements PotentialCompute {
         rdrho.clear();
 
         IAtomList atoms = box.getLeafList();
-        double[] uTot = {0};
+        pairRhoConsumer.uTot = 0;
+        pairRhoConsumer.doForces = doForces;
         for (int i = 0; i < atoms.size(); i++) {
-            IAtom iAtom = atoms.get(i);
-            int iType = iAtom.getType().getIndex();
-            IPotential2[] ip = pairPotentials[iType];
-            IPotential2 irp = rhoPotentials[iType];
-            int finalI = i;
-            neighborIterator.iterUpNeighbors(i, (jAtom, rij, n) -> {
-                int j = jAtom.getLeafIndex();
-                int jType = jAtom.getType().getIndex();
-                IPotential2 pij = ip[jType];
-                double[] u012 = new double[3];
-                double r2 = rij.squared();
-                if (pij != null) {
-                    pij.u012add(r2, u012);
-                    double uij = u012[0];
-                    if (uij != 0) {
-                        uAtom[finalI] += 0.5 * uij;
-                        uAtom[j] += 0.5 * uij;
-                        double duij = u012[1];
-                        virialTot += duij;
-                        if (doForces) {
-                            rij.TE(duij / r2);
-                            forces[finalI].PE(rij);
-                            forces[j].ME(rij);
-                        }
-                        uTot[0] += uij;
-                    }
-
-                    u012[0] = u012[1] = u012[2] = 0;
-                }
-                if (irp != null && embeddingPotentials[jType] != null) {
-                    // i contributes to j density
-                    double irc = irp.getRange();
-                    if (r2 < irc * irc) {
-                        // i contributes to j density
-                        u012[0] = u012[1] = 0;
-                        irp.u012add(r2, u012);
-                        rhoSum[j] += u012[0];
-                        rdrho.add(u012[1]);
-                    }
-
-                    if (iType != jType) {
-                        IPotential2 jrp = rhoPotentials[jType];
-                        if (jrp != null && embeddingPotentials[iType] != null) {
-                            double jrc = jrp.getRange();
-                            if (r2 < jrc * jrc) {
-                                // j contributes to i density
-                                u012[0] = u012[1] = 0;
-                                jrp.u012add(r2, u012);
-                                rdrho.add(u012[1]);
-                                rhoSum[finalI] += u012[0];
-                            }
-                        }
-                    } else {
-                        rhoSum[finalI] += u012[0];
-                    }
-                } else if (iType != jType) {
-                    IPotential2 jrp = rhoPotentials[jType];
-                    if (jrp != null && embeddingPotentials[iType] != null) {
-                        double jrc = jrp.getRange();
-                        if (r2 < jrc * jrc) {
-                            // j contributes to i density
-                            u012[0] = 0;
-                            jrp.u012add(r2, u012);
-                            rdrho.add(u012[1]);
-                            rhoSum[finalI] += u012[0];
-                        }
-                    }
-                }
-            });
+            pairRhoConsumer.setAtom(atoms.get(i));
+            neighborIterator.iterUpNeighbors(i, rijScratch, pairRhoConsumer);
         }
+        double uTot = pairRhoConsumer.uTot;
 
-        int[] rdrhoIdx = {0};
         for (int i = 0; i < atoms.size(); i++) {
             IAtom iAtom = atoms.get(i);
             int iType = iAtom.getType().getIndex();
             if (embeddingPotentials[iType] == null) continue;
-            double[] u = {0}, du = {0};
-            embeddingPotentials[iType].udu(rhoSum[i], u, du);
-            uTot[0] += u[0];
+            embeddingPotentials[iType].udu(rhoSum[i], uEmbed, duEmbed);
+            uTot += uEmbed[0];
             if (doForces) {
-                idf[i] = du[0];
+                idf[i] = duEmbed[0];
             }
         }
         if (doForces) {
+            embeddingForceConsumer.rdrhoIdx = 0;
             for (int i = 0; i < atoms.size(); i++) {
-                IAtom iAtom = atoms.get(i);
-                int iType = iAtom.getType().getIndex();
-
-                IPotential2 irp = rhoPotentials[iType];
-                double iCutoff2 = irp.getRange() * irp.getRange();
-                int finalI = i;
-                neighborIterator.iterUpNeighbors(i, (jAtom, rij, n) -> {
-                    int j = jAtom.getLeafIndex();
-                    int jType = jAtom.getType().getIndex();
-                    if (rhoPotentials[jType] == null) return;
-                    double r2 = rij.squared();
-
-                    if (r2 < iCutoff2) {
-                        double fac;
-                        if (iType == jType) {
-                            fac = (idf[finalI] + idf[j]) * rdrho.getDouble(rdrhoIdx[0]);
-                            rdrhoIdx[0]++;
-                        } else {
-                            fac = idf[finalI] * rdrho.getDouble(rdrhoIdx[0]);
-                            rdrhoIdx[0]++;
-                            double jrc = rhoPotentials[jType].getRange();
-                            if (r2 < jrc * jrc) {
-                                fac += idf[j] * rdrho.getDouble(rdrhoIdx[0]);
-                                rdrhoIdx[0]++;
-                            }
-                        }
-                        virialTot += fac;
-                        fac /= r2;
-                        rij.TE(fac);
-                        forces[finalI].PE(rij);
-                        forces[j].ME(rij);
-                    }
-                });
+                embeddingForceConsumer.setAtom(atoms.get(i));
+                neighborIterator.iterUpNeighbors(i, rijScratch, embeddingForceConsumer);
             }
         }
 
         double[] uCorrection = new double[1];
         double[] duCorrection = new double[1];
         this.computeAllTruncationCorrection(uCorrection, duCorrection);
-        uTot[0] += uCorrection[0];
+        uTot += uCorrection[0];
         virialTot += duCorrection[0];
-        energyTot = uTot[0];
-        return uTot[0];
+        energyTot = uTot;
+        return uTot;
     }
 
     public double oldEmbeddingEnergy(IAtom iAtom) {
@@ -390,7 +309,7 @@ public class PotentialComputeEAM implements PotentialCompute {
         rhoAtomsChanged.add(i);
         int iType = iAtom.getType().getIndex();
         double u = embeddingPotentials[iType].u(rhoSum[i]);
-        u += this.neighborIterator.iterAndSumAllNeighbors(iAtom, this.nbrConsumerEmbedding);
+        u += this.neighborIterator.iterAndSumAllNeighbors(iAtom, rijScratch, this.nbrConsumerEmbedding);
         return u;
 
     }
@@ -434,7 +353,7 @@ public class PotentialComputeEAM implements PotentialCompute {
     }
 
     protected double computeOneInternal(IAtom iAtom) {
-        return this.neighborIterator.iterAndSumAllNeighbors(iAtom, this.nbrConsumer1);
+        return this.neighborIterator.iterAndSumAllNeighbors(iAtom, rijScratch, this.nbrConsumer1);
     }
 
     @Override
@@ -540,4 +459,134 @@ public class PotentialComputeEAM implements PotentialCompute {
         }
         return uCorrection;
     }
+
+    /**
+     * Computes pair energies and forces along with each atom's density for
+     * the up-neighbors of one atom at a time during computeAll.
+     */
+    protected class PairRhoConsumer implements NeighborIterator.NeighborPairConsumer {
+        protected final double[] u012 = new double[3];
+        protected boolean doForces;
+        protected double uTot;
+        protected int i, iType;
+        protected IPotential2[] ip;
+        protected IPotential2 irp;
+
+        public void setAtom(IAtom iAtom) {
+            i = iAtom.getLeafIndex();
+            iType = iAtom.getType().getIndex();
+            ip = pairPotentials[iType];
+            irp = rhoPotentials[iType];
+        }
+
+        @Override
+        public void accept(IAtom jAtom, Vector rij, double r2, int n) {
+            int j = jAtom.getLeafIndex();
+            int jType = jAtom.getType().getIndex();
+            IPotential2 pij = ip[jType];
+            u012[0] = u012[1] = u012[2] = 0;
+            if (pij != null) {
+                pij.u012add(r2, u012);
+                double uij = u012[0];
+                if (uij != 0) {
+                    uAtom[i] += 0.5 * uij;
+                    uAtom[j] += 0.5 * uij;
+                    double duij = u012[1];
+                    virialTot += duij;
+                    if (doForces) {
+                        rij.TE(duij / r2);
+                        forces[i].PE(rij);
+                        forces[j].ME(rij);
+                    }
+                    uTot += uij;
+                }
+
+                u012[0] = u012[1] = u012[2] = 0;
+            }
+            if (irp != null && embeddingPotentials[jType] != null) {
+                // i contributes to j density
+                double irc = irp.getRange();
+                if (r2 < irc * irc) {
+                    // i contributes to j density
+                    u012[0] = u012[1] = 0;
+                    irp.u012add(r2, u012);
+                    rhoSum[j] += u012[0];
+                    rdrho.add(u012[1]);
+                }
+
+                if (iType != jType) {
+                    IPotential2 jrp = rhoPotentials[jType];
+                    if (jrp != null && embeddingPotentials[iType] != null) {
+                        double jrc = jrp.getRange();
+                        if (r2 < jrc * jrc) {
+                            // j contributes to i density
+                            u012[0] = u012[1] = 0;
+                            jrp.u012add(r2, u012);
+                            rdrho.add(u012[1]);
+                            rhoSum[i] += u012[0];
+                        }
+                    }
+                } else {
+                    rhoSum[i] += u012[0];
+                }
+            } else if (iType != jType) {
+                IPotential2 jrp = rhoPotentials[jType];
+                if (jrp != null && embeddingPotentials[iType] != null) {
+                    double jrc = jrp.getRange();
+                    if (r2 < jrc * jrc) {
+                        // j contributes to i density
+                        u012[0] = 0;
+                        jrp.u012add(r2, u012);
+                        rdrho.add(u012[1]);
+                        rhoSum[i] += u012[0];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the embedding contribution to the forces (and virial) for the
+     * up-neighbors of one atom at a time, using the density derivatives
+     * collected by PairRhoConsumer.
+     */
+    protected class EmbeddingForceConsumer implements NeighborIterator.NeighborPairConsumer {
+        protected int i, iType, rdrhoIdx;
+        protected double iCutoff2;
+
+        public void setAtom(IAtom iAtom) {
+            i = iAtom.getLeafIndex();
+            iType = iAtom.getType().getIndex();
+            IPotential2 irp = rhoPotentials[iType];
+            iCutoff2 = irp.getRange() * irp.getRange();
+        }
+
+        @Override
+        public void accept(IAtom jAtom, Vector rij, double r2, int n) {
+            int j = jAtom.getLeafIndex();
+            int jType = jAtom.getType().getIndex();
+            if (rhoPotentials[jType] == null) return;
+
+            if (r2 < iCutoff2) {
+                double fac;
+                if (iType == jType) {
+                    fac = (idf[i] + idf[j]) * rdrho.getDouble(rdrhoIdx);
+                    rdrhoIdx++;
+                } else {
+                    fac = idf[i] * rdrho.getDouble(rdrhoIdx);
+                    rdrhoIdx++;
+                    double jrc = rhoPotentials[jType].getRange();
+                    if (r2 < jrc * jrc) {
+                        fac += idf[j] * rdrho.getDouble(rdrhoIdx);
+                        rdrhoIdx++;
+                    }
+                }
+                virialTot += fac;
+                fac /= r2;
+                rij.TE(fac);
+                forces[i].PE(rij);
+                forces[j].ME(rij);
+            }
+        }
+    }
 }
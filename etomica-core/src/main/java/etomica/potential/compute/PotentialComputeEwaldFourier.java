@@ -5,6 +5,7 @@ import etomica.atom.AtomType;
 import etomica.atom.IAtom;
 import etomica.atom.IAtomList;
 import etomica.box.Box;
+import etomica.box.BoxAtomPermutationEvent;
 import etomica.box.BoxEventListener;
 import etomica.box.BoxMoleculeEvent;
 import etomica.integrator.IntegratorEvent;
@@ -39,9 +40,11 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
     protected final DoubleArrayList duAtom;
     protected final IntArrayList uAtomsChanged;
     protected double virialTot = Double.NaN;
-    protected boolean includeSelfOne = false;
+    // include the self energy in computeOne* so that insertion and deletion see it
+    protected boolean includeSelfOne = true;
     protected double uTotSelf, uTotFS = Double.NaN, uOneFS;
-    protected double uOneOld, uOneNew;
+    // Fourier sums without the moved atoms and with the trial move applied
+    protected double uWithoutFS, uTrialFS;
     protected Vector[] forces;
     protected final int[] atomCountByType;
     protected final Space space;
@@ -72,23 +75,38 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
     protected double[] sFacAtom = new double[0];
 //    protected Complex[] sFac = new Complex[0]; // Complex for each kVector
     protected double[] sFac = new double[0];
-    // 7 arrays of, Complex for each kVector
-    protected final double[][] sFacB = new double[7][0];
 
     // Array for each spacial dimension, then flattened array of (num kVectors in that dimension)*Complex for each atom
     protected final double[][] eik = new double[3][0];
 
     protected double[] dsFac = new double[0]; // Complex for each kVector
-    // 7 arrays of, Complex for each kVector
-    protected final double[][] dsFacB = new double[7][0];
     protected double[] fExp; // double for each kVector
     protected double[] f6Exp; // double for each kVector
     protected int nWaveVectors;
     protected final IntArrayList ik = new IntArrayList();
     protected final DoubleArrayList kxyz2 = new DoubleArrayList();
+    // (ikx, iky, first ikz, first wave vector) for each run of wave vectors
+    // that differ only in ikz
+    protected final IntArrayList kRuns = new IntArrayList();
     protected final Vector3D lastBoxSize = new Vector3D();
     protected double lastKCut = Double.NaN;
-    protected boolean didOld;
+    protected boolean didOld, didNew, trialInserted, sFacValid;
+    // molecule added to the box whose contribution is not yet in sFac
+    protected IMolecule insertedMolecule;
+    protected final int[] kMax = new int[3], nk = new int[3];
+    // exp(i k r) for each axis for the atoms being moved, like eik
+    protected final double[][] eikMove = new double[3][0];
+    protected double[] moveCharges = new double[0];
+    protected int[] moveDispIndex = new int[0];
+    protected final IAtom[] oneAtom = new IAtom[1];
+    // index of each atom type among those with r^-6 coefficients (or -1), and the types
+    protected final int[] dispIndex;
+    protected int[] dispTypes = new int[0];
+    protected double[] dispB6 = new double[0];
+    // structure factor of each dispersing type
+    protected double[][] sFacDisp = new double[0][], dsFacDisp = new double[0][];
+    // sum_e B6[d][e] S_e for each dispersing type d, for one wave vector
+    protected double[] sFacDispB = new double[0];
     public long numMC, tMC;
     public long fTime, fNum;
     boolean first = true;
@@ -111,16 +129,8 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
         if (numKVectors * 2 > sFac.length) {
             sFac = new double[numKVectors * 2];
 
-            for (int j = 0; j < sFacB.length; j++) {
-                sFacB[j] = new double[numKVectors * 2];
-            }
-
             dsFac = new double[numKVectors * 2];
 
-            for (int j = 0; j < dsFacB.length; j++) {
-                dsFacB[j] = new double[numKVectors * 2];
-            }
-
             fExp = new double[numKVectors];
             f6Exp = new double[numKVectors];
         }
@@ -148,6 +158,7 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
                 for (AtomType atomType : e.getMolecule().getType().getAtomTypes()) {
                     atomCountByType[atomType.getIndex()]++;
                 }
+                insertedMolecule = e.getMolecule();
             }
 
             @Override
@@ -155,6 +166,12 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
                 for (AtomType atomType : e.getMolecule().getType().getAtomTypes()) {
                     atomCountByType[atomType.getIndex()]--;
                 }
+                moleculeRemoved(e.getMolecule());
+            }
+
+            @Override
+            public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+                e.permute(forces);
             }
         });
 
@@ -165,6 +182,7 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
         epsilon = new double[numAtomTypes];
 
         this.kBasis = space.makeVector();
+        dispIndex = new int[numAtomTypes];
     }
 
     public static class EwaldParams {
@@ -314,6 +332,34 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
         }
     }
 
+    /**
+     * Finds the atom types that have r^-6 coefficients.  Each of these gets
+     * its own structure factor (for PotentialComputeEwaldSPME, its own grid).
+     */
+    protected void findDispersionTypes() {
+        int numDisp = 0;
+        int[] types = new int[dispIndex.length];
+        for (int iType = 0; iType < dispIndex.length; iType++) {
+            dispIndex[iType] = -1;
+            if (alpha6 > 0 && B6[iType][iType] != 0) {
+                dispIndex[iType] = numDisp;
+                types[numDisp] = iType;
+                numDisp++;
+            }
+        }
+        if (numDisp != dispTypes.length) {
+            dispTypes = Arrays.copyOf(types, numDisp);
+            dispB6 = new double[numDisp * numDisp];
+        } else {
+            System.arraycopy(types, 0, dispTypes, 0, numDisp);
+        }
+        for (int d = 0; d < numDisp; d++) {
+            for (int e = 0; e < numDisp; e++) {
+                dispB6[d * numDisp + e] = B6[dispTypes[d]][dispTypes[e]];
+            }
+        }
+    }
+
     @Override
     public void init() {
 
@@ -348,6 +394,7 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
         lastKCut = kCut;
         this.ik.clear();
         this.kxyz2.clear();
+        kRuns.clear();
         double kCut2 = kCut * kCut;
         kBasis.E(2 * PI);
         kBasis.DE(bs);
@@ -364,6 +411,13 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
                 double ky = iky * kBasis.getX(1);
                 double kxy2 = kx2 + ky * ky;
                 int kzMax = (int) (0.5 * bs.getX(2) * Math.sqrt(kCut2 - kxy2) / PI);
+                int kzMin = !xpositive && !ypositive ? 1 : -kzMax;
+                if (kzMin <= kzMax) {
+                    kRuns.add(ikx);
+                    kRuns.add(iky);
+                    kRuns.add(kzMin);
+                    kRuns.add(this.kxyz2.size());
+                }
                 for (int ikz = -kzMax; ikz <= kzMax; ikz++) {
                     if (!xpositive && !ypositive && ikz <= 0) continue;
                     double kz = ikz * kBasis.getX(2);
@@ -386,52 +440,29 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
     @Override
     public double computeAll(boolean doForces, PotentialCallback pc) {
         int numAtoms = box.getLeafList().size();
-        virialTot = 0;
-        double q2sum = 0;
-        double sumBij = 0;
-        double sumBii = 0;
-        uTotSelf = uTotFS = 0;
-
-        for (int iType = 0; iType < atomCountByType.length; iType++) {
-            int iNum = atomCountByType[iType];
-            if (iNum == 0) {
-                continue;
-            }
-            double qi = chargesByType[iType];
-            q2sum += iNum * qi * qi;
-            double Bii = B6[iType][iType];
-            if (alpha6 > 0 && Bii != 0) {
-                sumBii += iNum * Bii;
-                for (int jType = 0; jType < atomCountByType.length; jType++) {
-                    sumBij += iNum * atomCountByType[jType] * B6[iType][jType];
-                }
-            }
-        }
-        uTotSelf -= alpha / SQRT_PI * q2sum;
+        double uTot = computeSelfEnergy();
         double vol = box.getBoundary().volume();
 
-        if (sumBii > 0) {
-            double alpha63 = alpha6 * alpha6 * alpha6;
-            uTotSelf -= SQRT_PI * PI * alpha63 / (6 * vol) * sumBij;
-            virialTot += 3 * SQRT_PI * PI * alpha63 / (6 * vol) * sumBij;
-            uTotSelf += alpha63 * (alpha63 / 12) * sumBii;
-        }
-        double uTot = uTotSelf;
-
         Vector bs = box.getBoundary().getBoxSize();
         int kxMax = (int) (0.5 * bs.getX(0) / PI * kCut);
         // cube instead of sphere, so conservatively big
-        int[] kMax = {
-                kxMax,
-                (int) (0.5 * bs.getX(1) / PI * kCut),
-                (int) (0.5 * bs.getX(2) / PI * kCut)
-        };
-        int[] nk = {kMax[0] + 1, 2 * kMax[1] + 1, 2 * kMax[2] + 1};
+        kMax[0] = kxMax;
+        kMax[1] = (int) (0.5 * bs.getX(1) / PI * kCut);
+        kMax[2] = (int) (0.5 * bs.getX(2) / PI * kCut);
+        nk[0] = kMax[0] + 1;
+        nk[1] = 2 * kMax[1] + 1;
+        nk[2] = 2 * kMax[2] + 1;
         int nkTot = ((2*kxMax + 1) * nk[1] * nk[2] - 1) / 2;
 
         this.setArraySizes(numAtoms, nkTot, nk);
         this.computeKVectors(kxMax);
         this.zeroForces();
+        findDispersionTypes();
+        if (sFacDisp.length != dispTypes.length || (dispTypes.length > 0 && sFacDisp[0].length != sFac.length)) {
+            sFacDisp = new double[dispTypes.length][sFac.length];
+            dsFacDisp = new double[dispTypes.length][sFac.length];
+            sFacDispB = new double[2 * dispTypes.length];
+        }
 
         // We want exp(i dot(k,r)) for every k and every r
         // then sum over atoms, s(k) = sum[exp(i dot(k,r))] and U(k) = s(k) * s*(k)
@@ -477,22 +508,14 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
         double virialSum6 = 0;
 
         boolean debug = false;
+        // MC moves update sFac and sFacDisp; check that they agree with the new values
         double[] sFacOld = new double[0];
-        double[][] sFacBold = new double[7][0];
+        double[][] sFacDispOld = new double[sFacDisp.length][];
         if (debug) {
-            if (sFacOld.length != sFac.length) {
-                sFacOld = new double[sFac.length];
-                for (int i = 0; i < sFacB.length; i++) {
-                    sFacBold[i] = new double[sFacB[i].length];
-                }
+            sFacOld = sFac.clone();
+            for (int i = 0; i < sFacDisp.length; i++) {
+                sFacDispOld[i] = sFacDisp[i].clone();
             }
-            System.arraycopy(sFac, 0, sFacOld, 0, sFac.length);
-            for (int i = 0; i < sFacB.length; i++) {
-                System.arraycopy(sFacB[i], 0, sFacBold[i], 0, sFacB[i].length);
-            }
-        }
-        for (int kB = 0; kB <= 6; kB++) {
-            Arrays.fill(sFacB[kB], 0);
         }
         for (int ik = 0; ik < this.kxyz2.size(); ik++) {
             double kxyz2 = this.kxyz2.getDouble(ik);
@@ -501,6 +524,9 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
             int ikz = this.ik.getInt(ik * 3 + 2);
             double expthing = Math.exp(-0.25 * kxyz2 / (alpha * alpha));
             Complex.ZERO.intoArray(sFac, ik);
+            for (double[] s : sFacDisp) {
+                Complex.ZERO.intoArray(s, ik);
+            }
             // we could skip this as long as box-length, kCut don't change between calls
             fExp[ik] = coeff*expthing/kxyz2;
             double hdf6dh = 0;
@@ -524,13 +550,9 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
             }
             if (alpha6>0) {
                 double df6dV = -f6Exp[ik] / vol - hdf6dh / (3 * vol);
-                for (int kB = 0; kB <= 3; kB++) {
-                    // the real part of y is the same for kB*conj(6-kB) and for conj(kB)*(6-kB)
-                    double y = Complex.fromArray(sFacB[kB], ik).times(Complex.fromArray(sFacB[6 - kB], ik).conjugate()).real();
-                    if (kB < 3) y *= 2;
-                    fourierSum6 += f6Exp[ik] * y;
-                    virialSum6 += 3 * vol * df6dV * y;
-                }
+                double y = dispersionSFac2(ik);
+                fourierSum6 += f6Exp[ik] * y;
+                virialSum6 += 3 * vol * df6dV * y;
             }
             if (doForces) {
                 this.handleKVectorForces(ik, ikx, iky, ikz);
@@ -549,9 +571,9 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
                     System.out.println("sFac for " + i + " is off " + sFac[i] + " " + sFacOld[i]);
                     broken = true;
                 }
-                for (int k = 0; k < sFacB.length; k++) {
-                    if (Math.abs(sFacB[k][i] - sFacBold[k][i]) > 1e-5) {
-                        System.out.println("sFacB for " + k + " " + i + " is off " + sFacB[k][i] + " " + sFacBold[k][i]);
+                for (int k = 0; k < sFacDisp.length; k++) {
+                    if (Math.abs(sFacDisp[k][i] - sFacDispOld[k][i]) > 1e-5) {
+                        System.out.println("sFacDisp for " + k + " " + i + " is off " + sFacDisp[k][i] + " " + sFacDispOld[k][i]);
                         broken = true;
                     }
                 }
@@ -567,10 +589,71 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
             virialTot += PotentialCompute.computeVirialIntramolecular(forces, box);
         }
         first = false;
+        sFacValid = true;
+        insertedMolecule = null;
+        didOld = didNew = false;
 
         return uTot;
     }
 
+    /**
+     * Resets the virial and computes the self energy (and the k=0 dispersion
+     * term), which do not depend on the atom positions.
+     *
+     * @return the self energy, also stored in uTotSelf
+     */
+    protected double computeSelfEnergy() {
+        virialTot = 0;
+        double q2sum = 0;
+        double sumBij = 0;
+        double sumBii = 0;
+        uTotSelf = uTotFS = 0;
+
+        for (int iType = 0; iType < atomCountByType.length; iType++) {
+            int iNum = atomCountByType[iType];
+            if (iNum == 0) {
+                continue;
+            }
+            double qi = chargesByType[iType];
+            q2sum += iNum * qi * qi;
+            double Bii = B6[iType][iType];
+            if (alpha6 > 0 && Bii != 0) {
+                sumBii += iNum * Bii;
+                for (int jType = 0; jType < atomCountByType.length; jType++) {
+                    sumBij += iNum * atomCountByType[jType] * B6[iType][jType];
+                }
+            }
+        }
+        uTotSelf -= alpha / SQRT_PI * q2sum;
+        double vol = box.getBoundary().volume();
+
+        if (sumBii > 0) {
+            double alpha63 = alpha6 * alpha6 * alpha6;
+            uTotSelf -= SQRT_PI * PI * alpha63 / (6 * vol) * sumBij;
+            virialTot += 3 * SQRT_PI * PI * alpha63 / (6 * vol) * sumBij;
+            uTotSelf += alpha63 * (alpha63 / 12) * sumBii;
+        }
+        return uTotSelf;
+    }
+
+    /**
+     * Returns sum_de B6[d][e] Re(S_d S_e*) for wave vector ik, from the
+     * structure factor of each dispersing type.
+     */
+    private double dispersionSFac2(int ik) {
+        int numDisp = dispTypes.length;
+        double y = 0;
+        for (int d = 0; d < numDisp; d++) {
+            double[] sd = sFacDisp[d];
+            for (int e = 0; e <= d; e++) {
+                double[] se = sFacDisp[e];
+                double b = (e == d ? 1 : 2) * dispB6[d * numDisp + e];
+                y += b * (sd[2 * ik] * se[2 * ik] + sd[2 * ik + 1] * se[2 * ik + 1]);
+            }
+        }
+        return y;
+    }
+
     private void handleKVectorSFac(int ik, int ikx, int iky, int ikz, int nkx, int nky, int nkz, int kMaxY, int kMaxZ, PotentialCallback pc) {
         long t1 = System.nanoTime();
         IAtomList atoms = box.getLeafList();
@@ -588,11 +671,9 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
                     .times(Complex.fromArray(eik[2], iAtom * nkz + kMaxZ + ikz));
             iContrib.intoArray(sFacAtom, iAtom);
             Complex.fromArray(sFac, ik).plus(iContrib.times(qi)).intoArray(sFac, ik);
-            if (alpha6 > 0) {
-                for (int kB=0; kB<=6; kB++) {
-                    Complex.fromArray(sFacB[kB], ik).plus(iContrib.times(b6[iType][kB]))
-                            .intoArray(sFacB[kB], ik);
-                }
+            int d = dispIndex[iType];
+            if (d > -1) {
+                Complex.fromArray(sFacDisp[d], ik).plus(iContrib).intoArray(sFacDisp[d], ik);
             }
 
             if (pc != null && pc.wantsHessian()) {
@@ -638,360 +719,304 @@ public class PotentialComputeEwaldFourier implements PotentialCompute {
         double kx = kBasis.getX(0) * ikx;
         double ky = kBasis.getX(1) * iky;
         double kz = kBasis.getX(2) * ikz;
+        int numDisp = dispTypes.length;
+        for (int d = 0; d < numDisp; d++) {
+            double br = 0, bi = 0;
+            for (int e = 0; e < numDisp; e++) {
+                br += dispB6[d * numDisp + e] * sFacDisp[e][2 * ik];
+                bi += dispB6[d * numDisp + e] * sFacDisp[e][2 * ik + 1];
+            }
+            sFacDispB[2 * d] = br;
+            sFacDispB[2 * d + 1] = bi;
+        }
         for (int iAtom=0; iAtom<numAtoms; iAtom++) {
             int iType = atoms.get(iAtom).getType().getIndex();
             double coeffki = alpha==0 ? 0 :
                     2*fExp[ik]*chargesByType[iType] *
                             Complex.fromArray(sFacAtom,iAtom).times(Complex.fromArray(sFac, ik).conjugate()).imaginary();
-            double coeffki6 = 0;
-            if (alpha6 > 0) {
-                for (int kB = 0; kB <= 6; kB++) {
-                    coeffki6 += 2 * f6Exp[ik] * b6[iType][kB] *
-                            Complex.fromArray(sFacAtom, iAtom).times(Complex.fromArray(sFacB[6 - kB], ik).conjugate()).imaginary();
-                }
+            int d = dispIndex[iType];
+            if (d > -1) {
+                coeffki += 2 * f6Exp[ik] *
+                        Complex.fromArray(sFacAtom, iAtom).times(Complex.fromArray(sFacDispB, d).conjugate()).imaginary();
             }
-            coeffki += coeffki6;
-            forces[iAtom].PE(Vector.of(coeffki * kx, coeffki * ky, coeffki * kz));
+            Vector fi = forces[iAtom];
+            fi.setX(0, fi.getX(0) + coeffki * kx);
+            fi.setX(1, fi.getX(1) + coeffki * ky);
+            fi.setX(2, fi.getX(2) + coeffki * kz);
         }
     }
 
     @Override
     public double computeOneOld(IAtom atom) {
-        didOld = true;
-        Arrays.fill(dsFac, 0);
-        for (int i = 0; i < dsFacB.length; i++) Arrays.fill(dsFacB[i], 0);
-        return computeOneInternal(atom, true);
+        oneAtom[0] = atom;
+        return computeOldInternal(oneAtom);
     }
 
     @Override
     public double computeOneOldMolecule(IMolecule molecule) {
-        didOld = true;
-        Arrays.fill(dsFac, 0);
-        for (int i = 0; i < dsFacB.length; i++) Arrays.fill(dsFacB[i], 0);
-        return computeManyAtomsInternal(true, ((AtomArrayList) molecule.getChildList()).toArray());
+        return computeOldInternal(((AtomArrayList) molecule.getChildList()).toArray());
     }
 
     @Override
     public double computeOne(IAtom atom) {
         if (!didOld) return 0;
-        didOld = false;
-        return computeOneInternal(atom, false);
+        oneAtom[0] = atom;
+        return computeNewInternal(oneAtom, false);
     }
 
     @Override
     public double computeOneMolecule(IMolecule molecule) {
-        return computeManyAtoms(((AtomArrayList) molecule.getChildList()).toArray());
+        // a rejected trial (deletion) can leave didOld set, so check for insertion first
+        if (molecule == insertedMolecule) {
+            return computeNewInternal(((AtomArrayList) molecule.getChildList()).toArray(), true);
+        }
+        if (!didOld) return 0;
+        return computeNewInternal(((AtomArrayList) molecule.getChildList()).toArray(), false);
     }
 
     @Override
     public double computeManyAtomsOld(IAtom... atoms) {
-        didOld = true;
-        Arrays.fill(dsFac, 0);
-        for (int i = 0; i < dsFacB.length; i++) Arrays.fill(dsFacB[i], 0);
-        return computeManyAtomsInternal(true, atoms);
+        return computeOldInternal(atoms);
     }
 
     @Override
     public double computeManyAtoms(IAtom... atoms) {
         if (!didOld) return 0;
-        didOld = false;
-        return computeManyAtomsInternal(false, atoms);
+        return computeNewInternal(atoms, false);
     }
 
-    private double computeOneInternal(IAtom atom, boolean oldEnergy) {
-        int iAtom = atom.getLeafIndex();
-        int iType = atom.getType().getIndex();
-        double qi = chargesByType[iType];
-        if (oldEnergy) qi = -qi;
-        if (qi == 0 && B6[iType][iType] == 0) return 0;
+    /**
+     * Computes the energy of the given atoms at their current positions, as
+     * the Fourier sum minus the Fourier sum without them.  The change in the
+     * structure factor from removing them is left in dsFac and dsFacDisp.
+     */
+    private double computeOldInternal(IAtom[] atoms) {
+        didOld = true;
+        didNew = false;
+        int numMoved = setupMoveAtoms(atoms);
+        if (numMoved == 0) return 0;
+        uWithoutFS = computeMoveFourierSum(numMoved, -1, false);
+        uOneFS = uTotFS - uWithoutFS;
+        return computeSelfOne(atoms) + uOneFS;
+    }
 
-        double uOne = 0;
-        if (includeSelfOne) {
-            double q2Sum = qi * qi;
-            uOne -= alpha / SQRT_PI * q2Sum;
-            double vol = box.getBoundary().volume();
-            if (alpha6 > 0 && B6[iType][iType] != 0) {
-                double sumBii = B6[iType][iType];
-                double sumBij = 0;
-                for (int jType = 0; jType < atomCountByType.length; jType++) {
-                    if (iType != jType) {
-                        //  Ni*Nj - (Ni-1)*Nj = Nj
-                        sumBij += atomCountByType[jType] * B6[iType][jType];
-                    } else {
-                        // N*N - (N-1)*(N-1) = 2N-1
-                        sumBij += (2 * atomCountByType[jType] - 1) * B6[iType][jType];
-                    }
-                }
-                double alpha63 = alpha6 * alpha6 * alpha6;
-                uOne -= SQRT_PI * PI / (6 * vol) * alpha63 * sumBij;
-                uOne += (1.0 / 12.0) * alpha63 * alpha63 * sumBii;
+    /**
+     * Computes the energy of the given atoms at their new positions.  The
+     * contribution of the atoms at their new positions is added to dsFac and
+     * dsFacDisp so that processAtomU can apply the change if the move is
+     * accepted.  If inserted is true, the atoms were not present before and
+     * computeOldInternal was not called.
+     */
+    private double computeNewInternal(IAtom[] atoms, boolean inserted) {
+        didOld = false;
+        int numMoved = setupMoveAtoms(atoms);
+        if (numMoved == 0) return 0;
+        if (inserted) uWithoutFS = uTotFS;
+        uTrialFS = computeMoveFourierSum(numMoved, +1, !inserted);
+        didNew = true;
+        trialInserted = inserted;
+        return computeSelfOne(atoms) + uTrialFS - uWithoutFS;
+    }
+
+    /**
+     * Computes exp(i k r) along each axis for the charged and dispersing atoms
+     * in the given array and stores them in eikMove, indexed by the atom's
+     * position among those atoms (not by leaf index, so that atoms that were
+     * just inserted or removed can be handled).
+     *
+     * @return the number of atoms that contribute to the Fourier sum
+     */
+    private int setupMoveAtoms(IAtom[] atoms) {
+        if (moveCharges.length < atoms.length) {
+            moveCharges = new double[atoms.length];
+            moveDispIndex = new int[atoms.length];
+        }
+        for (int a = 0; a < 3; a++) {
+            if (eikMove[a].length < 2 * nk[a] * atoms.length) {
+                eikMove[a] = new double[2 * nk[a] * atoms.length];
             }
         }
         Vector bs = box.getBoundary().getBoxSize();
-        int kxMax = (int) (0.5 * bs.getX(0) / PI * kCut);
-        // cube instead of sphere, so conservatively big
-        int[] kMax = {
-                kxMax,
-                (int) (0.5 * bs.getX(1) / PI * kCut),
-                (int) (0.5 * bs.getX(2) / PI * kCut)
-        };
-        int[] nk = {kMax[0] + 1, 2 * kMax[1] + 1, 2 * kMax[2] + 1};
-        // we could save eik too... would need to update after accepted move, revert after rejection
-        Vector ri = atom.getPosition();
-        for (int a=0; a<3; a++) {
-            double fac = 2.0*PI/bs.getX(a);
-            int idx = iAtom*nk[a];
-            if (a>0) idx += kMax[a];
-            Complex.ONE.intoArray(eik[a], idx);
-            new Complex(Math.cos(fac * ri.getX(a)), Math.sin(fac * ri.getX(a)))
-                    .intoArray(eik[a], idx + 1);
-            for (int i=2; i<=kMax[a]; i++) {
-                Complex.fromArray(eik[a], idx + 1).times(Complex.fromArray(eik[a], idx + i - 1))
-                        .intoArray(eik[a], idx + i);
-            }
-            if (a==0) continue;
-            for (int i=1; i<=kMax[a]; i++) {
-                Complex.fromArray(eik[a], idx + i).conjugate().intoArray(eik[a], idx - i);
+        int numMoved = 0;
+        for (IAtom atom : atoms) {
+            int iType = atom.getType().getIndex();
+            if (chargesByType[iType] == 0 && B6[iType][iType] == 0) continue;
+            moveCharges[numMoved] = chargesByType[iType];
+            moveDispIndex[numMoved] = dispIndex[iType];
+            Vector ri = atom.getPosition();
+            for (int a = 0; a < 3; a++) {
+                // see computeAll for the recursion
+                double[] e = eikMove[a];
+                int idx = 2 * (numMoved * nk[a] + (a > 0 ? kMax[a] : 0));
+                double theta = 2.0 * PI / bs.getX(a) * ri.getX(a);
+                double c = Math.cos(theta), s = Math.sin(theta);
+                double re = 1, im = 0;
+                e[idx] = 1;
+                e[idx + 1] = 0;
+                for (int i = 1; i <= kMax[a]; i++) {
+                    double t = c * re - s * im;
+                    im = s * re + c * im;
+                    re = t;
+                    e[idx + 2 * i] = re;
+                    e[idx + 2 * i + 1] = im;
+                    if (a == 0) continue;
+                    e[idx - 2 * i] = re;
+                    e[idx - 2 * i + 1] = -im;
+                }
             }
+            numMoved++;
         }
+        return numMoved;
+    }
 
-        double fourierSum = 0;
-        double fourierSum6 = 0;
-        for (int ik = 0; ik < this.kxyz2.size(); ik++) {
-            int ikx = this.ik.getInt(ik * 3);
-            int iky = this.ik.getInt(ik * 3 + 1);
-            int ikz = this.ik.getInt(ik * 3 + 2);
-
-
-            Complex iContrib = Complex.fromArray(eik[0], iAtom * nk[0] + ikx)
-                    .times(Complex.fromArray(eik[1], iAtom * nk[1] + kMax[1] + iky))
-                    .times(Complex.fromArray(eik[2], iAtom * nk[2] + kMax[2] + ikz));
-            if (alpha > 0) {
-                Complex.fromArray(dsFac, ik).plus(iContrib.times(qi)).intoArray(dsFac, ik);
-            }
-            if (alpha6 > 0) {
-                for (int kB = 0; kB <= 6; kB++) {
-                    Complex.fromArray(dsFacB[kB], ik).plus(iContrib.times((oldEnergy ? -1 : +1) * b6[iType][kB]))
-                            .intoArray(dsFacB[kB], ik);
-                }
+    /**
+     * Adds sign times the structure factor of the first numMoved atoms set up
+     * by setupMoveAtoms to dsFac and dsFacDisp (or replaces their contents if
+     * accumulate is false) and returns the Fourier sum of sFac+dsFac.  Only
+     * the moved atoms are visited, so the cost is numMoved*(number of wave
+     * vectors).
+     * <p>
+     * The dispersion sum uses the structure factor of each dispersing type,
+     * sum_ij B6[i][j] Re(S_i S_j*).
+     */
+    private double computeMoveFourierSum(int numMoved, double sign, boolean accumulate) {
+        long t1 = System.nanoTime();
+        int numDisp = dispTypes.length;
+        if (!accumulate) {
+            Arrays.fill(dsFac, 0, 2 * nWaveVectors, 0);
+            for (int d = 0; d < numDisp; d++) {
+                Arrays.fill(dsFacDisp[d], 0, 2 * nWaveVectors, 0);
             }
-
-            if (oldEnergy) {
-                if (alpha > 0) {
-                    Complex sFacMinus = Complex.fromArray(sFac, ik).plus(Complex.fromArray(dsFac, ik));
-                    fourierSum += fExp[ik] * sFacMinus.times(sFacMinus.conjugate()).real();
-                }
-
-                if (alpha6 > 0) {
-                    for (int kB = 0; kB <= 3; kB++) {
-                        Complex sFacMinus = Complex.fromArray(sFacB[kB], ik).plus(Complex.fromArray(dsFacB[kB], ik));
-                        Complex sFacMinus2 = Complex.fromArray(sFacB[6 - kB], ik).plus(Complex.fromArray(dsFacB[6 - kB], ik));
-                        fourierSum6 += (kB < 3 ? 2 : 1) * f6Exp[ik] * sFacMinus.times(sFacMinus2.conjugate()).real();
-                    }
-                }
-            } else {
-                if (alpha > 0) {
-                    Complex sFacNew = Complex.fromArray(sFac, ik).plus(Complex.fromArray(dsFac, ik));
-                    fourierSum += fExp[ik] * sFacNew.times(sFacNew.conjugate()).real();
-                }
-                if (alpha6 > 0) {
-                    for (int kB = 0; kB <= 3; kB++) {
-                        Complex sFacNew = Complex.fromArray(sFacB[kB], ik).plus(Complex.fromArray(dsFacB[kB], ik));
-                        Complex sFacNew2 = Complex.fromArray(sFacB[6 - kB], ik).plus(Complex.fromArray(dsFacB[6 - kB], ik));
-                        fourierSum6 += (kB < 3 ? 2 : 1) * f6Exp[ik] * sFacNew.times(sFacNew2.conjugate()).real();
+        }
+        // exp(i k r) = exp(i kx x) exp(i ky y) exp(i kz z), and within a run
+        // only kz changes, so the x and y factors are combined once per run
+        double[] ex = eikMove[0], ey = eikMove[1], ez = eikMove[2];
+        int numRuns = kRuns.size() / 4;
+        for (int j = 0; j < numMoved; j++) {
+            double q = sign * moveCharges[j];
+            double[] dsDisp = moveDispIndex[j] > -1 ? dsFacDisp[moveDispIndex[j]] : null;
+            int jx = 2 * j * nk[0];
+            int jy = 2 * (j * nk[1] + kMax[1]);
+            int jz = 2 * (j * nk[2] + kMax[2]);
+            for (int r = 0; r < numRuns; r++) {
+                int x = jx + 2 * kRuns.getInt(4 * r), y = jy + 2 * kRuns.getInt(4 * r + 1);
+                int z = jz + 2 * kRuns.getInt(4 * r + 2);
+                int kEnd = r + 1 < numRuns ? kRuns.getInt(4 * r + 7) : nWaveVectors;
+                double xyr = ex[x] * ey[y] - ex[x + 1] * ey[y + 1];
+                double xyi = ex[x] * ey[y + 1] + ex[x + 1] * ey[y];
+                for (int ik = kRuns.getInt(4 * r + 3); ik < kEnd; ik++, z += 2) {
+                    double er = xyr * ez[z] - xyi * ez[z + 1];
+                    double ei = xyr * ez[z + 1] + xyi * ez[z];
+                    dsFac[2 * ik] += q * er;
+                    dsFac[2 * ik + 1] += q * ei;
+                    if (dsDisp != null) {
+                        dsDisp[2 * ik] += sign * er;
+                        dsDisp[2 * ik + 1] += sign * ei;
                     }
                 }
             }
         }
 
-        if (oldEnergy) {
-            // uOne = uTot - (energy without this atom)
-            uOneFS = uTotFS - fourierSum - fourierSum6;
-            uOne += uOneFS;
-        } else {
-            // (energy with new coordinates) - (energy without the atom)
-            uOne += fourierSum + fourierSum6 - (uTotFS - uOneFS);
+        double fourierSum = 0, fourierSum6 = 0;
+        if (alpha > 0) {
+            for (int ik = 0; ik < nWaveVectors; ik++) {
+                double sr = sFac[2 * ik] + dsFac[2 * ik], si = sFac[2 * ik + 1] + dsFac[2 * ik + 1];
+                fourierSum += fExp[ik] * (sr * sr + si * si);
+            }
         }
-        return uOne;
+        for (int d = 0; d < numDisp; d++) {
+            double[] sd = sFacDisp[d], dsd = dsFacDisp[d];
+            for (int e = 0; e <= d; e++) {
+                double[] se = sFacDisp[e], dse = dsFacDisp[e];
+                double b = (e == d ? 1 : 2) * dispB6[d * numDisp + e];
+                for (int ik = 0; ik < nWaveVectors; ik++) {
+                    double ar = sd[2 * ik] + dsd[2 * ik], ai = sd[2 * ik + 1] + dsd[2 * ik + 1];
+                    double br = se[2 * ik] + dse[2 * ik], bi = se[2 * ik + 1] + dse[2 * ik + 1];
+                    fourierSum6 += b * f6Exp[ik] * (ar * br + ai * bi);
+                }
+            }
+        }
+        numMC += (long) nWaveVectors * numMoved;
+        tMC += System.nanoTime() - t1;
+        return fourierSum + fourierSum6;
     }
 
-    private double computeManyAtomsInternal(boolean oldEnergy, IAtom... atoms) {
-
+    /**
+     * Returns the difference in the self energy (and the k=0 dispersion term)
+     * between the box with and without the given atoms, or 0 if
+     * includeSelfOne is false.
+     */
+    private double computeSelfOne(IAtom[] atoms) {
+        if (!includeSelfOne) return 0;
         double q2sum = 0;
         double sumBij = 0;
         double sumBii = 0;
         double uOne = 0;
         int[] typesRemoved = new int[atomCountByType.length];
-
-        if (includeSelfOne) {
-            for (IAtom atom : atoms) {
-                int iType = atom.getType().getIndex();
-                double qi = chargesByType[iType];
-                q2sum += qi * qi;
-                double Bii = B6[iType][iType];
-                if (alpha6 > 0 && Bii != 0) {
-                    sumBii += Bii;
-                    typesRemoved[iType]++;
-                }
-            }
-
-            if (q2sum == 0 && sumBii == 0) return 0;
-
-            uOne -= alpha / SQRT_PI * q2sum;
-            double vol = box.getBoundary().volume();
-
-            if (sumBii > 0) {
-                for (int iType = 0; iType < atomCountByType.length; iType++) {
-                    int ni = atomCountByType[iType];
-                    for (int jType = 0; jType < atomCountByType.length; jType++) {
-                        int nj = atomCountByType[jType];
-                        sumBij += (ni * nj - (ni - typesRemoved[iType]) * (nj - typesRemoved[jType])) * B6[iType][jType];
-                    }
-                }
-
-                double alpha63 = alpha6 * alpha6 * alpha6;
-                uOne -= SQRT_PI * PI * alpha63 / (6 * vol) * sumBij;
-                virialTot += 3 * SQRT_PI * PI * alpha63 / (6 * vol) * sumBij;
-                uOne += alpha63 * (alpha63 / 12) * sumBii;
-            }
-        }
-
-        Vector bs = box.getBoundary().getBoxSize();
-        int kxMax = (int) (0.5 * bs.getX(0) / PI * kCut);
-        // cube instead of sphere, so conservatively big
-        int[] kMax = {
-                kxMax,
-                (int) (0.5 * bs.getX(1) / PI * kCut),
-                (int) (0.5 * bs.getX(2) / PI * kCut)
-        };
-        int[] nk = {kMax[0] + 1, 2 * kMax[1] + 1, 2 * kMax[2] + 1};
-
-        // We want exp(i dot(k,r)) for every k and every r
-        // then sum over atoms, s(k) = sum[exp(i dot(k,r))] and U(k) = s(k) * s*(k)
-        //
-        // To get there, we first invoke that
-        // exp(i dot(k,r)) = exp(i kx rx) exp(i ky ry) exp(i kz rz)
-        // the values of ka (a=x,y,z) will be such that ka = 2 l pi / bs[a]
-        // so ea(l=2) = ea(l=1) ea(l=1)
-        //    ea(l=3) = ea(l=1) ea(l=2)
-        // and so on, where ea(l) = exp(i (2 l pi / bs[a]) ra)
-        // See Allen & Tildesley for more details
-        // https://dx.doi.org/10.1093/oso/9780198803195.001.0001
-        // https://github.com/Allen-Tildesley/examples/blob/master/ewald_module.f90
-        for (int a = 0; a < 3; a++) {
-            double fac = 2.0 * PI / bs.getX(a);
-            for (IAtom atom : atoms) {
-                int iAtom = atom.getLeafIndex();
-                int idx = iAtom * nk[a];
-                if (a > 0) idx += kMax[a];
-                Complex.ONE.intoArray(eik[a], idx);
-                if (nk[a] == 1) continue;
-                int iType = atom.getType().getIndex();
-                if (chargesByType[iType] == 0 && B6[iType][iType] == 0) continue;
-                Vector ri = atom.getPosition();
-                new Complex(Math.cos(fac * ri.getX(a)), Math.sin(fac * ri.getX(a))).intoArray(eik[a], idx + 1);
-                for (int i = 2; i <= kMax[a]; i++) {
-                    Complex.fromArray(eik[a], idx + 1).times(Complex.fromArray(eik[a], idx + i - 1))
-                            .intoArray(eik[a], idx + i);
-                }
-                if (a == 0) continue;
-                for (int i = 1; i <= kMax[a]; i++) {
-                    Complex.fromArray(eik[a], idx + i).conjugate().intoArray(eik[a], idx - i);
-                }
+        for (IAtom atom : atoms) {
+            int iType = atom.getType().getIndex();
+            double qi = chargesByType[iType];
+            q2sum += qi * qi;
+            double Bii = B6[iType][iType];
+            if (alpha6 > 0 && Bii != 0) {
+                sumBii += Bii;
+                typesRemoved[iType]++;
             }
         }
+        uOne -= alpha / SQRT_PI * q2sum;
 
-        numMC += kxyz2.size() * atoms.length;
-        long t1 = System.nanoTime();
-
-        double fourierSum = 0;
-        double fourierSum6 = 0;
-        for (int ik = 0; ik < this.kxyz2.size(); ik++) {
-            int ikx = this.ik.getInt(ik * 3);
-            int iky = this.ik.getInt(ik * 3 + 1);
-            int ikz = this.ik.getInt(ik * 3 + 2);
-
-            for (IAtom atom : atoms) {
-                int iAtom = atom.getLeafIndex();
-                int iType = atom.getType().getIndex();
-                double qi = chargesByType[iType];
-                if (oldEnergy) qi = -qi;
-                Complex iContrib = Complex.fromArray(eik[0], iAtom * nk[0] + ikx)
-                        .times(Complex.fromArray(eik[1], iAtom * nk[1] + kMax[1] + iky))
-                        .times(Complex.fromArray(eik[2], iAtom * nk[2] + kMax[2] + ikz));
-                if (alpha > 0) {
-                    Complex.fromArray(dsFac, ik).plus(iContrib.times(qi)).intoArray(dsFac, ik);
-                }
-                if (alpha6 > 0) {
-                    for (int kB = 0; kB <= 6; kB++) {
-                        Complex.fromArray(dsFacB[kB], ik).plus(iContrib.times((oldEnergy ? -1 : +1) * b6[iType][kB]))
-                                .intoArray(dsFacB[kB], ik);
-                    }
+        if (sumBii > 0) {
+            for (int iType = 0; iType < atomCountByType.length; iType++) {
+                int ni = atomCountByType[iType];
+                for (int jType = 0; jType < atomCountByType.length; jType++) {
+                    int nj = atomCountByType[jType];
+                    sumBij += (ni * nj - (ni - typesRemoved[iType]) * (nj - typesRemoved[jType])) * B6[iType][jType];
                 }
             }
 
-            if (oldEnergy) {
-                if (alpha > 0) {
-                    Complex sFacMinus = Complex.fromArray(sFac, ik).plus(Complex.fromArray(dsFac, ik));
-                    fourierSum += fExp[ik] * sFacMinus.times(sFacMinus.conjugate()).real();
-                }
-
-                if (alpha6 > 0) {
-                    for (int kB = 0; kB <= 3; kB++) {
-                        Complex sFacMinus = Complex.fromArray(sFacB[kB], ik).plus(Complex.fromArray(dsFacB[kB], ik));
-                        Complex sFacMinus2 = Complex.fromArray(sFacB[6 - kB], ik).plus(Complex.fromArray(dsFacB[6 - kB], ik));
-                        fourierSum6 += (kB < 3 ? 2 : 1) * f6Exp[ik] * sFacMinus.times(sFacMinus2.conjugate()).real();
-                    }
-                }
-            } else {
-                if (alpha > 0) {
-                    Complex sFacNew = Complex.fromArray(sFac, ik).plus(Complex.fromArray(dsFac, ik));
-                    fourierSum += fExp[ik] * sFacNew.times(sFacNew.conjugate()).real();
-                }
-                if (alpha6 > 0) {
-                    for (int kB = 0; kB <= 3; kB++) {
-                        Complex sFacNew = Complex.fromArray(sFacB[kB], ik).plus(Complex.fromArray(dsFacB[kB], ik));
-                        Complex sFacNew2 = Complex.fromArray(sFacB[6 - kB], ik).plus(Complex.fromArray(dsFacB[6 - kB], ik));
-                        fourierSum6 += (kB < 3 ? 2 : 1) * f6Exp[ik] * sFacNew.times(sFacNew2.conjugate()).real();
-                    }
-                }
-            }
-        }
-        tMC += System.nanoTime() - t1;
-        if (oldEnergy) {
-            // uOne = uTot - (energy without this molecule)
-            uOneFS = uTotFS - fourierSum - fourierSum6;
-            uOne += uOneFS;
-            uOneOld = uOne;
-        } else {
-            // (energy with new coordinates) - (energy without the molecule)
-            uOne += fourierSum + fourierSum6 - (uTotFS - uOneFS);
-            uOneNew = uOne;
+            double alpha63 = alpha6 * alpha6 * alpha6;
+            double vol = box.getBoundary().volume();
+            uOne -= SQRT_PI * PI * alpha63 / (6 * vol) * sumBij;
+            uOne += alpha63 * (alpha63 / 12) * sumBii;
         }
         return uOne;
     }
 
+    /**
+     * Removes the contribution of a molecule that was removed from the box
+     * from the structure factor, unless it was inserted by a trial that was
+     * never accepted.
+     */
+    protected void moleculeRemoved(IMolecule molecule) {
+        if (molecule == insertedMolecule) {
+            insertedMolecule = null;
+            didNew = false;
+            return;
+        }
+        if (!sFacValid) return;
+        int numMoved = setupMoveAtoms(((AtomArrayList) molecule.getChildList()).toArray());
+        if (numMoved == 0) return;
+        uTrialFS = computeMoveFourierSum(numMoved, -1, false);
+        didNew = true;
+        trialInserted = false;
+        processAtomU(1);
+    }
+
     @Override
     public void processAtomU(double fac) {
-        for (int ik = 0; ik < nWaveVectors; ik++) {
-            if (fac == 1) {
-                Complex.fromArray(sFac, ik).plus(Complex.fromArray(dsFac, ik)).intoArray(sFac, ik);
-                if (alpha6 > 0) {
-                    for (int kB = 0; kB <= 6; kB++) {
-                        Complex.fromArray(sFacB[kB], ik).plus(Complex.fromArray(dsFacB[kB], ik)).intoArray(sFacB[kB], ik);
-                    }
-                }
+        if (didNew && fac == 1) {
+            for (int i = 0; i < 2 * nWaveVectors; i++) {
+                sFac[i] += dsFac[i];
             }
-        }
-        Arrays.fill(dsFac, 0, nWaveVectors * 2, 0);
-        if (alpha6 > 0) {
-            for (int kB = 0; kB <= 6; kB++) {
-                Arrays.fill(dsFacB[kB], 0, nWaveVectors * 2, 0);
+            for (int d = 0; d < dispTypes.length; d++) {
+                for (int i = 0; i < 2 * nWaveVectors; i++) {
+                    sFacDisp[d][i] += dsFacDisp[d][i];
+                }
             }
+            uTotFS = uTrialFS;
+            if (trialInserted) insertedMolecule = null;
         }
-        if (fac == 1) {
-            uTotFS += uOneNew - uOneOld;
-        }
+        didNew = false;
     }
 
     @Override
@@ -0,0 +1,490 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.potential.compute;
+
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.math.numerical.FastFourierTransform3D;
+import etomica.molecule.IMolecule;
+import etomica.space.Vector;
+import etomica.space3d.Vector3D;
+import etomica.species.SpeciesManager;
+
+import java.util.Arrays;
+
+import static etomica.math.SpecialFunctions.erfc;
+import static java.lang.Math.PI;
+
+/**
+ * Smooth particle-mesh Ewald (SPME) version of the Fourier part of Ewald
+ * summation for charges and r^-6 dispersion.  Each atom's charge (and
+ * dispersion coefficients) is spread onto a grid with cardinal B-splines,
+ * the grid is Fourier transformed, and the energy is summed over the grid's
+ * wave vectors.  The cost grows as N + G log G (G grid points) instead of
+ * N*(number of wave vectors) for PotentialComputeEwaldFourier.
+ * <p>
+ * Charges, dispersion coefficients, alpha, alpha6 and kCut are configured as
+ * for PotentialComputeEwaldFourier.  Unless set explicitly, the grid is the
+ * smallest power of 2 in each direction that resolves all wave vectors up
+ * to 2*kCut.  Only rectangular boxes are supported, and only full energy and
+ * force computations; energies of individual atoms (needed for Monte Carlo)
+ * are not available.
+ * <p>
+ * Essmann, Perera, Berkowitz, Darden, Lee &amp; Pedersen,
+ * J. Chem. Phys. 103, 8577 (1995)
+ * https://doi.org/10.1063/1.470117
+ */
+public class PotentialComputeEwaldSPME extends PotentialComputeEwaldFourier {
+
+    protected int splineOrder = 6;
+    protected final int[] gridSizeSet = new int[3];
+    protected final int[] gridSize = new int[3];
+    protected FastFourierTransform3D fft;
+    protected double[] qGrid = new double[0], qHat = new double[0], phiGrid = new double[0];
+    // dispersion grids, one for each atom type with r^-6 coefficients
+    protected double[][] q6Grid = new double[0][], q6Hat = new double[0][], phi6Grid = new double[0][];
+    protected double[] psi6Hat = new double[0];
+    // influence function and its volume derivative at each (Hermitian half) grid wave vector
+    protected double[] gq = new double[0], vq = new double[0], g6 = new double[0], v6 = new double[0];
+    // spline weights and derivatives, p per atom and dimension, and the grid point of the first weight
+    protected double[][] theta = new double[3][0], dTheta = new double[3][0];
+    protected int[][] gridStart = new int[3][0];
+    protected final Vector3D lastSPMEBoxSize = new Vector3D();
+    protected double lastAlpha = Double.NaN, lastAlpha6 = Double.NaN;
+    protected final double[] splineWork;
+
+    public PotentialComputeEwaldSPME(SpeciesManager sm, Box box) {
+        super(sm, box);
+        if (!box.getBoundary().isRectangular()) {
+            throw new RuntimeException("SPME requires a rectangular box");
+        }
+        splineWork = new double[16];
+    }
+
+    /**
+     * Sets the order of the B-splines used to spread atoms onto the grid
+     * (default 6).  Each atom touches splineOrder^3 grid points.
+     */
+    public void setSplineOrder(int newSplineOrder) {
+        if (newSplineOrder < 3 || newSplineOrder > 12) {
+            throw new IllegalArgumentException("spline order must be between 3 and 12");
+        }
+        splineOrder = newSplineOrder;
+        lastAlpha = Double.NaN;
+    }
+
+    public int getSplineOrder() {
+        return splineOrder;
+    }
+
+    /**
+     * Sets the number of grid points in each direction.  Each must be a
+     * power of 2.  Passing 0 for all returns to choosing the grid from kCut.
+     */
+    public void setGridSize(int nx, int ny, int nz) {
+        gridSizeSet[0] = nx;
+        gridSizeSet[1] = ny;
+        gridSizeSet[2] = nz;
+        lastAlpha = Double.NaN;
+    }
+
+    public int[] getGridSize() {
+        return gridSize.clone();
+    }
+
+    protected void setupGrid() {
+        Vector bs = box.getBoundary().getBoxSize();
+        int[] newSize = new int[3];
+        for (int a = 0; a < 3; a++) {
+            if (gridSizeSet[a] > 0) {
+                newSize[a] = gridSizeSet[a];
+            } else {
+                // resolve twice the wave vectors within kCut
+                int mMax = (int) (bs.getX(a) * kCut / PI);
+                int n = Math.max(2 * mMax + 1, 2 * splineOrder);
+                newSize[a] = Integer.highestOneBit(n - 1) << 1;
+            }
+        }
+        if (fft == null || !Arrays.equals(newSize, gridSize)) {
+            System.arraycopy(newSize, 0, gridSize, 0, 3);
+            fft = new FastFourierTransform3D(gridSize[0], gridSize[1], gridSize[2]);
+            lastAlpha = Double.NaN;
+        }
+        int numReal = gridSize[0] * gridSize[1] * gridSize[2];
+        int numComplex = fft.getComplexSize();
+        if (qGrid.length != numReal) {
+            qGrid = new double[numReal];
+            phiGrid = new double[numReal];
+            qHat = new double[2 * numComplex];
+            gq = new double[numComplex];
+            vq = new double[numComplex];
+            g6 = new double[numComplex];
+            v6 = new double[numComplex];
+        }
+        if (q6Grid.length != dispTypes.length || (dispTypes.length > 0 && q6Grid[0].length != numReal)) {
+            int numDisp = dispTypes.length;
+            q6Grid = new double[numDisp][numReal];
+            phi6Grid = new double[numDisp][numReal];
+            q6Hat = new double[numDisp][2 * numComplex];
+            psi6Hat = new double[2 * numComplex];
+        }
+        if (lastSPMEBoxSize.equals(bs) && lastAlpha == alpha && lastAlpha6 == alpha6) return;
+        lastSPMEBoxSize.E(bs);
+        lastAlpha = alpha;
+        lastAlpha6 = alpha6;
+        computeInfluence();
+    }
+
+    /**
+     * Computes the influence function (the Ewald Fourier coefficient times
+     * the B-spline correction) and its contribution to the virial for every
+     * grid wave vector.
+     */
+    protected void computeInfluence() {
+        Vector bs = box.getBoundary().getBoxSize();
+        double vol = box.getBoundary().volume();
+        double[][] bMod = new double[3][];
+        for (int a = 0; a < 3; a++) {
+            bMod[a] = splineModuli(gridSize[a]);
+        }
+        int nx = gridSize[0], ny = gridSize[1], nz = gridSize[2];
+        int nzc = nz / 2 + 1;
+        double coeff = 4 * PI / vol;
+        double coeffB2 = -2.0 * SQRT_PI * PI * alpha6 * alpha6 * alpha6 / (3.0 * vol);
+        for (int ix = 0; ix < nx; ix++) {
+            double kx = 2 * PI * (ix <= nx / 2 ? ix : ix - nx) / bs.getX(0);
+            for (int iy = 0; iy < ny; iy++) {
+                double ky = 2 * PI * (iy <= ny / 2 ? iy : iy - ny) / bs.getX(1);
+                for (int iz = 0; iz < nzc; iz++) {
+                    int c = (ix * ny + iy) * nzc + iz;
+                    double kz = 2 * PI * iz / bs.getX(2);
+                    double k2 = kx * kx + ky * ky + kz * kz;
+                    gq[c] = vq[c] = g6[c] = v6[c] = 0;
+                    if (k2 == 0) continue;
+                    double b = bMod[0][ix] * bMod[1][iy] * bMod[2][iz];
+                    if (alpha > 0) {
+                        double fExp = coeff * Math.exp(-0.25 * k2 / (alpha * alpha)) / k2;
+                        double kdfdk = -(2 + k2 / (2 * alpha * alpha)) * fExp;
+                        double dfqdV = -fExp / vol - kdfdk / (3 * vol);
+                        gq[c] = fExp * b;
+                        vq[c] = 3 * vol * dfqdV * b;
+                    }
+                    if (alpha6 > 0) {
+                        double h = Math.sqrt(k2) / (2 * alpha6);
+                        double h2 = h * h;
+                        double exph2 = Math.exp(-h2);
+                        double f6Exp = coeffB2 * h * h2 * (SQRT_PI * erfc(h) + (0.5 / h2 - 1) / h * exph2);
+                        double hdf6dh = 3 * f6Exp - 1.5 * coeffB2 * exph2;
+                        double df6dV = -f6Exp / vol - hdf6dh / (3 * vol);
+                        g6[c] = f6Exp * b;
+                        v6[c] = 3 * vol * df6dV * b;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns |b(m)|^2 for m = 0..n-1, the factor that corrects the
+     * structure factor of the B-spline spread charges.
+     */
+    protected double[] splineModuli(int n) {
+        int p = splineOrder;
+        // M_p at the integers 1..p-1
+        double[] mp = new double[p];
+        splineWeights(0, p, mp, null);
+        double[] bMod = new double[n];
+        for (int m = 0; m < n; m++) {
+            double sr = 0, si = 0;
+            for (int k = 0; k < p - 1; k++) {
+                double arg = 2 * PI * m * k / n;
+                // M_p(k+1) is weight j=k+1 at frac=0
+                sr += mp[k + 1] * Math.cos(arg);
+                si += mp[k + 1] * Math.sin(arg);
+            }
+            double d = sr * sr + si * si;
+            bMod[m] = d < 1e-10 ? 0 : 1 / d;
+        }
+        // odd orders vanish at the Nyquist wave vector; interpolate there
+        for (int m = 0; m < n; m++) {
+            if (bMod[m] == 0) {
+                bMod[m] = 0.5 * (bMod[(m + n - 1) % n] + bMod[(m + 1) % n]);
+            }
+        }
+        return bMod;
+    }
+
+    /**
+     * Computes w[j] = M_p(frac + j) for j = 0..p-1 and, if dw is not null,
+     * the derivatives dM_p/du at the same points.
+     */
+    protected void splineWeights(double frac, int p, double[] w, double[] dw) {
+        double[] prev = splineWork;
+        Arrays.fill(w, 0, p, 0);
+        // order 2
+        w[0] = frac;
+        w[1] = 1 - frac;
+        for (int n = 3; n <= p; n++) {
+            if (n == p && dw != null) {
+                dw[0] = w[0];
+                for (int j = 1; j < p; j++) {
+                    dw[j] = w[j] - w[j - 1];
+                }
+            }
+            System.arraycopy(w, 0, prev, 0, n - 1);
+            prev[n - 1] = 0;
+            double fn = 1.0 / (n - 1);
+            w[0] = frac * prev[0] * fn;
+            for (int j = 1; j < n; j++) {
+                w[j] = ((frac + j) * prev[j] + (n - frac - j) * prev[j - 1]) * fn;
+            }
+        }
+    }
+
+    protected void computeSplines(int numAtoms) {
+        int p = splineOrder;
+        if (gridStart[0].length < numAtoms) {
+            for (int a = 0; a < 3; a++) {
+                gridStart[a] = new int[numAtoms];
+                theta[a] = new double[numAtoms * p];
+                dTheta[a] = new double[numAtoms * p];
+            }
+        }
+        Vector bs = box.getBoundary().getBoxSize();
+        IAtomList atoms = box.getLeafList();
+        double[] w = new double[p], dw = new double[p];
+        for (int i = 0; i < numAtoms; i++) {
+            Vector ri = atoms.get(i).getPosition();
+            for (int a = 0; a < 3; a++) {
+                int n = gridSize[a];
+                double u = n * (ri.getX(a) / bs.getX(a) + 0.5);
+                double fu = Math.floor(u);
+                int iu = (int) fu;
+                splineWeights(u - fu, p, w, dw);
+                System.arraycopy(w, 0, theta[a], i * p, p);
+                System.arraycopy(dw, 0, dTheta[a], i * p, p);
+                // weight j goes to grid point iu - j
+                gridStart[a][i] = ((iu % n) + n) % n;
+            }
+        }
+    }
+
+    protected boolean isActive(int iType) {
+        return (alpha > 0 && chargesByType[iType] != 0) || (alpha6 > 0 && B6[iType][iType] != 0);
+    }
+
+    protected void spread(int numAtoms) {
+        int p = splineOrder;
+        int nx = gridSize[0], ny = gridSize[1], nz = gridSize[2];
+        Arrays.fill(qGrid, 0);
+        for (double[] grid : q6Grid) {
+            Arrays.fill(grid, 0);
+        }
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < numAtoms; i++) {
+            int iType = atoms.get(i).getType().getIndex();
+            if (!isActive(iType)) continue;
+            double qi = alpha > 0 ? chargesByType[iType] : 0;
+            int d = dispIndex[iType];
+            double[] grid6 = d < 0 ? null : q6Grid[d];
+            int x0 = gridStart[0][i], y0 = gridStart[1][i], z0 = gridStart[2][i];
+            for (int jx = 0; jx < p; jx++) {
+                int gx = x0 - jx;
+                if (gx < 0) gx += nx;
+                double wx = theta[0][i * p + jx];
+                for (int jy = 0; jy < p; jy++) {
+                    int gy = y0 - jy;
+                    if (gy < 0) gy += ny;
+                    double wxy = wx * theta[1][i * p + jy];
+                    int rowStart = (gx * ny + gy) * nz;
+                    for (int jz = 0; jz < p; jz++) {
+                        int gz = z0 - jz;
+                        if (gz < 0) gz += nz;
+                        double w = wxy * theta[2][i * p + jz];
+                        int g = rowStart + gz;
+                        qGrid[g] += qi * w;
+                        if (grid6 != null) grid6[g] += w;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public double computeAll(boolean doForces, PotentialCallback pc) {
+        if (pc != null && pc.wantsHessian()) {
+            throw new RuntimeException("SPME cannot compute the Hessian");
+        }
+        int numAtoms = box.getLeafList().size();
+        double uTot = computeSelfEnergy();
+        if (forces.length < numAtoms) {
+            forces = new Vector[numAtoms];
+            Arrays.setAll(forces, i -> space.makeVector());
+        }
+        for (int i = 0; i < numAtoms; i++) {
+            forces[i].E(0);
+        }
+        uTotFS = 0;
+        if (numAtoms == 0 || (alpha == 0 && alpha6 == 0)) {
+            return uTot;
+        }
+
+        findDispersionTypes();
+        setupGrid();
+        computeSplines(numAtoms);
+        spread(numAtoms);
+
+        boolean doCharge = alpha > 0;
+        int numDisp = dispTypes.length;
+        if (doCharge) fft.forward(qGrid, qHat);
+        for (int d = 0; d < numDisp; d++) {
+            fft.forward(q6Grid[d], q6Hat[d]);
+        }
+
+        // sum over all wave vectors; the half grid holds kz and -kz together
+        int nzc = gridSize[2] / 2 + 1;
+        int numComplex = fft.getComplexSize();
+        double fourierSum = 0, fourierSum6 = 0, virialSum = 0, virialSum6 = 0;
+        for (int c = 0; c < numComplex; c++) {
+            int iz = c % nzc;
+            double mult = (iz == 0 || 2 * iz == gridSize[2]) ? 0.5 : 1;
+            if (doCharge) {
+                double re = qHat[2 * c], im = qHat[2 * c + 1];
+                double s2 = re * re + im * im;
+                fourierSum += mult * gq[c] * s2;
+                virialSum += mult * vq[c] * s2;
+            }
+            if (numDisp > 0) {
+                // sum over kB of S_kB S*_(6-kB) is sum over types of B6 S_i S*_j
+                double y = 0;
+                for (int d = 0; d < numDisp; d++) {
+                    double[] hd = q6Hat[d];
+                    double[] B6d = B6[dispTypes[d]];
+                    for (int e = 0; e < numDisp; e++) {
+                        double[] he = q6Hat[e];
+                        y += B6d[dispTypes[e]] * (hd[2 * c] * he[2 * c] + hd[2 * c + 1] * he[2 * c + 1]);
+                    }
+                }
+                fourierSum6 += mult * g6[c] * y;
+                virialSum6 += mult * v6[c] * y;
+            }
+        }
+        uTotFS = fourierSum + fourierSum6;
+        uTot += uTotFS;
+        virialTot += virialSum + virialSum6;
+        nWaveVectors = numComplex;
+        fNum += numComplex;
+
+        if (doForces) {
+            // convolve the spread charges with the influence function to get
+            // the potential on the grid
+            if (doCharge) {
+                for (int c = 0; c < numComplex; c++) {
+                    qHat[2 * c] *= gq[c];
+                    qHat[2 * c + 1] *= gq[c];
+                }
+                fft.inverse(qHat, phiGrid);
+            }
+            for (int d = 0; d < numDisp; d++) {
+                double[] B6d = B6[dispTypes[d]];
+                for (int c = 0; c < numComplex; c++) {
+                    double re = 0, im = 0;
+                    for (int e = 0; e < numDisp; e++) {
+                        double b = B6d[dispTypes[e]];
+                        re += b * q6Hat[e][2 * c];
+                        im += b * q6Hat[e][2 * c + 1];
+                    }
+                    psi6Hat[2 * c] = g6[c] * re;
+                    psi6Hat[2 * c + 1] = g6[c] * im;
+                }
+                fft.inverse(psi6Hat, phi6Grid[d]);
+            }
+            gatherForces(numAtoms);
+            if (!sm.isPureAtoms()) {
+                virialTot += PotentialCompute.computeVirialIntramolecular(forces, box);
+            }
+        }
+        return uTot;
+    }
+
+    protected void gatherForces(int numAtoms) {
+        int p = splineOrder;
+        int nx = gridSize[0], ny = gridSize[1], nz = gridSize[2];
+        Vector bs = box.getBoundary().getBoxSize();
+        double sx = nx / bs.getX(0), sy = ny / bs.getX(1), sz = nz / bs.getX(2);
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < numAtoms; i++) {
+            IAtom atom = atoms.get(i);
+            int iType = atom.getType().getIndex();
+            if (!isActive(iType)) continue;
+            double qi = alpha > 0 ? chargesByType[iType] : 0;
+            int d = dispIndex[iType];
+            double[] phi6 = d < 0 ? null : phi6Grid[d];
+            int x0 = gridStart[0][i], y0 = gridStart[1][i], z0 = gridStart[2][i];
+            double fx = 0, fy = 0, fz = 0;
+            for (int jx = 0; jx < p; jx++) {
+                int gx = x0 - jx;
+                if (gx < 0) gx += nx;
+                double wx = theta[0][i * p + jx], dwx = dTheta[0][i * p + jx];
+                for (int jy = 0; jy < p; jy++) {
+                    int gy = y0 - jy;
+                    if (gy < 0) gy += ny;
+                    double wy = theta[1][i * p + jy], dwy = dTheta[1][i * p + jy];
+                    int rowStart = (gx * ny + gy) * nz;
+                    for (int jz = 0; jz < p; jz++) {
+                        int gz = z0 - jz;
+                        if (gz < 0) gz += nz;
+                        double wz = theta[2][i * p + jz], dwz = dTheta[2][i * p + jz];
+                        int g = rowStart + gz;
+                        double phi = qi * phiGrid[g];
+                        if (phi6 != null) phi += phi6[g];
+                        fx -= dwx * wy * wz * phi;
+                        fy -= wx * dwy * wz * phi;
+                        fz -= wx * wy * dwz * phi;
+                    }
+                }
+            }
+            Vector fi = forces[i];
+            fi.setX(0, fi.getX(0) + fx * sx);
+            fi.setX(1, fi.getX(1) + fy * sy);
+            fi.setX(2, fi.getX(2) + fz * sz);
+        }
+    }
+
+    @Override
+    public double computeOneOld(IAtom atom) {
+        throw new RuntimeException("SPME cannot compute the energy of individual atoms");
+    }
+
+    @Override
+    public double computeOneOldMolecule(IMolecule molecule) {
+        throw new RuntimeException("SPME cannot compute the energy of individual molecules");
+    }
+
+    @Override
+    public double computeOne(IAtom atom) {
+        throw new RuntimeException("SPME cannot compute the energy of individual atoms");
+    }
+
+    @Override
+    public double computeOneMolecule(IMolecule molecule) {
+        throw new RuntimeException("SPME cannot compute the energy of individual molecules");
+    }
+
+    @Override
+    public double computeManyAtomsOld(IAtom... atoms) {
+        throw new RuntimeException("SPME cannot compute the energy of individual atoms");
+    }
+
+    @Override
+    public double computeManyAtoms(IAtom... atoms) {
+        throw new RuntimeException("SPME cannot compute the energy of individual atoms");
+    }
+
+    @Override
+    public void processAtomU(double fac) {
+    }
+}
@@ -74,6 +74,13 @@ public class PotentialComputeField implements PotentialCompute {
                 uAtom[newIndex] = uAtom[oldIndex];
             }
 
+            @Override
+            public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+                e.permute(uAtom);
+                e.permute(forces);
+                e.permute(torques);
+            }
+
             @Override
             public void boxMoleculeRemoved(BoxMoleculeEvent e) {
             }
@@ -17,8 +17,15 @@ import etomica.species.SpeciesManager;
 import etomica.util.collections.DoubleArrayList;
 import etomica.util.collections.IntArrayList;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class PotentialComputePair implements PotentialCompute {
 
@@ -35,12 +42,20 @@ public class PotentialComputePair implements PotentialCompute {
     protected double virialTot = Double.NaN, energyTot = Double.NaN;
     protected Vector[] forces;
     protected final Space space;
+    protected final Vector rijScratch;
+    protected final PairAccumulator pairAccumulator;
 
     protected final int[] atomCountByType;
     protected boolean duAtomMulti = false;
 
     public boolean doAllTruncationCorrection = true;
     public boolean doOneTruncationCorrection = false;
+    protected boolean batchPairs = false;
+
+    protected int numThreads = 1;
+    protected ExecutorService executor;
+    protected PairWorker[] workers;
+    protected List<Callable<Object>> pairTasks, reduceTasks;
 
     public PotentialComputePair(SpeciesManager sm, Box box, NeighborManager neighborManager) {
         this(sm, box, neighborManager, new IPotential2[sm.getAtomTypeCount()][sm.getAtomTypeCount()]);
@@ -62,6 +77,8 @@ public class PotentialComputePair implements PotentialCompute {
         uAtomsChanged = new IntArrayList(16);
         duAtom = new DoubleArrayList(16);
         zero = box.getSpace().makeVector();
+        rijScratch = space.makeVector();
+        pairAccumulator = new PairAccumulator();
         forces = new Vector[0];
 
         this.atomCountByType = new int[numAtomTypes];
@@ -103,6 +120,12 @@ public class PotentialComputePair implements PotentialCompute {
                 uAtom[newIndex] = uAtom[oldIndex];
             }
 
+            @Override
+            public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+                e.permute(uAtom);
+                e.permute(forces);
+            }
+
             @Override
             public void boxMoleculeRemoved(BoxMoleculeEvent e) {
                 for (AtomType atomType : e.getMolecule().getType().getAtomTypes()) {
@@ -130,6 +153,65 @@ public class PotentialComputePair implements PotentialCompute {
         };
     }
 
+    /**
+     * Sets the number of threads used by computeAll.  With more than one
+     * thread, the leaf atoms are split into contiguous blocks (one per thread)
+     * and each thread accumulates energies, forces and virial from its
+     * block's up-neighbor pairs into its own buffers.  The buffers are then
+     * summed in thread order, so results do not depend on scheduling.  The
+     * pair potentials must be safe to call concurrently.  computeAll falls
+     * back to a single thread when given a PotentialCallback.
+     */
+    public void setNumThreads(int newNumThreads) {
+        if (newNumThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive");
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        numThreads = newNumThreads;
+        workers = null;
+        if (numThreads == 1) return;
+
+        executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r, "PotentialComputePair-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        workers = new PairWorker[numThreads];
+        pairTasks = new ArrayList<>(numThreads);
+        reduceTasks = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            PairWorker w = new PairWorker();
+            workers[t] = w;
+            pairTasks.add(w::computePairs);
+            reduceTasks.add(w::reduce);
+        }
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Directs computeAll to gather each atom's up-neighbors (within range of
+     * the potential) into blocks, one per atom type, and compute each block's
+     * energies and derivatives with a single call to the pair potential's
+     * u01Batch.  The results are the same as pair-by-pair (except for the
+     * order of summation with multiple atom types).  This pays off only when
+     * the potential's evaluation costs more than gathering the block; it is
+     * off by default and is not used when computeAll is given a
+     * PotentialCallback.
+     */
+    public void setBatchPairs(boolean newBatchPairs) {
+        batchPairs = newBatchPairs;
+    }
+
+    public boolean getBatchPairs() {
+        return batchPairs;
+    }
+
     @Override
     public boolean needForcesForVirial() {
         return !isPureAtoms;
@@ -201,50 +283,57 @@ public class PotentialComputePair implements PotentialCompute {
     public double computeAll(boolean doForces, PotentialCallback pc) {
         zeroArrays(doForces);
 
-        IAtomList atoms = box.getLeafList();
-        double[] uTot = {0};
-        for (int i = 0; i < atoms.size(); i++) {
-            IAtom iAtom = atoms.get(i);
-            int iType = iAtom.getType().getIndex();
-            IPotential2[] ip = pairPotentials[iType];
-            int finalI = i;
-            neighborIterator.iterUpNeighbors(i, (jAtom, rij, n) -> {
-                int j = jAtom.getLeafIndex();
-                if (pc != null && pc.skipPair(finalI, j)) return;
-                int jType = jAtom.getType().getIndex();
-                IPotential2 pij = ip[jType];
-                if (pij == null) return;
-                double[] u012 = new double[3];
-                double r2 = rij.squared();
-                pij.u012add(r2, u012);
-                double uij = u012[0];
-                if (uij == 0) return;
-                if (pc != null) pc.pairCompute(finalI, j, rij, u012);
-                uAtom[finalI] += 0.5 * uij;
-                uAtom[j] += 0.5 * uij;
-                double duij = u012[1];
-                virialTot += duij;
-                if (doForces && duij != 0) {
-                    rij.TE(duij / r2);
-                    forces[finalI].PE(rij);
-                    forces[j].ME(rij);
-                }
-                uTot[0] += uij;
-            });
+        double uTot;
+        if (numThreads > 1 && pc == null) {
+            uTot = computeAllThreaded(doForces);
+        } else {
+            pairAccumulator.setTargets(uAtom, forces, doForces, pc);
+            pairAccumulator.computePairs(0, box.getLeafList().size());
+            uTot = pairAccumulator.uTot;
+            virialTot += pairAccumulator.virialTot;
         }
 
         double[] uCorrection = new double[1];
         double[] duCorrection = new double[1];
         this.computeAllTruncationCorrection(uCorrection, duCorrection);
-        uTot[0] += uCorrection[0];
+        uTot += uCorrection[0];
         virialTot += duCorrection[0];
 
         if (doForces && !isPureAtoms) {
             virialTot += PotentialCompute.computeVirialIntramolecular(forces, box);
         }
 
-        energyTot = uTot[0];
-        return uTot[0];
+        energyTot = uTot;
+        return uTot;
+    }
+
+    protected double computeAllThreaded(boolean doForces) {
+        int numAtoms = box.getLeafList().size();
+        for (int t = 0; t < numThreads; t++) {
+            workers[t].setRange(numAtoms * t / numThreads, numAtoms * (t + 1) / numThreads, doForces);
+        }
+        runTasks(pairTasks);
+        runTasks(reduceTasks);
+
+        double uTot = 0;
+        for (PairWorker w : workers) {
+            uTot += w.uTot;
+            virialTot += w.virialTot;
+        }
+        return uTot;
+    }
+
+    protected void runTasks(List<Callable<Object>> tasks) {
+        try {
+            for (Future<Object> f : executor.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
     }
 
     @Override
@@ -281,7 +370,7 @@ public class PotentialComputePair implements PotentialCompute {
     }
 
     protected double computeOneInternal(IAtom atom, int startExcludeIdx, IAtom... excludedAtoms) {
-        return this.neighborIterator.iterAndSumAllNeighbors(atom, new NeighborIterator.SuperNbrConsumer() {
+        return this.neighborIterator.iterAndSumAllNeighbors(atom, rijScratch, new NeighborIterator.SuperNbrConsumer() {
             @Override
             public double accept(IAtom atom1, IAtom atom2, Vector rij, int n) {
                 if (arrayContains(atom2, startExcludeIdx, excludedAtoms)) return 0;
@@ -313,10 +402,9 @@ public class PotentialComputePair implements PotentialCompute {
                 if (bondingInfo.skipBondedPair(false, atom1, atom2)) continue;
                 IPotential2 pij = pairPotentials[atom1.getType().getIndex()][atom2.getType().getIndex()];
                 if (pij == null) continue;
-                Vector rij = space.makeVector();
-                rij.Ev1Mv2(atom2.getPosition(), atom1.getPosition());
-                box.getBoundary().nearestImage(rij);
-                double uij = pij.u(rij.squared());
+                rijScratch.Ev1Mv2(atom2.getPosition(), atom1.getPosition());
+                box.getBoundary().nearestImage(rijScratch);
+                double uij = pij.u(rijScratch.squared());
                 uIntra += uij;
             }
         }
@@ -408,4 +496,207 @@ public class PotentialComputePair implements PotentialCompute {
         }
         return uCorrection;
     }
+
+    /**
+     * Accumulates energies, forces and virial for the up-neighbor pairs of a
+     * range of atoms into the given arrays.  One instance is reused for every
+     * pair, so the pair loop does not allocate.
+     */
+    protected class PairAccumulator implements NeighborIterator.NeighborPairConsumer {
+        protected final Vector rij = space.makeVector();
+        protected final double[] u012 = new double[3];
+        protected double[] uAtomSum;
+        protected Vector[] forceSum;
+        protected boolean doForces;
+        protected PotentialCallback pc;
+        protected IPotential2[] ip;
+        protected int i;
+        protected double uTot, virialTot;
+        protected PairBlock[] blocks = new PairBlock[0];
+        protected double[] range2 = new double[0];
+        protected int range2Offset;
+        protected final NeighborIterator.NeighborPairConsumer gatherer = this::gather;
+
+        public void setTargets(double[] uAtomSum, Vector[] forceSum, boolean doForces, PotentialCallback pc) {
+            this.uAtomSum = uAtomSum;
+            this.forceSum = forceSum;
+            this.doForces = doForces;
+            this.pc = pc;
+        }
+
+        public void computePairs(int iStart, int iEnd) {
+            uTot = virialTot = 0;
+            IAtomList atoms = box.getLeafList();
+            boolean batch = batchPairs && pc == null;
+            if (batch) initBlocks();
+            int numTypes = pairPotentials.length;
+            for (i = iStart; i < iEnd; i++) {
+                int iType = atoms.get(i).getType().getIndex();
+                ip = pairPotentials[iType];
+                if (!batch) {
+                    neighborIterator.iterUpNeighbors(i, rij, this);
+                    continue;
+                }
+                range2Offset = iType * numTypes;
+                neighborIterator.iterUpNeighbors(i, rij, gatherer);
+                for (int t = 0; t < numTypes; t++) {
+                    if (blocks[t].n > 0) computeBlock(ip[t], blocks[t]);
+                }
+            }
+        }
+
+        /**
+         * Makes a block for each atom type and tabulates the square of the
+         * range of each pair potential (-1 for pairs with no potential).
+         */
+        protected void initBlocks() {
+            int numTypes = pairPotentials.length;
+            if (blocks.length != numTypes) {
+                blocks = new PairBlock[numTypes];
+                for (int t = 0; t < numTypes; t++) blocks[t] = new PairBlock();
+                range2 = new double[numTypes * numTypes];
+            }
+            for (int t = 0; t < numTypes * numTypes; t++) {
+                IPotential2 p = pairPotentials[t / numTypes][t % numTypes];
+                range2[t] = p == null ? -1 : p.getRange() * p.getRange();
+            }
+        }
+
+        protected void gather(IAtom jAtom, Vector rij, double r2, int n) {
+            int t = jAtom.getType().getIndex();
+            // pairs beyond the potential's range do not interact
+            if (r2 > range2[range2Offset + t]) return;
+            blocks[t].add(jAtom.getLeafIndex(), rij, r2);
+        }
+
+        protected void computeBlock(IPotential2 pij, PairBlock block) {
+            int n = block.n;
+            block.n = 0;
+            double[] r2 = block.r2, u = block.u, du = block.du, rijFlat = block.rij;
+            int D = block.D;
+            pij.u01Batch(r2, u, du, n);
+            for (int k = 0; k < n; k++) {
+                double uij = u[k];
+                if (uij == 0) continue;
+                int j = block.j[k];
+                uAtomSum[i] += 0.5 * uij;
+                uAtomSum[j] += 0.5 * uij;
+                double duij = du[k];
+                virialTot += duij;
+                if (doForces && duij != 0) {
+                    double fac = duij / r2[k];
+                    for (int d = 0; d < D; d++) {
+                        rij.setX(d, fac * rijFlat[k * D + d]);
+                    }
+                    forceSum[i].PE(rij);
+                    forceSum[j].ME(rij);
+                }
+                uTot += uij;
+            }
+        }
+
+        @Override
+        public void accept(IAtom jAtom, Vector rij, double r2, int n) {
+            int j = jAtom.getLeafIndex();
+            if (pc != null && pc.skipPair(i, j)) return;
+            IPotential2 pij = ip[jAtom.getType().getIndex()];
+            if (pij == null) return;
+            u012[0] = u012[1] = u012[2] = 0;
+            pij.u012add(r2, u012);
+            double uij = u012[0];
+            if (uij == 0) return;
+            if (pc != null) pc.pairCompute(i, j, rij, u012);
+            uAtomSum[i] += 0.5 * uij;
+            uAtomSum[j] += 0.5 * uij;
+            double duij = u012[1];
+            virialTot += duij;
+            if (doForces && duij != 0) {
+                rij.TE(duij / r2);
+                forceSum[i].PE(rij);
+                forceSum[j].ME(rij);
+            }
+            uTot += uij;
+        }
+    }
+
+    /**
+     * Neighbors of one atom (of one type) gathered for a single u01Batch call.
+     * The pair separations are stored flat, D components per pair.
+     */
+    protected class PairBlock {
+        protected final int D = space.D();
+        protected int n;
+        protected int[] j = new int[0];
+        protected double[] r2 = new double[0], u = new double[0], du = new double[0], rij = new double[0];
+
+        public void add(int jj, Vector rijj, double r2j) {
+            if (n == j.length) {
+                int newSize = Math.max(16, n * 2);
+                j = Arrays.copyOf(j, newSize);
+                r2 = Arrays.copyOf(r2, newSize);
+                u = new double[newSize];
+                du = new double[newSize];
+                rij = Arrays.copyOf(rij, newSize * D);
+            }
+            j[n] = jj;
+            r2[n] = r2j;
+            for (int d = 0; d < D; d++) {
+                rij[n * D + d] = rijj.getX(d);
+            }
+            n++;
+        }
+    }
+
+    /**
+     * Holds one thread's share of computeAll: the range of atoms it handles
+     * and its private energy and force buffers.
+     */
+    protected class PairWorker extends PairAccumulator {
+        protected double[] uAtomT = new double[0];
+        protected Vector[] forcesT = new Vector[0];
+        protected int iStart, iEnd;
+
+        public void setRange(int iStart, int iEnd, boolean doForces) {
+            this.iStart = iStart;
+            this.iEnd = iEnd;
+            this.doForces = doForces;
+        }
+
+        protected void zero(int numAtoms) {
+            if (uAtomT.length < numAtoms) {
+                uAtomT = new double[numAtoms];
+            } else {
+                Arrays.fill(uAtomT, 0, numAtoms, 0);
+            }
+            if (doForces) {
+                if (forcesT.length < numAtoms) {
+                    int oldLength = forcesT.length;
+                    forcesT = Arrays.copyOf(forcesT, numAtoms);
+                    for (int i = oldLength; i < numAtoms; i++) forcesT[i] = space.makeVector();
+                }
+                for (int i = 0; i < numAtoms; i++) forcesT[i].E(0);
+            }
+        }
+
+        public Object computePairs() {
+            zero(box.getLeafList().size());
+            setTargets(uAtomT, forcesT, doForces, null);
+            computePairs(iStart, iEnd);
+            return null;
+        }
+
+        /**
+         * Sums the buffers of all workers (in worker order) for this worker's
+         * range of atoms.
+         */
+        public Object reduce() {
+            for (PairWorker w : workers) {
+                for (int i = iStart; i < iEnd; i++) {
+                    uAtom[i] += w.uAtomT[i];
+                    if (doForces) forces[i].PE(w.forcesT[i]);
+                }
+            }
+            return null;
+        }
+    }
 }
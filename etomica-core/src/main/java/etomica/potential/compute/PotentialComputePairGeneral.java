@@ -101,6 +101,13 @@ public class PotentialComputePairGeneral implements PotentialCompute {
                 uAtom[newIndex] = uAtom[oldIndex];
             }
 
+            @Override
+            public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+                e.permute(uAtom);
+                e.permute(forces);
+                e.permute(torques);
+            }
+
             @Override
             public void boxMoleculeRemoved(BoxMoleculeEvent e) {
                 for (AtomType atomType : e.getMolecule().getType().getAtomTypes()) {
@@ -7,6 +7,8 @@ import etomica.atom.AtomType;
 import etomica.atom.IAtom;
 import etomica.atom.IAtomList;
 import etomica.box.Box;
+import etomica.box.BoxAtomPermutationEvent;
+import etomica.box.BoxEventListener;
 import etomica.exception.MethodNotImplementedException;
 import etomica.integrator.IntegratorListener;
 import etomica.potential.IPotential2;
@@ -77,7 +79,12 @@ public class PotentialComputeTriplet implements PotentialCompute {
 
         zero = box.getSpace().makeVector();
         forces = new Vector[0];
-
+        box.getEventManager().addListener(new BoxEventListener() {
+            @Override
+            public void boxAtomLeafIndicesPermuted(BoxAtomPermutationEvent e) {
+                e.permute(forces);
+            }
+        });
     }
 
     @Override
@@ -22,6 +22,7 @@ import etomica.potential.P2SoftSphere;
 import etomica.potential.P2SoftSphericalSumTruncated;
 import etomica.potential.compute.PotentialComputeAggregate;
 import etomica.potential.compute.PotentialComputeEwaldFourier;
+import etomica.potential.compute.PotentialComputeEwaldSPME;
 import etomica.potential.ewald.P2Ewald6Real;
 import etomica.simulation.Simulation;
 import etomica.space3d.Space3D;
@@ -41,6 +42,14 @@ public class TestLJMD3DEwald extends Simulation {
     public final PotentialMasterList pair;
 
     public TestLJMD3DEwald(int numAtoms, Configuration config) {
+        this(numAtoms, config, false);
+    }
+
+    /**
+     * @param spme if true, the Fourier part is computed with particle-mesh
+     *             Ewald instead of an explicit sum over wave vectors
+     */
+    public TestLJMD3DEwald(int numAtoms, Configuration config, boolean spme) {
         super(Space3D.getInstance());
 
         species = SpeciesGeneral.monatomic(space, AtomType.simpleFromSim(this), true);
@@ -52,7 +61,8 @@ public class TestLJMD3DEwald extends Simulation {
         inflater.setTargetDensity(0.65);
         inflater.actionPerformed();
 
-        ewaldFourier = new PotentialComputeEwaldFourier(getSpeciesManager(), box);
+        ewaldFourier = spme ? new PotentialComputeEwaldSPME(getSpeciesManager(), box)
+                : new PotentialComputeEwaldFourier(getSpeciesManager(), box);
         PotentialComputeEwaldFourier.EwaldParams ewaldParams = ewaldFourier.getOptimalParams(3, 0);
         System.out.println(ewaldParams);
         pair = new PotentialMasterList(this.getSpeciesManager(), box, 2, ewaldParams.rCut + 1, BondingInfo.noBonding());
@@ -81,7 +91,7 @@ public class TestLJMD3DEwald extends Simulation {
         Configuration config = Configurations.fromResourceFile(String.format("LJMC3D%d.pos", numAtoms), TestLJMC3D.class);
 //        config = new ConfigurationLattice(new LatticeCubicFcc(Space3D.getInstance()), Space3D.getInstance());
 
-        TestLJMD3DEwald sim = new TestLJMD3DEwald(numAtoms, config);
+        TestLJMD3DEwald sim = new TestLJMD3DEwald(numAtoms, config, params.spme);
 
         sim.integrator.reset();
         double u = sim.integrator.getPotentialCompute().computeAll(false);
@@ -161,6 +171,7 @@ public class TestLJMD3DEwald extends Simulation {
     public static class SimParams extends ParameterBase {
         public int numAtoms = 500;
         public int numSteps = 5000000;
+        public boolean spme = false;
     }
 
 }
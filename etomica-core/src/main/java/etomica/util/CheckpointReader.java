@@ -0,0 +1,194 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util;
+
+import etomica.space.Vector;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Reads a checkpoint file written by CheckpointWriter.  The file is memory
+ * mapped (in windows of up to 1GB, so files of any size can be read) and
+ * values are read straight out of the mapping.
+ */
+public class CheckpointReader implements Closeable {
+
+    protected static final long WINDOW = 1L << 30;
+
+    protected final Path path;
+    protected final FileChannel channel;
+    protected final long size;
+    protected final int version;
+    protected MappedByteBuffer buffer;
+    protected long bufferStart;
+
+    public CheckpointReader(String filename) throws IOException {
+        this(Paths.get(filename));
+    }
+
+    public CheckpointReader(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+        map(0);
+        if (size < 8 || getInt() != CheckpointWriter.MAGIC) {
+            channel.close();
+            throw new RuntimeException(path + " is not a checkpoint file");
+        }
+        version = getInt();
+        if (version < 1 || version > CheckpointWriter.VERSION) {
+            channel.close();
+            throw new RuntimeException(path + " has unsupported checkpoint version " + version);
+        }
+    }
+
+    /**
+     * Returns true if the file exists and starts with the checkpoint magic
+     * number.
+     */
+    public static boolean isCheckpoint(String filename) {
+        Path p = Paths.get(filename);
+        if (!Files.isRegularFile(p)) return false;
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (b.hasRemaining() && fc.read(b) >= 0) ;
+            return !b.hasRemaining() && b.getInt(0) == CheckpointWriter.MAGIC;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Restores the state of each object from the checkpoint file with the
+     * given name.  The objects must be given in the order they were saved.
+     */
+    public static void restore(String filename, List<? extends Statefull> objects) {
+        try (CheckpointReader cr = new CheckpointReader(filename)) {
+            for (Statefull s : objects) {
+                cr.readObject(s);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Restores the state of s, which must be of the same class as the object
+     * that was written at this point in the file.
+     */
+    public void readObject(Statefull s) throws IOException {
+        String className = getString();
+        if (!className.equals(s.getClass().getName())) {
+            throw new RuntimeException("expected state for " + s.getClass().getName() + " but found " + className);
+        }
+        s.restoreState(this);
+    }
+
+    protected void map(long start) throws IOException {
+        bufferStart = start;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    protected void ensureAvailable(int n) throws IOException {
+        if (buffer.remaining() >= n) return;
+        long pos = bufferStart + buffer.position();
+        if (pos + n > size) {
+            throw new EOFException("unexpected end of checkpoint " + path);
+        }
+        map(pos);
+    }
+
+    public int getInt() throws IOException {
+        ensureAvailable(4);
+        return buffer.getInt();
+    }
+
+    public long getLong() throws IOException {
+        ensureAvailable(8);
+        return buffer.getLong();
+    }
+
+    public double getDouble() throws IOException {
+        ensureAvailable(8);
+        return buffer.getDouble();
+    }
+
+    public boolean getBoolean() throws IOException {
+        ensureAvailable(1);
+        return buffer.get() != 0;
+    }
+
+    /**
+     * Reads the vector's components (as written by putVector) into v.
+     */
+    public void getVector(Vector v) throws IOException {
+        int D = v.getD();
+        ensureAvailable(8 * D);
+        for (int i = 0; i < D; i++) {
+            v.setX(i, buffer.getDouble());
+        }
+    }
+
+    public void getInts(int[] x) throws IOException {
+        for (int start = 0; start < x.length; ) {
+            ensureAvailable(4);
+            int n = Math.min(x.length - start, buffer.remaining() / 4);
+            buffer.asIntBuffer().get(x, start, n);
+            buffer.position(buffer.position() + 4 * n);
+            start += n;
+        }
+    }
+
+    public void getDoubles(double[] x) throws IOException {
+        getDoubles(x, 0, x.length);
+    }
+
+    public void getDoubles(double[] x, int offset, int length) throws IOException {
+        for (int end = offset + length; offset < end; ) {
+            ensureAvailable(8);
+            int n = Math.min(end - offset, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().get(x, offset, n);
+            buffer.position(buffer.position() + 8 * n);
+            offset += n;
+        }
+    }
+
+    public String getString() throws IOException {
+        int n = getInt();
+        if (n < 0 || bufferStart + buffer.position() + n > size) {
+            throw new EOFException("bad string length " + n + " in checkpoint " + path);
+        }
+        byte[] bytes = new byte[n];
+        for (int start = 0; start < n; ) {
+            ensureAvailable(1);
+            int m = Math.min(n - start, buffer.remaining());
+            buffer.get(bytes, start, m);
+            start += m;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void close() throws IOException {
+        buffer = null;
+        channel.close();
+    }
+}
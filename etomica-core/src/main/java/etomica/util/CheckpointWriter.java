@@ -0,0 +1,160 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util;
+
+import etomica.space.Vector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes Statefull objects to a binary checkpoint file, which can be read
+ * back with CheckpointReader.  The file starts with a header (magic number and
+ * format version) and values are written little-endian through a direct
+ * buffer, so that large configurations go to the channel in big chunks rather
+ * than being formatted as text.
+ * <p>
+ * As with the text form, objects must be restored in the same order they were
+ * saved.
+ */
+public class CheckpointWriter implements Closeable {
+
+    /**
+     * First 4 bytes of every checkpoint file ("ETCP").
+     */
+    public static final int MAGIC = 0x50435445;
+    public static final int VERSION = 1;
+
+    protected final FileChannel channel;
+    protected final ByteBuffer buffer;
+
+    public CheckpointWriter(String filename) throws IOException {
+        this(Paths.get(filename));
+    }
+
+    public CheckpointWriter(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+    }
+
+    /**
+     * Writes the state of each object to a new checkpoint file with the given
+     * name.
+     */
+    public static void save(String filename, List<? extends Statefull> objects) {
+        try (CheckpointWriter cw = new CheckpointWriter(filename)) {
+            for (Statefull s : objects) {
+                cw.writeObject(s);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Writes the object's class name followed by its state.  The class name is
+     * checked by CheckpointReader.readObject.
+     */
+    public void writeObject(Statefull s) throws IOException {
+        putString(s.getClass().getName());
+        s.saveState(this);
+    }
+
+    protected void ensureRoom(int n) throws IOException {
+        if (buffer.remaining() < n) flush();
+    }
+
+    public void putInt(int x) throws IOException {
+        ensureRoom(4);
+        buffer.putInt(x);
+    }
+
+    public void putLong(long x) throws IOException {
+        ensureRoom(8);
+        buffer.putLong(x);
+    }
+
+    public void putDouble(double x) throws IOException {
+        ensureRoom(8);
+        buffer.putDouble(x);
+    }
+
+    public void putBoolean(boolean x) throws IOException {
+        ensureRoom(1);
+        buffer.put((byte) (x ? 1 : 0));
+    }
+
+    public void putVector(Vector v) throws IOException {
+        int D = v.getD();
+        ensureRoom(8 * D);
+        for (int i = 0; i < D; i++) {
+            buffer.putDouble(v.getX(i));
+        }
+    }
+
+    public void putInts(int[] x) throws IOException {
+        for (int start = 0; start < x.length; ) {
+            ensureRoom(4);
+            int n = Math.min(x.length - start, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(x, start, n);
+            buffer.position(buffer.position() + 4 * n);
+            start += n;
+        }
+    }
+
+    public void putDoubles(double[] x) throws IOException {
+        putDoubles(x, 0, x.length);
+    }
+
+    public void putDoubles(double[] x, int offset, int length) throws IOException {
+        for (int end = offset + length; offset < end; ) {
+            ensureRoom(8);
+            int n = Math.min(end - offset, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().put(x, offset, n);
+            buffer.position(buffer.position() + 8 * n);
+            offset += n;
+        }
+    }
+
+    /**
+     * Writes the length of the string's UTF-8 encoding followed by the bytes.
+     */
+    public void putString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        for (int start = 0; start < bytes.length; ) {
+            ensureRoom(1);
+            int n = Math.min(bytes.length - start, buffer.remaining());
+            buffer.put(bytes, start, n);
+            start += n;
+        }
+    }
+
+    /**
+     * Writes any buffered data to the file.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
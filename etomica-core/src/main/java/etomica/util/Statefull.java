@@ -2,6 +2,8 @@ package etomica.util;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
 
 /**
@@ -9,6 +11,8 @@ import java.io.Writer;
  * case, restoreState should be called in the same order when restoring.
  *
  * The nature of what is written (text vs. binary, formatting, etc) is entirely up to the implementation of this class.
+ * Classes with a lot of state should also override the CheckpointWriter/CheckpointReader methods, which otherwise
+ * store the text form as a single string in the binary checkpoint.
  */
 public interface Statefull {
 
@@ -25,4 +29,22 @@ public interface Statefull {
      * @throws IOException
      */
     void restoreState(BufferedReader br) throws IOException;
+
+    /**
+     * Writes the state of the object to a binary checkpoint.  The default
+     * implementation writes the text form as a string.
+     */
+    default void saveState(CheckpointWriter cw) throws IOException {
+        StringWriter sw = new StringWriter();
+        saveState(sw);
+        cw.putString(sw.toString());
+    }
+
+    /**
+     * Restores the state of the object from a binary checkpoint written by
+     * saveState(CheckpointWriter).
+     */
+    default void restoreState(CheckpointReader cr) throws IOException {
+        restoreState(new BufferedReader(new StringReader(cr.getString())));
+    }
 }
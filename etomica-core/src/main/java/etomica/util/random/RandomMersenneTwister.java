@@ -4,6 +4,14 @@
 
 package etomica.util.random;
 
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
+import etomica.util.Statefull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
 /*
     A C-program for MT19937, with initialization improved 2002/1/26.
     Coded by Takuji Nishimura and Makoto Matsumoto.
@@ -58,7 +66,7 @@ package etomica.util.random;
  * @author Makoto Matsumoto
  * @author Andrew Schultz
  */
-public class RandomMersenneTwister implements IRandom {
+public class RandomMersenneTwister implements IRandom, Statefull {
 
     /* Period parameters */
     static final protected int N = 624;
@@ -310,4 +318,34 @@ public class RandomMersenneTwister implements IRandom {
 
         return y / shiftFac;
     }
+
+    public void saveState(Writer fw) throws IOException {
+        fw.write("" + mti + " " + hasNextGaussian + " " + nextGaussian + "\n");
+        fw.write("" + mt[0]);
+        for (int i = 1; i < N; i++) fw.write(" " + mt[i]);
+        fw.write("\n");
+    }
+
+    public void restoreState(BufferedReader br) throws IOException {
+        String[] bits = br.readLine().split(" ");
+        mti = Integer.parseInt(bits[0]);
+        hasNextGaussian = Boolean.parseBoolean(bits[1]);
+        nextGaussian = Double.parseDouble(bits[2]);
+        bits = br.readLine().split(" ");
+        for (int i = 0; i < N; i++) mt[i] = Integer.parseInt(bits[i]);
+    }
+
+    public void saveState(CheckpointWriter cw) throws IOException {
+        cw.putInt(mti);
+        cw.putBoolean(hasNextGaussian);
+        cw.putDouble(nextGaussian);
+        cw.putInts(mt);
+    }
+
+    public void restoreState(CheckpointReader cr) throws IOException {
+        mti = cr.getInt();
+        hasNextGaussian = cr.getBoolean();
+        nextGaussian = cr.getDouble();
+        cr.getInts(mt);
+    }
 }
@@ -0,0 +1,80 @@
+package etomica.action;
+
+import etomica.atom.AtomType;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.config.ConfigurationTrajectory;
+import etomica.simulation.Simulation;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.ISpecies;
+import etomica.species.SpeciesGeneral;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class TrajectoryWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWriteRead() throws IOException {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        ISpecies species = SpeciesGeneral.monatomic(sim.getSpace(), AtomType.simple("A"));
+        sim.addSpecies(species);
+        Box box = sim.makeBox();
+        box.setNMolecules(species, 50);
+        IAtomList atoms = box.getLeafList();
+        RandomMersenneTwister random = new RandomMersenneTwister(5);
+        String filename = tempDir.resolve("traj.bin").toString();
+        double precision = 1e-4;
+        int nFrames = 20;
+        double[][] x = new double[nFrames][3 * atoms.size()];
+
+        TrajectoryWriter writer = new TrajectoryWriter(box, filename, 2);
+        writer.setPrecision(precision);
+        for (int f = 0; f < nFrames; f++) {
+            for (int i = 0; i < atoms.size(); i++) {
+                Vector p = atoms.get(i).getPosition();
+                p.setRandomCube(random);
+                p.TE(f == 0 ? 0 : 9.9);
+                for (int k = 0; k < 3; k++) x[f][3 * i + k] = p.getX(k);
+            }
+            writer.writeFrame(10 * f, 0.5 * f);
+        }
+        writer.close();
+        Assertions.assertEquals(nFrames, writer.getFrameCount());
+
+        ConfigurationTrajectory reader = new ConfigurationTrajectory(filename);
+        Assertions.assertEquals(nFrames, reader.getFrameCount());
+        for (int f : new int[]{13, 0, 19, 4}) {
+            reader.setFrame(f);
+            Assertions.assertEquals(10 * f, reader.getStep());
+            Assertions.assertEquals(0.5 * f, reader.getTime());
+            double[] xf = reader.getCoordinates();
+            for (int i = 0; i < xf.length; i++) {
+                Assertions.assertEquals(x[f][i], xf[i], 0.5 * precision * (1 + 1e-9));
+            }
+        }
+        reader.initializeCoordinates(box);
+        Assertions.assertEquals(x[4][3 * 7 + 1], atoms.get(7).getPosition().getX(1), 0.5 * precision * (1 + 1e-9));
+        reader.close();
+
+        // without the index, the frames should be found by scanning
+        try (FileChannel fc = FileChannel.open(tempDir.resolve("traj.bin"), StandardOpenOption.WRITE)) {
+            fc.truncate(fc.size() - 20);
+        }
+        reader = new ConfigurationTrajectory(filename);
+        Assertions.assertEquals(nFrames, reader.getFrameCount());
+        reader.setFrame(17);
+        Assertions.assertEquals(x[17][5], reader.getCoordinates()[5], 0.5 * precision * (1 + 1e-9));
+        reader.close();
+    }
+}
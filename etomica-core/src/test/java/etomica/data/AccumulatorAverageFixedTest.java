@@ -5,6 +5,8 @@
 package etomica.data;
 
 import etomica.data.types.DataDouble;
+import etomica.data.types.DataDoubleArray;
+import etomica.data.types.DataGroup;
 import etomica.units.dimensions.Null;
 import etomica.util.random.RandomMersenneTwister;
 import org.junit.jupiter.api.Assertions;
@@ -62,4 +64,35 @@ class AccumulatorAverageFixedTest {
         double error = accData.getValue(accumulator.ERROR.index);
         Assertions.assertTrue(error / 1.35e-4 + 1.35e-4 / error - 2 < 0.02, "error " + error);
     }
+
+    @Test
+    public void testMerge() {
+        DataDoubleArray.DataInfoDoubleArray dataInfo = new DataDoubleArray.DataInfoDoubleArray("test", Null.DIMENSION, new int[]{2});
+        AccumulatorAverageCovariance all = new AccumulatorAverageCovariance(10);
+        AccumulatorAverageCovariance a = new AccumulatorAverageCovariance(10);
+        AccumulatorAverageCovariance b = new AccumulatorAverageCovariance(10);
+        all.putDataInfo(dataInfo);
+        a.putDataInfo(dataInfo);
+        b.putDataInfo(dataInfo);
+        DataDoubleArray rawData = new DataDoubleArray(2);
+        double[] x = rawData.getData();
+        RandomMersenneTwister rng = new RandomMersenneTwister(5);
+        for (int i=0; i<2004; i++) {
+            x[0] = 0.5 + (x[0]-0.5)*0.9 + rng.nextDouble() - 0.5;
+            x[1] = x[0] * x[0] + rng.nextDouble();
+            all.putData(rawData);
+            (i < 1000 ? a : b).putData(rawData);
+        }
+        a.merge(b);
+        Assertions.assertEquals(all.getBlockCount(), a.getBlockCount());
+        Assertions.assertEquals(all.getSampleCount(), a.getSampleCount());
+        DataGroup allData = (DataGroup) all.getData();
+        DataGroup mergedData = (DataGroup) a.getData();
+        for (int i=0; i<allData.getNData(); i++) {
+            for (int j=0; j<allData.getData(i).getLength(); j++) {
+                double expected = allData.getData(i).getValue(j);
+                Assertions.assertEquals(expected, mergedData.getData(i).getValue(j), 1e-10 * Math.abs(expected));
+            }
+        }
+    }
 }
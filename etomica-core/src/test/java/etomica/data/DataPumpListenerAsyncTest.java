@@ -0,0 +1,108 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data;
+
+import etomica.action.controller.Activity;
+import etomica.action.controller.Controller;
+import etomica.units.dimensions.Null;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DataPumpListenerAsyncTest {
+
+    private static class CountingSource extends DataSourceScalar {
+        int count;
+
+        CountingSource() {
+            super("count", Null.DIMENSION);
+        }
+
+        public double getDataAsScalar() {
+            return ++count;
+        }
+    }
+
+    @Test
+    public void testBlock() {
+        CountingSource source = new CountingSource();
+        AccumulatorAverageFixed acc = new AccumulatorAverageFixed(10);
+        DataPumpListenerAsync pump = new DataPumpListenerAsync(source, acc, 1, 4);
+        for (int i = 0; i < 1000; i++) {
+            pump.actionPerformed();
+        }
+        pump.flush();
+        Assertions.assertEquals(1000, acc.getSampleCount());
+        Assertions.assertEquals(500.5, acc.getData(AccumulatorAverage.AVERAGE).getValue(0), 1e-10);
+        Assertions.assertEquals(0, pump.getNumDropped());
+    }
+
+    @Test
+    public void testDrop() {
+        CountingSource source = new CountingSource();
+        AccumulatorAverageFixed acc = new AccumulatorAverageFixed(1);
+        DataFork fork = new DataFork();
+        fork.addDataSink(new IDataSink() {
+            public void putData(IData data) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            public void putDataInfo(IDataInfo dataInfo) {}
+        });
+        fork.addDataSink(acc);
+        DataPumpListenerAsync pump = new DataPumpListenerAsync(source, fork, 1, 1);
+        pump.setBackpressure(DataPumpListenerAsync.Backpressure.DROP);
+        for (int i = 0; i < 100; i++) {
+            pump.actionPerformed();
+        }
+        pump.flush();
+        Assertions.assertTrue(pump.getNumDropped() > 0);
+        Assertions.assertEquals(100, acc.getSampleCount() + pump.getNumDropped());
+    }
+
+    @Test
+    public void testFlushOnHalt() {
+        CountingSource source = new CountingSource();
+        AccumulatorAverageFixed acc = new AccumulatorAverageFixed(10);
+        DataPumpListenerAsync pump = new DataPumpListenerAsync(source, acc, 1, 4);
+        Controller controller = new Controller();
+        pump.flushOnHalt(controller);
+        controller.runActivityBlocking(new Activity() {
+            public void runActivity(Controller.ControllerHandle handle) {
+                for (int i = 0; i < 100; i++) {
+                    handle.yield(pump);
+                }
+            }
+        });
+        Assertions.assertEquals(100, acc.getSampleCount());
+
+        Thread worker = pump.worker;
+        pump.close();
+        Assertions.assertNull(pump.worker);
+        Assertions.assertDoesNotThrow(() -> worker.join(10000));
+        Assertions.assertFalse(worker.isAlive());
+        // a closed pump starts a new worker when it is used again
+        pump.actionPerformed();
+        pump.close();
+        Assertions.assertEquals(101, acc.getSampleCount());
+    }
+
+    @Test
+    public void testSinkFailure() {
+        CountingSource source = new CountingSource();
+        DataPumpListenerAsync pump = new DataPumpListenerAsync(source, new IDataSink() {
+            public void putData(IData data) {
+                throw new RuntimeException("oops");
+            }
+
+            public void putDataInfo(IDataInfo dataInfo) {}
+        });
+        pump.actionPerformed();
+        Assertions.assertThrows(RuntimeException.class, pump::flush);
+    }
+}
@@ -0,0 +1,83 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data.meter;
+
+import etomica.atom.AtomType;
+import etomica.atom.IAtom;
+import etomica.box.Box;
+import etomica.nbr.cell.NeighborCellManager;
+import etomica.potential.BondingInfo;
+import etomica.simulation.Simulation;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesGeneral;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MeterRDFTest {
+    Simulation sim;
+    Box box;
+    double xMax = 3.0;
+
+    @BeforeEach
+    public void setUp() {
+        Space space = Space3D.getInstance();
+        sim = new Simulation(space);
+        SpeciesGeneral species = SpeciesGeneral.monatomic(space, AtomType.simpleFromSim(sim));
+        sim.addSpecies(species);
+        box = sim.makeBox();
+        Vector L = space.makeVector();
+        L.E(8);
+        box.getBoundary().setBoxSize(L);
+        box.setNMolecules(species, 400);
+        for (IAtom a : box.getLeafList()) {
+            a.getPosition().setRandomCube(sim.getRandom());
+            a.getPosition().TE(8);
+        }
+    }
+
+    private long[] sample(MeterRDF meter) {
+        meter.getXDataSource().setXMax(xMax);
+        meter.setBox(box);
+        meter.reset();
+        meter.actionPerformed();
+        return meter.gSum.clone();
+    }
+
+    @Test
+    public void testCellsAndThreads() {
+        long[] allPairs = sample(new MeterRDF(sim.getSpace()));
+
+        MeterRDF meterThreads = new MeterRDF(sim.getSpace());
+        meterThreads.setNumThreads(3);
+        Assertions.assertArrayEquals(allPairs, sample(meterThreads));
+
+        NeighborCellManager cellManager = new NeighborCellManager(sim.getSpeciesManager(), box, 2, BondingInfo.noBonding());
+        cellManager.setPotentialRange(xMax);
+        MeterRDF meterCells = new MeterRDF(sim.getSpace());
+        meterCells.setCellManager(cellManager);
+        Assertions.assertArrayEquals(allPairs, sample(meterCells));
+        meterCells.setNumThreads(3);
+        Assertions.assertArrayEquals(allPairs, sample(meterCells));
+
+        MeterRDFNeighbors meterNbrs = new MeterRDFNeighbors(box, cellManager);
+        meterNbrs.getXDataSource().setXMax(xMax);
+        meterNbrs.setNumThreads(3);
+        meterNbrs.reset();
+        meterNbrs.getData();
+        Assertions.assertArrayEquals(allPairs, meterNbrs.gSum);
+    }
+
+    @Test
+    public void testRangeTooSmall() {
+        NeighborCellManager cellManager = new NeighborCellManager(sim.getSpeciesManager(), box, 2, BondingInfo.noBonding());
+        cellManager.setPotentialRange(xMax - 1);
+        MeterRDF meter = new MeterRDF(sim.getSpace());
+        meter.setCellManager(cellManager);
+        Assertions.assertThrows(RuntimeException.class, () -> sample(meter));
+    }
+}
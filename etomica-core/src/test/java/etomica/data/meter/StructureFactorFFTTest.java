@@ -0,0 +1,83 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data.meter;
+
+import etomica.atom.AtomType;
+import etomica.atom.IAtom;
+import etomica.box.Box;
+import etomica.data.types.DataFunction;
+import etomica.simulation.Simulation;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.space2d.Space2D;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesGeneral;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class StructureFactorFFTTest {
+
+    private static void check(Space space) {
+        Simulation sim = new Simulation(space);
+        SpeciesGeneral species = SpeciesGeneral.monatomic(space, AtomType.simpleFromSim(sim));
+        sim.addSpecies(species);
+        Box box = sim.makeBox();
+        Vector L = space.makeVector();
+        L.E(10);
+        L.setX(0, 12);
+        box.getBoundary().setBoxSize(L);
+        box.setNMolecules(species, 500);
+        for (IAtom a : box.getLeafList()) {
+            a.getPosition().setRandomCube(sim.getRandom());
+            a.getPosition().TE(L);
+        }
+        MeterStructureFactor.AtomSignalSourceByType signal = new MeterStructureFactor.AtomSignalSourceByType();
+        signal.setAtomTypeFactor(species.getLeafType(), 0.5);
+        MeterStructureFactor meterDirect = new MeterStructureFactor(box, 4, signal);
+        MeterStructureFactor meterMesh = new MeterStructureFactor(box, 4, signal);
+        meterMesh.setUseMesh(true);
+        double[] sDirect = ((DataFunction) meterDirect.getData()).getData();
+        double[] sMesh = ((DataFunction) meterMesh.getData()).getData();
+        double[] phaseDirect = meterDirect.getPhaseAngles();
+        double[] phaseMesh = meterMesh.getPhaseAngles();
+        // S(k) of random atoms is ~ 0.25/N
+        double tol = 1e-3 * 0.25 / 500;
+        for (int k = 0; k < sDirect.length; k++) {
+            Assertions.assertEquals(sDirect[k], sMesh[k], tol);
+            if (sDirect[k] > 0.01 * 0.25 / 500) {
+                double dPhase = Math.abs(phaseDirect[k] - phaseMesh[k]);
+                Assertions.assertEquals(0, Math.min(dPhase, 2 * Math.PI - dPhase), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void test3D() {
+        check(Space3D.getInstance());
+    }
+
+    @Test
+    public void test2D() {
+        check(Space2D.getInstance());
+    }
+
+    @Test
+    public void testBeyondGrid() {
+        Space space = Space3D.getInstance();
+        Simulation sim = new Simulation(space);
+        SpeciesGeneral species = SpeciesGeneral.monatomic(space, AtomType.simpleFromSim(sim));
+        sim.addSpecies(species);
+        Box box = sim.makeBox();
+        box.setNMolecules(species, 10);
+        StructureFactorFFT mesh = new StructureFactorFFT(box);
+        mesh.setGridSize(16, 16, 16);
+        mesh.compute(box.getLeafList(), null);
+        Vector k = space.makeVector();
+        k.setX(0, 2 * Math.PI * 8 / box.getBoundary().getBoxSize().getX(0));
+        Assertions.assertThrows(RuntimeException.class, () -> mesh.getAmplitude(k, new double[2]));
+        k.setX(0, 1.234);
+        Assertions.assertThrows(RuntimeException.class, () -> mesh.getAmplitude(k, new double[2]));
+    }
+}
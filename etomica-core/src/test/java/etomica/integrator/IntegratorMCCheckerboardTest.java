@@ -0,0 +1,62 @@
+package etomica.integrator;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomType;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.nbr.cell.PotentialMasterCell;
+import etomica.potential.BondingInfo;
+import etomica.potential.P2LennardJones;
+import etomica.potential.P2SoftSphericalTruncated;
+import etomica.simulation.Simulation;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesGeneral;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class IntegratorMCCheckerboardTest {
+
+    /**
+     * Runs sweeps of an 864-atom LJ liquid and returns the final energy.
+     */
+    protected static double run(int numThreads) {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        SpeciesGeneral species = SpeciesGeneral.monatomic(sim.getSpace(), AtomType.simpleFromSim(sim));
+        sim.addSpecies(species);
+        Box box = sim.makeBox();
+        box.setNMolecules(species, 864);
+        new BoxInflate(box, sim.getSpace(), 0.7).actionPerformed();
+        new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+        PotentialMasterCell potentialMaster = new PotentialMasterCell(sim.getSpeciesManager(), box, 2, BondingInfo.noBonding());
+        potentialMaster.setPairPotential(species.getLeafType(), species.getLeafType(),
+                new P2SoftSphericalTruncated(new P2LennardJones(1, 1), 2.5));
+        IntegratorMCCheckerboard integrator = new IntegratorMCCheckerboard(potentialMaster, new RandomMersenneTwister(7), 1.5, box);
+        integrator.setNumThreads(numThreads);
+        integrator.reset();
+        // 8 cells (of 2.5/2) across the box make 4 blocks in each direction
+        Assertions.assertEquals(8, integrator.getNumColors());
+        for (int i = 0; i < 20; i++) {
+            integrator.doStep();
+        }
+        double u = integrator.getPotentialEnergy();
+        Assertions.assertEquals(potentialMaster.computeAll(false), u, 1e-9 * Math.abs(u));
+        double ratio = integrator.getAcceptanceRatio();
+        Assertions.assertTrue(ratio > 0.2 && ratio < 0.9, "acceptance " + ratio);
+        integrator.setNumThreads(1);
+        return u;
+    }
+
+    @Test
+    public void testSerial() {
+        run(1);
+    }
+
+    @Test
+    public void testThreads() {
+        // each thread has its own random numbers, so runs with the same number
+        // of threads must match
+        Assertions.assertEquals(run(3), run(3));
+    }
+}
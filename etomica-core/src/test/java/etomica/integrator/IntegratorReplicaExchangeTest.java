@@ -0,0 +1,81 @@
+package etomica.integrator;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomType;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.integrator.mcmove.MCMoveAtom;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.nbr.cell.PotentialMasterCell;
+import etomica.potential.BondingInfo;
+import etomica.potential.P2LennardJones;
+import etomica.potential.P2SoftSphericalTruncated;
+import etomica.simulation.Simulation;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesGeneral;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class IntegratorReplicaExchangeTest {
+
+    /**
+     * Runs 3 LJ replicas and returns the final energy of each.
+     */
+    protected static double[] run(double[] temperatures, double[] epsilons, int numThreads, boolean hamiltonian) {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        SpeciesGeneral species = SpeciesGeneral.monatomic(sim.getSpace(), AtomType.simpleFromSim(sim));
+        sim.addSpecies(species);
+        IntegratorReplicaExchange integrator = new IntegratorReplicaExchange(new RandomMersenneTwister(99));
+        integrator.setSwapInterval(20);
+        integrator.setNumThreads(numThreads);
+        integrator.setHamiltonianExchange(hamiltonian);
+        for (int i = 0; i < temperatures.length; i++) {
+            Box box = sim.makeBox();
+            box.setNMolecules(species, 32);
+            new BoxInflate(box, sim.getSpace(), 0.7).actionPerformed();
+            new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+            PotentialMasterCell potentialMaster = new PotentialMasterCell(sim.getSpeciesManager(), box, 2, BondingInfo.noBonding());
+            potentialMaster.setPairPotential(species.getLeafType(), species.getLeafType(),
+                    new P2SoftSphericalTruncated(new P2LennardJones(1, epsilons[i]), 2.5));
+            RandomMersenneTwister random = new RandomMersenneTwister(i + 1);
+            IntegratorMC integratorMC = new IntegratorMC(potentialMaster, random, temperatures[i], box);
+            integratorMC.getMoveManager().addMCMove(new MCMoveAtom(random, potentialMaster, box));
+            integrator.addIntegrator(integratorMC);
+        }
+        integrator.reset();
+        for (int i = 0; i < 50; i++) {
+            integrator.doStep();
+        }
+
+        IntegratorBox[] replicas = integrator.getIntegrators();
+        double[] u = new double[replicas.length];
+        for (int i = 0; i < replicas.length; i++) {
+            u[i] = replicas[i].getPotentialEnergy();
+            Assertions.assertEquals(replicas[i].getPotentialCompute().computeAll(false), u[i], 1e-9 * Math.abs(u[i]));
+        }
+        for (int i = 0; i < replicas.length - 1; i++) {
+            Assertions.assertEquals(25, integrator.getSwapAttempts(i));
+            double ratio = integrator.getSwapAcceptanceRatio(i);
+            Assertions.assertTrue(ratio > 0 && ratio <= 1, "swap acceptance " + ratio);
+        }
+        integrator.setNumThreads(1);
+        return u;
+    }
+
+    @Test
+    public void testTemperatureLadder() {
+        double[] temperatures = new double[]{1.0, 1.1, 1.2};
+        double[] epsilons = new double[]{1, 1, 1};
+        double[] u = run(temperatures, epsilons, 1, false);
+        Assertions.assertArrayEquals(u, run(temperatures, epsilons, 3, false));
+    }
+
+    @Test
+    public void testHamiltonianLadder() {
+        double[] temperatures = new double[]{1.0, 1.0, 1.0};
+        double[] epsilons = new double[]{1, 0.95, 0.9};
+        double[] u = run(temperatures, epsilons, 1, true);
+        Assertions.assertArrayEquals(u, run(temperatures, epsilons, 2, true));
+    }
+}
@@ -0,0 +1,76 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.integrator;
+
+import etomica.config.ConfigurationLattice;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.nbr.list.PotentialMasterList;
+import etomica.space3d.Space3D;
+import etomica.tests.TestLJMC3D;
+import etomica.tests.TestLJMD3D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class IntegratorTimerTest {
+
+    @Test
+    public void testMD() {
+        TestLJMD3D sim = new TestLJMD3D(500, new ConfigurationLattice(new LatticeCubicFcc(Space3D.getInstance()), Space3D.getInstance()));
+        IntegratorTimer timer = new IntegratorTimer();
+        sim.integrator.setTimer(timer);
+        sim.integrator.reset();
+        long resetComputes = timer.getCounter("computeAll").getCount();
+        for (int i = 0; i < 200; i++) {
+            sim.integrator.doStep();
+        }
+        Assertions.assertEquals(200, timer.getCounter("step").getCount());
+        Assertions.assertEquals(resetComputes + 200, timer.getCounter("computeAll").getCount());
+        // started and finished for each step
+        Assertions.assertEquals(400, timer.getCounter("listener PotentialMasterList").getCount());
+        Assertions.assertTrue(timer.getCounter("neighbor reset").getCount() > 0);
+        Assertions.assertTrue(timer.getCounter("step").getNanos() >= timer.getCounter("computeAll").getNanos());
+        Assertions.assertTrue(timer.toJSON().contains("\"step\": {\"calls\": 200"));
+
+        timer.reset();
+        sim.integrator.setTimer(null);
+        sim.integrator.doStep();
+        Assertions.assertEquals(0, timer.getCounter("step").getCount());
+
+        // a timer given to the neighbor manager is kept
+        IntegratorTimer nbrTimer = new IntegratorTimer();
+        ((PotentialMasterList) sim.integrator.getPotentialCompute()).getNeighborManager().setTimer(nbrTimer);
+        sim.integrator.setTimer(timer);
+        for (int i = 0; i < 200; i++) {
+            sim.integrator.doStep();
+        }
+        Assertions.assertTrue(nbrTimer.getCounter("neighbor reset").getCount() > 0);
+        Assertions.assertEquals(0, timer.getCounter("neighbor reset").getCount());
+        // turning the timer back on keeps the listener's counter
+        Assertions.assertEquals(400, timer.getCounter("listener PotentialMasterList").getCount());
+        Assertions.assertFalse(timer.hasCounter("listener PotentialMasterList#2"));
+    }
+
+    @Test
+    public void testMC() {
+        TestLJMC3D sim = new TestLJMC3D(256, new ConfigurationLattice(new LatticeCubicFcc(Space3D.getInstance()), Space3D.getInstance()));
+        IntegratorTimer timer = new IntegratorTimer();
+        sim.integrator.setTimer(timer);
+        sim.integrator.reset();
+        for (int i = 0; i < 1000; i++) {
+            sim.integrator.doStep();
+        }
+        Assertions.assertEquals(1000, timer.getCounter("MC move MCMoveAtom").getCount());
+        Assertions.assertTrue(timer.toTable().contains("MC move MCMoveAtom"));
+
+        sim.integrator.setTimer(null);
+        sim.integrator.doStep();
+        sim.integrator.setTimer(timer);
+        for (int i = 0; i < 1000; i++) {
+            sim.integrator.doStep();
+        }
+        Assertions.assertEquals(2000, timer.getCounter("MC move MCMoveAtom").getCount());
+        Assertions.assertFalse(timer.hasCounter("MC move MCMoveAtom#2"));
+    }
+}
@@ -15,6 +15,7 @@ import etomica.potential.IPotential2;
 import etomica.potential.P2LennardJones;
 import etomica.potential.P2SoftSphericalTruncated;
 import etomica.potential.compute.NeighborIterator;
+import etomica.potential.compute.PotentialComputePair;
 import etomica.simulation.Simulation;
 import etomica.space.Vector;
 import etomica.space3d.Space3D;
@@ -23,10 +24,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class NeighborListingTest {
@@ -107,6 +112,84 @@ class NeighborListingTest {
         }
     }
 
+    @Test
+    void testDownNeighborsMirrorUp() {
+        int n = box.getLeafList().size();
+        assertEquals(nlm.nbrStart[n], nlm.nbrDnStart[0]);
+        assertEquals(nlm.nbrStart[n], nlm.nbrDnStart[n] - nlm.nbrDnStart[0]);
+        Vector[] imageOffsets = nlm.getImageOffsets();
+        for (int i = 0; i < n; i++) {
+            for (int k = nlm.nbrStart[i]; k < nlm.nbrStart[i + 1]; k++) {
+                int j = nlm.nbrs[k];
+                Vector up = imageOffsets[nlm.nbrImages[k]];
+                int found = 0;
+                for (int kk = nlm.nbrDnStart[j]; kk < nlm.nbrDnStart[j + 1]; kk++) {
+                    if (nlm.nbrs[kk] != i) continue;
+                    Vector dn = box.getSpace().makeVector();
+                    dn.Ev1Mv2(up, imageOffsets[nlm.nbrImages[kk]]);
+                    // the down image must be the opposite of the up image
+                    if (up.squared() * 4 == dn.squared()) found++;
+                }
+                assertEquals(1, found, i + " " + j);
+            }
+        }
+    }
+
+    @Test
+    void testThreadedReset() {
+        int n = box.getLeafList().size();
+        int numNbrs = nlm.nbrDnStart[n];
+        int[] nbrs = Arrays.copyOf(nlm.nbrs, numNbrs);
+        short[] nbrImages = Arrays.copyOf(nlm.nbrImages, numNbrs);
+        int[] nbrStart = Arrays.copyOf(nlm.nbrStart, n + 1);
+        int[] nbrDnStart = Arrays.copyOf(nlm.nbrDnStart, n + 1);
+
+        nlm.setNumThreads(3);
+        nlm.reset();
+        assertArrayEquals(nbrStart, Arrays.copyOf(nlm.nbrStart, n + 1));
+        assertArrayEquals(nbrDnStart, Arrays.copyOf(nlm.nbrDnStart, n + 1));
+        assertArrayEquals(nbrs, Arrays.copyOf(nlm.nbrs, numNbrs));
+        assertArrayEquals(nbrImages, Arrays.copyOf(nlm.nbrImages, numNbrs));
+        nlm.setNumThreads(1);
+    }
+
+    @Test
+    void testSortedReset() {
+        Set<IAtom> atomSet = new HashSet<>(box.getLeafList());
+        nlm.setSortInterval(1);
+        nlm.reset();
+        assertEquals(atomSet, new HashSet<>(box.getLeafList()));
+        for (int i = 0; i < box.getLeafList().size(); i++) {
+            assertEquals(i, box.getLeafList().get(i).getLeafIndex());
+        }
+        testNeighborDistance();
+        nlm.setSortInterval(0);
+    }
+
+    @Test
+    void testPermutedForces() {
+        P2SoftSphericalTruncated p2 = new P2SoftSphericalTruncated(new P2LennardJones(), POTENTIAL_RANGE);
+        PotentialComputePair pc = new PotentialComputePair(sim.getSpeciesManager(), box, nlm, new IPotential2[][]{{p2, p2}, {p2, p2}});
+        pc.init();
+        pc.computeAll(true);
+        Map<IAtom, Vector> forces = new HashMap<>();
+        for (IAtom a : box.getLeafList()) {
+            Vector f = box.getSpace().makeVector();
+            f.E(pc.getForces()[a.getLeafIndex()]);
+            forces.put(a, f);
+        }
+        int n = box.getLeafList().size();
+        int[] reversed = new int[n];
+        for (int i = 0; i < n; i++) reversed[i] = n - 1 - i;
+        box.permuteLeafAtoms(reversed);
+        nlm.setSortInterval(1);
+        nlm.reset();
+        nlm.setSortInterval(0);
+        for (IAtom a : box.getLeafList()) {
+            assertEquals(0, forces.get(a).Mv1Squared(pc.getForces()[a.getLeafIndex()]), a.toString());
+        }
+    }
+
     @Nested
     class AfterBoxInflate {
 
@@ -11,6 +11,7 @@ import etomica.config.ConfigurationResourceFile;
 import etomica.models.water.P2WaterSPCE;
 import etomica.models.water.SpeciesWater3P;
 import etomica.potential.compute.PotentialComputeEwaldFourier;
+import etomica.potential.compute.PotentialComputeEwaldSPME;
 import etomica.potential.ewald.P2Ewald1Real;
 import etomica.simulation.Simulation;
 import etomica.space.Space;
@@ -45,6 +46,7 @@ class EwaldSummationTest {
 
     private PotentialMaster pair;
     private PotentialComputeEwaldFourier fourier;
+    private PotentialComputeEwaldSPME spme;
     private PotentialMasterBonding pmBonding;
 
     @BeforeEach
@@ -85,6 +87,13 @@ class EwaldSummationTest {
 
         pmBonding = fourier.makeIntramolecularCorrection();
 
+        spme = new PotentialComputeEwaldSPME(sim.getSpeciesManager(), box);
+        spme.setAlpha(alpha);
+        spme.setCharge(hType, P2WaterSPCE.QH);
+        spme.setCharge(oType, P2WaterSPCE.QO);
+        spme.setkCut(kcut);
+        spme.init();
+
         Configuration config = new ConfigurationResourceFile(
                 String.format("spce%d.pos", filenum),
                 EwaldSummationTest.class
@@ -104,6 +113,7 @@ class EwaldSummationTest {
         assertAll(
                 () -> assertEquals(Kelvin.UNIT.toSim(NIST_real[filenum - 1]), pair.computeAll(false), 10, "uRealFasterer"),
                 () -> assertEquals(Kelvin.UNIT.toSim(fourierNIST), fourier.computeAll(false), 100, "uFourierFasterer"),
+                () -> assertEquals(Kelvin.UNIT.toSim(fourierNIST), spme.computeAll(false), 100, "uFourierSPME"),
                 () -> assertEquals(Kelvin.UNIT.toSim(NIST_corr[filenum - 1]), pmBonding.computeAll(false), 100, "uFourierIntra")
         );
     }
@@ -0,0 +1,59 @@
+package etomica.potential;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class P2BatchTest {
+
+    /**
+     * Checks that u01Batch gives exactly the same energies and derivatives
+     * as u012add, for separations on both sides of the cutoff.  The batch
+     * kernels evaluate the same expressions in the same order, and Java
+     * doesn't reassociate or fuse floating-point operations (even when the
+     * loops are vectorized), so the results are identical (up to the sign
+     * of zero at the cutoff).
+     */
+    private void checkBatch(IPotential2 p) {
+        int n = 101;
+        double[] r2 = new double[n], u = new double[n], du = new double[n];
+        for (int k = 0; k < n; k++) {
+            double r = 0.85 + 2.5 * k / (n - 1);
+            r2[k] = r * r;
+        }
+        p.u01Batch(r2, u, du, n);
+        double[] u012 = new double[3];
+        for (int k = 0; k < n; k++) {
+            u012[0] = u012[1] = 0;
+            p.u012add(r2[k], u012);
+            assertEquals(u012[0], u[k], 0, p + " u at r2=" + r2[k]);
+            assertEquals(u012[1], du[k], 0, p + " du at r2=" + r2[k]);
+        }
+    }
+
+    @Test
+    public void testLJ() {
+        checkBatch(new P2LennardJones(1.1, 0.9));
+        checkBatch(P2LennardJones.makeTruncated(1, 1, new TruncationFactorySimple(2.5)));
+        checkBatch(P2LennardJones.makeTruncated(1, 1, new TruncationFactoryShift(2.5)));
+        checkBatch(P2LennardJones.makeTruncated(1, 1, new TruncationFactoryForceShift(2.5)));
+        checkBatch(P2LennardJones.makeTruncated(1, 1, new TruncationFactorySwitch(2.5)));
+        checkBatch(new P2SoftSphericalSumTruncated(2.5, new P2LennardJones(), new P2SoftSphere(1, 0.5, 9)));
+        checkBatch(new P2SoftSphericalSumTruncatedSwitched(2.5, new P2LennardJones(), new P2SoftSphere(1, 0.5, 9)));
+        // no u01Batch; uses the default
+        checkBatch(new P2SoftSphericalTruncatedForceShifted(new P2LennardJones(), 2.5));
+    }
+
+    @Test
+    public void testWCA() {
+        checkBatch(new P2WCA(1.2, 1.5));
+    }
+
+    @Test
+    public void testSoftSphere() {
+        for (int n : new int[]{4, 5, 6, 9, 12, 15, 24, 30, 49, 200}) {
+            checkBatch(new P2SoftSphere(1, 1.5, n));
+            checkBatch(P2SoftSphere.makeTruncated(1, 1.5, n, new TruncationFactoryShift(2.5)));
+        }
+    }
+}
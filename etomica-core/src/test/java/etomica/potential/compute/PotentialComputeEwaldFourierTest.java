@@ -0,0 +1,171 @@
+package etomica.potential.compute;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomType;
+import etomica.atom.IAtom;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.molecule.IMolecule;
+import etomica.simulation.Simulation;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.ISpecies;
+import etomica.species.SpeciesBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PotentialComputeEwaldFourierTest {
+
+    private Simulation sim;
+    private Box box;
+    private ISpecies species;
+    private PotentialComputeEwaldFourier fourier;
+
+    @BeforeEach
+    public void setup() {
+        sim = new Simulation(Space3D.getInstance());
+        AtomType typeA = AtomType.simple("A");
+        AtomType typeB = AtomType.simple("B");
+        species = new SpeciesBuilder(sim.getSpace())
+                .addAtom(typeA, Vector.of(-0.5, 0, 0))
+                .addAtom(typeB, Vector.of(0.5, 0, 0))
+                .build();
+        sim.addSpecies(species);
+        box = sim.makeBox();
+        box.setNMolecules(species, 32);
+        new BoxInflate(box, sim.getSpace(), 0.2).actionPerformed();
+        new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+
+        fourier = new PotentialComputeEwaldFourier(sim.getSpeciesManager(), box);
+        PotentialComputeEwaldFourier.EwaldParams params = fourier.getOptimalParams(3, 0);
+        fourier.setAlpha(params.alpha);
+        fourier.setAlpha6(params.alpha);
+        fourier.setkCut(params.kCut);
+        fourier.setCharge(typeA, 1);
+        fourier.setCharge(typeB, -1);
+        fourier.setR6Coefficient(typeA, 1, 1);
+        fourier.setR6Coefficient(typeB, 1.1, 0.8);
+        fourier.init();
+    }
+
+    private void translate(IMolecule molecule, Vector dr) {
+        for (IAtom atom : molecule.getChildList()) {
+            atom.getPosition().PE(dr);
+        }
+    }
+
+    private Vector randomStep() {
+        Vector dr = sim.getSpace().makeVector();
+        dr.setRandomInSphere(sim.getRandom());
+        return dr;
+    }
+
+    /**
+     * Performs a series of accepted and rejected trials the way the MC moves
+     * do and checks that the energy changes add up to the final energy.
+     */
+    @Test
+    public void testMoves() {
+        double u = fourier.computeAll(false);
+
+        // accepted atom move
+        IAtom atom = box.getLeafList().get(3);
+        double uOld = fourier.computeOneOld(atom);
+        Vector dr = randomStep();
+        atom.getPosition().PE(dr);
+        u += fourier.computeOne(atom) - uOld;
+        fourier.processAtomU(1);
+        atom.getPosition().ME(dr);
+        fourier.computeOne(atom);
+        fourier.processAtomU(-1);
+        atom.getPosition().PE(dr);
+
+        // rejected and accepted molecule moves
+        for (int i = 0; i < 2; i++) {
+            IMolecule molecule = box.getMoleculeList().get(5 + i);
+            uOld = fourier.computeOneOldMolecule(molecule);
+            dr = randomStep();
+            translate(molecule, dr);
+            double uNew = fourier.computeOneMolecule(molecule);
+            if (i == 0) {
+                dr.TE(-1);
+                translate(molecule, dr);
+                continue;
+            }
+            u += uNew - uOld;
+            fourier.processAtomU(1);
+            dr.TE(-1);
+            translate(molecule, dr);
+            fourier.computeOneMolecule(molecule);
+            fourier.processAtomU(-1);
+            dr.TE(-1);
+            translate(molecule, dr);
+        }
+        Assertions.assertEquals(u, fourier.computeAll(false), 1e-9 * Math.abs(u));
+
+        // rejected deletion, then rejected and accepted insertions
+        fourier.computeOneOldMolecule(box.getMoleculeList().get(9));
+        for (int i = 0; i < 2; i++) {
+            IMolecule molecule = species.makeMolecule();
+            translate(molecule, randomStep());
+            box.addMolecule(molecule);
+            double uNew = fourier.computeOneMolecule(molecule);
+            Assertions.assertNotEquals(0, uNew);
+            if (i == 0) {
+                box.removeMolecule(molecule);
+                continue;
+            }
+            u += uNew;
+            fourier.processAtomU(1);
+        }
+
+        // accepted deletion
+        IMolecule molecule = box.getMoleculeList().get(7);
+        uOld = fourier.computeOneOldMolecule(molecule);
+        fourier.computeOneMolecule(molecule);
+        fourier.processAtomU(-1);
+        box.removeMolecule(molecule);
+        u -= uOld;
+
+        // another move, which relies on the structure factor following the insertion and deletion
+        molecule = box.getMoleculeList().get(2);
+        uOld = fourier.computeOneOldMolecule(molecule);
+        translate(molecule, randomStep());
+        u += fourier.computeOneMolecule(molecule) - uOld;
+        fourier.processAtomU(1);
+
+        Assertions.assertEquals(u, fourier.computeAll(false), 1e-9 * Math.abs(u));
+    }
+
+    /**
+     * Checks the forces against finite differences of the energy.
+     */
+    @Test
+    public void testForces() {
+        for (IAtom atom : box.getLeafList()) {
+            atom.getPosition().PEa1Tv1(0.2, randomStep());
+        }
+        fourier.computeAll(true);
+        // computeAll zeroes the forces, so keep a copy
+        Vector[] forces = new Vector[box.getLeafList().size()];
+        for (int i = 0; i < forces.length; i++) {
+            forces[i] = sim.getSpace().makeVector();
+            forces[i].E(fourier.getForces()[i]);
+        }
+        double h = 1e-5;
+        for (int i = 0; i < forces.length; i += 7) {
+            Vector f = forces[i];
+            Vector ri = box.getLeafList().get(i).getPosition();
+            for (int k = 0; k < 3; k++) {
+                ri.setX(k, ri.getX(k) + h);
+                double uPlus = fourier.computeAll(false);
+                ri.setX(k, ri.getX(k) - 2 * h);
+                double uMinus = fourier.computeAll(false);
+                ri.setX(k, ri.getX(k) + h);
+                Assertions.assertEquals(-(uPlus - uMinus) / (2 * h), f.getX(k), 1e-5 * Math.max(1, Math.abs(f.getX(k))));
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package etomica.potential.compute;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomType;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.simulation.Simulation;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesGeneral;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PotentialComputeEwaldSPMETest {
+
+    @Test
+    public void testAgainstFourier() {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        AtomType typeA = AtomType.simple("A");
+        AtomType typeB = AtomType.simple("B");
+        SpeciesGeneral speciesA = SpeciesGeneral.monatomic(sim.getSpace(), typeA, true);
+        SpeciesGeneral speciesB = SpeciesGeneral.monatomic(sim.getSpace(), typeB, true);
+        sim.addSpecies(speciesA);
+        sim.addSpecies(speciesB);
+        Box box = sim.makeBox();
+        box.setNMolecules(speciesA, 128);
+        box.setNMolecules(speciesB, 128);
+        new BoxInflate(box, sim.getSpace(), 0.65).actionPerformed();
+        new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+        for (int i = 0; i < box.getLeafList().size(); i++) {
+            Vector dr = sim.getSpace().makeVector();
+            dr.setRandomInSphere(sim.getRandom());
+            box.getLeafList().get(i).getPosition().PEa1Tv1(0.3, dr);
+        }
+
+        PotentialComputeEwaldFourier fourier = new PotentialComputeEwaldFourier(sim.getSpeciesManager(), box);
+        PotentialComputeEwaldSPME spme = new PotentialComputeEwaldSPME(sim.getSpeciesManager(), box);
+        PotentialComputeEwaldFourier.EwaldParams params = fourier.getOptimalParams(3, 0);
+        for (PotentialComputeEwaldFourier pc : new PotentialComputeEwaldFourier[]{fourier, spme}) {
+            pc.setAlpha(params.alpha);
+            pc.setAlpha6(params.alpha);
+            pc.setkCut(params.kCut);
+            pc.setCharge(typeA, 1);
+            pc.setCharge(typeB, -1);
+            pc.setR6Coefficient(typeA, 1, 1);
+            pc.setR6Coefficient(typeB, 1.1, 0.8);
+            pc.init();
+        }
+
+        double u = fourier.computeAll(true);
+        double uSPME = spme.computeAll(true);
+        Assertions.assertEquals(u, uSPME, Math.abs(u) * 1e-5);
+        Assertions.assertEquals(fourier.getLastVirial(), spme.getLastVirial(), Math.abs(fourier.getLastVirial()) * 1e-4);
+        for (int i = 0; i < box.getLeafList().size(); i++) {
+            for (int k = 0; k < 3; k++) {
+                Assertions.assertEquals(fourier.getForces()[i].getX(k), spme.getForces()[i].getX(k), 1e-3);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package etomica.potential.compute;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomType;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.nbr.cell.NeighborCellManager;
+import etomica.nbr.list.NeighborListManager;
+import etomica.potential.BondingInfo;
+import etomica.potential.P2LennardJones;
+import etomica.potential.P2SoftSphericalTruncated;
+import etomica.potential.TruncationFactoryForceShift;
+import etomica.simulation.Simulation;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesGeneral;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PotentialComputePairTest {
+
+    Simulation sim;
+    SpeciesGeneral species;
+    Box box;
+
+    @BeforeEach
+    void setUp() {
+        sim = new Simulation(Space3D.getInstance());
+        species = SpeciesGeneral.monatomic(sim.getSpace(), AtomType.simple("A"), true);
+        sim.addSpecies(species);
+        box = sim.makeBox();
+        box.setNMolecules(species, 864);
+        new BoxInflate(box, sim.getSpace(), 0.8).actionPerformed();
+        new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+        // displace the atoms off the lattice so that forces don't cancel
+        for (int i = 0; i < box.getLeafList().size(); i++) {
+            Vector r = box.getLeafList().get(i).getPosition();
+            Vector dr = sim.getSpace().makeVector();
+            dr.setRandomInSphere(sim.getRandom());
+            r.PEa1Tv1(0.1, dr);
+        }
+    }
+
+    protected void checkThreaded(NeighborManager neighborManager) {
+        PotentialComputePair pc = new PotentialComputePair(sim.getSpeciesManager(), box, neighborManager);
+        AtomType leafType = species.getLeafType();
+        pc.setPairPotential(leafType, leafType, new P2SoftSphericalTruncated(new P2LennardJones(), 3));
+        pc.init();
+
+        double u1 = pc.computeAll(true);
+        double w1 = pc.getLastVirial();
+        int n = box.getLeafList().size();
+        Vector[] f1 = new Vector[n];
+        double[] uAtom1 = new double[n];
+        for (int i = 0; i < n; i++) {
+            uAtom1[i] = pc.computeOneOld(box.getLeafList().get(i));
+            f1[i] = sim.getSpace().makeVector();
+            f1[i].E(pc.getForces()[i]);
+        }
+
+        pc.setNumThreads(4);
+        double u4 = pc.computeAll(true);
+        double w4 = pc.getLastVirial();
+        Assertions.assertEquals(u1, u4, Math.abs(u1) * 1e-12);
+        Assertions.assertEquals(w1, w4, Math.abs(w1) * 1e-12);
+        for (int i = 0; i < n; i++) {
+            Assertions.assertEquals(uAtom1[i], pc.computeOneOld(box.getLeafList().get(i)), 1e-10);
+            for (int k = 0; k < 3; k++) {
+                Assertions.assertEquals(f1[i].getX(k), pc.getForces()[i].getX(k), 1e-9);
+            }
+        }
+
+        // the threaded result should not depend on scheduling
+        Assertions.assertEquals(u4, pc.computeAll(false));
+        Assertions.assertEquals(w4, pc.getLastVirial());
+        pc.setNumThreads(1);
+    }
+
+    @Test
+    public void testBatch() {
+        NeighborListManager nbrManager = new NeighborListManager(sim.getSpeciesManager(), box, 2, 3.5, BondingInfo.noBonding());
+        PotentialComputePair pc = new PotentialComputePair(sim.getSpeciesManager(), box, nbrManager);
+        AtomType leafType = species.getLeafType();
+        pc.setPairPotential(leafType, leafType, P2LennardJones.makeTruncated(1, 1, new TruncationFactoryForceShift(3)));
+        pc.init();
+
+        double u1 = pc.computeAll(true);
+        double w1 = pc.getLastVirial();
+        int n = box.getLeafList().size();
+        Vector[] f1 = new Vector[n];
+        for (int i = 0; i < n; i++) {
+            f1[i] = sim.getSpace().makeVector();
+            f1[i].E(pc.getForces()[i]);
+        }
+
+        // with one atom type, the pairs are summed in the same order
+        pc.setBatchPairs(true);
+        Assertions.assertEquals(u1, pc.computeAll(true));
+        Assertions.assertEquals(w1, pc.getLastVirial());
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < 3; k++) {
+                Assertions.assertEquals(f1[i].getX(k), pc.getForces()[i].getX(k));
+            }
+        }
+    }
+
+    @Test
+    public void testThreadedList() {
+        checkThreaded(new NeighborListManager(sim.getSpeciesManager(), box, 2, 3.5, BondingInfo.noBonding()));
+    }
+
+    @Test
+    public void testThreadedCell() {
+        checkThreaded(new NeighborCellManager(sim.getSpeciesManager(), box, 2, BondingInfo.noBonding()));
+    }
+}
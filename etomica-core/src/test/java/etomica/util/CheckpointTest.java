@@ -0,0 +1,125 @@
+package etomica.util;
+
+import etomica.atom.AtomType;
+import etomica.atom.IAtomKinetic;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.data.AccumulatorAverage;
+import etomica.data.AccumulatorAverageFixed;
+import etomica.data.types.DataDouble;
+import etomica.simulation.Simulation;
+import etomica.space3d.Space3D;
+import etomica.species.ISpecies;
+import etomica.species.SpeciesGeneral;
+import etomica.units.dimensions.Null;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class CheckpointTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Statefull object with only the text form, which goes through the
+     * default binary methods.
+     */
+    static class TextState implements Statefull {
+        String s;
+
+        public void saveState(Writer fw) throws IOException {
+            fw.write(s + "\n");
+        }
+
+        public void restoreState(BufferedReader br) throws IOException {
+            s = br.readLine();
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        ISpecies species = SpeciesGeneral.monatomic(sim.getSpace(), AtomType.simple("A"), true);
+        sim.addSpecies(species);
+        Box box = sim.makeBox();
+        box.setNMolecules(species, 20);
+        RandomMersenneTwister random = new RandomMersenneTwister(4);
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < atoms.size(); i++) {
+            ((IAtomKinetic) atoms.get(i)).getPosition().setRandomCube(random);
+            ((IAtomKinetic) atoms.get(i)).getVelocity().setRandomCube(random);
+        }
+        random.nextGaussian();
+        AccumulatorAverageFixed acc = new AccumulatorAverageFixed(3);
+        acc.putDataInfo(new DataDouble.DataInfoDouble("x", Null.DIMENSION));
+        DataDouble x = new DataDouble();
+        for (int i = 0; i < 10; i++) {
+            x.x = random.nextDouble();
+            acc.putData(x);
+        }
+        TextState text = new TextState();
+        text.s = "text state";
+
+        String filename = tempDir.resolve("state.bin").toString();
+        List<Statefull> objects = Arrays.asList(box, random, acc, text);
+        CheckpointWriter.save(filename, objects);
+        Assertions.assertTrue(CheckpointReader.isCheckpoint(filename));
+
+        double[] positions = new double[3 * atoms.size()];
+        double[] velocities = new double[3 * atoms.size()];
+        for (int i = 0; i < atoms.size(); i++) {
+            for (int k = 0; k < 3; k++) {
+                positions[3 * i + k] = atoms.get(i).getPosition().getX(k);
+                velocities[3 * i + k] = ((IAtomKinetic) atoms.get(i)).getVelocity().getX(k);
+            }
+        }
+        double[] nextRandom = new double[]{random.nextGaussian(), random.nextDouble()};
+        double average = acc.getData(AccumulatorAverage.AVERAGE).getValue(0);
+        double error = acc.getData(AccumulatorAverage.ERROR).getValue(0);
+
+        // change everything, then restore
+        box.setNMolecules(species, 30);
+        for (int i = 0; i < atoms.size(); i++) {
+            atoms.get(i).getPosition().E(0);
+        }
+        for (int i = 0; i < 5; i++) {
+            x.x = random.nextDouble();
+            acc.putData(x);
+        }
+        text.s = null;
+        CheckpointReader.restore(filename, objects);
+
+        Assertions.assertEquals(20, box.getMoleculeList().size());
+        Assertions.assertEquals(20, atoms.size());
+        for (int i = 0; i < atoms.size(); i++) {
+            Assertions.assertEquals(i, atoms.get(i).getLeafIndex());
+            for (int k = 0; k < 3; k++) {
+                Assertions.assertEquals(positions[3 * i + k], atoms.get(i).getPosition().getX(k));
+                Assertions.assertEquals(velocities[3 * i + k], ((IAtomKinetic) atoms.get(i)).getVelocity().getX(k));
+            }
+        }
+        Assertions.assertEquals(nextRandom[0], random.nextGaussian());
+        Assertions.assertEquals(nextRandom[1], random.nextDouble());
+        Assertions.assertEquals(average, acc.getData(AccumulatorAverage.AVERAGE).getValue(0));
+        Assertions.assertEquals(error, acc.getData(AccumulatorAverage.ERROR).getValue(0));
+        Assertions.assertEquals("text state", text.s);
+    }
+
+    @Test
+    public void testNotCheckpoint() throws IOException {
+        Path p = tempDir.resolve("state.txt");
+        Files.write(p, "20\n".getBytes());
+        Assertions.assertFalse(CheckpointReader.isCheckpoint(p.toString()));
+        Assertions.assertThrows(RuntimeException.class, () -> new CheckpointReader(p));
+    }
+}
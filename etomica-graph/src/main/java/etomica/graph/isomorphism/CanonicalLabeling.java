@@ -0,0 +1,346 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.graph.isomorphism;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import etomica.graph.model.Edge;
+import etomica.graph.model.Graph;
+import etomica.graph.model.Node;
+import etomica.graph.model.impl.MetadataImpl;
+
+/**
+ * Computes a canonical labeling of a graph's nodes (in the style of nauty):
+ * the nodes are partitioned by color and the partition is refined until
+ * nodes in each cell have the same number of neighbors (by edge color) in
+ * every cell.  Nodes of the first cell with more than one node are then
+ * individualized one at a time, recursively, until every cell has a single
+ * node.  Each such leaf gives a labeling, and the labeling with the smallest
+ * relabeled adjacency matrix is the canonical one.  Automorphisms found
+ * along the way (leaves giving the same matrix) are used to skip equivalent
+ * branches.
+ *
+ * The certificate is the canonically relabeled graph written as a string, so
+ * two graphs are isomorphic (in the sense of Match.match) if and only if
+ * their certificates are equal.  Finding isomorphs then takes a single hash
+ * lookup instead of a pairwise search.
+ *
+ * Node colors (and types, if MetadataImpl.rootPointsSpecial) and edge colors
+ * must match.  With reverse edges (GraphImpl.useReverseEdges), the edge from
+ * i to j can have a different color than the edge from j to i.
+ */
+public class CanonicalLabeling {
+
+  private final int n;
+  private final boolean wide;
+  private final int[] nodeKey;
+  private final int[][] adj;
+  private final List<int[]> automorphisms = new ArrayList<int[]>();
+  private int[] firstLabeling, firstCert;
+  private int[] bestLabeling, bestCert;
+
+  public CanonicalLabeling(Graph g) {
+
+    n = g.nodeCount();
+    wide = MetadataImpl.rootPointsSpecial;
+    nodeKey = new int[n];
+    adj = new int[n][n];
+    for (byte i = 0; i < n; i++) {
+      Node node = g.getNode(i);
+      nodeKey[i] = wide ? (node.getType() << 16) | node.getColor() : node.getColor();
+      for (byte j = 0; j < n; j++) {
+        if (i == j || !g.hasEdge(i, j)) {
+          continue;
+        }
+        Edge edge = g.getEdge(i, j);
+        // keys for existing edges are non-zero
+        adj[i][j] = wide ? (edge.getType() << 16) | edge.getColor() : 1 + edge.getColor();
+      }
+    }
+    if (n == 0) {
+      bestLabeling = bestCert = new int[0];
+      return;
+    }
+    Integer[] sorted = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      sorted[i] = i;
+    }
+    Arrays.sort(sorted, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return Integer.compare(nodeKey[a], nodeKey[b]);
+      }
+    });
+    int[] colors = new int[n];
+    for (int k = 0; k < n; k++) {
+      colors[sorted[k]] = (k > 0 && nodeKey[sorted[k]] == nodeKey[sorted[k - 1]]) ? colors[sorted[k - 1]] : k;
+    }
+    refine(colors);
+    search(colors, new int[n], 0);
+  }
+
+  /**
+   * Returns the certificate for the given graph.
+   */
+  public static String getCertificate(Graph g) {
+
+    return new CanonicalLabeling(g).getCertificate();
+  }
+
+  /**
+   * Returns the canonical labeling; element p is the node that goes in
+   * position p.
+   */
+  public byte[] getLabeling() {
+
+    byte[] labeling = new byte[n];
+    for (int p = 0; p < n; p++) {
+      labeling[p] = (byte) bestLabeling[p];
+    }
+    return labeling;
+  }
+
+  public String getCertificate() {
+
+    StringBuilder sb = new StringBuilder(1 + (wide ? 2 : 1) * bestCert.length);
+    sb.append((char) n);
+    for (int key : bestCert) {
+      if (wide) {
+        sb.append((char) (key >>> 16));
+      }
+      sb.append((char) key);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the number of automorphisms found while searching.  These are
+   * generators of (a subgroup of) the automorphism group.
+   */
+  public int getAutomorphismCount() {
+
+    return automorphisms.size();
+  }
+
+  /**
+   * Refines the ordered partition until it is equitable.  colors[v] is the
+   * position of the first node in v's cell.
+   */
+  private void refine(int[] colors) {
+
+    long[][] sigs = new long[n][];
+    Integer[] order = new Integer[n];
+    int numCells = countCells(colors);
+    while (true) {
+      for (int v = 0; v < n; v++) {
+        int m = 0;
+        long[] sig = new long[n];
+        for (int w = 0; w < n; w++) {
+          if (adj[v][w] != 0 || adj[w][v] != 0) {
+            sig[m++] = ((long) colors[w] << 48) | ((long) adj[v][w] << 24) | adj[w][v];
+          }
+        }
+        sig = Arrays.copyOf(sig, m);
+        Arrays.sort(sig);
+        sigs[v] = sig;
+        order[v] = v;
+      }
+      final int[] c = colors;
+      final long[][] s = sigs;
+      Comparator<Integer> comparator = new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+          if (c[a] != c[b]) {
+            return c[a] < c[b] ? -1 : 1;
+          }
+          return compareSigs(s[a], s[b]);
+        }
+      };
+      Arrays.sort(order, comparator);
+      int[] newColors = new int[n];
+      int newNumCells = 0;
+      for (int k = 0; k < n; k++) {
+        if (k > 0 && comparator.compare(order[k], order[k - 1]) == 0) {
+          newColors[order[k]] = newColors[order[k - 1]];
+        }
+        else {
+          newColors[order[k]] = k;
+          newNumCells++;
+        }
+      }
+      System.arraycopy(newColors, 0, colors, 0, n);
+      if (newNumCells == numCells) {
+        return;
+      }
+      numCells = newNumCells;
+    }
+  }
+
+  private static int compareSigs(long[] a, long[] b) {
+
+    if (a.length != b.length) {
+      return a.length < b.length ? -1 : 1;
+    }
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] != b[i]) {
+        return a[i] < b[i] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private int countCells(int[] colors) {
+
+    boolean[] isStart = new boolean[n];
+    int count = 0;
+    for (int v = 0; v < n; v++) {
+      if (!isStart[colors[v]]) {
+        isStart[colors[v]] = true;
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private void search(int[] colors, int[] fixed, int depth) {
+
+    // find the first non-singleton cell
+    int[] cellSize = new int[n];
+    for (int v = 0; v < n; v++) {
+      cellSize[colors[v]]++;
+    }
+    int target = -1;
+    for (int p = 0; p < n; p++) {
+      if (cellSize[p] > 1) {
+        target = p;
+        break;
+      }
+    }
+    if (target == -1) {
+      leaf(colors);
+      return;
+    }
+    List<Integer> explored = new ArrayList<Integer>();
+    for (int v = 0; v < n; v++) {
+      if (colors[v] != target) {
+        continue;
+      }
+      if (!explored.isEmpty()) {
+        // skip v if an automorphism fixing our path maps an explored node to v
+        int[] orbit = orbits(fixed, depth);
+        boolean equivalent = false;
+        for (int u : explored) {
+          if (orbit[u] == orbit[v]) {
+            equivalent = true;
+            break;
+          }
+        }
+        if (equivalent) {
+          continue;
+        }
+      }
+      explored.add(v);
+      int[] newColors = colors.clone();
+      for (int w = 0; w < n; w++) {
+        if (w != v && colors[w] == target) {
+          newColors[w] = target + 1;
+        }
+      }
+      refine(newColors);
+      fixed[depth] = v;
+      search(newColors, fixed, depth + 1);
+    }
+  }
+
+  /**
+   * Returns the orbit representative of each node under the automorphisms
+   * found so far that fix the first depth nodes in fixed.
+   */
+  private int[] orbits(int[] fixed, int depth) {
+
+    int[] parent = new int[n];
+    for (int v = 0; v < n; v++) {
+      parent[v] = v;
+    }
+    outer: for (int[] gamma : automorphisms) {
+      for (int d = 0; d < depth; d++) {
+        if (gamma[fixed[d]] != fixed[d]) {
+          continue outer;
+        }
+      }
+      for (int v = 0; v < n; v++) {
+        int a = find(parent, v), b = find(parent, gamma[v]);
+        if (a != b) {
+          parent[Math.max(a, b)] = Math.min(a, b);
+        }
+      }
+    }
+    for (int v = 0; v < n; v++) {
+      parent[v] = find(parent, v);
+    }
+    return parent;
+  }
+
+  private static int find(int[] parent, int v) {
+
+    while (parent[v] != v) {
+      v = parent[v] = parent[parent[v]];
+    }
+    return v;
+  }
+
+  private void leaf(int[] colors) {
+
+    int[] labeling = new int[n];
+    for (int v = 0; v < n; v++) {
+      labeling[colors[v]] = v;
+    }
+    int[] cert = new int[n + n * n];
+    for (int p = 0; p < n; p++) {
+      cert[p] = nodeKey[labeling[p]];
+      int[] row = adj[labeling[p]];
+      for (int q = 0; q < n; q++) {
+        cert[n + p * n + q] = row[labeling[q]];
+      }
+    }
+    if (firstCert == null) {
+      firstCert = bestCert = cert;
+      firstLabeling = bestLabeling = labeling;
+      return;
+    }
+    if (Arrays.equals(cert, firstCert)) {
+      addAutomorphism(firstLabeling, labeling);
+      return;
+    }
+    int order = compareCerts(cert, bestCert);
+    if (order == 0) {
+      addAutomorphism(bestLabeling, labeling);
+    }
+    else if (order < 0) {
+      bestCert = cert;
+      bestLabeling = labeling;
+    }
+  }
+
+  private void addAutomorphism(int[] labeling1, int[] labeling2) {
+
+    int[] gamma = new int[n];
+    for (int p = 0; p < n; p++) {
+      gamma[labeling1[p]] = labeling2[p];
+    }
+    automorphisms.add(gamma);
+  }
+
+  private static int compareCerts(int[] a, int[] b) {
+
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] != b[i]) {
+        return a[i] < b[i] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+}
@@ -4,9 +4,12 @@
 
 package etomica.graph.iterators.filters;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
-import etomica.graph.isomorphism.Match;
+import etomica.graph.isomorphism.CanonicalLabeling;
 import etomica.graph.model.Graph;
 import etomica.graph.model.GraphIterator;
 
@@ -18,6 +21,8 @@ public class IsomorphismFilter extends GlobalFilter {
   private int countSeen = 0;
   private int countDiscarded = 0;
   private long debugStart = System.nanoTime();
+  // certificates of the graphs in each blocking set
+  private final Map<Set<Graph>, Map<String, Graph>> certificateMaps = new IdentityHashMap<Set<Graph>, Map<String, Graph>>();
 
   public IsomorphismFilter(GraphIterator iterator) {
     this(iterator, null);
@@ -29,33 +34,40 @@ public class IsomorphismFilter extends GlobalFilter {
 
   protected boolean accept(Graph g1, Set<Graph> set) {
 
+    // isomorphs have the same certificate, so there is at most one candidate
+    Map<String, Graph> certificates = certificateMaps.get(set);
+    if (certificates == null) {
+      certificates = new HashMap<String, Graph>();
+      certificateMaps.put(set, certificates);
+    }
+    String certificate = CanonicalLabeling.getCertificate(g1);
+    Graph isoGraph = certificates.get(certificate);
     boolean result = true;
-    if (!set.isEmpty()) {
-      for (Graph isoGraph : set) {
-        // test for isomorphism and, if they don't match, keep the graph lower in the
-        // graph order; update the graph coefficients;
-        if (Match.match(isoGraph, g1, false)) {
+    if (isoGraph != null) {
+      // keep the graph lower in the graph order; update the graph coefficients
+      countDiscarded++;
+      if (isoGraph.compareTo(g1) >= 0) {
+        isoGraph.coefficient().add(g1.coefficient());
+        result = false;
+        if (isoGraph.coefficient().getNumerator() == 0) {
           countDiscarded++;
-          if (isoGraph.compareTo(g1) >= 0) {
-            isoGraph.coefficient().add(g1.coefficient());
-            result = false;
-            if (isoGraph.coefficient().getNumerator() == 0) {
-              countDiscarded++;
-              set.remove(isoGraph);
-            }
-          }
-          else {
-            set.remove(isoGraph);
-            g1.coefficient().add(isoGraph.coefficient());
-            // replace the graph in the set with an isomorph with lower score
-            result = g1.coefficient().getNumerator() != 0;
-            if (!result) {
-              countDiscarded++;
-            }
-          }
-          break;
+          set.remove(isoGraph);
+          certificates.remove(certificate);
         }
       }
+      else {
+        set.remove(isoGraph);
+        certificates.remove(certificate);
+        g1.coefficient().add(isoGraph.coefficient());
+        // replace the graph in the set with an isomorph with lower score
+        result = g1.coefficient().getNumerator() != 0;
+        if (!result) {
+          countDiscarded++;
+        }
+      }
+    }
+    if (result) {
+      certificates.put(certificate, g1);
     }
     countSeen++;
     debugReport();
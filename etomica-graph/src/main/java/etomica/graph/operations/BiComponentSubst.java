@@ -39,6 +39,14 @@ public class BiComponentSubst implements Unary {
   }
   
   public Set<Graph> apply(Set<Graph> argument, Parameters params) {
+    if (Parallel.isParallel(argument.size())) {
+      final BiComponentSubstParameters bcsp = (BiComponentSubstParameters)params;
+      return Parallel.flatMap(argument, new Parallel.GraphFunction<Set<Graph>>() {
+        public Set<Graph> apply(Graph g) {
+          return BiComponentSubst.this.apply(g, bcsp);
+        }
+      });
+    }
     Set<Graph> result = new HashSet<Graph>();
     for (Graph g : argument) {
       result.addAll(apply(g, (BiComponentSubstParameters)params));
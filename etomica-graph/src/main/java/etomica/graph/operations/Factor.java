@@ -33,6 +33,20 @@ public class Factor implements Unary {
     
   public Set<Graph> apply(Set<Graph> argument, Parameters params) {
     assert(params instanceof MulFlexibleParameters);
+    if (Parallel.isParallel(argument.size())) {
+      final MulFlexibleParameters mfp = (MulFlexibleParameters)params;
+      // hap keeps state, so each thread needs its own Factor
+      final ThreadLocal<Factor> factors = new ThreadLocal<Factor>() {
+        protected Factor initialValue() {
+          return new Factor();
+        }
+      };
+      return Parallel.map(argument, new Parallel.GraphFunction<Graph>() {
+        public Graph apply(Graph g) {
+          return factors.get().apply(g, mfp);
+        }
+      });
+    }
     Set<Graph> result = new HashSet<Graph>();
     for (Graph g : argument) {
       result.add(apply(g, (MulFlexibleParameters)params));
@@ -4,6 +4,7 @@
 
 package etomica.graph.operations;
 
+import etomica.graph.isomorphism.CanonicalLabeling;
 import etomica.graph.iterators.IteratorWrapper;
 import etomica.graph.iterators.filters.GlobalFilter;
 import etomica.graph.iterators.filters.IsomorphismFilter;
@@ -12,11 +13,16 @@ import etomica.graph.model.GraphIterator;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 
 public class IsoFree implements Unary {
 
   public Set<Graph> apply(Set<Graph> argument, Parameters params) {
 
+    if (Parallel.isParallel(argument.size())) {
+      return applyParallel(argument);
+    }
     IteratorWrapper wrapper = new IteratorWrapper(argument.iterator(), true);
     GraphIterator isomorphs = new IsomorphismFilter(wrapper, null);
     Set<Graph> result = new HashSet<Graph>();
@@ -26,6 +32,38 @@ public class IsoFree implements Unary {
     return result;
   }
 
+  /**
+   * Computes certificates on several threads and combines isomorphs as they
+   * are found.  As with the serial version, the graph lower in the graph
+   * order is kept, but graphs are only dropped (for a zero coefficient) after
+   * all isomorphs have been combined.
+   */
+  protected Set<Graph> applyParallel(Set<Graph> argument) {
+
+    final ConcurrentHashMap<String, Graph> isomorphs = new ConcurrentHashMap<String, Graph>();
+    final BiFunction<Graph, Graph, Graph> combine = new BiFunction<Graph, Graph, Graph>() {
+      public Graph apply(Graph a, Graph b) {
+        Graph keep = a.compareTo(b) >= 0 ? a : b;
+        keep.coefficient().add((keep == a ? b : a).coefficient());
+        return keep;
+      }
+    };
+    Parallel.forEach(argument, new Parallel.GraphFunction<Object>() {
+      public Object apply(Graph g) {
+        Graph copy = g.copy();
+        isomorphs.merge(CanonicalLabeling.getCertificate(copy), copy, combine);
+        return null;
+      }
+    });
+    Set<Graph> result = new HashSet<Graph>();
+    for (Graph g : isomorphs.values()) {
+      if (g.coefficient().getNumerator() != 0) {
+        result.add(g);
+      }
+    }
+    return result;
+  }
+
   public static class IsoFreeParams extends GlobalFilter.SignatureMaker implements Parameters {
   }
 }
\ No newline at end of file
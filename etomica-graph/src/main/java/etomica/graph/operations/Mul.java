@@ -17,21 +17,38 @@ import static etomica.graph.model.Metadata.*;
 
 public class Mul implements Binary {
 
-  public Set<Graph> apply(Set<Graph> left, Set<Graph> right, Parameters params) {
+  public Set<Graph> apply(Set<Graph> left, final Set<Graph> right, Parameters params) {
     assert(params instanceof MulParameters);
+    final MulParameters mp = (MulParameters)params;
     Unary isoFree = new IsoFree();
-    Set<Graph> result = new HashSet<Graph>();
-    for (Graph lg : left) {
-      for (Graph rg : right) {
-        Graph graph = apply(lg, rg, (MulParameters)params);
-        if (graph != null) {
-          result.add(graph);
+    Set<Graph> result;
+    if (Parallel.isParallel(left.size())) {
+      result = Parallel.flatMap(left, new Parallel.GraphFunction<Set<Graph>>() {
+        public Set<Graph> apply(Graph lg) {
+          return applyRight(lg, right, mp);
         }
+      });
+    }
+    else {
+      result = new HashSet<Graph>();
+      for (Graph lg : left) {
+        result.addAll(applyRight(lg, right, mp));
       }
     }
     return isoFree.apply(result, null);
   }
 
+  protected Set<Graph> applyRight(Graph lg, Set<Graph> right, MulParameters params) {
+    Set<Graph> result = new HashSet<Graph>();
+    for (Graph rg : right) {
+      Graph graph = apply(lg, rg, params);
+      if (graph != null) {
+        result.add(graph);
+      }
+    }
+    return result;
+  }
+
   public Graph apply(Graph left, Graph right, MulParameters params) {
 
     int numNodes = 0;
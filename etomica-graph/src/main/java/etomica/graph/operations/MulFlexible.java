@@ -62,19 +62,31 @@ public class MulFlexible implements Binary {
         return apply(argument, sets2, params);
     }
 
-    public Set<Graph> apply(Set<Graph> argument, Set<Graph>[] sets2, Parameters params) {
+    public Set<Graph> apply(Set<Graph> argument, final Set<Graph>[] sets2, Parameters params) {
         assert (params instanceof MulFlexibleParameters);
+        final MulFlexibleParameters mfp = (MulFlexibleParameters) params;
+        if (Parallel.isParallel(argument.size())) {
+            return Parallel.flatMap(argument, new Parallel.GraphFunction<Set<Graph>>() {
+                public Set<Graph> apply(Graph g) {
+                    return applyAll(g, sets2, mfp);
+                }
+            });
+        }
         Set<Graph> result = new HashSet<Graph>();
-        int maxNField = ((MulFlexibleParameters) params).nFieldPoints;
         for (Graph g : argument) {
-            int numField1 = NumFieldNodes.value(g);
-            // look only at graphs from g2 that will result in a product with less
-            // than the max # of field nodes
-            for (int i = 0; i <= maxNField - numField1; i++) {
-                for (Graph g2 : sets2[i]) {
-                    Graph newGraph = apply(g, g2, (MulFlexibleParameters) params);
-                    result.add(newGraph);
-                }
+            result.addAll(applyAll(g, sets2, mfp));
+        }
+        return result;
+    }
+
+    protected Set<Graph> applyAll(Graph g, Set<Graph>[] sets2, MulFlexibleParameters params) {
+        Set<Graph> result = new HashSet<Graph>();
+        int numField1 = NumFieldNodes.value(g);
+        // look only at graphs from g2 that will result in a product with less
+        // than the max # of field nodes
+        for (int i = 0; i <= params.nFieldPoints - numField1; i++) {
+            for (Graph g2 : sets2[i]) {
+                result.add(apply(g, g2, params));
             }
         }
         return result;
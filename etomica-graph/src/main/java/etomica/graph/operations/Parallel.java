@@ -0,0 +1,147 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.graph.operations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import etomica.graph.model.Graph;
+
+/**
+ * Runs graph operations over the graphs of a set on several threads
+ * (fork-join over the input graphs).  Operations that support this (Mul,
+ * MulFlexible, IsoFree, Factor, BiComponentSubst and, through those,
+ * Decorate) check getNumThreads() and use the methods here when it is more
+ * than 1.  By default, everything runs on the calling thread.
+ *
+ * The function applied to each graph must not modify the input graphs or
+ * any other shared state.
+ */
+public class Parallel {
+
+  private static volatile int numThreads = 1;
+  private static ForkJoinPool pool;
+
+  /**
+   * Sets the number of threads used by graph operations.
+   */
+  public static synchronized void setNumThreads(int newNumThreads) {
+    if (newNumThreads < 1) {
+      throw new IllegalArgumentException("numThreads must be positive");
+    }
+    if (pool != null) {
+      pool.shutdown();
+      pool = null;
+    }
+    numThreads = newNumThreads;
+    if (numThreads > 1) {
+      pool = new ForkJoinPool(numThreads);
+    }
+  }
+
+  public static int getNumThreads() {
+    return numThreads;
+  }
+
+  /**
+   * Returns true if an operation on a set of the given size should run in
+   * parallel.
+   */
+  public static boolean isParallel(int size) {
+    return numThreads > 1 && size > 1;
+  }
+
+  public interface GraphFunction<T> {
+    T apply(Graph g);
+  }
+
+  /**
+   * Applies the function to each graph in the argument and returns the set
+   * of (non-null) results.
+   */
+  public static Set<Graph> map(Set<Graph> argument, final GraphFunction<Graph> function) {
+    List<Graph> results = run(argument, new GraphFunction<Collection<Graph>>() {
+      public Collection<Graph> apply(Graph g) {
+        Graph result = function.apply(g);
+        return result == null ? null : Collections.singletonList(result);
+      }
+    });
+    return new HashSet<Graph>(results);
+  }
+
+  /**
+   * Applies the function to each graph in the argument and returns the
+   * union of the resulting sets.
+   */
+  public static Set<Graph> flatMap(Set<Graph> argument, GraphFunction<? extends Collection<Graph>> function) {
+    return new HashSet<Graph>(run(argument, function));
+  }
+
+  /**
+   * Applies the function to each graph in the argument, ignoring any
+   * result.
+   */
+  public static void forEach(Set<Graph> argument, final GraphFunction<?> function) {
+    run(argument, new GraphFunction<Collection<Graph>>() {
+      public Collection<Graph> apply(Graph g) {
+        function.apply(g);
+        return null;
+      }
+    });
+  }
+
+  private static List<Graph> run(Set<Graph> argument, GraphFunction<? extends Collection<Graph>> function) {
+    Graph[] graphs = argument.toArray(new Graph[0]);
+    ForkJoinPool myPool;
+    synchronized (Parallel.class) {
+      myPool = pool;
+    }
+    // split into several chunks per thread so that the work is balanced
+    int chunkSize = myPool == null ? graphs.length : Math.max(1, graphs.length / (4 * numThreads));
+    MapTask task = new MapTask(graphs, 0, graphs.length, chunkSize, function);
+    return myPool == null ? task.compute() : myPool.invoke(task);
+  }
+
+  private static class MapTask extends RecursiveTask<List<Graph>> {
+
+    private final Graph[] graphs;
+    private final int start, end, chunkSize;
+    private final GraphFunction<? extends Collection<Graph>> function;
+
+    public MapTask(Graph[] graphs, int start, int end, int chunkSize, GraphFunction<? extends Collection<Graph>> function) {
+      this.graphs = graphs;
+      this.start = start;
+      this.end = end;
+      this.chunkSize = chunkSize;
+      this.function = function;
+    }
+
+    protected List<Graph> compute() {
+      if (end - start > chunkSize) {
+        int mid = (start + end) / 2;
+        MapTask left = new MapTask(graphs, start, mid, chunkSize, function);
+        left.fork();
+        List<Graph> right = new MapTask(graphs, mid, end, chunkSize, function).compute();
+        List<Graph> result = left.join();
+        result.addAll(right);
+        return result;
+      }
+      List<Graph> result = new ArrayList<Graph>();
+      for (int i = start; i < end; i++) {
+        Collection<Graph> r = function.apply(graphs[i]);
+        if (r != null) {
+          result.addAll(r);
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.graph;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import etomica.graph.isomorphism.CanonicalLabeling;
+import etomica.graph.isomorphism.Match;
+import etomica.graph.iterators.DefaultIterator;
+import etomica.graph.iterators.filters.IsomorphismFilter;
+import etomica.graph.model.Graph;
+import etomica.graph.model.GraphFactory;
+import etomica.graph.model.GraphIterator;
+import etomica.graph.operations.Relabel;
+import etomica.graph.operations.RelabelParameters;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CanonicalLabelingTest {
+
+  private static Graph randomGraph(Random random, byte n, double edgeProb) {
+
+    Graph g = GraphFactory.createGraph(n);
+    for (byte i = 0; i < n; i++) {
+      g.getNode(i).setColor(random.nextInt(3) == 0 ? 'B' : 'A');
+      for (byte j = (byte) (i + 1); j < n; j++) {
+        if (random.nextDouble() < edgeProb) {
+          g.putEdge(i, j);
+          g.getEdge(i, j).setColor(random.nextInt(4) == 0 ? 'e' : 'f');
+        }
+      }
+    }
+    return g;
+  }
+
+  @Test
+  public void testIsomorphClassCount() {
+
+    for (byte n = 1; n <= 6; n++) {
+      Set<String> certificates = new HashSet<String>();
+      DefaultIterator iterator = new DefaultIterator(n);
+      while (iterator.hasNext()) {
+        certificates.add(CanonicalLabeling.getCertificate(iterator.next()));
+      }
+      assertEquals(Match.ISMORPHS_COUNT[n - 1], certificates.size());
+    }
+    int count = 0;
+    GraphIterator isomorphs = new IsomorphismFilter(new DefaultIterator((byte) 5));
+    while (isomorphs.hasNext()) {
+      isomorphs.next();
+      count++;
+    }
+    assertEquals(Match.ISMORPHS_COUNT[4], count);
+  }
+
+  private static Graph randomRelabel(Random random, Graph g) {
+
+    byte n = g.nodeCount();
+    byte[] permutation = new byte[n];
+    for (byte i = 0; i < n; i++) {
+      permutation[i] = i;
+    }
+    for (int i = n - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      byte t = permutation[i];
+      permutation[i] = permutation[j];
+      permutation[j] = t;
+    }
+    return new Relabel().apply(g, new RelabelParameters(permutation));
+  }
+
+  @Test
+  public void testRelabel() {
+
+    Random random = new Random(1);
+    for (int k = 0; k < 200; k++) {
+      Graph g = randomGraph(random, (byte) 10, 0.5);
+      Graph h = randomRelabel(random, g);
+      assertEquals(CanonicalLabeling.getCertificate(g), CanonicalLabeling.getCertificate(h));
+    }
+    // highly symmetric graphs
+    Graph complete = GraphFactory.createGraph((byte) 12);
+    for (byte i = 0; i < 12; i++) {
+      for (byte j = (byte) (i + 1); j < 12; j++) {
+        complete.putEdge(i, j);
+      }
+    }
+    assertEquals(CanonicalLabeling.getCertificate(complete), CanonicalLabeling.getCertificate(complete.copy()));
+  }
+
+  @Test
+  public void testAgreesWithMatch() {
+
+    Random random = new Random(2);
+    byte n = 7;
+    for (int k = 0; k < 2000; k++) {
+      Graph g1 = randomGraph(random, n, 0.5);
+      Graph g2 = randomRelabel(random, g1);
+      if (random.nextBoolean()) {
+        // toggle one edge; the result might still be isomorphic
+        byte i = (byte) random.nextInt(n);
+        byte j = (byte) ((i + 1 + random.nextInt(n - 1)) % n);
+        if (g2.hasEdge(i, j)) {
+          g2.deleteEdge(i, j);
+        }
+        else {
+          g2.putEdge(i, j);
+          g2.getEdge(i, j).setColor('f');
+        }
+      }
+      boolean sameCertificate = CanonicalLabeling.getCertificate(g1).equals(CanonicalLabeling.getCertificate(g2));
+      assertEquals(Match.match(g1, g2, false), sameCertificate);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import etomica.graph.isomorphism.CanonicalLabeling;
+import etomica.graph.iterators.DefaultIterator;
+import etomica.graph.model.Graph;
+import etomica.graph.operations.IsoFree;
+import etomica.graph.operations.Parallel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ParallelTest {
+
+  @AfterEach
+  public void tearDown() {
+    Parallel.setNumThreads(1);
+  }
+
+  private static Map<String, String> coefficients(Set<Graph> graphs) {
+
+    Map<String, String> map = new HashMap<String, String>();
+    for (Graph g : graphs) {
+      map.put(CanonicalLabeling.getCertificate(g), g.coefficient().toString());
+    }
+    return map;
+  }
+
+  @Test
+  public void testIsoFree() {
+
+    Random random = new Random(7);
+    Set<Graph> graphs = new HashSet<Graph>();
+    DefaultIterator iterator = new DefaultIterator((byte) 5);
+    while (iterator.hasNext()) {
+      Graph g = iterator.next();
+      // some classes sum to zero
+      g.coefficient().setNumerator(random.nextBoolean() ? 1 : -1);
+      graphs.add(g);
+    }
+    IsoFree isoFree = new IsoFree();
+    Set<Graph> serial = isoFree.apply(graphs, null);
+    Parallel.setNumThreads(3);
+    Set<Graph> parallel = isoFree.apply(graphs, null);
+    assertEquals(serial.size(), parallel.size());
+    assertEquals(coefficients(serial), coefficients(parallel));
+  }
+}
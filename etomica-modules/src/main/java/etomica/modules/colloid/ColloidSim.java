@@ -62,7 +62,7 @@ public class ColloidSim extends Simulation {
         box = this.makeBox();
 
         NeighborListManagerHard neighborManager = new NeighborListManagerHard(getSpeciesManager(), box, 2, 6, BondingInfo.noBonding()) {
-            protected int checkNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, double rc2, Vector jbo, IPotential2[] iPotentials) {
+            protected void checkNbrPair(int i, int j, IAtom iAtom, IAtom jAtom, double rc2, Vector jbo, int jImage, IPotential2[] iPotentials) {
                 int idx1 = iAtom.getParentGroup().getIndex();
                 int idx2 = jAtom.getParentGroup().getIndex();
                 int chainIdx1 = idx1 / chainLength;
@@ -77,9 +77,10 @@ public class ColloidSim extends Simulation {
                     Vector rj = jAtom.getPosition();
                     dr.Ev1Mv2(rj, ri);
                     dr.PE(jbo);
-                    return addAsNbrPair(i, j, iAtom, jAtom, jbo, iPotentials, dr);
+                    addAsNbrPair(i, j, iAtom, jAtom, jImage, iPotentials, dr);
+                    return;
                 }
-                return super.checkNbrPair(i, j, iAtom, jAtom, rc2, jbo, iPotentials);
+                super.checkNbrPair(i, j, iAtom, jAtom, rc2, jbo, jImage, iPotentials);
             }
         };
         potentialMaster = new PotentialComputePair(getSpeciesManager(), box, neighborManager);
@@ -33,8 +33,8 @@ public class AtomTestLiquidAtomic implements AtomTestCollective, AtomLeafAgentMa
         int nLeaf = leafList.size();
         for (int iLeaf = 0; iLeaf < nLeaf; iLeaf++) {
             IAtom atom = leafList.get(iLeaf);
-            int nbrs = nbrListManager.numAtomNbrsUp[iLeaf] +
-                    nbrListManager.numAtomNbrsDn[iLeaf];
+            int nbrs = nbrListManager.getNumUpNeighbors(iLeaf) +
+                    nbrListManager.getNumDownNeighbors(iLeaf);
             agentManager.setAgent(atom, nbrs > maxNbrsVapor);
         }
     }
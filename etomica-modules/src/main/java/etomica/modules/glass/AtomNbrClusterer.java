@@ -7,13 +7,20 @@ import etomica.atom.AtomTest;
 import etomica.atom.IAtom;
 import etomica.atom.IAtomList;
 import etomica.box.Box;
-import etomica.space.Space;
-import etomica.space.Vector;
 
+import java.util.Arrays;
+
+/**
+ * Groups the atoms that pass a test into clusters of atoms within nbrMax of
+ * each other.  Pairs are found with a ConfigurationCellList, which by default
+ * is built from the box's current positions for each call to findClusters.
+ * A list following a ConfigurationStorage can be given instead (via
+ * setCellList) when the clusters are found for the storage's most recent
+ * configuration, so that the list is built once per configuration.
+ */
 public class AtomNbrClusterer {
 
     protected final Box box;
-    protected final Vector dr;
     protected double nbrMax2 = 1.5 * 1.5;
     protected final AtomTest atomTestDeviation;
     protected final int[] clusters;
@@ -21,6 +28,8 @@ public class AtomNbrClusterer {
     protected final int[] nextAtom, firstAtoms, lastAtoms;
     protected final int[] skip;
     protected final boolean doNbrs;
+    protected ConfigurationCellList cellList;
+    protected boolean ownCellList;
 
     public AtomNbrClusterer(Box box, AtomTest atomTest) {
         this(box, atomTest, false);
@@ -30,15 +39,29 @@ public class AtomNbrClusterer {
         this.box = box;
         atomTestDeviation = atomTest;
         this.doNbrs = doNbrs;
-        Space space = box.getSpace();
-        dr = space.makeVector();
         int n = box.getLeafList().size();
         clusters = new int[n];
         firstAtoms = new int[n];
         lastAtoms = new int[n];
         nextAtom = new int[n];
-        nbrList = new int[n][n];
+        // rows grow as needed and end with -1
+        nbrList = new int[n][0];
         skip = new int[n];
+        cellList = new ConfigurationCellList(box);
+        ownCellList = true;
+    }
+
+    /**
+     * Sets the list used to find pairs.  The list must follow a
+     * ConfigurationStorage whose most recent configuration matches the box.
+     */
+    public void setCellList(ConfigurationCellList newCellList) {
+        cellList = newCellList;
+        ownCellList = false;
+    }
+
+    public ConfigurationCellList getCellList() {
+        return cellList;
     }
 
     public int[] getClusters() {
@@ -63,10 +86,19 @@ public class AtomNbrClusterer {
         IAtomList atoms = box.getLeafList();
         for (int i = 0; i < atoms.size(); i++) {
             skip[i] = nextAtom[i] = clusters[i] = -1;
-            for(int j=0; j<atoms.size(); j++){
+            for (int j = 0; j < nbrList[i].length && nbrList[i][j] != -1; j++) {
                 nbrList[i][j] = -1;
             }
         }
+        cellList.requireRange(getNbrMax());
+        if (ownCellList) {
+            cellList.build(atoms);
+        } else {
+            cellList.update();
+        }
+        int[] nbrStart = cellList.getNbrStart();
+        int[] nbrs = cellList.getNbrs();
+        double[] nbrR2 = cellList.getNbrR2();
         int nClusters = 0;
 
         firstAtoms[0] = -1;
@@ -90,10 +122,10 @@ public class AtomNbrClusterer {
                 // i in existing cluster
                 iCluster = clusters[i];
             }
-            Vector ri = a.getPosition();
 
             //j
-            for (int j = i + 1; j < atoms.size(); j++) {
+            for (int p = nbrStart[i]; p < nbrStart[i + 1]; p++) {
+                int j = nbrs[p];
                 if ((!doNbrs && clusters[j] == clusters[i]) || skip[j] == 1) continue;
                 IAtom aj = atoms.get(j);
                 if (skip[j] == -1) {
@@ -101,25 +133,11 @@ public class AtomNbrClusterer {
                     skip[j] = atomTestDeviation.test(aj) ? 0 : 1;
                     if (skip[j] == 1) continue;
                 }
-                Vector rj = aj.getPosition();
-                dr.Ev1Mv2(rj, ri);
-                box.getBoundary().nearestImage(dr);
-                if (dr.squared() > nbrMax2) continue;
+                if (nbrR2[p] > nbrMax2) continue;
 
                 if(doNbrs) {
-                    for (int k = 0; k < nbrList[i].length; k++) {
-                        if (nbrList[i][k] == -1) {
-                            nbrList[i][k] = j;
-                            break;
-                        }
-                    }
-                    for (int kk = 0; kk < nbrList[j].length; kk++) {
-                        if (nbrList[j][kk] == -1) {
-                            nbrList[j][kk] = i;
-                            break;
-                        }
-                    }
-
+                    addNbr(i, j);
+                    addNbr(j, i);
 
                     if (clusters[j] == clusters[i]) continue;
                 }
@@ -161,6 +179,17 @@ public class AtomNbrClusterer {
             }
         }
     }
+
+    protected void addNbr(int i, int j) {
+        int k = 0;
+        while (k < nbrList[i].length && nbrList[i][k] != -1) k++;
+        if (k + 1 >= nbrList[i].length) {
+            int oldLength = nbrList[i].length;
+            nbrList[i] = Arrays.copyOf(nbrList[i], Math.max(8, 2 * oldLength));
+            Arrays.fill(nbrList[i], oldLength, nbrList[i].length, -1);
+        }
+        nbrList[i][k] = j;
+    }
 }
 
 
@@ -0,0 +1,254 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.modules.glass;
+
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.data.ConfigurationStorage;
+import etomica.space.Boundary;
+import etomica.space.Vector;
+
+import java.util.Arrays;
+
+/**
+ * Finds the pairs of atoms within some range in a configuration, using cells
+ * so that the cost is O(N).  The pairs are kept as a list of the neighbors j
+ * (j &gt; i) of each atom i, along with the squared separation.
+ * <p>
+ * The list can follow the most recent configuration of a ConfigurationStorage,
+ * in which case it is rebuilt only when the storage takes a new configuration,
+ * so several meters can share one list.  Each meter calls requireRange with
+ * the range it needs and then update; pairs are listed out to the largest
+ * range requested.  When the box is too small for cells (or is not
+ * rectangular and periodic) the pairs are found by looping over all pairs.
+ */
+public class ConfigurationCellList {
+
+    protected final Box box;
+    protected final ConfigurationStorage configStorage;
+    protected final Vector dr;
+    protected double range;
+    protected long configCount;
+    protected boolean dirty;
+    protected Vector[] atomPositions;
+    protected final int[] numCells;
+    protected int[] atomCell, cellStart, cellAtoms;
+    protected int[] nbrStart, nbrs;
+    protected double[] nbrR2;
+
+    /**
+     * Creates a list that follows the most recent configuration of the given
+     * storage.
+     */
+    public ConfigurationCellList(ConfigurationStorage configStorage) {
+        this(configStorage.getBox(), configStorage);
+    }
+
+    /**
+     * Creates a list for configurations passed to build.
+     */
+    public ConfigurationCellList(Box box) {
+        this(box, null);
+    }
+
+    protected ConfigurationCellList(Box box, ConfigurationStorage configStorage) {
+        this.box = box;
+        this.configStorage = configStorage;
+        dr = box.getSpace().makeVector();
+        numCells = new int[box.getSpace().D()];
+        configCount = -1;
+        atomCell = cellStart = cellAtoms = new int[0];
+        nbrStart = new int[1];
+        nbrs = new int[0];
+        nbrR2 = new double[0];
+        atomPositions = new Vector[0];
+    }
+
+    /**
+     * Ensures that pairs out to the given range will be listed.
+     */
+    public void requireRange(double newRange) {
+        if (newRange > range) {
+            range = newRange;
+            dirty = true;
+        }
+    }
+
+    public double getRange() {
+        return range;
+    }
+
+    /**
+     * Rebuilds the list for the storage's most recent configuration, if it
+     * has changed (or the range has grown) since the last build.
+     */
+    public void update() {
+        if (configStorage.getConfigCount() == configCount && !dirty) return;
+        build(configStorage.getSavedConfig(0));
+        configCount = configStorage.getConfigCount();
+    }
+
+    /**
+     * Rebuilds the list for the current positions of the given atoms.
+     */
+    public void build(IAtomList atoms) {
+        if (atomPositions.length != atoms.size()) {
+            atomPositions = new Vector[atoms.size()];
+        }
+        for (int i = 0; i < atomPositions.length; i++) {
+            atomPositions[i] = atoms.get(i).getPosition();
+        }
+        build(atomPositions);
+    }
+
+    /**
+     * Rebuilds the list for the given positions (indexed like the box's leaf
+     * atoms).
+     */
+    public void build(Vector[] positions) {
+        dirty = false;
+        int n = positions.length;
+        if (nbrStart.length != n + 1) nbrStart = new int[n + 1];
+        if (setupCells(n)) {
+            assignCells(positions);
+            findCellPairs(positions);
+        } else {
+            findAllPairs(positions);
+        }
+    }
+
+    /**
+     * Picks the number of cells in each direction, returning false if cells
+     * can't be used.
+     */
+    protected boolean setupCells(int n) {
+        Boundary boundary = box.getBoundary();
+        if (!boundary.isRectangular() || range <= 0) return false;
+        Vector boxSize = boundary.getBoxSize();
+        int totalCells = 1;
+        for (int a = 0; a < numCells.length; a++) {
+            if (!boundary.getPeriodicity(a)) return false;
+            numCells[a] = (int) (boxSize.getX(a) / range);
+            // with fewer than 3 cells, a neighbor cell would be seen twice
+            if (numCells[a] < 3) return false;
+            totalCells *= numCells[a];
+        }
+        // with a short range, use bigger cells rather than many empty ones
+        int maxCells = Math.max(27, 2 * n);
+        while (totalCells > maxCells) {
+            totalCells = 1;
+            for (int a = 0; a < numCells.length; a++) {
+                numCells[a] = Math.max(3, numCells[a] / 2);
+                totalCells *= numCells[a];
+            }
+        }
+        if (cellStart.length != totalCells + 1) cellStart = new int[totalCells + 1];
+        if (atomCell.length != n) {
+            atomCell = new int[n];
+            cellAtoms = new int[n];
+        }
+        return true;
+    }
+
+    protected void assignCells(Vector[] positions) {
+        Vector boxSize = box.getBoundary().getBoxSize();
+        Arrays.fill(cellStart, 0);
+        for (int i = 0; i < positions.length; i++) {
+            int c = 0;
+            for (int a = 0; a < numCells.length; a++) {
+                int ca = (int) Math.floor((positions[i].getX(a) / boxSize.getX(a) + 0.5) * numCells[a]);
+                c = c * numCells[a] + Math.floorMod(ca, numCells[a]);
+            }
+            atomCell[i] = c;
+            cellStart[c + 1]++;
+        }
+        for (int c = 0; c < cellStart.length - 1; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        // atoms in each cell, in order; cellStart is shifted back as we go
+        for (int i = 0; i < positions.length; i++) {
+            cellAtoms[cellStart[atomCell[i]]++] = i;
+        }
+        for (int c = cellStart.length - 1; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    protected void findCellPairs(Vector[] positions) {
+        int D = numCells.length;
+        int[] iCell = new int[D];
+        int numOffsets = D == 3 ? 27 : (D == 2 ? 9 : 3);
+        int np = 0;
+        for (int i = 0; i < positions.length; i++) {
+            nbrStart[i] = np;
+            int c = atomCell[i];
+            for (int a = D - 1; a >= 0; a--) {
+                iCell[a] = c % numCells[a];
+                c /= numCells[a];
+            }
+            for (int o = 0; o < numOffsets; o++) {
+                int jCell = 0;
+                for (int a = 0, oa = o; a < D; a++, oa /= 3) {
+                    jCell = jCell * numCells[a] + Math.floorMod(iCell[a] + oa % 3 - 1, numCells[a]);
+                }
+                for (int k = cellStart[jCell]; k < cellStart[jCell + 1]; k++) {
+                    int j = cellAtoms[k];
+                    if (j > i) np = addPair(positions, i, j, np);
+                }
+            }
+        }
+        nbrStart[positions.length] = np;
+    }
+
+    protected void findAllPairs(Vector[] positions) {
+        int np = 0;
+        for (int i = 0; i < positions.length; i++) {
+            nbrStart[i] = np;
+            for (int j = i + 1; j < positions.length; j++) {
+                np = addPair(positions, i, j, np);
+            }
+        }
+        nbrStart[positions.length] = np;
+    }
+
+    protected int addPair(Vector[] positions, int i, int j, int np) {
+        dr.Ev1Mv2(positions[j], positions[i]);
+        box.getBoundary().nearestImage(dr);
+        double r2 = dr.squared();
+        if (r2 > range * range) return np;
+        if (np == nbrs.length) {
+            int newLength = Math.max(16, 2 * np);
+            nbrs = Arrays.copyOf(nbrs, newLength);
+            nbrR2 = Arrays.copyOf(nbrR2, newLength);
+        }
+        nbrs[np] = j;
+        nbrR2[np] = r2;
+        return np + 1;
+    }
+
+    /**
+     * Returns the index into getNbrs of the first neighbor of each atom;
+     * the neighbors of atom i are at nbrStart[i] up to nbrStart[i+1].
+     */
+    public int[] getNbrStart() {
+        return nbrStart;
+    }
+
+    /**
+     * Returns the neighbors of all atoms.  Each pair is listed once, as a
+     * neighbor of the atom with the lower index.
+     */
+    public int[] getNbrs() {
+        return nbrs;
+    }
+
+    /**
+     * Returns the squared separation of each pair in getNbrs.
+     */
+    public double[] getNbrR2() {
+        return nbrR2;
+    }
+}
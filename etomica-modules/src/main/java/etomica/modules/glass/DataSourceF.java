@@ -5,6 +5,7 @@ package etomica.modules.glass;
 
 import etomica.atom.AtomType;
 import etomica.data.*;
+import etomica.data.meter.StructureFactorFFT;
 import etomica.data.types.DataDoubleArray;
 import etomica.data.types.DataFunction;
 import etomica.space.Space;
@@ -28,10 +29,14 @@ public class DataSourceF implements IDataSource, ConfigurationStorage.Configurat
     protected final DataTag tTag, tag;
     protected long[] nSamples;
     protected final Vector dr, q;
+    protected Vector[] waveVectors;
+    protected StructureFactorFFT mesh;
+    protected final double[] cs = new double[2];
     protected AtomType type;
     protected double strucFac =0;
-    protected double[] cSum;
-    protected double[] sSum;
+    // cos and sin sums (for each wave vector) of the most recent configurations
+    protected double[][] cSum;
+    protected double[][] sSum;
 
 
     public DataSourceF(ConfigurationStorage configStorage) {
@@ -44,11 +49,47 @@ public class DataSourceF implements IDataSource, ConfigurationStorage.Configurat
         dr = space.makeVector();
         q = space.makeVector();
         q.setX(0,7.0);
-        cSum = new double[0];
-        sSum = new double[0];
+        waveVectors = new Vector[]{q};
+        cSum = new double[0][];
+        sSum = new double[0][];
         reset();
     }
 
+    /**
+     * Sets the wave vectors over which F is averaged (by default, a single
+     * wave vector (7,0,0)).  Averaging over the wave vectors of a shell of
+     * the reciprocal lattice gives the isotropic F(q,t).
+     */
+    public void setWaveVectors(Vector[] newWaveVectors) {
+        waveVectors = newWaveVectors;
+        cSum = new double[0][];
+        sSum = new double[0][];
+        fSum = new double[0];
+        nSamples = new long[0];
+        strucFac = 0;
+        data = null;
+        reset();
+    }
+
+    public Vector[] getWaveVectors() {
+        return waveVectors;
+    }
+
+    /**
+     * Sets a mesh used to compute the density amplitudes of each
+     * configuration at all wave vectors with one FFT, which is much faster
+     * than direct sums for many wave vectors.  The wave vectors must then
+     * be consistent with the (rectangular) box.  With null (the default),
+     * the amplitudes are summed directly.
+     */
+    public void setMesh(StructureFactorFFT newMesh) {
+        mesh = newMesh;
+    }
+
+    public StructureFactorFFT getMesh() {
+        return mesh;
+    }
+
     public void reset() {
         int n = configStorage.getLastConfigIndex();
         if (n == fSum.length && data != null) return;
@@ -63,8 +104,13 @@ public class DataSourceF implements IDataSource, ConfigurationStorage.Configurat
         tDataInfo = new DataDoubleArray.DataInfoDoubleArray("t", Time.DIMENSION, new int[]{n});
         dataInfo = new DataFunction.DataInfoFunction("F(t)", Null.DIMENSION, this);
         dataInfo.addTag(tag);
+        int oldLength = cSum.length;
         cSum = Arrays.copyOf(cSum, n+1);
         sSum = Arrays.copyOf(sSum, n+1);
+        for (int i = oldLength; i < n+1; i++) {
+            cSum[i] = new double[waveVectors.length];
+            sSum[i] = new double[waveVectors.length];
+        }
 
         if(n != 0){
             cSum[n] = cSum[n-1];
@@ -107,13 +153,33 @@ public class DataSourceF implements IDataSource, ConfigurationStorage.Configurat
         reset(); // reallocates if needed
         long step = configStorage.getSavedSteps()[0];
         Vector[] positions = configStorage.getSavedConfig(0);
-        double c0Sum =0 , s0Sum = 0;
-        for (int j = 0; j < positions.length; j++) {
-            double qdotr0 = q.dot(positions[j]);
-            c0Sum += Math.cos(qdotr0);
-            s0Sum += Math.sin(qdotr0);
+        // the sums are replaced, not modified, so older configurations can share them
+        double[] c0Sum = new double[waveVectors.length];
+        double[] s0Sum = new double[waveVectors.length];
+        if (mesh != null) {
+            double k2Max = 0;
+            for (Vector k : waveVectors) {
+                k2Max = Math.max(k2Max, k.squared());
+            }
+            mesh.setMaxWaveVector(Math.sqrt(k2Max));
+            mesh.compute(positions);
+            for (int k = 0; k < waveVectors.length; k++) {
+                mesh.getAmplitude(waveVectors[k], cs);
+                c0Sum[k] = cs[0];
+                s0Sum[k] = cs[1];
+            }
+        } else {
+            for (int k = 0; k < waveVectors.length; k++) {
+                for (int j = 0; j < positions.length; j++) {
+                    double qdotr0 = waveVectors[k].dot(positions[j]);
+                    c0Sum[k] += Math.cos(qdotr0);
+                    s0Sum[k] += Math.sin(qdotr0);
+                }
+            }
+        }
+        for (int k = 0; k < waveVectors.length; k++) {
+            strucFac += c0Sum[k]*c0Sum[k] + s0Sum[k]*s0Sum[k];
         }
-        strucFac += c0Sum*c0Sum + s0Sum*s0Sum;
 
         for (int i = 1, d = 1; d <= step && (step - 1) % d == 0; i++, d *= 2) {
             cSum[i] = cSum[0];
@@ -124,7 +190,9 @@ public class DataSourceF implements IDataSource, ConfigurationStorage.Configurat
         sSum[0] = s0Sum;
 
         for (int i = 1, d = 1; d < step + 1 && step % d == 0; i++, d *= 2) {
-            fSum[i - 1] += c0Sum * cSum[i] + s0Sum * sSum[i];
+            for (int k = 0; k < waveVectors.length; k++) {
+                fSum[i - 1] += c0Sum[k] * cSum[i][k] + s0Sum[k] * sSum[i][k];
+            }
             nSamples[i-1]++;
         }
     }
@@ -78,6 +78,8 @@ public class DataSourcePercolation implements IDataSource, ConfigurationStorage.
         }
 
         clusterer = new AtomNbrClusterer(configStorage.getBox(), atomTest, true);
+        // the clusters for each interval come from the same configuration
+        clusterer.setCellList(new ConfigurationCellList(configStorage));
         this.atomTest = atomTest;
         this.log2StepMin = log2StepMin;
         numAtoms = configStorage.getBox().getLeafList().size();
@@ -128,6 +130,14 @@ public class DataSourcePercolation implements IDataSource, ConfigurationStorage.
         return clusterer.getNbrMax();
     }
 
+    /**
+     * Sets the list used to find neighbors, which must follow this meter's
+     * ConfigurationStorage.
+     */
+    public void setCellList(ConfigurationCellList cellList) {
+        clusterer.setCellList(cellList);
+    }
+
     public void zeroData() {
         Arrays.fill(percP, 0);
         Arrays.fill(immTotal, 0);
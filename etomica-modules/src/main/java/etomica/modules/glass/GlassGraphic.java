@@ -128,6 +128,8 @@ public class GlassGraphic extends SimulationGraphic {
         ConfigurationStorage configStorage = new ConfigurationStorage(sim.box, ConfigurationStorage.StorageType.LOG2);
         configStorage.setEnabled(false); // start isothermal
         sim.integrator.getEventManager().addListener(configStorage);
+        // pairs in configStorage's latest configuration, shared by the meters that need them
+        ConfigurationCellList configCellList = new ConfigurationCellList(configStorage);
         DisplayBox dbox;
         DisplayBoxCanvasGlass canvas;
         DisplayCanvas c;
@@ -766,6 +768,7 @@ public class GlassGraphic extends SimulationGraphic {
         //Percolation
         atomFilterDeviationPerc.setDoMobileOnly(false);
         DataSourcePercolation meterPerc = new DataSourcePercolation(sim.getSpeciesManager(), configStorage, atomFilterDeviationPerc, 8);
+        meterPerc.setCellList(configCellList);
         configStorage.addListener(meterPerc);
         DisplayPlotXChart plotPerc = new DisplayPlotXChart();
         DataPumpListener pumpPerc = new DataPumpListener(meterPerc, plotPerc.getDataSet().makeDataSink(), 1000);
@@ -956,6 +959,7 @@ public class GlassGraphic extends SimulationGraphic {
 
         int minCorSample = 7;
         MeterCorrelation meterCorrelation = new MeterCorrelation(configStorage);
+        meterCorrelation.setCellList(configCellList);
         meterCorrelation.setMinPrevSample(minCorSample);
         meterCorrelation.setPrevSampleIndex(7);
         configStorage.addListener(meterCorrelation);
@@ -966,6 +970,7 @@ public class GlassGraphic extends SimulationGraphic {
         correlationPlot.setLabel("cor");
 
         MeterCorrelation meterCorrelationAA = new MeterCorrelation(configStorage);
+        meterCorrelationAA.setCellList(configCellList);
         meterCorrelationAA.setAtomTypes(sim.speciesA.getLeafType(), sim.speciesA.getLeafType());
         meterCorrelationAA.setPrevSampleIndex(7);
         meterCorrelationAA.setMinPrevSample(minCorSample);
@@ -974,6 +979,7 @@ public class GlassGraphic extends SimulationGraphic {
         DataPumpListener pumpCorrelationAA = new DataPumpListener(meterCorrelationAA, correlationPlot.getDataSet().makeDataSink(), corUpdateInterval);
         sim.integrator.getEventManager().addListener(pumpCorrelationAA);
         MeterCorrelation meterCorrelationAB = new MeterCorrelation(configStorage);
+        meterCorrelationAB.setCellList(configCellList);
         meterCorrelationAB.setAtomTypes(sim.speciesA.getLeafType(), sim.speciesB.getLeafType());
         meterCorrelationAB.setPrevSampleIndex(7);
         meterCorrelationAB.setMinPrevSample(minCorSample);
@@ -982,6 +988,7 @@ public class GlassGraphic extends SimulationGraphic {
         DataPumpListener pumpCorrelationAB = new DataPumpListener(meterCorrelationAB, correlationPlot.getDataSet().makeDataSink(), corUpdateInterval);
         sim.integrator.getEventManager().addListener(pumpCorrelationAB);
         MeterCorrelation meterCorrelationBB = new MeterCorrelation(configStorage);
+        meterCorrelationBB.setCellList(configCellList);
         meterCorrelationBB.setAtomTypes(sim.speciesB.getLeafType(), sim.speciesB.getLeafType());
         meterCorrelationBB.setPrevSampleIndex(7);
         meterCorrelationBB.setMinPrevSample(minCorSample);
@@ -996,6 +1003,7 @@ public class GlassGraphic extends SimulationGraphic {
         correlationPlot.setLegend(new DataTag[]{meterCorrelationBB.getTag()}, "BB");
 
         MeterCorrelation meterCorrelationPerp = new MeterCorrelation(configStorage, MeterCorrelation.CorrelationType.PERPENDICULAR);
+        meterCorrelationPerp.setCellList(configCellList);
         meterCorrelationPerp.setPrevSampleIndex(7);
         meterCorrelationPerp.setMinPrevSample(minCorSample);
         configStorage.addListener(meterCorrelationPerp);
@@ -1004,6 +1012,7 @@ public class GlassGraphic extends SimulationGraphic {
         sim.integrator.getEventManager().addListener(pumpCorrelationPerp);
         correlationPlot.setLegend(new DataTag[]{meterCorrelationPerp.getTag()}, "_|_");
         MeterCorrelation meterCorrelationPar = new MeterCorrelation(configStorage, MeterCorrelation.CorrelationType.PARALLEL);
+        meterCorrelationPar.setCellList(configCellList);
         meterCorrelationPar.setPrevSampleIndex(7);
         meterCorrelationPar.setMinPrevSample(minCorSample);
         configStorage.addListener(meterCorrelationPar);
@@ -1013,6 +1022,7 @@ public class GlassGraphic extends SimulationGraphic {
         correlationPlot.setLegend(new DataTag[]{meterCorrelationPar.getTag()}, "||");
 
         MeterCorrelation meterCorrelationMag = new MeterCorrelation(configStorage, MeterCorrelation.CorrelationType.MAGNITUDE);
+        meterCorrelationMag.setCellList(configCellList);
         meterCorrelationMag.setPrevSampleIndex(7);
         meterCorrelationMag.setMinPrevSample(minCorSample);
         configStorage.addListener(meterCorrelationMag);
@@ -1021,6 +1031,7 @@ public class GlassGraphic extends SimulationGraphic {
         sim.integrator.getEventManager().addListener(pumpCorrelationMag);
         correlationPlot.setLegend(new DataTag[]{meterCorrelationMag.getTag()}, "|r|");
         MeterCorrelation meterCorrelationAAMag = new MeterCorrelation(configStorage, MeterCorrelation.CorrelationType.MAGNITUDE);
+        meterCorrelationAAMag.setCellList(configCellList);
         meterCorrelationAAMag.setAtomTypes(sim.speciesA.getLeafType(), sim.speciesA.getLeafType());
         meterCorrelationAAMag.setPrevSampleIndex(7);
         meterCorrelationAAMag.setMinPrevSample(minCorSample);
@@ -1030,6 +1041,7 @@ public class GlassGraphic extends SimulationGraphic {
         sim.integrator.getEventManager().addListener(pumpCorrelationAAMag);
         correlationPlot.setLegend(new DataTag[]{meterCorrelationAAMag.getTag()}, "|r|AA");
         MeterCorrelation meterCorrelationABMag = new MeterCorrelation(configStorage, MeterCorrelation.CorrelationType.MAGNITUDE);
+        meterCorrelationABMag.setCellList(configCellList);
         meterCorrelationABMag.setAtomTypes(sim.speciesA.getLeafType(), sim.speciesB.getLeafType());
         meterCorrelationABMag.setPrevSampleIndex(7);
         meterCorrelationABMag.setMinPrevSample(minCorSample);
@@ -1039,6 +1051,7 @@ public class GlassGraphic extends SimulationGraphic {
         sim.integrator.getEventManager().addListener(pumpCorrelationABMag);
         correlationPlot.setLegend(new DataTag[]{meterCorrelationABMag.getTag()}, "|r|AB");
         MeterCorrelation meterCorrelationBBMag = new MeterCorrelation(configStorage, MeterCorrelation.CorrelationType.MAGNITUDE);
+        meterCorrelationBBMag.setCellList(configCellList);
         meterCorrelationBBMag.setAtomTypes(sim.speciesB.getLeafType(), sim.speciesB.getLeafType());
         meterCorrelationBBMag.setPrevSampleIndex(7);
         meterCorrelationBBMag.setMinPrevSample(minCorSample);
@@ -1587,6 +1600,7 @@ public class GlassGraphic extends SimulationGraphic {
         if (n > 500) cut1 /= Math.pow(n / 500.0, 1.0 / sim.getSpace().D());
         MeterStructureFactor meterSFac = new MeterStructureFactor(sim.box, cut1);
         meterSFac.setNormalizeByN(true);
+        meterSFac.setUseMesh(true);
         DataDump dumpSFac = new DataDump();
         DataFork forkSFac = new DataFork();
         signalByTypes.add((MeterStructureFactor.AtomSignalSourceByType) meterSFac.getSignalSource());
@@ -14,6 +14,8 @@ import etomica.integrator.IntegratorHard;
 import etomica.integrator.IntegratorVelocityVerlet;
 import etomica.space.Vector;
 import etomica.units.dimensions.Null;
+import etomica.util.CheckpointReader;
+import etomica.util.CheckpointWriter;
 import etomica.util.ParseArgs;
 import etomica.util.Statefull;
 
@@ -51,18 +53,19 @@ public class GlassProd {
             FileWriter fw = new FileWriter("glass.steps");
             steps.saveState(fw);
             fw.close();
-            fw = new FileWriter("glass.state");
-            for (Statefull s : objects) {
-                s.saveState(fw);
-            }
-            fw.close();
         }
         catch (IOException ex) {
             throw new RuntimeException(ex);
         }
+        CheckpointWriter.save("glass.state", objects);
     }
 
     public static void restoreObjects(List<Statefull> objects) {
+        if (CheckpointReader.isCheckpoint("glass.state")) {
+            CheckpointReader.restore("glass.state", objects);
+            return;
+        }
+        // text state from an older run
         try {
             BufferedReader br = new BufferedReader(new FileReader("glass.state"));
             for (Statefull s : objects) {
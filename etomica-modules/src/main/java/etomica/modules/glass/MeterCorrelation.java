@@ -48,6 +48,7 @@ public class MeterCorrelation implements ConfigurationStorage.ConfigurationStora
     protected int prevSampleIndex, minPrevSample;
     protected double[] dr2SumA, dr2SumB, dr1SumA, dr1SumB;
     protected long[] dr2CountA, dr2CountB;
+    protected ConfigurationCellList cellList;
 
     public MeterCorrelation(ConfigurationStorage configStorage) {
         this(configStorage, CorrelationType.TOTAL);
@@ -77,6 +78,19 @@ public class MeterCorrelation implements ConfigurationStorage.ConfigurationStora
         tmp = space.makeVector();
         tag = new DataTag();
         dataInfo.addTag(tag);
+        cellList = new ConfigurationCellList(configStorage);
+    }
+
+    /**
+     * Sets the list used to find pairs in the most recent configuration.
+     * Meters following the same ConfigurationStorage can share one list.
+     */
+    public void setCellList(ConfigurationCellList newCellList) {
+        cellList = newCellList;
+    }
+
+    public ConfigurationCellList getCellList() {
+        return cellList;
     }
 
     public void setMinPrevSample(int idx) {
@@ -208,7 +222,12 @@ public class MeterCorrelation implements ConfigurationStorage.ConfigurationStora
         double xMaxSquared = xMax * xMax;
         Box box = configStorage.getBox();
         Boundary boundary = box.getBoundary();
-        // iterate over all pairs
+        // pairs within xMax in the current configuration
+        cellList.requireRange(xMax);
+        cellList.update();
+        int[] nbrStart = cellList.getNbrStart();
+        int[] nbrs = cellList.getNbrs();
+        double[] nbrR2 = cellList.getNbrR2();
         Vector[] config0 = configStorage.getSavedConfig(0);
         IAtomList atoms = box.getLeafList();
         int idxSum = 0, idxProd = 0;
@@ -241,16 +260,15 @@ public class MeterCorrelation implements ConfigurationStorage.ConfigurationStora
                         dr2CountB[j]++;
                         if (correlationType == CorrelationType.MAGNITUDE) dr1SumB[j] += Math.sqrt(dri2);
                     }
-                    for (int k = i + 1; k < config0.length; k++) {
+                    for (int p = nbrStart[i]; p < nbrStart[i + 1]; p++) {
+                        int k = nbrs[p];
                         IAtom kAtom = atoms.get(k);
                         int kTypeIdx = kAtom.getType().getIndex();
                         if (type1 != null && (iTypeIdx * kTypeIdx != idxProd || iTypeIdx + kTypeIdx != idxSum))
                             continue;
                         Vector kr0 = config0[k];
 
-                        dr.Ev1Mv2(ir0, kr0);
-                        boundary.nearestImage(dr);
-                        double r2 = dr.squared();       //compute pair separation
+                        double r2 = nbrR2[p];       //pair separation
                         if (r2 < xMaxSquared) {
                             Vector krPrev = configPrev[k];
                             drk.Ev1Mv2(kr0, krPrev);
@@ -261,6 +279,8 @@ public class MeterCorrelation implements ConfigurationStorage.ConfigurationStora
                             } else if (correlationType == CorrelationType.MAGNITUDE) {
                                 corSum[j][index] += Math.sqrt(dri2 * drk.squared());
                             } else {
+                                dr.Ev1Mv2(ir0, kr0);
+                                boundary.nearestImage(dr);
                                 tmp.Ea1Tv1(drk.dot(dr) / r2, dr);
                                 if (correlationType == CorrelationType.PERPENDICULAR) {
                                     drk.ME(tmp);
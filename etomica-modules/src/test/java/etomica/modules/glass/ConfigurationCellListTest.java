@@ -0,0 +1,119 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.modules.glass;
+
+import etomica.atom.AtomType;
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.simulation.Simulation;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.space2d.Space2D;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesGeneral;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+class ConfigurationCellListTest {
+
+    private Box makeBox(Space space, double L, int n) {
+        Simulation sim = new Simulation(space);
+        SpeciesGeneral species = SpeciesGeneral.monatomic(space, AtomType.simpleFromSim(sim));
+        sim.addSpecies(species);
+        Box box = sim.makeBox();
+        Vector size = space.makeVector();
+        size.E(L);
+        box.getBoundary().setBoxSize(size);
+        box.setNMolecules(species, n);
+        for (IAtom a : box.getLeafList()) {
+            a.getPosition().setRandomCube(sim.getRandom());
+            a.getPosition().TE(L);
+        }
+        return box;
+    }
+
+    private Map<Long, Double> allPairs(Box box, double range) {
+        IAtomList atoms = box.getLeafList();
+        Vector dr = box.getSpace().makeVector();
+        Map<Long, Double> pairs = new HashMap<>();
+        for (int i = 0; i < atoms.size(); i++) {
+            for (int j = i + 1; j < atoms.size(); j++) {
+                dr.Ev1Mv2(atoms.get(j).getPosition(), atoms.get(i).getPosition());
+                box.getBoundary().nearestImage(dr);
+                if (dr.squared() <= range * range) pairs.put((long) i * atoms.size() + j, dr.squared());
+            }
+        }
+        return pairs;
+    }
+
+    private void checkPairs(Box box, double range) {
+        ConfigurationCellList cellList = new ConfigurationCellList(box);
+        cellList.requireRange(range);
+        cellList.build(box.getLeafList());
+        int n = box.getLeafList().size();
+        int[] nbrStart = cellList.getNbrStart();
+        Map<Long, Double> pairs = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            for (int p = nbrStart[i]; p < nbrStart[i + 1]; p++) {
+                int j = cellList.getNbrs()[p];
+                Assertions.assertTrue(j > i);
+                Assertions.assertNull(pairs.put((long) i * n + j, cellList.getNbrR2()[p]));
+            }
+        }
+        Assertions.assertEquals(allPairs(box, range), pairs);
+    }
+
+    @Test
+    public void testPairs() {
+        Box box3 = makeBox(Space3D.getInstance(), 10, 500);
+        checkPairs(box3, 1.5);
+        checkPairs(box3, 3.0);
+        // too big for 3 cells; all pairs are checked
+        checkPairs(box3, 4.0);
+        Box box2 = makeBox(Space2D.getInstance(), 20, 400);
+        checkPairs(box2, 1.5);
+        checkPairs(box2, 5.0);
+    }
+
+    @Test
+    public void testClusters() {
+        Box box = makeBox(Space3D.getInstance(), 10, 500);
+        IAtomList atoms = box.getLeafList();
+        AtomNbrClusterer clusterer = new AtomNbrClusterer(box, a -> a.getLeafIndex() % 3 != 0, true);
+        clusterer.setNbrMax(1.2);
+        clusterer.findClusters();
+        int[] clusters = clusterer.getClusters();
+
+        // union-find over all pairs of atoms that pass the test
+        int[] root = new int[atoms.size()];
+        for (int i = 0; i < root.length; i++) root[i] = i;
+        for (long pair : allPairs(box, 1.2).keySet()) {
+            int i = (int) (pair / atoms.size()), j = (int) (pair % atoms.size());
+            if (i % 3 == 0 || j % 3 == 0) continue;
+            while (root[i] != i) i = root[i];
+            while (root[j] != j) j = root[j];
+            root[Math.max(i, j)] = Math.min(i, j);
+            Assertions.assertTrue(Arrays.stream(clusterer.nbrList[(int) (pair / atoms.size())]).anyMatch(k -> k == pair % atoms.size()));
+        }
+        for (int i = 0; i < root.length; i++) {
+            if (i % 3 == 0) {
+                Assertions.assertEquals(-1, clusters[i]);
+                continue;
+            }
+            for (int j = i + 1; j < root.length; j++) {
+                if (j % 3 == 0) continue;
+                int ri = i, rj = j;
+                while (root[ri] != ri) ri = root[ri];
+                while (root[rj] != rj) rj = root[rj];
+                Assertions.assertEquals(ri == rj, clusters[i] == clusters[j]);
+            }
+        }
+    }
+}